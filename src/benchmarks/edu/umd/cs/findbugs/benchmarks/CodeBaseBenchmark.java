@@ -0,0 +1,111 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+import edu.umd.cs.findbugs.classfile.impl.AbstractScannableCodeBase;
+import edu.umd.cs.findbugs.classfile.impl.FilesystemCodeBaseLocator;
+import edu.umd.cs.findbugs.classfile.impl.MappedZipCodeBase;
+import edu.umd.cs.findbugs.classfile.impl.MappedZipCodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.impl.ZipFileCodeBase;
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Open a jar file and read the data of all the classes in it, as the
+ * ClassData analysis engine does, with one of the zip file codebases.
+ *
+ * <p>
+ * Unlike the other benchmarks, this one doesn't analyze the corpus, it only
+ * reads it: run it on a large jar with e.g.
+ * -Dbenchmark.corpus=$JAVA_HOME/jre/lib/rt.jar -Djmh.args=CodeBaseBenchmark
+ * </p>
+ *
+ * <p>
+ * One operation is one pass over the classes of the corpus.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CodeBaseBenchmark {
+
+    /**
+     * Jar file to read. Relative paths are resolved against the FindBugs
+     * home directory when run from Ant.
+     */
+    @Param("lib/dom4j-1.6.1.jar")
+    public String corpus;
+
+    @Param({ "ZipFileCodeBase", "MappedZipCodeBase" })
+    public String codeBase;
+
+    @Benchmark
+    public void readClasses(Blackhole blackhole) throws IOException, InterruptedException {
+        File file = new File(corpus);
+        FilesystemCodeBaseLocator locator = new FilesystemCodeBaseLocator(corpus);
+        AbstractScannableCodeBase zipCodeBase;
+        if (codeBase.equals("MappedZipCodeBase")) {
+            zipCodeBase = new MappedZipCodeBase(locator, file);
+        } else {
+            zipCodeBase = new ZipFileCodeBase(locator, file);
+        }
+        try {
+            for (ICodeBaseIterator i = zipCodeBase.iterator(); i.hasNext();) {
+                ICodeBaseEntry entry = i.next();
+                if (entry.getResourceName().endsWith(".class")) {
+                    blackhole.consume(getBytes(entry));
+                }
+            }
+        } finally {
+            zipCodeBase.close();
+        }
+    }
+
+    private static byte[] getBytes(ICodeBaseEntry entry) throws IOException {
+        if (entry instanceof MappedZipCodeBaseEntry) {
+            return ((MappedZipCodeBaseEntry) entry).getBytes();
+        }
+        int length = entry.getNumBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length >= 0 ? length : 8192);
+        InputStream in = entry.openResource();
+        try {
+            IO.copy(in, out);
+        } finally {
+            IO.close(in);
+        }
+        return out.toByteArray();
+    }
+}
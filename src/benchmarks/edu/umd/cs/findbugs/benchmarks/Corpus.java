@@ -0,0 +1,192 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.umd.cs.findbugs.AbstractBugReporter;
+import edu.umd.cs.findbugs.AnalysisError;
+import edu.umd.cs.findbugs.BugCollection;
+import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.DetectorFactoryCollection;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.Project;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassObserver;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * The classes the benchmarks are run on, set up as in a real analysis.
+ *
+ * <p>
+ * Setting up runs a complete analysis of the corpus with the default
+ * detectors, and keeps the analysis cache and the analysis context of that
+ * run around, so that detectors and analyses see the same interprocedural
+ * databases and cached results as they would in the reporting pass. The
+ * analysis cache and context are thread-local, so benchmarks using the corpus
+ * must run in the thread that set it up.
+ * </p>
+ *
+ * @see #corpus
+ */
+@State(Scope.Thread)
+public class Corpus {
+
+    /**
+     * Jar file or directory containing the classes to analyze. Relative paths
+     * are resolved against the FindBugs home directory when run from Ant.
+     */
+    @Param("lib/dom4j-1.6.1.jar")
+    public String corpus;
+
+    private Engine engine;
+
+    private IAnalysisCache analysisCache;
+
+    private List<ClassDescriptor> classList;
+
+    private List<MethodDescriptor> methodList;
+
+    /**
+     * A FindBugs2 which doesn't tear down the analysis when it is done.
+     */
+    private static class Engine extends FindBugs2 {
+        @Override
+        protected void clearCaches() {
+            // Done in release()
+        }
+
+        void release() {
+            super.clearCaches();
+        }
+    }
+
+    /**
+     * A BugReporter which drops everything.
+     */
+    static class NullBugReporter extends AbstractBugReporter {
+        @Override
+        protected void doReportBug(BugInstance bugInstance) {
+        }
+
+        @Override
+        public void reportAnalysisError(AnalysisError error) {
+        }
+
+        @Override
+        public void reportMissingClass(String string) {
+        }
+
+        public void finish() {
+        }
+
+        public BugCollection getBugCollection() {
+            return null;
+        }
+
+        public void observeClass(ClassDescriptor classDescriptor) {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Set<ClassDescriptor> classSet = new LinkedHashSet<ClassDescriptor>();
+
+        Project project = new Project();
+        project.addFile(corpus);
+
+        engine = new Engine();
+        engine.setBugReporter(new NullBugReporter());
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        engine.setUserPreferences(UserPreferences.createDefaultUserPreferences());
+        engine.addClassObserver(new IClassObserver() {
+            public void observeClass(ClassDescriptor classDescriptor) {
+                classSet.add(classDescriptor);
+            }
+        });
+        engine.execute();
+
+        analysisCache = Global.getAnalysisCache();
+        classList = Collections.unmodifiableList(new ArrayList<ClassDescriptor>(classSet));
+        List<MethodDescriptor> methods = new ArrayList<MethodDescriptor>();
+        for (ClassDescriptor classDescriptor : classList) {
+            XClass xclass;
+            try {
+                xclass = analysisCache.getClassAnalysis(XClass.class, classDescriptor);
+            } catch (CheckedAnalysisException e) {
+                continue;
+            }
+            for (XMethod xmethod : xclass.getXMethods()) {
+                if (!xmethod.isAbstract() && !xmethod.isNative()) {
+                    methods.add(xmethod.getMethodDescriptor());
+                }
+            }
+        }
+        methodList = Collections.unmodifiableList(methods);
+        if (classList.isEmpty()) {
+            throw new IllegalStateException("No classes to analyze in " + corpus);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.release();
+        engine.dispose();
+    }
+
+    /**
+     * @return the analysis cache of the analysis of the corpus
+     */
+    public IAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    /**
+     * @return the application classes of the corpus
+     */
+    public List<ClassDescriptor> getClassList() {
+        return classList;
+    }
+
+    /**
+     * @return the methods with code of the application classes of the corpus
+     */
+    public List<MethodDescriptor> getMethodList() {
+        return methodList;
+    }
+}
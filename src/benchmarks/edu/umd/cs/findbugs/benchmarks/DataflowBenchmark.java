@@ -0,0 +1,135 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.bcel.generic.MethodGen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.ba.CFGBuilder;
+import edu.umd.cs.findbugs.ba.CFGBuilderFactory;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.classfile.engine.bcel.IsNullValueDataflowFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.TypeDataflowFactory;
+import edu.umd.cs.findbugs.classfile.engine.bcel.ValueNumberDataflowFactory;
+
+/**
+ * Run one of the core dataflow analyses, or build the control flow graph, for
+ * every method of the corpus.
+ *
+ * <p>
+ * The analyses are run through their analysis engines, bypassing the analysis
+ * cache, so that the result is computed again each time; the analyses they
+ * depend on (CFG, depth first search, value numbers for the null value
+ * analysis, etc.) are taken from the cache. "CFG" only measures building the
+ * raw CFG, not pruning it, since pruning needs the type analysis.
+ * </p>
+ *
+ * <p>
+ * One operation is one sweep over the methods of the corpus for which the
+ * analysis succeeds.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DataflowBenchmark {
+
+    @Param({ "CFG", "ValueNumberDataflow", "IsNullValueDataflow", "TypeDataflow" })
+    public String analysis;
+
+    private IAnalysisCache analysisCache;
+
+    private IMethodAnalysisEngine<?> engine;
+
+    private List<MethodDescriptor> methodList;
+
+    /**
+     * Builds the raw CFG of a method.
+     */
+    private static class CFGBuilderEngine implements IMethodAnalysisEngine<Object> {
+        public Object analyze(IAnalysisCache analysisCache, MethodDescriptor descriptor) throws CheckedAnalysisException {
+            MethodGen methodGen = analysisCache.getMethodAnalysis(MethodGen.class, descriptor);
+            if (methodGen == null) {
+                return null;
+            }
+            CFGBuilder cfgBuilder = CFGBuilderFactory.create(methodGen);
+            cfgBuilder.build();
+            return cfgBuilder.getCFG();
+        }
+
+        public void registerWith(IAnalysisCache analysisCache) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) {
+        if (analysis.equals("CFG")) {
+            engine = new CFGBuilderEngine();
+        } else if (analysis.equals("ValueNumberDataflow")) {
+            engine = new ValueNumberDataflowFactory();
+        } else if (analysis.equals("IsNullValueDataflow")) {
+            engine = new IsNullValueDataflowFactory();
+        } else if (analysis.equals("TypeDataflow")) {
+            engine = new TypeDataflowFactory();
+        } else {
+            throw new IllegalArgumentException("Unknown analysis " + analysis);
+        }
+
+        // Keep the methods the analysis works on; this also makes sure that
+        // the analyses it depends on are in the cache
+        analysisCache = corpus.getAnalysisCache();
+        methodList = new ArrayList<MethodDescriptor>();
+        for (MethodDescriptor descriptor : corpus.getMethodList()) {
+            try {
+                if (engine.analyze(analysisCache, descriptor) != null) {
+                    methodList.add(descriptor);
+                }
+            } catch (CheckedAnalysisException e) {
+                // skip
+            } catch (RuntimeException e) {
+                // skip
+            }
+        }
+    }
+
+    @Benchmark
+    public void analyzeMethods(Blackhole blackhole) throws CheckedAnalysisException {
+        for (MethodDescriptor descriptor : methodList) {
+            blackhole.consume(engine.analyze(analysisCache, descriptor));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorToDetector2Adapter;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+
+/**
+ * Apply a single detector to every class of the corpus. Useful to compare a
+ * rewritten detector with the original, e.g. DumbMethods with DumbMethodsOrig.
+ *
+ * <p>
+ * One operation is one sweep over the corpus. The detector is created once
+ * per trial, so detectors accumulating state across classes keep doing so.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DetectorBenchmark {
+
+    /**
+     * Detector class, either fully qualified or in edu.umd.cs.findbugs.detect
+     */
+    @Param({ "DumbMethods", "DumbMethodsOrig", "FindHEmismatch", "FindHEmismatchOrig", "FindPuzzlers" })
+    public String detector;
+
+    private Detector2 detector2;
+
+    @Setup(Level.Trial)
+    public void setUp(Corpus corpus) throws Exception {
+        String className = detector.indexOf('.') >= 0 ? detector : "edu.umd.cs.findbugs.detect." + detector;
+        Class<?> detectorClass = Class.forName(className);
+        Object instance = detectorClass.getConstructor(BugReporter.class).newInstance(new Corpus.NullBugReporter());
+        if (instance instanceof Detector2) {
+            detector2 = (Detector2) instance;
+        } else {
+            detector2 = new DetectorToDetector2Adapter((Detector) instance);
+        }
+    }
+
+    @Benchmark
+    public void visitClasses(Corpus corpus) throws CheckedAnalysisException {
+        for (ClassDescriptor classDescriptor : corpus.getClassList()) {
+            detector2.visitClass(classDescriptor);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.ba.AbstractDominatorsAnalysis;
+import edu.umd.cs.findbugs.ba.BasicBlock;
+import edu.umd.cs.findbugs.ba.CFG;
+import edu.umd.cs.findbugs.ba.DataflowAnalysisException;
+import edu.umd.cs.findbugs.ba.Dataflow;
+import edu.umd.cs.findbugs.ba.DepthFirstSearch;
+import edu.umd.cs.findbugs.ba.DominatorsAnalysis;
+import edu.umd.cs.findbugs.ba.EdgeTypes;
+import edu.umd.cs.findbugs.ba.ReverseDepthFirstSearch;
+import edu.umd.cs.findbugs.classfile.engine.bcel.NonExceptionPostdominatorsAnalysis;
+
+/**
+ * Compute the dominators and the non-exception postdominators of a large
+ * generated method, either by running a Dataflow on the analyses (the way
+ * they used to be computed) or with their dominator tree.
+ *
+ * <p>
+ * The method is a sequence of if/else diamonds, with a loop around every few
+ * of them, in a try block whose handler falls through to the exit; this is
+ * the shape of the huge generated methods (parsers, static initializers)
+ * for which the BitSet dataflow is quadratic. One operation computes both
+ * analyses once, and asks for the dominators of every block.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DominatorsBenchmark {
+
+    @Param({ "Dataflow", "DominatorTree" })
+    public String engine;
+
+    @Param({ "1000", "10000" })
+    public int numBlocks;
+
+    private CFG cfg;
+
+    private DepthFirstSearch dfs;
+
+    private ReverseDepthFirstSearch rdfs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (!engine.equals("Dataflow") && !engine.equals("DominatorTree")) {
+            throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+
+        Random random = new Random(42);
+        cfg = new CFG();
+        BasicBlock handler = cfg.allocate();
+        BasicBlock current = cfg.getEntry();
+        BasicBlock loopHead = null;
+        while (cfg.getNumBasicBlocks() + 4 <= numBlocks) {
+            BasicBlock condition = cfg.allocate();
+            BasicBlock thenBlock = cfg.allocate();
+            BasicBlock elseBlock = cfg.allocate();
+            BasicBlock join = cfg.allocate();
+            cfg.createEdge(current, condition, EdgeTypes.FALL_THROUGH_EDGE);
+            cfg.createEdge(condition, thenBlock, EdgeTypes.FALL_THROUGH_EDGE);
+            cfg.createEdge(condition, elseBlock, EdgeTypes.IFCMP_EDGE);
+            cfg.createEdge(thenBlock, join, EdgeTypes.GOTO_EDGE);
+            cfg.createEdge(elseBlock, join, EdgeTypes.FALL_THROUGH_EDGE);
+            cfg.createEdge(random.nextBoolean() ? thenBlock : elseBlock, handler, EdgeTypes.HANDLED_EXCEPTION_EDGE);
+            if (loopHead == null) {
+                loopHead = condition;
+            } else if (random.nextInt(4) == 0) {
+                cfg.createEdge(join, loopHead, EdgeTypes.GOTO_EDGE);
+                loopHead = null;
+            }
+            current = join;
+        }
+        cfg.createEdge(current, cfg.getExit(), EdgeTypes.RETURN_EDGE);
+        cfg.createEdge(handler, cfg.getExit(), EdgeTypes.RETURN_EDGE);
+
+        dfs = new DepthFirstSearch(cfg);
+        dfs.search();
+        rdfs = new ReverseDepthFirstSearch(cfg);
+        rdfs.search();
+    }
+
+    private void compute(AbstractDominatorsAnalysis analysis) throws DataflowAnalysisException {
+        if (engine.equals("Dataflow")) {
+            new Dataflow<BitSet, AbstractDominatorsAnalysis>(cfg, analysis).execute();
+        } else {
+            analysis.computeDominatorTree();
+        }
+    }
+
+    @Benchmark
+    public void computeDominators(Blackhole blackhole) throws DataflowAnalysisException {
+        DominatorsAnalysis dominators = new DominatorsAnalysis(cfg, dfs, true);
+        compute(dominators);
+        NonExceptionPostdominatorsAnalysis postDominators = new NonExceptionPostdominatorsAnalysis(cfg, rdfs, dfs);
+        compute(postDominators);
+        for (BasicBlock block : cfg.blocks()) {
+            blackhole.consume(dominators.getResultFact(block));
+            blackhole.consume(postDominators.getResultFact(block));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.umd.cs.findbugs.BytecodeScanningDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+
+/**
+ * Decode the bytecode of every method of the corpus, with and without
+ * simulating the operand stack with an OpcodeStack. The difference between
+ * the two is the cost of OpcodeStack.sawOpcode() and the merging of jump
+ * targets.
+ *
+ * <p>
+ * One operation is one sweep over the corpus.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OpcodeStackBenchmark {
+
+    static class Decoder extends BytecodeScanningDetector {
+        int count;
+
+        @Override
+        public void sawOpcode(int seen) {
+            count++;
+        }
+    }
+
+    static class StackSimulator extends OpcodeStackDetector {
+        int count;
+
+        @Override
+        public void sawOpcode(int seen) {
+            count += stack.getStackDepth();
+        }
+    }
+
+    private final Decoder decoder = new Decoder();
+
+    private final StackSimulator stackSimulator = new StackSimulator();
+
+    @Benchmark
+    public void decode(Corpus corpus, Blackhole blackhole) throws CheckedAnalysisException {
+        decoder.count = 0;
+        sweep(corpus, decoder);
+        blackhole.consume(decoder.count);
+    }
+
+    @Benchmark
+    public void decodeAndSimulateStack(Corpus corpus, Blackhole blackhole) throws CheckedAnalysisException {
+        stackSimulator.count = 0;
+        sweep(corpus, stackSimulator);
+        blackhole.consume(stackSimulator.count);
+    }
+
+    private static void sweep(Corpus corpus, BytecodeScanningDetector detector) throws CheckedAnalysisException {
+        IAnalysisCache analysisCache = corpus.getAnalysisCache();
+        for (ClassDescriptor classDescriptor : corpus.getClassList()) {
+            detector.visitClassContext(analysisCache.getClassAnalysis(ClassContext.class, classDescriptor));
+        }
+    }
+}
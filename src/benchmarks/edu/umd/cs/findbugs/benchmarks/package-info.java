@@ -0,0 +1,8 @@
+/**
+ * <a href="http://openjdk.java.net/projects/code-tools/jmh/">JMH</a>
+ * benchmarks for detectors and core analyses. Built and run by the
+ * benchmarks and runbenchmarks Ant targets, which need jmh.home to be set.
+ */
+
+@javax.annotation.ParametersAreNonnullByDefault
+package edu.umd.cs.findbugs.benchmarks;
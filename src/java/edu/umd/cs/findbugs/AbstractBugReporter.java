@@ -276,7 +276,7 @@ public abstract class AbstractBugReporter implements BugReporter {
     /**
      * @param message
      */
-    private void logMissingClass(String message) {
+    private synchronized void logMissingClass(String message) {
         if (!isValidMissingClassMessage(message)) {
             return;
         }
@@ -292,7 +292,7 @@ public abstract class AbstractBugReporter implements BugReporter {
         // TODO: log this
     }
 
-    public void logError(String message) {
+    public synchronized void logError(String message) {
         if (verbosityLevel == SILENT) {
             return;
         }
@@ -317,7 +317,7 @@ public abstract class AbstractBugReporter implements BugReporter {
         return missingClassMessageList;
     }
 
-    public void logError(String message, Throwable e) {
+    public synchronized void logError(String message, Throwable e) {
 
         if (e instanceof MethodUnprofitableException) {
             // TODO: log this
@@ -0,0 +1,117 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+/**
+ * Thin client of AnalysisServer: sends the command line arguments of
+ * FindBugs2 to a running server, copies the output of the analysis to the
+ * standard output and error, and exits with its exit code. The client
+ * authenticates with the token the server wrote to
+ * {@link AnalysisServer#getTokenFile(int)}, so it must run as the same user.
+ *
+ * <p>
+ * Usage: AnalysisClient [-port &lt;port&gt;] (-shutdown | FindBugs2
+ * arguments)
+ * </p>
+ */
+public class AnalysisClient {
+    public static void main(String[] args) throws IOException {
+        int port = AnalysisServer.DEFAULT_PORT;
+        int argStart = 0;
+        if (args.length >= 2 && args[0].equals("-port")) {
+            port = Integer.parseInt(args[1]);
+            argStart = 2;
+        }
+
+        File tokenFile = AnalysisServer.getTokenFile(port);
+        String token;
+        try {
+            token = readToken(tokenFile);
+        } catch (IOException e) {
+            System.err.println("Couldn't read the token of the FindBugs analysis server from " + tokenFile + ": " + e);
+            System.exit(1);
+            return;
+        }
+
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName(null), port);
+        } catch (ConnectException e) {
+            System.err.println("No FindBugs analysis server is listening on port " + port);
+            System.exit(1);
+            return;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(AnalysisServer.MAGIC);
+            out.writeUTF(token);
+            out.writeUTF(System.getProperty("user.dir"));
+            out.writeInt(args.length - argStart);
+            for (int i = argStart; i < args.length; i++) {
+                out.writeUTF(args[i]);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte[] buf = new byte[8192];
+            while (true) {
+                int type = in.readByte();
+                int len = in.readInt();
+                if (type == AnalysisServer.EXIT) {
+                    System.exit(len);
+                }
+                PrintStream stream = type == AnalysisServer.STDERR ? System.err : System.out;
+                if (buf.length < len) {
+                    buf = new byte[len];
+                }
+                in.readFully(buf, 0, len);
+                stream.write(buf, 0, len);
+                stream.flush();
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String readToken(File tokenFile) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(tokenFile));
+        try {
+            byte[] bytes = new byte[(int) tokenFile.length()];
+            in.readFully(bytes);
+            return new String(bytes, UTF8.charset).trim();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -76,6 +76,31 @@ public class AnalysisOptions {
      */
     public boolean noClassOk;
 
+    /**
+     * Number of threads used to read the headers of the referenced classes
+     * and to apply detectors to classes; 1 means classes are scanned and
+     * analyzed sequentially.
+     */
+    public int numThreads = 1;
+
+    /**
+     * Directory of the on-disk cache of the bugs reported for unchanged
+     * classes, or null if classes are always analyzed from scratch.
+     */
+    public String incrementalCacheDir;
+
+    /**
+     * File to which the profile of the analysis is written as CSV, or null
+     * if it isn't written.
+     */
+    public String metricsFile;
+
+    /**
+     * File listing the application classes changed since a full analysis,
+     * or null if all application classes are analyzed.
+     */
+    public String changedClassesFile;
+
     String releaseName;
 
     String projectName;
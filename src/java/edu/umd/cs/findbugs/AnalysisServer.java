@@ -0,0 +1,402 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+
+/**
+ * Resident FindBugs process, which runs analyses requested by
+ * AnalysisClient.
+ *
+ * <p>
+ * The server pays the JVM startup, the BCEL check and the loading of plugins
+ * once, and keeps the analysis results for library classes (see
+ * LibraryClassCache) between requests, so that only the classes of the
+ * application and of changed archives are parsed again. A request consists of
+ * the command line arguments of FindBugs2; its standard output and error and
+ * its exit code are sent back to the client.
+ * </p>
+ *
+ * <p>
+ * The server only listens on the loopback interface, and runs one request at
+ * a time. Relative paths in the options and file arguments of a request are
+ * resolved against the working directory of the client (see
+ * {@link #resolvePaths(String[], File)}).
+ * </p>
+ *
+ * <p>
+ * Since a request can write files and load plugins as the user running the
+ * server, every request must carry a random token, which the server writes
+ * to a file readable only by its owner in the directory returned by
+ * {@link #getTokenDirectory()}. Requests with a wrong token are rejected
+ * without being run. On file systems which don't support owner-only
+ * permissions (e.g., on Windows), the token file is protected only by the
+ * permissions of the user's home directory.
+ * </p>
+ */
+public class AnalysisServer {
+    public static final int DEFAULT_PORT = 10987;
+
+    static final int MAGIC = 0xFB5E4701;
+
+    /** Frame types of the reply */
+    static final int EXIT = 0, STDOUT = 1, STDERR = 2;
+
+    /** Request which stops the server */
+    static final String SHUTDOWN = "-shutdown";
+
+    private static final int TOKEN_LENGTH = 16;
+
+    private final LibraryClassCache libraryClassCache = new LibraryClassCache();
+
+    private final String token;
+
+    private boolean shutdown;
+
+    AnalysisServer() throws IOException {
+        byte[] bytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder buf = new StringBuilder();
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        token = buf.toString();
+    }
+
+    /**
+     * Get the directory holding the token files of the servers of the current
+     * user.
+     */
+    static File getTokenDirectory() {
+        return new File(System.getProperty("user.home"), ".findbugs-server");
+    }
+
+    /**
+     * Get the file holding the token of the server listening on given port.
+     */
+    static File getTokenFile(int port) {
+        return new File(getTokenDirectory(), port + ".token");
+    }
+
+    /**
+     * Make a file or directory accessible only by its owner.
+     */
+    private static void restrictToOwner(File f) throws IOException {
+        boolean ok = f.setReadable(false, false) & f.setWritable(false, false) & f.setExecutable(false, false);
+        ok &= f.setReadable(true, true) & f.setWritable(true, true);
+        if (f.isDirectory()) {
+            ok &= f.setExecutable(true, true);
+        }
+        if (!ok) {
+            throw new IOException("Couldn't restrict the permissions of " + f);
+        }
+    }
+
+    private void writeTokenFile(File tokenFile) throws IOException {
+        File dir = tokenFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Couldn't create " + dir);
+        }
+        restrictToOwner(dir);
+        if (tokenFile.exists() && !tokenFile.delete()) {
+            throw new IOException("Couldn't delete stale " + tokenFile);
+        }
+        // Restrict the empty file before the token is written to it
+        OutputStream out = new FileOutputStream(tokenFile);
+        try {
+            restrictToOwner(tokenFile);
+            out.write(token.getBytes(UTF8.charset));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * FindBugs2 engine which reuses the results for library classes of the
+     * previous run sharing its LibraryClassCache.
+     */
+    static class ServerEngine extends FindBugs2 {
+        private final LibraryClassCache libraryClassCache;
+
+        private IAnalysisCache analysisCache;
+
+        ServerEngine(LibraryClassCache libraryClassCache) {
+            this.libraryClassCache = libraryClassCache;
+        }
+
+        @Override
+        protected IAnalysisCache createAnalysisCache() throws IOException {
+            analysisCache = super.createAnalysisCache();
+            libraryClassCache.registerWith(analysisCache);
+            return analysisCache;
+        }
+
+        @Override
+        protected void reuseClassAnalyses(IClassPath classPath) {
+            libraryClassCache.restore(classPath);
+        }
+
+        @Override
+        protected void clearCaches() {
+            if (analysisCache instanceof AnalysisCache) {
+                System.err.println("Reused the analysis of " + libraryClassCache.getNumReusedClasses() + " library classes");
+                libraryClassCache.save((AnalysisCache) analysisCache);
+            }
+            analysisCache = null;
+            super.clearCaches();
+        }
+    }
+
+    /**
+     * Stream of one type of reply frames.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        private final int type;
+
+        FrameOutputStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Accept and run requests until a shutdown request arrives.
+     *
+     * @param port
+     *            port to listen on
+     */
+    void serve(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        File tokenFile = getTokenFile(serverSocket.getLocalPort());
+        try {
+            writeTokenFile(tokenFile);
+            System.out.println("FindBugs analysis server listening on port " + serverSocket.getLocalPort());
+            while (!shutdown) {
+                Socket socket = serverSocket.accept();
+                try {
+                    handleRequest(socket);
+                } catch (IOException e) {
+                    System.err.println("Error handling request: " + e);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            tokenFile.delete();
+            serverSocket.close();
+        }
+    }
+
+    private void handleRequest(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a FindBugs analysis request");
+        }
+        byte[] clientToken = in.readUTF().getBytes(UTF8.charset);
+        if (!MessageDigest.isEqual(clientToken, token.getBytes(UTF8.charset))) {
+            byte[] message = "Request rejected: wrong token for the FindBugs analysis server\n".getBytes(UTF8.charset);
+            new FrameOutputStream(out, STDERR).write(message, 0, message.length);
+            out.writeByte(EXIT);
+            out.writeInt(1);
+            out.flush();
+            return;
+        }
+        String clientDirectory = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+
+        int exitCode = 0;
+        if (args.length == 1 && args[0].equals(SHUTDOWN)) {
+            shutdown = true;
+        } else {
+            exitCode = runRequest(clientDirectory, args, out);
+        }
+        out.writeByte(EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    private int runRequest(String clientDirectory, String[] args, DataOutputStream out) {
+        PrintStream savedOut = System.out;
+        PrintStream savedErr = System.err;
+        PrintStream requestOut = new PrintStream(new FrameOutputStream(out, STDOUT), true);
+        PrintStream requestErr = new PrintStream(new FrameOutputStream(out, STDERR), true);
+        System.setOut(requestOut);
+        System.setErr(requestErr);
+        try {
+            return FindBugs2.runMain(new ServerEngine(libraryClassCache), resolvePaths(args, new File(clientDirectory)),
+                    System.nanoTime());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            return 1;
+        } finally {
+            requestOut.flush();
+            requestErr.flush();
+            System.setOut(savedOut);
+            System.setErr(savedErr);
+        }
+    }
+
+    /**
+     * Options of FindBugs2 whose argument is a file or directory.
+     */
+    private static final Set<String> PATH_OPTIONS = new HashSet<String>(Arrays.asList("-project", "-home", "-output",
+            "-outputFile", "-redoAnalysis", "-sourceInfo", "-reanalyze", "-excludeBugs", "-exclude", "-include",
+            "-incrementalCache", "-metrics", "-changedClasses"));
+
+    /**
+     * Options of FindBugs2 whose argument is a list of files or directories.
+     */
+    private static final Set<String> PATH_LIST_OPTIONS = new HashSet<String>(Arrays.asList("-pluginList", "-auxclasspath",
+            "-sourcepath"));
+
+    /**
+     * Resolve the relative paths of a FindBugs2 command line against the
+     * working directory of the client, since the server can't change its own.
+     * The paths resolved are the arguments of the options taking files, the
+     * directories of -train and -useTraining, the stylesheet of -html if it
+     * is a file, and the files to analyze. Relative paths inside project files
+     * are left alone, since they are resolved against the project file.
+     *
+     * @param args
+     *            the command line
+     * @param directory
+     *            the working directory of the client
+     * @return the command line with absolute paths
+     */
+    static String[] resolvePaths(String[] args, File directory) {
+        TextUICommandLine commandLine = new TextUICommandLine();
+        String[] result = args.clone();
+        int i = 0;
+        while (i < result.length && result[i].startsWith("-")) {
+            String option = result[i];
+            String optionExtraPart = "";
+            int colon = option.indexOf(':');
+            if (colon >= 0) {
+                optionExtraPart = option.substring(colon + 1);
+                option = option.substring(0, colon);
+            }
+            if (commandLine.requiresArgument(option)) {
+                if (i + 1 < result.length) {
+                    if (PATH_OPTIONS.contains(option)) {
+                        result[i + 1] = resolvePath(result[i + 1], directory);
+                    } else if (PATH_LIST_OPTIONS.contains(option)) {
+                        result[i + 1] = resolvePathList(result[i + 1], directory);
+                    }
+                }
+                i += 2;
+            } else {
+                if (option.equals("-train") || option.equals("-useTraining")) {
+                    result[i] = option + ":" + resolvePath(optionExtraPart.equals("") ? "." : optionExtraPart, directory);
+                } else if (option.equals("-html") && !optionExtraPart.equals("")
+                        && new File(resolvePath(optionExtraPart, directory)).isFile()) {
+                    // Otherwise the stylesheet is looked up in the FindBugs
+                    // installation
+                    result[i] = option + ":" + resolvePath(optionExtraPart, directory);
+                }
+                i++;
+            }
+        }
+        for (; i < result.length; i++) {
+            result[i] = resolvePath(result[i], directory);
+        }
+        return result;
+    }
+
+    private static String resolvePath(String path, File directory) {
+        File file = new File(path);
+        return file.isAbsolute() ? path : new File(directory, path).getPath();
+    }
+
+    private static String resolvePathList(String pathList, File directory) {
+        StringBuilder buf = new StringBuilder();
+        for (String path : pathList.split(File.pathSeparator)) {
+            if (buf.length() > 0) {
+                buf.append(File.pathSeparatorChar);
+            }
+            buf.append(path.equals("") ? path : resolvePath(path, directory));
+        }
+        return buf.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        if (args.length == 2 && args[0].equals("-port")) {
+            port = Integer.parseInt(args[1]);
+        } else if (args.length != 0) {
+            System.err.println("Usage: " + AnalysisServer.class.getName() + " [-port <port>]");
+            System.exit(1);
+        }
+
+        // Sanity-check the loaded BCEL classes
+        if (!CheckBcel.check()) {
+            System.exit(1);
+        }
+        // Load the plugins
+        DetectorFactoryCollection.instance();
+
+        new AnalysisServer().serve(port);
+    }
+}
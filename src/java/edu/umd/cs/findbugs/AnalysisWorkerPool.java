@@ -0,0 +1,495 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+import edu.umd.cs.findbugs.classfile.impl.ErrorLoggerAnalysisCacheView;
+import edu.umd.cs.findbugs.classfile.impl.SynchronizedAnalysisCache;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+
+/**
+ * Pool of threads applying the detectors of one analysis pass to classes in
+ * parallel with the thread driving the analysis.
+ *
+ * <p>
+ * Only detectors implementing {@link StatelessDetector} and not subject to
+ * any ordering constraint within the pass (see
+ * {@link AnalysisPass#isUnconstrained(DetectorFactory)}) are run by the pool:
+ * they keep no state from one class to the next, so each worker thread can
+ * use its own instances of them and visit any subset of the classes. A
+ * detector ordered after another one of the same pass, e.g., one reading the
+ * UnreadFieldsData filled in by UnreadFields, depends on what the earlier
+ * detector has seen so far, and would race with it if run by a worker. All
+ * other detectors must see the classes in order, so they are left to the
+ * driving thread. Bugs and errors reported by the worker detectors, or by the
+ * analyses they use, are buffered per class (see {@link BufferingBugReporter})
+ * and handed back to the driving thread, which reports them in the original
+ * class and detector order.
+ * </p>
+ *
+ * <p>
+ * The worker threads take classes from a common queue, most expensive class
+ * first (see {@link #schedule(List, boolean[])}), so that a large class near
+ * the end of the class order doesn't leave one thread finishing it while the
+ * others are idle. The cost of a class is the time spent analyzing it in
+ * earlier passes, as recorded by the {@link Profiler}, or else is estimated
+ * from its size.
+ * </p>
+ *
+ * <p>
+ * Worker threads share the analysis cache, AnalysisContext and
+ * DescriptorFactory of the thread which created the pool. An
+ * {@link AnalysisCache} can be used by all threads directly; other
+ * IAnalysisCache implementations are accessed through
+ * {@link SynchronizedAnalysisCache} views sharing a single lock. Each thread's
+ * view of the cache logs errors to the thread's BufferingBugReporter (see
+ * {@link ErrorLoggerAnalysisCacheView}).
+ * </p>
+ */
+class AnalysisWorkerPool {
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private final AnalysisPass pass;
+
+    private final DetectorFactory[] factoryList;
+
+    private final boolean[] runInPool;
+
+    private final BugReporter bugReporter;
+
+    private final IAnalysisCache analysisCache;
+
+    private final Object analysisCacheLock = new Object();
+
+    private final DescriptorFactory descriptorFactory;
+
+    private final ExecutorService executor;
+
+    private final List<Worker> workerList = new ArrayList<Worker>();
+
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
+
+    private final int numThreads;
+
+    /** Number of classes ahead of the driving thread workers may analyze */
+    private final int lookahead;
+
+    private final Object scheduleLock = new Object();
+
+    /** Classes to analyze, in class order; null for classes not analyzed */
+    private ClassTask[] taskList = new ClassTask[0];
+
+    /** Classes not yet started */
+    private final PriorityQueue<ClassTask> pendingTasks = new PriorityQueue<ClassTask>(11, MOST_EXPENSIVE_FIRST);
+
+    /** Classes not yet started which are within the lookahead distance */
+    private final PriorityQueue<ClassTask> windowTasks = new PriorityQueue<ClassTask>(11, MOST_EXPENSIVE_FIRST);
+
+    /** Position of the first class not yet added to windowTasks */
+    private int windowEnd;
+
+    /** Total cost of the classes not yet started */
+    private long pendingCost;
+
+    private boolean isShutdown;
+
+    private static final Comparator<ClassTask> MOST_EXPENSIVE_FIRST = new Comparator<ClassTask>() {
+        public int compare(ClassTask a, ClassTask b) {
+            if (a.cost != b.cost) {
+                return a.cost > b.cost ? -1 : 1;
+            }
+            return a.position - b.position;
+        }
+    };
+
+    /**
+     * Per-thread state of a worker: its own detector instances, and the
+     * BufferingBugReporter they report to.
+     */
+    private class Worker {
+        final BufferingBugReporter bufferingBugReporter;
+
+        final Detector2[] detectorList;
+
+        Worker(BufferingBugReporter bufferingBugReporter) {
+            this.bufferingBugReporter = bufferingBugReporter;
+            this.detectorList = pass.instantiateDetector2sInPass(bufferingBugReporter, runInPool, false);
+        }
+    }
+
+    /**
+     * Application of the pool's detectors to one class.
+     */
+    private class ClassTask extends FutureTask<BufferingBugReporter.ClassReports> {
+        final int position;
+
+        final long cost;
+
+        /** Set when a worker takes the task; guarded by scheduleLock */
+        boolean started;
+
+        ClassTask(final ClassDescriptor classDescriptor, int position, long cost) {
+            super(new Callable<BufferingBugReporter.ClassReports>() {
+                public BufferingBugReporter.ClassReports call() throws InterruptedException {
+                    return analyze(classDescriptor);
+                }
+            });
+            this.position = position;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * Constructor. Must be called by the thread driving the analysis.
+     *
+     * @param pass
+     *            the analysis pass
+     * @param bugReporter
+     *            the BugReporter that worker detectors report to
+     * @param numThreads
+     *            number of worker threads
+     */
+    AnalysisWorkerPool(AnalysisPass pass, BugReporter bugReporter, int numThreads) {
+        List<DetectorFactory> factories = new ArrayList<DetectorFactory>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            factories.add(i.next());
+        }
+        this.pass = pass;
+        this.factoryList = factories.toArray(new DetectorFactory[factories.size()]);
+        this.runInPool = new boolean[factoryList.length];
+        for (int i = 0; i < factoryList.length; i++) {
+            runInPool[i] = factoryList[i].isDetectorClassSubtypeOf(StatelessDetector.class)
+                    && pass.isUnconstrained(factoryList[i]);
+        }
+        this.bugReporter = bugReporter;
+        this.analysisCache = Global.getAnalysisCache();
+        this.descriptorFactory = DescriptorFactory.instance();
+        this.numThreads = numThreads;
+        this.lookahead = 2 * numThreads;
+
+        final int poolNumber = poolCount.incrementAndGet();
+        this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                // Created by the driving thread, so that the inheritable
+                // AnalysisContext is inherited by the worker
+                Thread t = new Thread(r, "FindBugs worker " + poolNumber + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Get whether or not the detector at given position in the pass is run by
+     * the pool rather than by the driving thread.
+     *
+     * @param detectorIndex
+     *            position of the detector in the pass
+     */
+    boolean isRunInPool(int detectorIndex) {
+        return runInPool[detectorIndex];
+    }
+
+    /**
+     * @return true if the pass contains any detector which can be run by the
+     *         pool
+     */
+    boolean hasWork() {
+        for (boolean b : runInPool) {
+            if (b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the view of the analysis cache which should be used by a thread
+     * participating in the analysis.
+     *
+     * @param bufferingBugReporter
+     *            the thread's BufferingBugReporter, which errors logged
+     *            through the cache are reported to
+     */
+    IAnalysisCache getAnalysisCacheView(BufferingBugReporter bufferingBugReporter) {
+        IAnalysisCache view = analysisCache;
+        if (!(analysisCache instanceof AnalysisCache)) {
+            view = new SynchronizedAnalysisCache(analysisCache, analysisCacheLock);
+        }
+        return new ErrorLoggerAnalysisCacheView(view, bufferingBugReporter);
+    }
+
+    /**
+     * Schedule the pool's detectors to be applied to classes, and start the
+     * worker threads.
+     *
+     * <p>
+     * Workers take the most expensive class among those at most a fixed
+     * distance ahead of the driving thread (see {@link #advance(int)}), so
+     * that the analysis results they compute are still cached when the
+     * driving thread's detectors need them. Only the detectors the driving
+     * thread runs depend on the class order: the pool's detectors keep no
+     * state, and no detector of the pass is ordered before them, so the
+     * interprocedural databases they read are not being filled in by the
+     * driving thread's detectors. A class expensive enough that it would finish after all the
+     * other classes if started later, i.e., which costs more than the
+     * remaining classes shared among all threads, is taken right away,
+     * wherever it is in the class order.
+     * </p>
+     *
+     * @param classList
+     *            the classes, in the order the driving thread visits them
+     * @param analyze
+     *            which of the classes the pool's detectors should be
+     *            applied to
+     * @return Futures yielding the bugs and errors buffered by the workers
+     *         for each class, or null for the classes not analyzed by the
+     *         pool
+     */
+    List<Future<BufferingBugReporter.ClassReports>> schedule(List<ClassDescriptor> classList, boolean[] analyze) {
+        long[] costs = estimateCosts(classList, analyze);
+        List<Future<BufferingBugReporter.ClassReports>> result = new ArrayList<Future<BufferingBugReporter.ClassReports>>(
+                classList.size());
+        synchronized (scheduleLock) {
+            taskList = new ClassTask[classList.size()];
+            for (int i = 0; i < taskList.length; i++) {
+                if (analyze[i]) {
+                    ClassTask task = new ClassTask(classList.get(i), i, costs[i]);
+                    taskList[i] = task;
+                    pendingTasks.add(task);
+                    pendingCost += task.cost;
+                }
+                result.add(taskList[i]);
+            }
+        }
+        advance(0);
+
+        for (int i = 0; i < numThreads; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        ClassTask task;
+                        while ((task = take()) != null) {
+                            task.run();
+                        }
+                    } catch (InterruptedException e) {
+                        // The pool is shutting down
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Estimate how long applying the pool's detectors to each class will
+     * take.
+     *
+     * @return estimated time per class, in nanoseconds
+     */
+    private long[] estimateCosts(List<ClassDescriptor> classList, boolean[] analyze) {
+        Profiler profiler = bugReporter.getProjectStats().getProfiler();
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        long[] costs = new long[classList.size()];
+        int[] sizes = new int[classList.size()];
+        long timedNanos = 0;
+        long timedBytes = 0;
+        for (int i = 0; i < costs.length; i++) {
+            if (analyze[i]) {
+                ClassDescriptor classDescriptor = classList.get(i);
+                sizes[i] = analysisContext.getClassSize(classDescriptor);
+                costs[i] = profiler.getContextTime(classDescriptor.getDottedClassName());
+                if (costs[i] > 0) {
+                    timedNanos += costs[i];
+                    timedBytes += sizes[i];
+                }
+            }
+        }
+
+        // Classes not analyzed in an earlier pass are assumed to take as
+        // long per byte as the others did
+        double nanosPerByte = timedBytes > 0 ? (double) timedNanos / timedBytes : 1.0;
+        for (int i = 0; i < costs.length; i++) {
+            if (analyze[i] && costs[i] == 0) {
+                costs[i] = (long) (sizes[i] * nanosPerByte);
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Notify the pool that the driving thread has reached the class at given
+     * position, so workers may analyze the classes up to the lookahead
+     * distance beyond it.
+     *
+     * @param position
+     *            position of the class in the class list passed to
+     *            schedule()
+     */
+    void advance(int position) {
+        synchronized (scheduleLock) {
+            int end = Math.min(taskList.length, position + lookahead + 1);
+            boolean added = false;
+            for (; windowEnd < end; windowEnd++) {
+                ClassTask task = taskList[windowEnd];
+                if (task != null && !task.started) {
+                    windowTasks.add(task);
+                    added = true;
+                }
+            }
+            if (added) {
+                scheduleLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Take the next class for a worker to analyze, waiting until there is
+     * one the worker may take.
+     *
+     * @return the task, or null if all classes have been taken or the pool
+     *         is shutting down
+     */
+    private ClassTask take() throws InterruptedException {
+        synchronized (scheduleLock) {
+            while (true) {
+                if (isShutdown) {
+                    return null;
+                }
+                ClassTask task = peekUnstarted(pendingTasks);
+                if (task == null) {
+                    return null;
+                }
+                if (task.cost * numThreads < pendingCost) {
+                    task = peekUnstarted(windowTasks);
+                }
+                if (task != null) {
+                    task.started = true;
+                    pendingCost -= task.cost;
+                    return task;
+                }
+                scheduleLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Get the most expensive task of a queue not started yet, discarding the
+     * started tasks ahead of it.
+     */
+    private static ClassTask peekUnstarted(PriorityQueue<ClassTask> queue) {
+        while (!queue.isEmpty() && queue.peek().started) {
+            queue.poll();
+        }
+        return queue.peek();
+    }
+
+    /**
+     * Apply the pool's detectors to a class, in the current worker thread.
+     *
+     * @return the bugs and errors buffered for the class
+     */
+    private BufferingBugReporter.ClassReports analyze(ClassDescriptor classDescriptor) throws InterruptedException {
+        Worker worker = getWorker();
+        boolean isHuge = AnalysisContext.currentAnalysisContext().isTooBig(classDescriptor);
+        BufferingBugReporter buffer = worker.bufferingBugReporter;
+        Profiler profiler = bugReporter.getProjectStats().getProfiler();
+        String className = classDescriptor.getDottedClassName();
+        BufferingBugReporter.ClassReports result;
+        buffer.startClass(factoryList.length);
+        profiler.startContext(className);
+        try {
+            FindBugs2.applyDetectors(classDescriptor, worker.detectorList, isHuge, buffer, buffer);
+        } finally {
+            profiler.endContext(className);
+            result = buffer.finishClass();
+        }
+        return result;
+    }
+
+    private Worker getWorker() {
+        Worker worker = currentWorker.get();
+        if (worker == null) {
+            BufferingBugReporter bufferingBugReporter = new BufferingBugReporter(bugReporter);
+            Global.setAnalysisCacheForCurrentThread(getAnalysisCacheView(bufferingBugReporter));
+            DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+            worker = new Worker(bufferingBugReporter);
+            currentWorker.set(worker);
+            synchronized (workerList) {
+                workerList.add(worker);
+            }
+        }
+        return worker;
+    }
+
+    /**
+     * Call finishPass() on each worker's instance of the detector at given
+     * position in the pass. Must be called by the driving thread after
+     * shutdown().
+     *
+     * @param detectorIndex
+     *            position of the detector in the pass
+     */
+    void finishPass(int detectorIndex) {
+        synchronized (workerList) {
+            for (Worker worker : workerList) {
+                worker.detectorList[detectorIndex].finishPass();
+            }
+        }
+    }
+
+    /**
+     * Shut down the worker threads, waiting for them to terminate.
+     *
+     * @throws InterruptedException
+     */
+    void shutdown() throws InterruptedException {
+        synchronized (scheduleLock) {
+            isShutdown = true;
+            scheduleLock.notifyAll();
+        }
+        executor.shutdownNow();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // keep waiting for running detectors to notice the interrupt
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.ba.MethodUnprofitableException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+/**
+ * A BugReporter which holds back the bugs and errors reported while a class
+ * is being analyzed, keeping them apart by the position of the reporting
+ * detector in its analysis pass. The analysis driver replays the buffered
+ * reports in detector order once all detectors have visited the class, so that
+ * they reach the real BugReporter in the same order no matter which thread
+ * analyzed the class. Outside of a class (e.g., in Detector2.finishPass())
+ * bugs and errors are passed through to the delegate immediately.
+ *
+ * <p>
+ * Errors logged through the analysis cache (see
+ * {@link edu.umd.cs.findbugs.classfile.IAnalysisCache#getErrorLogger()}) are
+ * only buffered if the analysis thread's view of the cache reports them to the
+ * BufferingBugReporter, see
+ * {@link edu.umd.cs.findbugs.classfile.impl.ErrorLoggerAnalysisCacheView}.
+ * </p>
+ *
+ * <p>
+ * Each analysis thread must use its own BufferingBugReporter.
+ * </p>
+ */
+public class BufferingBugReporter extends DelegatingBugReporter {
+    /**
+     * An error reported while a class was being analyzed.
+     */
+    private static abstract class BufferedError {
+        abstract void reportTo(BugReporter bugReporter);
+    }
+
+    /**
+     * The bugs and errors reported for a class, by detector position.
+     */
+    public static class ClassReports {
+        private final List<List<BugInstance>> bugs;
+
+        private final @CheckForNull
+        List<List<BufferedError>> errors;
+
+        ClassReports(List<List<BugInstance>> bugs, @CheckForNull List<List<BufferedError>> errors) {
+            this.bugs = bugs;
+            this.errors = errors;
+        }
+
+        /**
+         * Constructor for bugs not reported by the current analysis, e.g.,
+         * bugs loaded from a cache.
+         *
+         * @param bugs
+         *            list, indexed by detector position, of the bugs reported
+         *            by each detector; entries are null for detectors which
+         *            reported nothing
+         */
+        public ClassReports(List<List<BugInstance>> bugs) {
+            this(bugs, null);
+        }
+
+        /**
+         * @return list, indexed by detector position, of the bugs reported by
+         *         each detector; entries are null for detectors which
+         *         reported nothing
+         */
+        public List<List<BugInstance>> getBugs() {
+            return bugs;
+        }
+    }
+
+    private List<List<BugInstance>> buffer;
+
+    private List<List<BufferedError>> errorBuffer;
+
+    private int currentDetector;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            the BugReporter that buffered bugs are eventually reported to
+     */
+    public BufferingBugReporter(BugReporter delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Start buffering the bugs and errors reported for a class.
+     *
+     * @param numDetectors
+     *            number of detectors in the current analysis pass
+     */
+    public void startClass(int numDetectors) {
+        buffer = new ArrayList<List<BugInstance>>(numDetectors);
+        errorBuffer = new ArrayList<List<BufferedError>>(numDetectors);
+        for (int i = 0; i < numDetectors; i++) {
+            buffer.add(null);
+            errorBuffer.add(null);
+        }
+        currentDetector = 0;
+    }
+
+    /**
+     * Set the position (in its analysis pass) of the detector whose bugs are
+     * being reported.
+     *
+     * @param detectorIndex
+     *            index of the detector in the pass
+     */
+    public void setCurrentDetector(int detectorIndex) {
+        this.currentDetector = detectorIndex;
+    }
+
+    /**
+     * Stop buffering, and return the bugs and errors reported since the last
+     * call to startClass().
+     */
+    public ClassReports finishClass() {
+        ClassReports result = new ClassReports(buffer, errorBuffer);
+        buffer = null;
+        errorBuffer = null;
+        return result;
+    }
+
+    @Override
+    public void reportBug(@Nonnull BugInstance bugInstance) {
+        if (buffer == null) {
+            getDelegate().reportBug(bugInstance);
+            return;
+        }
+        List<BugInstance> bugs = buffer.get(currentDetector);
+        if (bugs == null) {
+            bugs = new ArrayList<BugInstance>();
+            buffer.set(currentDetector, bugs);
+        }
+        bugs.add(bugInstance);
+    }
+
+    @Override
+    public void logError(final String message) {
+        if (errorBuffer == null) {
+            super.logError(message);
+            return;
+        }
+        bufferError(new BufferedError() {
+            @Override
+            void reportTo(BugReporter bugReporter) {
+                bugReporter.logError(message);
+            }
+        });
+    }
+
+    @Override
+    public void logError(final String message, final Throwable e) {
+        if (errorBuffer == null || e instanceof MethodUnprofitableException) {
+            super.logError(message, e);
+            return;
+        }
+        bufferError(new BufferedError() {
+            @Override
+            void reportTo(BugReporter bugReporter) {
+                bugReporter.logError(message, e);
+            }
+        });
+    }
+
+    @Override
+    public void reportMissingClass(final ClassNotFoundException ex) {
+        if (errorBuffer == null) {
+            super.reportMissingClass(ex);
+            return;
+        }
+        bufferError(new BufferedError() {
+            @Override
+            void reportTo(BugReporter bugReporter) {
+                bugReporter.reportMissingClass(ex);
+            }
+        });
+    }
+
+    @Override
+    public void reportMissingClass(final ClassDescriptor classDescriptor) {
+        if (errorBuffer == null) {
+            super.reportMissingClass(classDescriptor);
+            return;
+        }
+        bufferError(new BufferedError() {
+            @Override
+            void reportTo(BugReporter bugReporter) {
+                bugReporter.reportMissingClass(classDescriptor);
+            }
+        });
+    }
+
+    @Override
+    public void reportSkippedAnalysis(final MethodDescriptor method) {
+        if (errorBuffer == null) {
+            super.reportSkippedAnalysis(method);
+            return;
+        }
+        bufferError(new BufferedError() {
+            @Override
+            void reportTo(BugReporter bugReporter) {
+                bugReporter.reportSkippedAnalysis(method);
+            }
+        });
+    }
+
+    private void bufferError(BufferedError error) {
+        List<BufferedError> errors = errorBuffer.get(currentDetector);
+        if (errors == null) {
+            errors = new ArrayList<BufferedError>();
+            errorBuffer.set(currentDetector, errors);
+        }
+        errors.add(error);
+    }
+
+    /**
+     * Report the bugs and errors buffered for a class to a BugReporter, in
+     * detector order.
+     *
+     * @param bugReporter
+     *            the BugReporter to report the bugs and errors to
+     * @param buffered
+     *            reports returned by finishClass()
+     * @param otherBuffered
+     *            reports returned by finishClass() on another thread's
+     *            BufferingBugReporter for the same class, or null
+     */
+    public static void replay(BugReporter bugReporter, ClassReports buffered, @CheckForNull ClassReports otherBuffered) {
+        for (int i = 0; i < buffered.bugs.size(); i++) {
+            reportErrors(bugReporter, buffered, i);
+            if (otherBuffered != null) {
+                reportErrors(bugReporter, otherBuffered, i);
+            }
+            report(bugReporter, buffered.bugs.get(i));
+            if (otherBuffered != null) {
+                report(bugReporter, otherBuffered.bugs.get(i));
+            }
+        }
+    }
+
+    private static void reportErrors(BugReporter bugReporter, ClassReports reports, int detectorIndex) {
+        if (reports.errors == null || reports.errors.get(detectorIndex) == null) {
+            return;
+        }
+        for (BufferedError error : reports.errors.get(detectorIndex)) {
+            error.reportTo(bugReporter);
+        }
+    }
+
+    private static void report(BugReporter bugReporter, @CheckForNull List<BugInstance> bugs) {
+        if (bugs == null) {
+            return;
+        }
+        for (BugInstance bugInstance : bugs) {
+            bugReporter.reportBug(bugInstance);
+        }
+    }
+}
+
+// vim:ts=4
@@ -51,7 +51,7 @@ public class BugCollectionBugReporter extends TextUIBugReporter implements Debug
     }
 
     public @Nonnull
-    BugCollection getBugCollection() {
+    SortedBugCollection getBugCollection() {
         return bugCollection;
     }
 
@@ -93,10 +93,23 @@ public class BugCollectionBugReporter extends TextUIBugReporter implements Debug
     public void doReportBug(BugInstance bugInstance) {
         if (VERIFY_INTEGRITY)
             checkBugInstance(bugInstance);
-        if (bugCollection.add(bugInstance))
+        if (addBug(bugInstance))
             notifyObservers(bugInstance);
     }
 
+    /**
+     * Add a reported BugInstance to the bug collection. Subclasses may keep
+     * the BugInstances elsewhere.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     * @return true if the BugInstance was added, false if a matching
+     *         BugInstance was reported before
+     */
+    protected boolean addBug(BugInstance bugInstance) {
+        return bugCollection.add(bugInstance);
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -2698,6 +2698,15 @@ public class BugInstance implements Comparable<BugInstance>, XMLWriteable, Seria
         return detectorFactory;
     }
 
+    /**
+     * Set the factory of the detector which reported this bug, without
+     * adjusting the priority. Used when bugs reported in an earlier analysis
+     * are read back.
+     */
+    void setDetectorFactory(@CheckForNull DetectorFactory detectorFactory) {
+        this.detectorFactory = detectorFactory;
+    }
+
     private void optionalAdd(Collection<BugAnnotation> c, BugAnnotation a) {
         if (a != null)
             c.add(a);
@@ -0,0 +1,50 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.IOException;
+
+/**
+ * Receives BugInstances one at a time, as they are read from a bug collection
+ * XML file, so that the tool processing them doesn't have to keep them all in
+ * memory.
+ *
+ * @see SortedBugCollection#readXML(java.io.File, BugInstanceSink)
+ * @see StreamingBugCollectionWriter
+ */
+public interface BugInstanceSink {
+    /**
+     * A sink which drops all BugInstances, for reading only the other
+     * information in a bug collection file.
+     */
+    public static final BugInstanceSink DISCARD = new BugInstanceSink() {
+        public void handleBugInstance(BugInstance bugInstance) {
+        }
+    };
+
+    /**
+     * Called for each BugInstance, in the order in which they appear in the
+     * file.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     */
+    public void handleBugInstance(BugInstance bugInstance) throws IOException;
+}
@@ -23,6 +23,7 @@ import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.ba.ClassContext;
 import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
+import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Base class for Detectors which want to extend DismantleBytecode.
@@ -59,6 +60,14 @@ public class BytecodeScanningDetector extends DismantleBytecode implements Detec
 
     public void report() {
     }
+
+    @Override
+    public void copyVisitState(PreorderVisitor other) {
+        super.copyVisitState(other);
+        if (other instanceof BytecodeScanningDetector) {
+            classContext = ((BytecodeScanningDetector) other).classContext;
+        }
+    }
 }
 
 // vim:ts=4
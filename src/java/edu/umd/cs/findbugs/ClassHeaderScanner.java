@@ -0,0 +1,148 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+import edu.umd.cs.findbugs.classfile.impl.SynchronizedAnalysisCache;
+
+/**
+ * Pool of threads reading class headers (the XClass of each class) into the
+ * analysis cache ahead of the thread computing the set of classes referenced
+ * by the application.
+ *
+ * <p>
+ * The referenced classes are found by a breadth-first search over
+ * superclasses, interfaces and enclosing classes, which needs the header of
+ * each class it visits. Reading and parsing a class file doesn't depend on
+ * any other class, so the headers of a whole frontier of the search can be
+ * read in parallel. The search itself still runs in the driving thread, in
+ * the same order as without a scanner: it finds the headers in the analysis
+ * cache, along with the exceptions thrown reading them (which the cache
+ * records like results), and reports failures as before.
+ * </p>
+ *
+ * <p>
+ * As in {@link AnalysisWorkerPool}, the threads share the analysis cache,
+ * AnalysisContext and DescriptorFactory of the thread which created the
+ * scanner.
+ * </p>
+ */
+class ClassHeaderScanner {
+    private static final AtomicInteger scannerCount = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    /**
+     * Constructor. Must be called by the thread driving the analysis.
+     *
+     * @param numThreads
+     *            number of threads reading class headers
+     */
+    ClassHeaderScanner(int numThreads) {
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        final IAnalysisCache analysisCacheView = analysisCache instanceof AnalysisCache ? analysisCache
+                : new SynchronizedAnalysisCache(analysisCache, new Object());
+        final DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+
+        final int scannerNumber = scannerCount.incrementAndGet();
+        this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(final Runnable r) {
+                // Created by the driving thread, so that the inheritable
+                // AnalysisContext is inherited by the scanner thread
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        Global.setAnalysisCacheForCurrentThread(analysisCacheView);
+                        DescriptorFactory.setInstanceForCurrentThread(descriptorFactory);
+                        r.run();
+                    }
+                }, "FindBugs scanner " + scannerNumber + "-" + threadCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Read the headers of some classes into the analysis cache, and wait until
+     * they are all read.
+     *
+     * @param classes
+     *            the classes
+     * @throws InterruptedException
+     */
+    void scan(Collection<ClassDescriptor> classes) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<Future<?>>(classes.size());
+        for (final ClassDescriptor classDescriptor : classes) {
+            futures.add(executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+                    } catch (CheckedAnalysisException e) {
+                        // Cached; reported by the driving thread
+                    } catch (RuntimeException e) {
+                        // Cached; reported by the driving thread
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Unexpected exception scanning classes", cause);
+            }
+        }
+    }
+
+    /**
+     * Shut down the scanner threads, waiting for them to terminate.
+     *
+     * @throws InterruptedException
+     */
+    void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // keep waiting for running scans to notice the interrupt
+        }
+    }
+}
@@ -219,6 +219,17 @@ public class DetectorFactory {
         return otherClass.isAssignableFrom(detectorCreator.getDetectorClass());
     }
 
+    /**
+     * Get the detector class.
+     *
+     * @return the detector class
+     */
+    public Class<?> getDetectorClass() {
+        if (FindBugs.noAnalysis)
+            throw new IllegalStateException("No analysis specified");
+        return detectorCreator.getDetectorClass();
+    }
+
     /**
      * Return whether or not this DetectorFactory produces detectors which
      * report warnings.
@@ -24,7 +24,6 @@ import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
-import edu.umd.cs.findbugs.log.Profiler;
 
 /**
  * An adapter allowing classes implementing the Detector interface to support
@@ -66,15 +65,11 @@ public class DetectorToDetector2Adapter implements Detector2 {
         // Just get the ClassContext from the analysis cache
         // and apply the detector to it.
 
+        // The caller profiles the adapted detector (see getDetectorClass())
+
         IAnalysisCache analysisCache = Global.getAnalysisCache();
         ClassContext classContext = analysisCache.getClassAnalysis(ClassContext.class, classDescriptor);
-        Profiler profiler = analysisCache.getProfiler();
-        profiler.start(detector.getClass());
-        try {
-            detector.visitClassContext(classContext);
-        } finally {
-            profiler.end(detector.getClass());
-        }
+        detector.visitClassContext(classContext);
     }
 
     /*
@@ -85,4 +80,12 @@ public class DetectorToDetector2Adapter implements Detector2 {
     public String getDetectorClassName() {
         return detector.getClass().getName();
     }
+
+    /**
+     * Get the class of the adapted detector, e.g., to profile it separately
+     * from the other adapted detectors.
+     */
+    public Class<? extends Detector> getDetectorClass() {
+        return detector.getClass();
+    }
 }
@@ -0,0 +1,360 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import edu.umd.cs.findbugs.io.IO;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * Sorts BugInstances using a bounded amount of memory, as a TreeSet would:
+ * BugInstances comparing equal to one added before are dropped.
+ *
+ * <p>
+ * At most a fixed number of BugInstances are kept in memory. When there are
+ * more, they are written in order to a temporary file (a run), and the set is
+ * cleared. The runs and the BugInstances still in memory are merged when the
+ * sorted BugInstances are written out. Runs hold the BugInstances as
+ * BugInstance XML elements, in blocks, so the merge keeps one block per run
+ * in memory.
+ * </p>
+ */
+class ExternalBugSorter {
+    private static final int MAGIC = 0xFB5077ED;
+
+    /** Number of BugInstances in a block of a run */
+    private static final int BLOCK_SIZE = 256;
+
+    private final Comparator<BugInstance> comparator;
+
+    private final int maxBugsInMemory;
+
+    private TreeSet<BugInstance> bugSet;
+
+    private final List<File> runList = new ArrayList<File>();
+
+    /**
+     * Constructor.
+     *
+     * @param comparator
+     *            the order of the BugInstances
+     * @param maxBugsInMemory
+     *            number of BugInstances to keep in memory before writing
+     *            them to a run
+     */
+    ExternalBugSorter(Comparator<BugInstance> comparator, int maxBugsInMemory) {
+        if (maxBugsInMemory < 1)
+            throw new IllegalArgumentException("maxBugsInMemory must be at least 1");
+        this.comparator = comparator;
+        this.maxBugsInMemory = maxBugsInMemory;
+        this.bugSet = new TreeSet<BugInstance>(comparator);
+    }
+
+    /**
+     * Add a BugInstance.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     * @return false if a BugInstance equal to it is among those kept in
+     *         memory, true otherwise (even if one was written to a run)
+     */
+    boolean add(BugInstance bugInstance) throws IOException {
+        boolean added = bugSet.add(bugInstance);
+        if (bugSet.size() >= maxBugsInMemory)
+            spill();
+        return added;
+    }
+
+    /**
+     * @return number of runs written so far
+     */
+    int getNumRuns() {
+        return runList.size();
+    }
+
+    /**
+     * @return the temporary files holding the runs written so far
+     */
+    List<File> getRuns() {
+        return new ArrayList<File>(runList);
+    }
+
+    /**
+     * Write the BugInstances in memory to a new run. The run files are not
+     * registered with File.deleteOnExit(), which would keep their names for the
+     * lifetime of the VM (e.g., of a long-running analysis server); they are
+     * deleted by writeSorted() or deleteRuns() instead.
+     */
+    private void spill() throws IOException {
+        File run = File.createTempFile("findbugs", ".run");
+        boolean written = false;
+        try {
+            writeRun(run);
+            written = true;
+        } finally {
+            if (written)
+                runList.add(run);
+            else
+                run.delete();
+        }
+        bugSet = new TreeSet<BugInstance>(comparator);
+    }
+
+    private void writeRun(File run) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+        try {
+            out.writeInt(MAGIC);
+            List<BugInstance> block = new ArrayList<BugInstance>(BLOCK_SIZE);
+            for (BugInstance bugInstance : bugSet) {
+                block.add(bugInstance);
+                if (block.size() == BLOCK_SIZE) {
+                    writeBlock(out, block);
+                    block.clear();
+                }
+            }
+            if (!block.isEmpty())
+                writeBlock(out, block);
+            out.writeInt(0);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write a block of a run: the number of BugInstances, the name of the
+     * detector factory of each of them, and the BugInstances as the
+     * BugInstance elements of an XML BugCollection.
+     */
+    private static void writeBlock(DataOutputStream out, List<BugInstance> block) throws IOException {
+        out.writeInt(block.size());
+        for (BugInstance bugInstance : block) {
+            DetectorFactory factory = bugInstance.getDetectorFactory();
+            out.writeUTF(factory != null ? factory.getFullName() : "");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XMLOutput xmlOutput = new OutputStreamXMLOutput(bytes);
+        xmlOutput.beginDocument();
+        xmlOutput.openTag(BugCollection.ROOT_ELEMENT_NAME);
+        for (BugInstance bugInstance : block)
+            bugInstance.writeXML(xmlOutput);
+        xmlOutput.closeTag(BugCollection.ROOT_ELEMENT_NAME);
+        xmlOutput.finish();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Source of BugInstances in order: a run, or the BugInstances in memory.
+     */
+    private abstract static class Source {
+        /** Position of the source; earlier sources hold earlier additions */
+        final int index;
+
+        BugInstance head;
+
+        Source(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Advance to the next BugInstance.
+         *
+         * @return false if there are no more BugInstances
+         */
+        abstract boolean advance() throws IOException;
+
+        void close() {
+        }
+    }
+
+    private static class RunSource extends Source {
+        private final DataInputStream in;
+
+        private final XMLReader xmlReader;
+
+        private Iterator<BugInstance> block;
+
+        RunSource(int index, File run) throws IOException {
+            super(index);
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+            try {
+                if (in.readInt() != MAGIC)
+                    throw new IOException("Invalid run file " + run);
+                this.xmlReader = XMLReaderFactory.createXMLReader();
+            } catch (SAXException e) {
+                in.close();
+                IOException ioe = new IOException("Couldn't create XML reader");
+                ioe.initCause(e);
+                throw ioe;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (block == null || !block.hasNext()) {
+                block = readBlock();
+                if (block == null)
+                    return false;
+            }
+            head = block.next();
+            return true;
+        }
+
+        private Iterator<BugInstance> readBlock() throws IOException {
+            int count = in.readInt();
+            if (count == 0)
+                return null;
+            String[] factoryNames = new String[count];
+            for (int i = 0; i < count; i++)
+                factoryNames[i] = in.readUTF();
+            byte[] xml = new byte[in.readInt()];
+            in.readFully(xml);
+
+            final List<BugInstance> bugList = new ArrayList<BugInstance>(count);
+            SortedBugCollection collector = new SortedBugCollection() {
+                @Override
+                public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+                    bugList.add(bugInstance);
+                    return true;
+                }
+            };
+            SAXBugCollectionHandler handler = new SAXBugCollectionHandler(collector);
+            xmlReader.setContentHandler(handler);
+            xmlReader.setErrorHandler(handler);
+            try {
+                xmlReader.parse(new InputSource(new ByteArrayInputStream(xml)));
+            } catch (SAXException e) {
+                IOException ioe = new IOException("Invalid run file");
+                ioe.initCause(e);
+                throw ioe;
+            }
+            if (bugList.size() != count)
+                throw new IOException("Invalid run file: expected " + count + " bugs, found " + bugList.size());
+
+            DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+            for (int i = 0; i < count; i++) {
+                if (factoryNames[i].length() > 0)
+                    bugList.get(i).setDetectorFactory(detectorFactoryCollection.getFactoryByClassName(factoryNames[i]));
+            }
+            return bugList.iterator();
+        }
+
+        @Override
+        void close() {
+            IO.close(in);
+        }
+    }
+
+    private static class MemorySource extends Source {
+        private final Iterator<BugInstance> iterator;
+
+        MemorySource(int index, Iterator<BugInstance> iterator) {
+            super(index);
+            this.iterator = iterator;
+        }
+
+        @Override
+        boolean advance() {
+            if (!iterator.hasNext())
+                return false;
+            head = iterator.next();
+            return true;
+        }
+    }
+
+    /**
+     * Pass all the BugInstances, in order, to a sink. The temporary files are
+     * deleted afterwards.
+     *
+     * @param sink
+     *            the sink
+     */
+    void writeSorted(BugInstanceSink sink) throws IOException {
+        PriorityQueue<Source> queue = new PriorityQueue<Source>(runList.size() + 1, new Comparator<Source>() {
+            public int compare(Source s1, Source s2) {
+                int cmp = comparator.compare(s1.head, s2.head);
+                if (cmp != 0)
+                    return cmp;
+                return s1.index - s2.index;
+            }
+        });
+        List<Source> sourceList = new ArrayList<Source>(runList.size() + 1);
+        try {
+            for (File run : runList)
+                sourceList.add(new RunSource(sourceList.size(), run));
+            sourceList.add(new MemorySource(sourceList.size(), bugSet.iterator()));
+            for (Source source : sourceList) {
+                if (source.advance())
+                    queue.add(source);
+            }
+
+            // Of equal BugInstances, the one from the earliest source is
+            // taken first, so it is the one kept
+            BugInstance previous = null;
+            while (!queue.isEmpty()) {
+                Source source = queue.poll();
+                BugInstance bugInstance = source.head;
+                if (previous == null || comparator.compare(previous, bugInstance) != 0)
+                    sink.handleBugInstance(bugInstance);
+                previous = bugInstance;
+                if (source.advance())
+                    queue.add(source);
+            }
+        } finally {
+            for (Source source : sourceList)
+                source.close();
+            deleteRuns();
+        }
+    }
+
+    /**
+     * Delete the temporary files.
+     */
+    void deleteRuns() {
+        for (File run : runList)
+            run.delete();
+        runList.clear();
+    }
+}
@@ -318,8 +318,29 @@ public abstract class FindBugs {
 	 * @throws IOException
 	 * @throws FilterException
 	 */
+	@SuppressWarnings("DM_EXIT")
 	public static void processCommandLine(TextUICommandLine commandLine, String[] argv,
 			IFindBugsEngine findBugs) throws IOException, FilterException {
+		if (!configureFromCommandLine(commandLine, argv, findBugs))
+			System.exit(1);
+	}
+
+	/**
+	 * Process the command line, without exiting the JVM if it is invalid.
+	 *
+	 * @param commandLine
+	 *            the TextUICommandLine object which will parse the command line
+	 * @param argv
+	 *            the command line arguments
+	 * @param findBugs
+	 *            the IFindBugsEngine to configure
+	 * @return true if the engine was configured, false if the -help message
+	 *         was shown instead
+	 * @throws IOException
+	 * @throws FilterException
+	 */
+	static boolean configureFromCommandLine(TextUICommandLine commandLine, String[] argv,
+			IFindBugsEngine findBugs) throws IOException, FilterException {
 		// Expand option files in command line.
 		// An argument beginning with "@" is treated as specifying
 		// the name of an option file.
@@ -329,7 +350,8 @@ public abstract class FindBugs {
 		try {
 			argv = commandLine.expandOptionFiles(argv, true, true);
 		} catch (HelpRequestedException e) {
-			showHelp(commandLine);
+			printHelp(commandLine);
+			return false;
 		}
 
 		int argCount = 0;
@@ -337,9 +359,11 @@ public abstract class FindBugs {
 			argCount = commandLine.parse(argv);
 		} catch (IllegalArgumentException e) {
 			System.out.println(e.getMessage());
-			showHelp(commandLine);
+			printHelp(commandLine);
+			return false;
 		} catch (HelpRequestedException e) {
-			showHelp(commandLine);
+			printHelp(commandLine);
+			return false;
 		}
 
 		Project project = commandLine.getProject();
@@ -347,13 +371,22 @@ public abstract class FindBugs {
 			project.addFile(argv[i]);
 		commandLine.handleXArgs();
 
-		commandLine.configureEngine(findBugs);
+		try {
+			commandLine.configureEngine(findBugs);
+		} catch (IllegalArgumentException e) {
+			// Conflicting options
+			System.out.println(e.getMessage());
+			printHelp(commandLine);
+			return false;
+		}
 		if (commandLine.getProject().getFileCount() == 0 && !commandLine.justPrintConfiguration()
-				&& !commandLine.justPrintVersion()) {
+				&& !commandLine.justPrintVersion() && !commandLine.justShowPlugins()) {
 			System.out.println("No files to be analyzed");
 
-			showHelp(commandLine);
+			printHelp(commandLine);
+			return false;
 		}
+		return true;
 	}
 
 	/**
@@ -363,10 +396,14 @@ public abstract class FindBugs {
 	 */
 	@SuppressWarnings("DM_EXIT")
 	public static void showHelp(TextUICommandLine commandLine) {
+		printHelp(commandLine);
+		System.exit(1);
+	}
+
+	private static void printHelp(TextUICommandLine commandLine) {
 		showSynopsis();
 		ShowHelp.showGeneralOptions();
 		FindBugs.showCommandLineOptions(commandLine);
-		System.exit(1);
 	}
 
 	/**
@@ -381,6 +418,24 @@ public abstract class FindBugs {
 	@SuppressWarnings("DM_EXIT")
 	public static void runMain(IFindBugsEngine findBugs, TextUICommandLine commandLine)
 			throws IOException {
+		int exitCode = execute(findBugs, commandLine);
+		if (commandLine.setExitCode())
+			System.exit(exitCode);
+	}
+
+	/**
+	 * Given a fully-configured IFindBugsEngine and the TextUICommandLine used to configure it,
+	 * execute the analysis, without exiting the JVM.
+	 *
+	 * @param findBugs
+	 *            a fully-configured IFindBugsEngine
+	 * @param commandLine
+	 *            the TextUICommandLine used to configure the IFindBugsEngine
+	 * @return the exit code: 0 unless the -exitcode option was given, in
+	 *         which case the {@link ExitCodes} flags for the analysis
+	 */
+	static int execute(IFindBugsEngine findBugs, TextUICommandLine commandLine)
+			throws IOException {
 
 		boolean verbose = !commandLine.quiet() || commandLine.setExitCode();
 
@@ -393,13 +448,16 @@ public abstract class FindBugs {
 			findBugs.execute();
 		} catch (InterruptedException e) {
 			assert false; // should not occur
-			checkExitCodeFail(commandLine, e);
+			if (checkExitCodeFail(commandLine, e))
+				return ExitCodes.ERROR_FLAG;
 			throw new RuntimeException(e);
 		} catch (RuntimeException e) {
-			checkExitCodeFail(commandLine, e);
+			if (checkExitCodeFail(commandLine, e))
+				return ExitCodes.ERROR_FLAG;
 			throw e;
 		} catch (IOException e) {
-			checkExitCodeFail(commandLine, e);
+			if (checkExitCodeFail(commandLine, e))
+				return ExitCodes.ERROR_FLAG;
 			throw e;
 		}
 
@@ -433,8 +491,8 @@ public abstract class FindBugs {
 			}
 		}
 
+		int exitCode = 0;
 		if (commandLine.setExitCode()) {
-			int exitCode = 0;
 			System.err.println("Calculating exit code...");
 			if (errorCount > 0) {
 				exitCode |= ExitCodes.ERROR_FLAG;
@@ -451,20 +509,22 @@ public abstract class FindBugs {
 				System.err.println("Setting 'bugs found' flag (" + ExitCodes.BUGS_FOUND_FLAG + ")");
 			}
 			System.err.println("Exit code set to: " + exitCode);
-
-			System.exit(exitCode);
 		}
+		return exitCode;
 	}
 
 	/**
 	 * @param commandLine
 	 * @param e
+	 * @return true if the analysis should end with the 'errors encountered'
+	 *         exit code rather than by throwing the exception
 	 */
-	private static void checkExitCodeFail(TextUICommandLine commandLine, Exception e) {
+	private static boolean checkExitCodeFail(TextUICommandLine commandLine, Exception e) {
 		if (commandLine.setExitCode()) {
 			e.printStackTrace(System.err);
-			System.exit(ExitCodes.ERROR_FLAG);
+			return true;
 		}
+		return false;
 	}
 
 	/**
@@ -19,17 +19,25 @@
 
 package edu.umd.cs.findbugs;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -65,6 +73,7 @@ import edu.umd.cs.findbugs.classfile.MissingClassException;
 import edu.umd.cs.findbugs.classfile.analysis.ClassNameAndSuperclassInfo;
 import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.classfile.impl.ClassFactory;
+import edu.umd.cs.findbugs.classfile.impl.ErrorLoggerAnalysisCacheView;
 import edu.umd.cs.findbugs.config.AnalysisFeatureSetting;
 import edu.umd.cs.findbugs.config.UserPreferences;
 import edu.umd.cs.findbugs.detect.NoteSuppressedWarnings;
@@ -116,10 +125,18 @@ public class FindBugs2 implements IFindBugsEngine {
 
 	private Collection<ClassDescriptor> referencedClassSet;
 
+	/** Classes the first pass is applied to, if not the referenced classes */
+	private Collection<ClassDescriptor> firstPassClassSet;
+
+	/** Classes whose warnings are reported, if not all application classes */
+	private Set<ClassDescriptor> reportedClassSet;
+
 	private DetectorFactoryCollection detectorFactoryCollection;
 
 	private ExecutionPlan executionPlan;
 
+	private IncrementalAnalysisCache incrementalCache;
+
 	private final YourKitController yourkitController = new YourKitController();
 
 	private String currentClassName;
@@ -197,6 +214,9 @@ public class FindBugs2 implements IFindBugsEngine {
 					"This FindBugs invocation was started without analysis capabilities");
 
 		Profiler profiler = bugReporter.getProjectStats().getProfiler();
+		if (analysisOptions.metricsFile != null) {
+			profiler.trackAllocation();
+		}
 
 		try {
 			// Get the class factory for creating classpath/codebase/etc.
@@ -219,6 +239,9 @@ public class FindBugs2 implements IFindBugsEngine {
 			// enumerate all classes (application and non-application)
 			buildClassPath();
 
+			// Reuse analysis results from earlier runs, if possible
+			reuseClassAnalyses(classPath);
+
 			// Build set of classes referenced by application classes
 			buildReferencedClassSet();
 
@@ -241,6 +264,11 @@ public class FindBugs2 implements IFindBugsEngine {
 			// Create the execution plan (which passes/detectors to execute)
 			createExecutionPlan();
 
+			if (analysisOptions.incrementalCacheDir != null) {
+				incrementalCache = new IncrementalAnalysisCache(new File(analysisOptions.incrementalCacheDir),
+						detectorFactoryCollection, executionPlan, appClassList, profiler);
+			}
+
 			for (Plugin p : detectorFactoryCollection.plugins()) {
 				for (ComponentPlugin<BugReporterDecorator> brp : p
 						.getComponentPlugins(BugReporterDecorator.class)) {
@@ -278,10 +306,17 @@ public class FindBugs2 implements IFindBugsEngine {
 				}
 			}
 
+			if (analysisOptions.changedClassesFile != null) {
+				restrictToChangedClasses();
+			}
+
 			// Analyze the application
 			long startTime = System.nanoTime(); // ME
 			analyzeApplication();
 			long endTime = System.nanoTime(); // ME
+			if (analysisOptions.metricsFile != null) {
+				writeMetrics(profiler);
+			}
 			System.err.println("Time required for the analysis: "+ (endTime-startTime)/1000.0/1000.0/1000.0); // ME
 		} catch (CheckedAnalysisException e) {
 			IOException ioe = new IOException("IOException while scanning codebases");
@@ -307,11 +342,24 @@ public class FindBugs2 implements IFindBugsEngine {
 		}
 	}
 
+	/**
+	 * Called when the classpath has been built, before the classes referenced by
+	 * the application are scanned.
+	 * Protected to allow clients to put analysis results kept from earlier runs
+	 * into the analysis cache; does nothing by default.
+	 *
+	 * @param classPath
+	 *            the classpath
+	 */
+	protected void reuseClassAnalyses(IClassPath classPath) {
+	}
+
 	/**
 	 * Protected to allow Eclipse plugin remember some cache data for later reuse
 	 */
 	protected void clearCaches() {
 		DescriptorFactory.clearInstance();
+		DescriptorFactory.clearStringCache();
 		ObjectTypeFactory.clearInstance();
 		TypeQualifierApplications.clearInstance();
 		TypeQualifierAnnotation.clearInstance();
@@ -338,6 +386,8 @@ public class FindBugs2 implements IFindBugsEngine {
 			classObserverList.clear();
 		if (referencedClassSet != null)
 			referencedClassSet.clear();
+		firstPassClassSet = null;
+		reportedClassSet = null;
 		analysisOptions.analysisFeatureSettingList = null;
 		bugReporter = null;
 		classFactory = null;
@@ -682,6 +732,58 @@ public class FindBugs2 implements IFindBugsEngine {
 		this.analysisOptions.noClassOk = noClassOk;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.umd.cs.findbugs.IFindBugsEngine#setNumThreads(int)
+	 */
+	public void setNumThreads(int numThreads) {
+		this.analysisOptions.numThreads = numThreads;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.umd.cs.findbugs.IFindBugsEngine#setIncrementalCacheDir(java.lang.String)
+	 */
+	public void setIncrementalCacheDir(String incrementalCacheDir) {
+		this.analysisOptions.incrementalCacheDir = incrementalCacheDir;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.umd.cs.findbugs.IFindBugsEngine#setMetricsFile(java.lang.String)
+	 */
+	public void setMetricsFile(String metricsFile) {
+		this.analysisOptions.metricsFile = metricsFile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see edu.umd.cs.findbugs.IFindBugsEngine#setChangedClassesFile(java.lang.String)
+	 */
+	public void setChangedClassesFile(String changedClassesFile) {
+		this.analysisOptions.changedClassesFile = changedClassesFile;
+	}
+
+	/**
+	 * Write the profile of the analysis to the metrics file.
+	 *
+	 * @param profiler
+	 *            the profiler of the analysis
+	 */
+	private void writeMetrics(Profiler profiler) throws IOException {
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(analysisOptions.metricsFile),
+				"UTF-8"));
+		try {
+			profiler.writeCSV(out);
+		} finally {
+			out.close();
+		}
+	}
+
 	/**
 	 * Create the analysis cache object and register it for current execution thread.
 	 * <p>
@@ -863,65 +965,84 @@ public class FindBugs2 implements IFindBugsEngine {
 				}
 			}
 
-		while (!workList.isEmpty()) {
-			if (Thread.interrupted()) {
-				throw new InterruptedException();
-			}
-			ClassDescriptor classDesc = workList.removeFirst();
+		ClassHeaderScanner scanner = null;
+		if (analysisOptions.numThreads > 1) {
+			scanner = new ClassHeaderScanner(analysisOptions.numThreads);
+		}
+		// Number of classes at the head of the work list whose headers
+		// have been read by the scanner
+		int scannedAhead = 0;
+		try {
+			while (!workList.isEmpty()) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (scanner != null && scannedAhead == 0) {
+					// Read the headers of the whole frontier in parallel
+					scanner.scan(workList);
+					scannedAhead = workList.size();
+				}
+				ClassDescriptor classDesc = workList.removeFirst();
+				scannedAhead--;
 
-			if (seen.contains(classDesc)) {
-				continue;
-			}
-			seen.add(classDesc);
+				if (seen.contains(classDesc)) {
+					continue;
+				}
+				seen.add(classDesc);
 
-			if (!knownDescriptors.contains(classDesc)) {
-				count++;
-				if (PROGRESS && count % 5000 == 0) {
-					System.out.println("Adding referenced class " + classDesc);
+				if (!knownDescriptors.contains(classDesc)) {
+					count++;
+					if (PROGRESS && count % 5000 == 0) {
+						System.out.println("Adding referenced class " + classDesc);
+					}
 				}
-			}
 
-			referencedPackageSet.add(classDesc.getPackageName());
+				referencedPackageSet.add(classDesc.getPackageName());
 
-			// Get list of referenced classes and add them to set.
-			// Add superclasses and superinterfaces to worklist.
-			try {
-				XClass classNameAndInfo = Global.getAnalysisCache().getClassAnalysis(XClass.class,
-						classDesc);
+				// Get list of referenced classes and add them to set.
+				// Add superclasses and superinterfaces to worklist.
+				try {
+					XClass classNameAndInfo = Global.getAnalysisCache().getClassAnalysis(XClass.class,
+							classDesc);
 
-				ClassDescriptor superclassDescriptor = classNameAndInfo.getSuperclassDescriptor();
-				if (superclassDescriptor != null && addedToWorkList.add(superclassDescriptor)) {
-					workList.addLast(superclassDescriptor);
-				}
+					ClassDescriptor superclassDescriptor = classNameAndInfo.getSuperclassDescriptor();
+					if (superclassDescriptor != null && addedToWorkList.add(superclassDescriptor)) {
+						workList.addLast(superclassDescriptor);
+					}
 
-				for (ClassDescriptor ifaceDesc : classNameAndInfo.getInterfaceDescriptorList()) {
-					if (addedToWorkList.add(ifaceDesc))
-						workList.addLast(ifaceDesc);
-				}
+					for (ClassDescriptor ifaceDesc : classNameAndInfo.getInterfaceDescriptorList()) {
+						if (addedToWorkList.add(ifaceDesc))
+							workList.addLast(ifaceDesc);
+					}
 
-				ClassDescriptor enclosingClass = classNameAndInfo.getImmediateEnclosingClass();
-				if (enclosingClass != null && addedToWorkList.add(enclosingClass))
-					workList.addLast(enclosingClass);
+					ClassDescriptor enclosingClass = classNameAndInfo.getImmediateEnclosingClass();
+					if (enclosingClass != null && addedToWorkList.add(enclosingClass))
+						workList.addLast(enclosingClass);
 
-			} catch (RuntimeException e) {
-				bugReporter.logError("Error scanning " + classDesc + " for referenced classes", e);
-				if (appClassSet.contains(classDesc)) {
-					badAppClassSet.add(classDesc);
-				}
-			} catch (MissingClassException e) {
-				// Just log it as a missing class
-				bugReporter.reportMissingClass(e.getClassDescriptor());
-				if (appClassSet.contains(classDesc)) {
-					badAppClassSet.add(classDesc);
-				}
-			} catch (CheckedAnalysisException e) {
-				// Failed to scan a referenced class --- just log the error and
-				// continue
-				bugReporter.logError("Error scanning " + classDesc + " for referenced classes", e);
-				if (appClassSet.contains(classDesc)) {
-					badAppClassSet.add(classDesc);
+				} catch (RuntimeException e) {
+					bugReporter.logError("Error scanning " + classDesc + " for referenced classes", e);
+					if (appClassSet.contains(classDesc)) {
+						badAppClassSet.add(classDesc);
+					}
+				} catch (MissingClassException e) {
+					// Just log it as a missing class
+					bugReporter.reportMissingClass(e.getClassDescriptor());
+					if (appClassSet.contains(classDesc)) {
+						badAppClassSet.add(classDesc);
+					}
+				} catch (CheckedAnalysisException e) {
+					// Failed to scan a referenced class --- just log the error and
+					// continue
+					bugReporter.logError("Error scanning " + classDesc + " for referenced classes", e);
+					if (appClassSet.contains(classDesc)) {
+						badAppClassSet.add(classDesc);
+					}
 				}
 			}
+		} finally {
+			if (scanner != null) {
+				scanner.shutdown();
+			}
 		}
 		// Delete any application classes that could not be read
 		appClassList.removeAll(badAppClassSet);
@@ -1067,6 +1188,41 @@ public class FindBugs2 implements IFindBugsEngine {
 		}
 	}
 
+	/**
+	 * Restrict the analysis to the application classes changed since a full
+	 * analysis and the classes depending on them.
+	 */
+	private void restrictToChangedClasses() throws IOException {
+		Set<String> changedClassNames = IncrementalAnalysisScope.readChangedClassNames(new File(
+				analysisOptions.changedClassesFile));
+		IncrementalAnalysisScope scope = new IncrementalAnalysisScope(changedClassNames, appClassList,
+				referencedClassSet, bugReporter);
+		if (PROGRESS) {
+			System.out.println(scope.getChangedClassList().size() + " changed classes, "
+					+ scope.getReportedClassSet().size() + " classes to report on, "
+					+ scope.getAnalyzedClassList().size() + " classes to analyze, "
+					+ scope.getFirstPassClassList().size() + " classes in first pass");
+			for (ClassDescriptor d : scope.getReportedClassSet())
+				System.out.println("  " + d);
+		}
+		appClassList = scope.getAnalyzedClassList();
+		firstPassClassSet = scope.getFirstPassClassList();
+		reportedClassSet = scope.getReportedClassSet();
+
+		// The other analyzed classes are only there to be seen by detectors
+		// gathering facts across classes
+		bugReporter = new DelegatingBugReporter(bugReporter) {
+			@Override
+			public void reportBug(@Nonnull BugInstance bugInstance) {
+				ClassDescriptor primaryClass = DescriptorFactory.createClassDescriptorFromDottedClassName(bugInstance
+						.getPrimaryClass().getClassName());
+				if (reportedClassSet.contains(primaryClass)) {
+					this.getDelegate().reportBug(bugInstance);
+				}
+			}
+		};
+	}
+
 	/**
 	 * Analyze the classes in the application codebase.
 	 */
@@ -1080,10 +1236,13 @@ public class FindBugs2 implements IFindBugsEngine {
 			if (executionPlan.getNumPasses() == 0) {
 				throw new AssertionError("no analysis passes");
 			}
+			if (firstPassClassSet == null) {
+				firstPassClassSet = referencedClassSet;
+			}
 			int[] classesPerPass = new int[executionPlan.getNumPasses()];
-			classesPerPass[0] = referencedClassSet.size();
+			classesPerPass[0] = firstPassClassSet.size();
 			for (int i = 0; i < classesPerPass.length; i++) {
-				classesPerPass[i] = i == 0 ? referencedClassSet.size() : appClassList.size();
+				classesPerPass[i] = i == 0 ? firstPassClassSet.size() : appClassList.size();
 			}
 			progress.predictPassCount(classesPerPass);
 			XFactory factory = AnalysisContext.currentXFactory();
@@ -1102,6 +1261,9 @@ public class FindBugs2 implements IFindBugsEngine {
 			}
 
 			referencedClassSet.removeAll(badClasses);
+			if (firstPassClassSet != referencedClassSet) {
+				firstPassClassSet.removeAll(badClasses);
+			}
 			long startTime = System.currentTimeMillis();
 			bugReporter.getProjectStats().setReferencedClasses(referencedClassSet.size());
 			for (Iterator<AnalysisPass> passIterator = executionPlan.passIterator(); passIterator
@@ -1112,15 +1274,57 @@ public class FindBugs2 implements IFindBugsEngine {
 				// gathers information about referenced classes.
 				boolean isNonReportingFirstPass = multiplePasses && passCount == 0;
 
-				// Instantiate the detectors
-				Detector2[] detectorList = pass.instantiateDetector2sInPass(bugReporter);
+				// Bugs of stateless detectors may be replayed from the
+				// incremental cache, except in the first pass, which
+				// gathers information about all referenced classes.
+				boolean useIncrementalCache = incrementalCache != null && !isNonReportingFirstPass;
+
+				// Likewise, stateless detectors are skipped for the classes
+				// whose warnings aren't reported
+				boolean skipUnreportedClasses = reportedClassSet != null && !isNonReportingFirstPass;
+
+				// Instantiate the detectors. When analyzing with several
+				// threads, stateless detectors are instantiated by each of
+				// the worker threads instead, and the detectors run here
+				// buffer their bugs so they can be merged with the workers'
+				// (or the cached) bugs in detector order.
+				AnalysisWorkerPool workerPool = null;
+				BufferingBugReporter bufferingBugReporter = null;
+				if (analysisOptions.numThreads > 1) {
+					workerPool = new AnalysisWorkerPool(pass, bugReporter, analysisOptions.numThreads);
+					if (!workerPool.hasWork()) {
+						workerPool.shutdown();
+						workerPool = null;
+					}
+				}
+				Detector2[] detectorList;
+				if (workerPool == null) {
+					if (useIncrementalCache) {
+						bufferingBugReporter = new BufferingBugReporter(bugReporter);
+					}
+					// Stateless detectors are skipped for the classes whose
+					// bugs are cached or not reported, so don't let them
+					// share a sweep with the others
+					detectorList = pass.instantiateDetector2sInPass(bufferingBugReporter != null ? bufferingBugReporter
+							: bugReporter, null, useIncrementalCache || skipUnreportedClasses);
+				} else {
+					bufferingBugReporter = new BufferingBugReporter(bugReporter);
+					detectorList = instantiateDetector2sNotInPool(pass, workerPool, bufferingBugReporter);
+				}
+				Detector2[] statefulDetectorList = null;
+				if (useIncrementalCache) {
+					incrementalCache.startPass(pass, passCount);
+					statefulDetectorList = incrementalCache.getUncachedDetectors(detectorList);
+				} else if (skipUnreportedClasses) {
+					statefulDetectorList = getStatefulDetectors(pass, detectorList);
+				}
 
 				// If there are multiple passes, then on the first pass,
 				// we apply detectors to all classes referenced by the
 				// application classes.
 				// On subsequent passes, we apply detector only to application
 				// classes.
-				Collection<ClassDescriptor> classCollection = (isNonReportingFirstPass) ? referencedClassSet
+				Collection<ClassDescriptor> classCollection = (isNonReportingFirstPass) ? firstPassClassSet
 						: appClassList;
 				AnalysisContext.currentXFactory().canonicalizeAll();
 				if (PROGRESS || LIST_ORDER) {
@@ -1166,98 +1370,132 @@ public class FindBugs2 implements IFindBugsEngine {
 				int count = 0;
 				Global.getAnalysisCache().purgeAllMethodAnalysis();
 				Global.getAnalysisCache().purgeClassAnalysis(FBClassReader.class);
-				for (ClassDescriptor classDescriptor : classCollection) {
-					long classStartNanoTime = 0;
-					if (PROGRESS) {
-						classStartNanoTime = System.nanoTime();
-						System.out.printf("%6d %d/%d  %d/%d %s%n",
-								(System.currentTimeMillis() - startTime) / 1000, passCount,
-								executionPlan.getNumPasses(), count, classCollection.size(),
-								classDescriptor);
-					}
-					count++;
-
-					// Check to see if class is excluded by the class screener.
-					// In general, we do not want to screen classes from the
-					// first pass, even if they would otherwise be excluded.
-					if ((SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
-							&& !classScreener.matches(classDescriptor.toResourceName())) {
-						if (DEBUG) {
-							System.out.println("*** Excluded by class screener");
+				IAnalysisCache analysisCache = Global.getAnalysisCache();
+				List<Future<BufferingBugReporter.ClassReports>> workerResults = null;
+				Map<ClassDescriptor, List<List<BugInstance>>> cachedBugMap = null;
+				if (workerPool != null) {
+					cachedBugMap = new HashMap<ClassDescriptor, List<List<BugInstance>>>();
+					Global.setAnalysisCacheForCurrentThread(workerPool.getAnalysisCacheView(bufferingBugReporter));
+					List<ClassDescriptor> classList = new ArrayList<ClassDescriptor>(classCollection);
+					boolean[] analyze = new boolean[classList.size()];
+					for (int i = 0; i < analyze.length; i++) {
+						ClassDescriptor c = classList.get(i);
+						if (!isScreenedOut(c, isNonReportingFirstPass) && isReported(c, isNonReportingFirstPass)) {
+							List<List<BugInstance>> cachedBugs = useIncrementalCache ? incrementalCache.load(c)
+									: null;
+							if (cachedBugs != null) {
+								cachedBugMap.put(c, cachedBugs);
+							} else {
+								analyze[i] = true;
+							}
 						}
-						continue;
-					}
-					boolean isHuge = AnalysisContext.currentAnalysisContext().isTooBig(
-							classDescriptor);
-					if (isHuge
-							&& AnalysisContext.currentAnalysisContext().isApplicationClass(
-									classDescriptor)) {
-						bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG",
-								Priorities.NORMAL_PRIORITY).addClass(classDescriptor));
 					}
-					currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
-					notifyClassObservers(classDescriptor);
-					profiler.startContext(currentClassName);
-
-					try {
-						for (Detector2 detector : detectorList) {
-							if (Thread.interrupted()) {
-								throw new InterruptedException();
+					workerResults = workerPool.schedule(classList, analyze);
+				} else if (bufferingBugReporter != null) {
+					// Buffer the errors logged by the analyses as well, so
+					// they are reported in the same order as the bugs
+					Global.setAnalysisCacheForCurrentThread(new ErrorLoggerAnalysisCacheView(analysisCache,
+							bufferingBugReporter));
+				}
+				try {
+					for (ClassDescriptor classDescriptor : classCollection) {
+						if (workerPool != null) {
+							workerPool.advance(count);
+						}
+						long classStartNanoTime = 0;
+						if (PROGRESS) {
+							classStartNanoTime = System.nanoTime();
+							System.out.printf("%6d %d/%d  %d/%d %s%n",
+									(System.currentTimeMillis() - startTime) / 1000, passCount,
+									executionPlan.getNumPasses(), count, classCollection.size(),
+									classDescriptor);
+						}
+						count++;
+
+						// Check to see if class is excluded by the class screener.
+						// In general, we do not want to screen classes from the
+						// first pass, even if they would otherwise be excluded.
+						if (isScreenedOut(classDescriptor, isNonReportingFirstPass)) {
+							if (DEBUG) {
+								System.out.println("*** Excluded by class screener");
 							}
-							if (isHuge
-									&& !FirstPassDetector.class.isAssignableFrom(detector
-											.getClass())) {
-								continue;
+							continue;
+						}
+						boolean isHuge = AnalysisContext.currentAnalysisContext().isTooBig(
+								classDescriptor);
+						if (isHuge
+								&& AnalysisContext.currentAnalysisContext().isApplicationClass(
+										classDescriptor)) {
+							bugReporter.reportBug(new BugInstance("SKIPPED_CLASS_TOO_BIG",
+									Priorities.NORMAL_PRIORITY).addClass(classDescriptor));
+						}
+						currentClassName = ClassName.toDottedClassName(classDescriptor.getClassName());
+						notifyClassObservers(classDescriptor);
+						profiler.startContext(currentClassName);
+
+						try {
+							List<List<BugInstance>> cachedBugs = null;
+							if (useIncrementalCache) {
+								cachedBugs = workerPool != null ? cachedBugMap.remove(classDescriptor)
+										: incrementalCache.load(classDescriptor);
 							}
-							if (DEBUG) {
-								System.out.println("Applying " + detector.getDetectorClassName()
-										+ " to " + classDescriptor);
-								// System.out.println("foo: " +
-								// NonReportingDetector.class.isAssignableFrom(detector.getClass())
-								// + ", bar: " + detector.getClass().getName());
+							boolean skipStateless = cachedBugs != null
+									|| !isReported(classDescriptor, isNonReportingFirstPass);
+							if (bufferingBugReporter != null) {
+								bufferingBugReporter.startClass(detectorList.length);
 							}
-							try {
-								profiler.start(detector.getClass());
-								detector.visitClass(classDescriptor);
-							} catch (ClassFormatException e) {
-								logRecoverableException(classDescriptor, detector, e);
-							} catch (MissingClassException e) {
-								Global.getAnalysisCache().getErrorLogger()
-										.reportMissingClass(e.getClassDescriptor());
-							} catch (CheckedAnalysisException e) {
-								logRecoverableException(classDescriptor, detector, e);
-							} catch (RuntimeException e) {
-								logRecoverableException(classDescriptor, detector, e);
-							} finally {
-								profiler.end(detector.getClass());
+							applyDetectors(classDescriptor, skipStateless ? statefulDetectorList : detectorList,
+									isHuge, bufferingBugReporter != null ? bufferingBugReporter : bugReporter,
+									bufferingBugReporter);
+							if (bufferingBugReporter != null) {
+								BufferingBugReporter.ClassReports buffered = bufferingBugReporter.finishClass();
+								BufferingBugReporter.ClassReports other = cachedBugs != null ? new BufferingBugReporter.ClassReports(
+										cachedBugs) : null;
+								if (workerPool != null && !skipStateless) {
+									other = getWorkerResult(workerResults.get(count - 1));
+									workerResults.set(count - 1, null);
+								}
+								if (useIncrementalCache && !skipStateless) {
+									incrementalCache.store(classDescriptor, (other != null ? other : buffered).getBugs());
+								}
+								BufferingBugReporter.replay(bugReporter, buffered, other);
 							}
-						}
-					} finally {
+						} finally {
+
+							progress.finishClass();
+							profiler.endContext(currentClassName);
+							if (PROGRESS) {
+								long usecs = (System.nanoTime() - classStartNanoTime) / 1000;
+								if (usecs > 15000) {
+									int classSize = AnalysisContext.currentAnalysisContext()
+											.getClassSize(classDescriptor);
+									long speed = usecs / classSize;
+									if (speed > 15)
+										System.out.printf(
+												"  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n",
+												speed, usecs / 1000, classSize, passCount,
+												classDescriptor);
+								}
 
-						progress.finishClass();
-						profiler.endContext(currentClassName);
-						if (PROGRESS) {
-							long usecs = (System.nanoTime() - classStartNanoTime) / 1000;
-							if (usecs > 15000) {
-								int classSize = AnalysisContext.currentAnalysisContext()
-										.getClassSize(classDescriptor);
-								long speed = usecs / classSize;
-								if (speed > 15)
-									System.out.printf(
-											"  %6d usecs/byte  %6d msec  %6d bytes  %d pass %s%n",
-											speed, usecs / 1000, classSize, passCount,
-											classDescriptor);
 							}
-
 						}
 					}
+				} finally {
+					if (workerPool != null) {
+						workerPool.shutdown();
+					}
+					Global.setAnalysisCacheForCurrentThread(analysisCache);
 				}
 
 				if (!passIterator.hasNext())
 					yourkitController.captureMemorySnapshot();
 				// Call finishPass on each detector
-				for (Detector2 detector : detectorList) {
-					detector.finishPass();
+				for (int i = 0; i < detectorList.length; i++) {
+					if (workerPool != null && workerPool.isRunInPool(i)) {
+						workerPool.finishPass(i);
+					} else {
+						detectorList[i].finishPass();
+					}
 				}
 
 				progress.finishPerClassAnalysis();
@@ -1276,6 +1514,160 @@ public class FindBugs2 implements IFindBugsEngine {
 
 	}
 
+	/**
+	 * Instantiate the detectors of an analysis pass which are not run by a
+	 * worker pool.
+	 *
+	 * @param pass
+	 *            the analysis pass
+	 * @param workerPool
+	 *            the worker pool running the pass's stateless detectors
+	 * @param bugReporter
+	 *            the BugReporter
+	 * @return array of Detector2s, in pass order, with null entries for the
+	 *         detectors run by the worker pool
+	 */
+	private static Detector2[] instantiateDetector2sNotInPool(AnalysisPass pass,
+			AnalysisWorkerPool workerPool, BugReporter bugReporter) {
+		boolean[] selected = new boolean[pass.getMembers().size()];
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = !workerPool.isRunInPool(i);
+		}
+		return pass.instantiateDetector2sInPass(bugReporter, selected, false);
+	}
+
+	/**
+	 * Get the detectors of a pass which don't implement StatelessDetector.
+	 *
+	 * @param pass
+	 *            the pass
+	 * @param detectorList
+	 *            the detectors of the pass, in pass order
+	 * @return copy of the detector list with null entries for the stateless
+	 *         detectors
+	 */
+	private static Detector2[] getStatefulDetectors(AnalysisPass pass, Detector2[] detectorList) {
+		Detector2[] result = new Detector2[detectorList.length];
+		int i = 0;
+		for (Iterator<DetectorFactory> j = pass.iterator(); j.hasNext(); i++) {
+			if (!j.next().isDetectorClassSubtypeOf(StatelessDetector.class)) {
+				result[i] = detectorList[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Apply detectors to a class.
+	 *
+	 * @param classDescriptor
+	 *            the class
+	 * @param detectorList
+	 *            detectors of the current pass; null entries are skipped
+	 * @param isHuge
+	 *            true if the class is too big to be analyzed by anything but
+	 *            FirstPassDetectors
+	 * @param errorReporter
+	 *            BugReporter to log detector errors to
+	 * @param bufferingBugReporter
+	 *            if not null, the BufferingBugReporter the detectors report to;
+	 *            it is told which detector is running
+	 * @throws InterruptedException
+	 *             if the analysis thread is interrupted
+	 */
+	static void applyDetectors(ClassDescriptor classDescriptor, Detector2[] detectorList,
+			boolean isHuge, BugReporter errorReporter,
+			@CheckForNull BufferingBugReporter bufferingBugReporter) throws InterruptedException {
+		Profiler profiler = errorReporter.getProjectStats().getProfiler();
+		for (int i = 0; i < detectorList.length; i++) {
+			Detector2 detector = detectorList[i];
+			if (detector == null) {
+				continue;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (isHuge && !FirstPassDetector.class.isAssignableFrom(detector.getClass())) {
+				continue;
+			}
+			if (DEBUG) {
+				System.out.println("Applying " + detector.getDetectorClassName() + " to "
+						+ classDescriptor);
+				// System.out.println("foo: " +
+				// NonReportingDetector.class.isAssignableFrom(detector.getClass())
+				// + ", bar: " + detector.getClass().getName());
+			}
+			if (bufferingBugReporter != null) {
+				bufferingBugReporter.setCurrentDetector(i);
+			}
+			// Profile adapted detectors under their own class, rather than
+			// all of them under the adapter's
+			Class<?> profiledClass = detector instanceof DetectorToDetector2Adapter ? ((DetectorToDetector2Adapter) detector)
+					.getDetectorClass() : detector.getClass();
+			try {
+				profiler.start(profiledClass);
+				detector.visitClass(classDescriptor);
+			} catch (ClassFormatException e) {
+				logRecoverableException(errorReporter, classDescriptor, detector, e);
+			} catch (MissingClassException e) {
+				Global.getAnalysisCache().getErrorLogger().reportMissingClass(e.getClassDescriptor());
+			} catch (CheckedAnalysisException e) {
+				logRecoverableException(errorReporter, classDescriptor, detector, e);
+			} catch (RuntimeException e) {
+				logRecoverableException(errorReporter, classDescriptor, detector, e);
+			} finally {
+				profiler.end(profiledClass);
+			}
+		}
+	}
+
+	/**
+	 * Wait for a worker to finish applying its detectors to a class.
+	 *
+	 * @param future
+	 *            Future returned when the class was submitted to the worker pool
+	 * @return the bugs and errors the worker buffered for the class
+	 * @throws InterruptedException
+	 *             if the analysis thread or the worker is interrupted
+	 */
+	private static BufferingBugReporter.ClassReports getWorkerResult(Future<BufferingBugReporter.ClassReports> future)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException("Unexpected exception in analysis worker", cause);
+		}
+	}
+
+	/**
+	 * Check whether the warnings of a class are reported in the current pass.
+	 * When only the classes affected by changed classes are reported on, the
+	 * other analyzed classes are only seen by the detectors gathering facts
+	 * across classes.
+	 */
+	private boolean isReported(ClassDescriptor classDescriptor, boolean isNonReportingFirstPass) {
+		return reportedClassSet == null || isNonReportingFirstPass || reportedClassSet.contains(classDescriptor);
+	}
+
+	/**
+	 * Check whether a class is excluded from the current pass by the class
+	 * screener.
+	 */
+	private boolean isScreenedOut(ClassDescriptor classDescriptor, boolean isNonReportingFirstPass) {
+		return (SCREEN_FIRST_PASS_CLASSES || !isNonReportingFirstPass)
+				&& !classScreener.matches(classDescriptor.toResourceName());
+	}
+
 	/**
 	 * Notify all IClassObservers that we are visiting given class.
 	 *
@@ -1291,6 +1683,8 @@ public class FindBugs2 implements IFindBugsEngine {
 	/**
 	 * Report an exception that occurred while analyzing a class with a detector.
 	 *
+	 * @param bugReporter
+	 *            BugReporter to log the exception to
 	 * @param classDescriptor
 	 *            class being analyzed
 	 * @param detector
@@ -1298,8 +1692,8 @@ public class FindBugs2 implements IFindBugsEngine {
 	 * @param e
 	 *            the exception
 	 */
-	private void logRecoverableException(ClassDescriptor classDescriptor, Detector2 detector,
-			Throwable e) {
+	private static void logRecoverableException(BugReporter bugReporter,
+			ClassDescriptor classDescriptor, Detector2 detector, Throwable e) {
 		bugReporter.logError("Exception analyzing " + classDescriptor.toDottedClassName()
 				+ " using detector " + detector.getDetectorClassName(), e);
 	}
@@ -1315,21 +1709,45 @@ public class FindBugs2 implements IFindBugsEngine {
 		// Create FindBugs2 engine
 		FindBugs2 findBugs = new FindBugs2();
 
+		int exitCode = runMain(findBugs, args, startTime);
+		if (exitCode != 0) {
+			System.exit(exitCode);
+		}
+	}
+
+	/**
+	 * Configure an engine from command line arguments and run it. Does not
+	 * exit the JVM, so that it can be used by a resident analysis server.
+	 *
+	 * @param findBugs
+	 *            the engine
+	 * @param args
+	 *            the command line arguments
+	 * @param startTime
+	 *            when the setup started, as returned by System.nanoTime()
+	 * @return the exit code of the FindBugs command
+	 */
+	static int runMain(FindBugs2 findBugs, String[] args, long startTime) throws Exception {
 		// Parse command line and configure the engine
 		TextUICommandLine commandLine = new TextUICommandLine();
-		FindBugs.processCommandLine(commandLine, args, findBugs);
+		if (!FindBugs.configureFromCommandLine(commandLine, args, findBugs)) {
+			return 1;
+		}
 
 		boolean justPrintConfiguration = commandLine.justPrintConfiguration();
 		if (justPrintConfiguration || commandLine.justPrintVersion()) {
 			Version.printVersion(justPrintConfiguration);
 
-			return;
+			return 0;
+		}
+		if (commandLine.justShowPlugins()) {
+			return 0;
 		}
 		// Away we go!
 		long endTime = System.nanoTime();
 		System.err.println("Setup time: "+(endTime-startTime)/1000.0/1000.0/1000.0 );
 
-		FindBugs.runMain(findBugs, commandLine);
+		return FindBugs.execute(findBugs, commandLine);
 	}
 	public static void main(String[] args) throws Exception {
 		main2(args);
@@ -274,6 +274,51 @@ public interface IFindBugsEngine {
      */
     public void setNoClassOk(boolean noClassOk);
 
+    /**
+     * Set the number of threads used to apply detectors to the classes of an
+     * analysis pass.
+     * 
+     * @param numThreads
+     *            number of analysis threads; 1 (the default) analyzes classes
+     *            sequentially
+     */
+    public void setNumThreads(int numThreads);
+
+    /**
+     * Set the directory of the on-disk cache used to skip the analysis of
+     * classes which are unchanged since an earlier analysis with the same
+     * cache directory.
+     * 
+     * @param incrementalCacheDir
+     *            the cache directory, or null (the default) to analyze all
+     *            classes from scratch
+     */
+    public void setIncrementalCacheDir(String incrementalCacheDir);
+
+    /**
+     * Set the file to which the profile of the analysis (time and memory
+     * allocated per detector and analysis engine, analysis cache hit rates,
+     * time per class) is written as CSV once the analysis is done. Setting it
+     * also turns on the tracking of memory allocation.
+     * 
+     * @param metricsFile
+     *            the file, or null (the default) to not write the profile
+     */
+    public void setMetricsFile(String metricsFile);
+
+    /**
+     * Set the file listing the application classes changed since a full
+     * analysis (one class name per line). Only the changed classes and the
+     * application classes depending on them are analyzed and reported on.
+     * Interprocedural databases saved by the full analysis, if any, can be
+     * supplied with {@link #enableTrainingInput(String)}.
+     * 
+     * @param changedClassesFile
+     *            the file, or null (the default) to analyze all application
+     *            classes
+     */
+    public void setChangedClassesFile(String changedClassesFile);
+
     /**
      * Set the DetectorFactoryCollection from which plugins/detectors may be
      * accessed.
@@ -0,0 +1,566 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.ba.AnalysisFeatures;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.analysis.ClassNameAndSuperclassInfo;
+import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
+import edu.umd.cs.findbugs.log.Profiler;
+import edu.umd.cs.findbugs.plan.AnalysisPass;
+import edu.umd.cs.findbugs.plan.ExecutionPlan;
+import edu.umd.cs.findbugs.util.ClassName;
+import edu.umd.cs.findbugs.util.Util;
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * On-disk cache of the bugs reported for each application class, used to
+ * avoid re-analyzing unchanged classes when the same code is analyzed again.
+ *
+ * <p>
+ * Only the bugs reported by detectors implementing {@link StatelessDetector},
+ * and not subject to ordering constraints within their pass, are cached: they
+ * keep no state from one class to the next, so an unchanged class can skip
+ * them and replay their bugs instead. All other detectors, and the first
+ * (non-reporting) pass, still visit every class, since they gather state
+ * across classes.
+ * </p>
+ *
+ * <p>
+ * Besides the class being visited, stateless detectors use facts gathered
+ * from other classes: the interprocedural databases, the class hierarchy, and
+ * summaries of fields and methods (e.g., which fields are written anywhere).
+ * An entry is therefore keyed by a digest of
+ * <ul>
+ * <li>the FindBugs and plugin versions, the detectors of the execution plan
+ * and their class files, and the analysis feature settings,</li>
+ * <li>the bytes of the class,</li>
+ * <li>the bytes of its superclasses and superinterfaces, direct or not, of
+ * its enclosing class and of the classes whose methods it calls (see
+ * {@link ClassNameAndSuperclassInfo#getCalledClassDescriptorList()}), whose
+ * facts the detectors may use, and</li>
+ * <li>the bytes of the application classes referring to the class (see
+ * {@link ClassNameAndSuperclassInfo#getReferencedClassDescriptorList()}):
+ * its callers, subclasses, and the classes using its fields, from which
+ * facts about the class are gathered.</li>
+ * </ul>
+ * so changing a class invalidates its own entries, those of its subtypes and
+ * those of the classes related to it directly. Other facts which propagate
+ * through a chain of several classes (e.g., a method returning the value
+ * returned by a method of a third class, or a method inherited from the
+ * superclass of a called class) are not covered: the cache trades exactness
+ * for speed, and a full analysis without it should be run when that matters.
+ * Entries are never
+ * updated in place; stale entries are simply not found again, and the cache
+ * directory can be deleted at any time.
+ * </p>
+ *
+ * <p>
+ * The cache is used by the thread driving the analysis only.
+ * </p>
+ */
+class IncrementalAnalysisCache {
+    private static final int MAGIC = 0xFB1C0001;
+
+    private final File directory;
+
+    private final byte[] fingerprint;
+
+    private final Profiler.CacheProfile cacheProfile;
+
+    private final Map<ClassDescriptor, byte[]> classDigestMap = new HashMap<ClassDescriptor, byte[]>();
+
+    private final Map<ClassDescriptor, String> keyMap = new HashMap<ClassDescriptor, String>();
+
+    private final Collection<ClassDescriptor> appClassList;
+
+    /** Application classes referring to each class; built on first use */
+    private Map<ClassDescriptor, List<ClassDescriptor>> referrerMap;
+
+    private int passNumber;
+
+    private DetectorFactory[] factoryList;
+
+    private boolean[] isCached;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            directory holding the cache entries; created if it does not
+     *            exist
+     * @param detectorFactoryCollection
+     *            the plugins and detectors
+     * @param executionPlan
+     *            the execution plan of the analysis
+     * @param appClassList
+     *            the application classes
+     * @param profiler
+     *            the Profiler counting cache hits and misses
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    IncrementalAnalysisCache(File directory, DetectorFactoryCollection detectorFactoryCollection,
+            ExecutionPlan executionPlan, Collection<ClassDescriptor> appClassList, Profiler profiler) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create incremental analysis cache directory " + directory);
+        }
+        this.directory = directory;
+        this.fingerprint = computeFingerprint(detectorFactoryCollection, executionPlan);
+        this.appClassList = appClassList;
+        this.cacheProfile = profiler.getCacheProfile(IncrementalAnalysisCache.class);
+    }
+
+    /**
+     * Compute the digest of everything besides the analyzed classes that the
+     * cached bugs depend on.
+     */
+    private static byte[] computeFingerprint(DetectorFactoryCollection detectorFactoryCollection,
+            ExecutionPlan executionPlan) throws IOException {
+        MessageDigest digest = Util.getMD5Digest();
+        StringBuilder buf = new StringBuilder();
+        buf.append(Version.COMPUTED_RELEASE).append('\n');
+        for (Plugin plugin : detectorFactoryCollection.plugins()) {
+            buf.append(plugin.getPluginId()).append(' ').append(plugin.getVersion()).append('\n');
+        }
+        for (Iterator<AnalysisPass> i = executionPlan.passIterator(); i.hasNext();) {
+            for (Iterator<DetectorFactory> j = i.next().iterator(); j.hasNext();) {
+                DetectorFactory factory = j.next();
+                buf.append(factory.getFullName()).append(' ').append(factory.getPriorityAdjustment()).append(' ');
+                // Development versions of a plugin may change without a new
+                // version number
+                digestClassFile(digest, factory.getPlugin().getClassLoader(), factory.getFullName());
+            }
+            buf.append('\n');
+        }
+        AnalysisContext analysisContext = AnalysisContext.currentAnalysisContext();
+        for (int i = 0; i < AnalysisFeatures.NUM_BOOLEAN_ANALYSIS_PROPERTIES; i++) {
+            buf.append(analysisContext.getBoolProperty(i) ? '1' : '0');
+        }
+        buf.append(FindBugsAnalysisFeatures.isRelaxedMode() ? '1' : '0');
+        return digest.digest(UTF8.getBytes(buf.toString()));
+    }
+
+    private static void digestClassFile(MessageDigest digest, ClassLoader classLoader,
+            @DottedClassName String className) throws IOException {
+        InputStream in = classLoader.getResourceAsStream(ClassName.toSlashedClassName(className) + ".class");
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                digest.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Start using the cache for an analysis pass.
+     *
+     * @param pass
+     *            the analysis pass
+     * @param passNumber
+     *            number of the pass in the execution plan
+     */
+    void startPass(AnalysisPass pass, int passNumber) {
+        List<DetectorFactory> factories = new ArrayList<DetectorFactory>();
+        for (Iterator<DetectorFactory> i = pass.iterator(); i.hasNext();) {
+            factories.add(i.next());
+        }
+        this.passNumber = passNumber;
+        this.factoryList = factories.toArray(new DetectorFactory[factories.size()]);
+        this.isCached = new boolean[factoryList.length];
+        for (int i = 0; i < factoryList.length; i++) {
+            // A detector ordered after another one of the same pass uses
+            // what the earlier one gathered from the classes visited so far
+            isCached[i] = factoryList[i].isDetectorClassSubtypeOf(StatelessDetector.class)
+                    && pass.isUnconstrained(factoryList[i]);
+        }
+    }
+
+    /**
+     * Get the detectors of the current pass which must visit a class even if
+     * the bugs for the class were found in the cache.
+     *
+     * @param detectorList
+     *            the detectors of the current pass, in pass order
+     * @return copy of the detector list with null entries for the detectors
+     *         whose bugs are cached
+     */
+    Detector2[] getUncachedDetectors(Detector2[] detectorList) {
+        Detector2[] result = new Detector2[detectorList.length];
+        for (int i = 0; i < detectorList.length; i++) {
+            result[i] = isCached[i] ? null : detectorList[i];
+        }
+        return result;
+    }
+
+    /**
+     * Look up the cached bugs reported for a class in the current pass.
+     *
+     * @param classDescriptor
+     *            the class
+     * @return list, indexed by detector position, of the bugs reported by the
+     *         cached detectors (see
+     *         {@link BufferingBugReporter.ClassReports#getBugs()}), or null
+     *         if the class must be analyzed
+     */
+    @CheckForNull
+    List<List<BugInstance>> load(ClassDescriptor classDescriptor) {
+        String key = getKey(classDescriptor);
+        List<List<BugInstance>> result = null;
+        if (key != null) {
+            File file = getEntryFile(key);
+            try {
+                result = read(new FileInputStream(file));
+            } catch (FileNotFoundException e) {
+                // not cached
+            } catch (IOException e) {
+                AnalysisContext.logError("Couldn't read incremental analysis cache entry " + file, e);
+            }
+        }
+        if (result == null) {
+            cacheProfile.miss();
+        } else {
+            cacheProfile.hit();
+        }
+        return result;
+    }
+
+    /**
+     * Store the bugs reported for a class in the current pass.
+     *
+     * @param classDescriptor
+     *            the class
+     * @param bufferedBugs
+     *            list, indexed by detector position, of the bugs reported by
+     *            the detectors (see
+     *            {@link BufferingBugReporter.ClassReports#getBugs()}); only
+     *            the bugs of the cached detectors are stored
+     */
+    void store(ClassDescriptor classDescriptor, List<List<BugInstance>> bufferedBugs) {
+        String key = getKey(classDescriptor);
+        if (key == null) {
+            return;
+        }
+        File file = getEntryFile(key);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            write(new FileOutputStream(tmpFile), bufferedBugs);
+            if (!tmpFile.renameTo(file)) {
+                // An entry with the same contents may have been written
+                // concurrently by another analysis
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            AnalysisContext.logError("Couldn't write incremental analysis cache entry " + file, e);
+        }
+    }
+
+    private File getEntryFile(String key) {
+        return new File(new File(directory, key.substring(0, 2)), key.substring(2) + "-" + passNumber);
+    }
+
+    /**
+     * Write a cache entry: a header giving, for each detector of the pass,
+     * the number of cached bugs and their detector factories, followed by the
+     * bugs as the BugInstance elements of an XML BugCollection.
+     */
+    private void write(OutputStream out, List<List<BugInstance>> bufferedBugs) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        boolean wroteXML = false;
+        try {
+            dataOut.writeInt(MAGIC);
+            dataOut.writeInt(bufferedBugs.size());
+            int numBugs = 0;
+            for (int i = 0; i < bufferedBugs.size(); i++) {
+                List<BugInstance> bugs = isCached[i] ? bufferedBugs.get(i) : null;
+                if (bugs == null) {
+                    dataOut.writeInt(0);
+                    continue;
+                }
+                dataOut.writeInt(bugs.size());
+                for (BugInstance bugInstance : bugs) {
+                    DetectorFactory factory = bugInstance.getDetectorFactory();
+                    dataOut.writeUTF(factory != null ? factory.getFullName() : "");
+                }
+                numBugs += bugs.size();
+            }
+            if (numBugs == 0) {
+                return;
+            }
+            dataOut.flush();
+            XMLOutput xmlOutput = new OutputStreamXMLOutput(dataOut);
+            wroteXML = true;
+            xmlOutput.beginDocument();
+            xmlOutput.openTag(BugCollection.ROOT_ELEMENT_NAME);
+            for (int i = 0; i < bufferedBugs.size(); i++) {
+                List<BugInstance> bugs = isCached[i] ? bufferedBugs.get(i) : null;
+                if (bugs != null) {
+                    for (BugInstance bugInstance : bugs) {
+                        bugInstance.writeXML(xmlOutput);
+                    }
+                }
+            }
+            xmlOutput.closeTag(BugCollection.ROOT_ELEMENT_NAME);
+            xmlOutput.finish();
+        } finally {
+            if (!wroteXML) {
+                dataOut.close();
+            }
+        }
+    }
+
+    @CheckForNull
+    private List<List<BugInstance>> read(InputStream in) throws IOException {
+        DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (dataIn.readInt() != MAGIC) {
+                return null;
+            }
+            int numDetectors = dataIn.readInt();
+            if (numDetectors != factoryList.length) {
+                return null;
+            }
+            List<List<String>> factoryNames = new ArrayList<List<String>>(numDetectors);
+            int numBugs = 0;
+            for (int i = 0; i < numDetectors; i++) {
+                int count = dataIn.readInt();
+                List<String> names = new ArrayList<String>(count);
+                for (int j = 0; j < count; j++) {
+                    names.add(dataIn.readUTF());
+                }
+                factoryNames.add(names);
+                numBugs += count;
+            }
+
+            final List<BugInstance> bugList = new ArrayList<BugInstance>(numBugs);
+            if (numBugs > 0) {
+                SortedBugCollection collector = new SortedBugCollection() {
+                    @Override
+                    public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+                        bugList.add(bugInstance);
+                        return true;
+                    }
+                };
+                SAXBugCollectionHandler handler = new SAXBugCollectionHandler(collector);
+                try {
+                    XMLReader xr = XMLReaderFactory.createXMLReader();
+                    xr.setContentHandler(handler);
+                    xr.setErrorHandler(handler);
+                    xr.parse(new InputSource(dataIn));
+                } catch (SAXException e) {
+                    IOException ioe = new IOException("Invalid cache entry");
+                    ioe.initCause(e);
+                    throw ioe;
+                }
+                if (bugList.size() != numBugs) {
+                    return null;
+                }
+            }
+
+            DetectorFactoryCollection detectorFactoryCollection = DetectorFactoryCollection.instance();
+            List<List<BugInstance>> result = new ArrayList<List<BugInstance>>(numDetectors);
+            Iterator<BugInstance> bugIterator = bugList.iterator();
+            for (List<String> names : factoryNames) {
+                if (names.isEmpty()) {
+                    result.add(null);
+                    continue;
+                }
+                List<BugInstance> bugs = new ArrayList<BugInstance>(names.size());
+                for (String name : names) {
+                    BugInstance bugInstance = bugIterator.next();
+                    if (name.length() > 0) {
+                        bugInstance.setDetectorFactory(detectorFactoryCollection.getFactoryByClassName(name));
+                    }
+                    bugs.add(bugInstance);
+                }
+                result.add(bugs);
+            }
+            return result;
+        } finally {
+            dataIn.close();
+        }
+    }
+
+    /**
+     * Get the key of the cache entries for a class.
+     *
+     * @return the key, or null if the class or its supertypes can't be read
+     */
+    @CheckForNull
+    private String getKey(ClassDescriptor classDescriptor) {
+        if (keyMap.containsKey(classDescriptor)) {
+            return keyMap.get(classDescriptor);
+        }
+        String key = null;
+        try {
+            XClass xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+            TreeSet<ClassDescriptor> dependencies = new TreeSet<ClassDescriptor>();
+            addSupertypes(xclass, dependencies);
+            if (xclass.getImmediateEnclosingClass() != null) {
+                dependencies.add(xclass.getImmediateEnclosingClass());
+            }
+            if (xclass instanceof ClassNameAndSuperclassInfo) {
+                dependencies.addAll(((ClassNameAndSuperclassInfo) xclass).getCalledClassDescriptorList());
+            }
+            List<ClassDescriptor> referrers = getReferrerMap().get(classDescriptor);
+            if (referrers != null) {
+                dependencies.addAll(referrers);
+            }
+            dependencies.remove(classDescriptor);
+
+            MessageDigest digest = Util.getMD5Digest();
+            digest.update(fingerprint);
+            digest.update(getClassDigest(classDescriptor));
+            for (ClassDescriptor dependency : dependencies) {
+                digest.update(UTF8.getBytes(dependency.getClassName()));
+                digest.update(getClassDigest(dependency));
+            }
+            key = toHexString(digest.digest());
+        } catch (CheckedAnalysisException e) {
+            // the class will be analyzed anyway
+        }
+        keyMap.put(classDescriptor, key);
+        return key;
+    }
+
+    /**
+     * Add the superclasses and superinterfaces of a class, direct or not, to
+     * a set. Those which can't be read are added, but not their own
+     * supertypes.
+     */
+    private static void addSupertypes(XClass xclass, Set<ClassDescriptor> supertypes) {
+        List<ClassDescriptor> directSupertypes = new ArrayList<ClassDescriptor>(Arrays.asList(xclass
+                .getInterfaceDescriptorList()));
+        if (xclass.getSuperclassDescriptor() != null) {
+            directSupertypes.add(xclass.getSuperclassDescriptor());
+        }
+        for (ClassDescriptor supertype : directSupertypes) {
+            if (!supertypes.add(supertype)) {
+                continue;
+            }
+            try {
+                addSupertypes(Global.getAnalysisCache().getClassAnalysis(XClass.class, supertype), supertypes);
+            } catch (CheckedAnalysisException e) {
+                // its digest records that it is missing
+            }
+        }
+    }
+
+    private Map<ClassDescriptor, List<ClassDescriptor>> getReferrerMap() {
+        if (referrerMap == null) {
+            referrerMap = new HashMap<ClassDescriptor, List<ClassDescriptor>>();
+            for (ClassDescriptor referrer : appClassList) {
+                XClass xclass;
+                try {
+                    xclass = Global.getAnalysisCache().getClassAnalysis(XClass.class, referrer);
+                } catch (CheckedAnalysisException e) {
+                    continue;
+                }
+                if (!(xclass instanceof ClassNameAndSuperclassInfo)) {
+                    continue;
+                }
+                for (ClassDescriptor referenced : ((ClassNameAndSuperclassInfo) xclass).getReferencedClassDescriptorList()) {
+                    List<ClassDescriptor> referrers = referrerMap.get(referenced);
+                    if (referrers == null) {
+                        referrers = new ArrayList<ClassDescriptor>();
+                        referrerMap.put(referenced, referrers);
+                    }
+                    referrers.add(referrer);
+                }
+            }
+        }
+        return referrerMap;
+    }
+
+    /**
+     * Get the digest of the bytes of a class. Missing classes all get the
+     * same digest, and application classes a different one than the same
+     * class on the auxiliary classpath.
+     */
+    private byte[] getClassDigest(ClassDescriptor classDescriptor) {
+        byte[] result = classDigestMap.get(classDescriptor);
+        if (result == null) {
+            MessageDigest digest = Util.getMD5Digest();
+            try {
+                ClassData classData = Global.getAnalysisCache().getClassAnalysis(ClassData.class, classDescriptor);
+                digest.update(classData.getData());
+                digest.update((byte) (AnalysisContext.currentAnalysisContext().isApplicationClass(classDescriptor) ? 1 : 0));
+            } catch (CheckedAnalysisException e) {
+                digest.update((byte) 2);
+            }
+            result = digest.digest();
+            classDigestMap.put(classDescriptor, result);
+        }
+        return result;
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+            buf.append(Character.forDigit(b & 0xf, 16));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.analysis.ClassNameAndSuperclassInfo;
+import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
+
+/**
+ * The classes to analyze when only some application classes changed since a
+ * full analysis.
+ *
+ * <p>
+ * Warnings are reported for the changed classes and the classes which may be
+ * affected by them: the application classes referring to a changed class
+ * (see {@link ClassNameAndSuperclassInfo#getReferencedClassDescriptorList()}),
+ * and the subtypes of the changed classes. A changed class which is no longer
+ * among the application classes has been deleted: it is not analyzed, but the
+ * classes referring to it are reported on as well. The
+ * detectors gathering facts across classes (e.g., which fields are read or
+ * written) also need to see the classes using the fields and methods of these
+ * classes, and the classes using the fields they use, so those classes are
+ * analyzed too; only the detectors which aren't {@link StatelessDetector}s
+ * are applied to them, and their warnings are dropped.
+ * </p>
+ *
+ * <p>
+ * The first (non-reporting) pass summarizes fields and methods for the
+ * reporting passes. It is applied to the analyzed classes, the classes they
+ * refer to (whose methods they call), the application classes using the
+ * fields they use (which may write these fields), and the supertypes of all
+ * of these. Interprocedural databases saved by the full analysis, if any, can
+ * be supplied as training input (see
+ * {@link IFindBugsEngine#enableTrainingInput(String)}).
+ * </p>
+ */
+class IncrementalAnalysisScope {
+    private final List<ClassDescriptor> changedClassList = new ArrayList<ClassDescriptor>();
+
+    private final Set<ClassDescriptor> reportedClassSet = new HashSet<ClassDescriptor>();
+
+    private final List<ClassDescriptor> analyzedClassList = new ArrayList<ClassDescriptor>();
+
+    private final List<ClassDescriptor> firstPassClassList = new ArrayList<ClassDescriptor>();
+
+    /**
+     * Constructor.
+     *
+     * @param changedClassNames
+     *            names of the changed (or deleted) classes; a class name also
+     *            stands for the classes nested in it
+     * @param appClassList
+     *            the application classes
+     * @param referencedClassSet
+     *            the classes referenced by the application classes, in the
+     *            order the first pass should visit them
+     * @param bugReporter
+     *            BugReporter to log errors to
+     */
+    IncrementalAnalysisScope(Collection<String> changedClassNames, List<ClassDescriptor> appClassList,
+            Collection<ClassDescriptor> referencedClassSet, BugReporter bugReporter) {
+        Map<ClassDescriptor, ClassNameAndSuperclassInfo> referencesMap = new HashMap<ClassDescriptor, ClassNameAndSuperclassInfo>();
+        Set<ClassDescriptor> unknownReferences = new HashSet<ClassDescriptor>();
+        for (ClassDescriptor classDescriptor : appClassList) {
+            try {
+                referencesMap.put(classDescriptor,
+                        Global.getAnalysisCache().getClassAnalysis(ClassNameAndSuperclassInfo.class, classDescriptor));
+            } catch (CheckedAnalysisException e) {
+                bugReporter.logError("Couldn't scan " + classDescriptor + " for referenced classes", e);
+                unknownReferences.add(classDescriptor);
+            }
+        }
+
+        Set<ClassDescriptor> changedClassSet = new HashSet<ClassDescriptor>();
+        Set<String> existingClassNames = new HashSet<String>();
+        for (ClassDescriptor classDescriptor : appClassList) {
+            String className = classDescriptor.toDottedClassName();
+            existingClassNames.add(className);
+            if (isChanged(className, changedClassNames)) {
+                changedClassSet.add(classDescriptor);
+                changedClassList.add(classDescriptor);
+            }
+        }
+
+        // The classes referring to a deleted class must be checked again
+        Set<ClassDescriptor> deletedClassSet = new HashSet<ClassDescriptor>();
+        for (String className : changedClassNames) {
+            if (!existingClassNames.contains(className))
+                deletedClassSet.add(DescriptorFactory.createClassDescriptorFromDottedClassName(className));
+        }
+        changedClassSet.addAll(deletedClassSet);
+        if (changedClassSet.isEmpty())
+            return;
+
+        // Classes which couldn't be scanned may refer to anything
+        reportedClassSet.addAll(changedClassSet);
+        reportedClassSet.addAll(unknownReferences);
+        addReferrers(reportedClassSet, changedClassSet, appClassList, referencesMap);
+        addSubtypes(reportedClassSet, changedClassSet, appClassList);
+        reportedClassSet.removeAll(deletedClassSet);
+
+        Set<ClassDescriptor> analyzedClassSet = new HashSet<ClassDescriptor>(reportedClassSet);
+        addReferrers(analyzedClassSet, reportedClassSet, appClassList, referencesMap);
+        addFieldUsers(analyzedClassSet, reportedClassSet, appClassList, referencesMap);
+        for (ClassDescriptor classDescriptor : appClassList) {
+            if (analyzedClassSet.contains(classDescriptor))
+                analyzedClassList.add(classDescriptor);
+        }
+
+        Set<ClassDescriptor> firstPassClassSet = new HashSet<ClassDescriptor>(analyzedClassSet);
+        for (ClassDescriptor classDescriptor : analyzedClassList) {
+            ClassNameAndSuperclassInfo references = referencesMap.get(classDescriptor);
+            if (references != null)
+                firstPassClassSet.addAll(references.getReferencedClassDescriptorList());
+        }
+        addFieldUsers(firstPassClassSet, analyzedClassSet, appClassList, referencesMap);
+        addSupertypes(firstPassClassSet);
+        for (ClassDescriptor classDescriptor : referencedClassSet) {
+            if (firstPassClassSet.contains(classDescriptor))
+                firstPassClassList.add(classDescriptor);
+        }
+    }
+
+    /**
+     * Read the names of the changed classes from a file: one class name per
+     * line, either dotted (<code>java.lang.String</code>), slashed (
+     * <code>java/lang/String</code>) or as a class file name (
+     * <code>java/lang/String.class</code>). Blank lines and lines starting
+     * with '#' are ignored.
+     *
+     * @param file
+     *            the file
+     * @return the dotted class names
+     * @throws IOException
+     */
+    static Set<String> readChangedClassNames(File file) throws IOException {
+        Set<String> result = new LinkedHashSet<String>();
+        BufferedReader in = UTF8.bufferedReader(new FileInputStream(file));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+                if (line.endsWith(".class"))
+                    line = line.substring(0, line.length() - ".class".length());
+                result.add(line.replace('/', '.').replace('\\', '.'));
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    /**
+     * @return the changed application classes, not including the deleted
+     *         classes
+     */
+    List<ClassDescriptor> getChangedClassList() {
+        return Collections.unmodifiableList(changedClassList);
+    }
+
+    /**
+     * @return the application classes for which warnings are reported
+     */
+    Set<ClassDescriptor> getReportedClassSet() {
+        return Collections.unmodifiableSet(reportedClassSet);
+    }
+
+    /**
+     * @return the application classes the reporting passes are applied to,
+     *         in the order of the application class list
+     */
+    List<ClassDescriptor> getAnalyzedClassList() {
+        return analyzedClassList;
+    }
+
+    /**
+     * @return the classes the first pass is applied to, in the order of the
+     *         referenced class set
+     */
+    List<ClassDescriptor> getFirstPassClassList() {
+        return firstPassClassList;
+    }
+
+    private static boolean isChanged(@DottedClassName String className, Collection<String> changedClassNames) {
+        if (changedClassNames.contains(className))
+            return true;
+        int dollar = className.indexOf('$');
+        while (dollar > 0) {
+            if (changedClassNames.contains(className.substring(0, dollar)))
+                return true;
+            dollar = className.indexOf('$', dollar + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Add the application classes referring to one of the given classes.
+     */
+    private static void addReferrers(Set<ClassDescriptor> result, Set<ClassDescriptor> classSet,
+            List<ClassDescriptor> appClassList, Map<ClassDescriptor, ClassNameAndSuperclassInfo> referencesMap) {
+        for (ClassDescriptor classDescriptor : appClassList) {
+            ClassNameAndSuperclassInfo references = referencesMap.get(classDescriptor);
+            if (references != null && intersects(references.getReferencedClassDescriptorList(), classSet))
+                result.add(classDescriptor);
+        }
+    }
+
+    /**
+     * Add the application classes using a field of a class whose fields one
+     * of the given classes uses.
+     */
+    private static void addFieldUsers(Set<ClassDescriptor> result, Set<ClassDescriptor> classSet,
+            List<ClassDescriptor> appClassList, Map<ClassDescriptor, ClassNameAndSuperclassInfo> referencesMap) {
+        Set<ClassDescriptor> fieldClassSet = new HashSet<ClassDescriptor>();
+        for (ClassDescriptor classDescriptor : classSet) {
+            ClassNameAndSuperclassInfo references = referencesMap.get(classDescriptor);
+            if (references != null)
+                fieldClassSet.addAll(references.getFieldClassDescriptorList());
+        }
+        for (ClassDescriptor classDescriptor : appClassList) {
+            ClassNameAndSuperclassInfo references = referencesMap.get(classDescriptor);
+            if (references != null && intersects(references.getFieldClassDescriptorList(), fieldClassSet))
+                result.add(classDescriptor);
+        }
+    }
+
+    private static boolean intersects(Collection<ClassDescriptor> classes, Set<ClassDescriptor> classSet) {
+        for (ClassDescriptor classDescriptor : classes) {
+            if (classSet.contains(classDescriptor))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the application classes which are subtypes of the given classes.
+     */
+    private static void addSubtypes(Set<ClassDescriptor> result, Set<ClassDescriptor> supertypes,
+            List<ClassDescriptor> appClassList) {
+        Set<ClassDescriptor> subtypes = new HashSet<ClassDescriptor>(supertypes);
+        boolean changed;
+        do {
+            changed = false;
+            for (ClassDescriptor classDescriptor : appClassList) {
+                if (subtypes.contains(classDescriptor))
+                    continue;
+                XClass xclass = getXClass(classDescriptor);
+                if (xclass == null)
+                    continue;
+                boolean isSubtype = subtypes.contains(xclass.getSuperclassDescriptor());
+                for (ClassDescriptor iface : xclass.getInterfaceDescriptorList()) {
+                    isSubtype |= subtypes.contains(iface);
+                }
+                if (isSubtype) {
+                    subtypes.add(classDescriptor);
+                    changed = true;
+                }
+            }
+        } while (changed);
+        result.addAll(subtypes);
+    }
+
+    /**
+     * Add the supertypes of the given classes.
+     */
+    private static void addSupertypes(Set<ClassDescriptor> classSet) {
+        List<ClassDescriptor> workList = new ArrayList<ClassDescriptor>(classSet);
+        while (!workList.isEmpty()) {
+            XClass xclass = getXClass(workList.remove(workList.size() - 1));
+            if (xclass == null)
+                continue;
+            ClassDescriptor superclass = xclass.getSuperclassDescriptor();
+            if (superclass != null && classSet.add(superclass))
+                workList.add(superclass);
+            for (ClassDescriptor iface : xclass.getInterfaceDescriptorList()) {
+                if (classSet.add(iface))
+                    workList.add(iface);
+            }
+        }
+    }
+
+    private static XClass getXClass(ClassDescriptor classDescriptor) {
+        try {
+            return Global.getAnalysisCache().getClassAnalysis(XClass.class, classDescriptor);
+        } catch (CheckedAnalysisException e) {
+            // Missing classes have been reported while building the
+            // referenced class set
+            return null;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.JavaClass;
+
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.ICodeBase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
+import edu.umd.cs.findbugs.classfile.analysis.ClassInfo;
+import edu.umd.cs.findbugs.classfile.analysis.ClassNameAndSuperclassInfo;
+import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
+import edu.umd.cs.findbugs.classfile.engine.ClassInfoAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.engine.ClassNameAndSuperclassInfoAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.engine.bcel.JavaClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.impl.AnalysisCache;
+
+/**
+ * Analysis results for library classes, kept from one run of FindBugs2 to the
+ * next.
+ *
+ * <p>
+ * Only results which describe the class file, and not what was learned about
+ * the application, are kept: the XClass, ClassNameAndSuperclassInfo and
+ * JavaClass of classes from non-application archives. A class's results are
+ * reused only if its archive has the same size and modification time as when
+ * they were kept, and the class is still found in that archive first.
+ * </p>
+ *
+ * <p>
+ * The results are handed out by analysis engines which replace those parsing
+ * the class files, so a result is only reused when a run asks for it. Parsing
+ * a class creates ClassDescriptors for the classes it refers to, and the set
+ * of ClassDescriptors decides which classes a run analyzes, so the engines
+ * record the ClassDescriptors obtained while parsing a class, and obtain them
+ * again when its results are reused. Likewise, a reused ClassInfo registers
+ * its bridge methods with the analysis context of the new run, as parsing the
+ * class would have done.
+ * </p>
+ */
+class LibraryClassCache {
+    /** Types of the analysis results which are kept */
+    private static final Class<?>[] KEPT_ANALYSES = { XClass.class, ClassNameAndSuperclassInfo.class, JavaClass.class };
+
+    private static class ArchiveState {
+        final long size;
+
+        final long lastModified;
+
+        ArchiveState(File archive) {
+            this.size = archive.length();
+            this.lastModified = archive.lastModified();
+        }
+
+        boolean isUnchanged(File archive) {
+            return archive.length() == size && archive.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * What is kept about one class.
+     */
+    private static class KeptClass {
+        final String archivePath;
+
+        /** ClassDescriptors obtained while parsing the class */
+        final Set<ClassDescriptor> classDescriptorSet = new HashSet<ClassDescriptor>();
+
+        /** Map of analysis result types to results */
+        final Map<Class<?>, Object> resultMap = new HashMap<Class<?>, Object>();
+
+        KeptClass(String archivePath) {
+            this.archivePath = archivePath;
+        }
+    }
+
+    /**
+     * Engine handing out kept results, or recording the ClassDescriptors
+     * obtained while another engine computes them.
+     */
+    private class KeptResultEngine<E> implements IClassAnalysisEngine<E> {
+        private final Class<E> resultType;
+
+        private final IClassAnalysisEngine<E> engine;
+
+        KeptResultEngine(Class<E> resultType, IClassAnalysisEngine<E> engine) {
+            this.resultType = resultType;
+            this.engine = engine;
+        }
+
+        public E analyze(IAnalysisCache analysisCache, ClassDescriptor descriptor) throws CheckedAnalysisException {
+            KeptClass kept = reusableClassMap.get(descriptor);
+            if (kept != null && kept.resultMap.containsKey(resultType)) {
+                DescriptorFactory descriptorFactory = DescriptorFactory.instance();
+                for (ClassDescriptor d : kept.classDescriptorSet) {
+                    descriptorFactory.getClassDescriptor(d.getClassName());
+                }
+                Object result = kept.resultMap.get(resultType);
+                if (result instanceof ClassInfo) {
+                    ((ClassInfo) result).registerBridgeMethods();
+                } else if (result instanceof JavaClass) {
+                    // The JavaClass was loaded from an earlier run's
+                    // repository
+                    ((JavaClass) result).setRepository(Repository.getRepository());
+                }
+                reusedClassSet.add(descriptor);
+                return resultType.cast(result);
+            }
+
+            Set<ClassDescriptor> recorded = new HashSet<ClassDescriptor>();
+            Set<ClassDescriptor> previous = DescriptorFactory.recordClassDescriptors(recorded);
+            try {
+                return engine.analyze(analysisCache, descriptor);
+            } finally {
+                DescriptorFactory.recordClassDescriptors(previous);
+                Set<ClassDescriptor> existing = recordedDescriptorMap.putIfAbsent(descriptor, Collections
+                        .synchronizedSet(recorded));
+                if (existing != null) {
+                    existing.addAll(recorded);
+                }
+            }
+        }
+
+        public void registerWith(IAnalysisCache analysisCache) {
+            analysisCache.registerClassAnalysisEngine(resultType, this);
+        }
+
+        public boolean canRecompute() {
+            return engine.canRecompute();
+        }
+    }
+
+    /** Map of archive paths to their state when results were kept */
+    private final Map<String, ArchiveState> archiveMap = new HashMap<String, ArchiveState>();
+
+    private final Map<ClassDescriptor, KeptClass> keptClassMap = new HashMap<ClassDescriptor, KeptClass>();
+
+    private MethodInfo.CacheEntries methodCacheEntries;
+
+    /** Kept classes whose results may be reused by the current run */
+    private final Map<ClassDescriptor, KeptClass> reusableClassMap = new HashMap<ClassDescriptor, KeptClass>();
+
+    /** Kept classes whose results were reused by the current run */
+    private final Set<ClassDescriptor> reusedClassSet = Collections.synchronizedSet(new HashSet<ClassDescriptor>());
+
+    /** ClassDescriptors obtained while parsing classes in the current run */
+    private final ConcurrentMap<ClassDescriptor, Set<ClassDescriptor>> recordedDescriptorMap = new ConcurrentHashMap<ClassDescriptor, Set<ClassDescriptor>>();
+
+    /**
+     * Register the engines handing out kept results with the analysis cache
+     * of a new run.
+     *
+     * @param analysisCache
+     *            the analysis cache, with the built-in engines registered
+     */
+    void registerWith(IAnalysisCache analysisCache) {
+        new KeptResultEngine<XClass>(XClass.class, new ClassInfoAnalysisEngine()).registerWith(analysisCache);
+        new KeptResultEngine<ClassNameAndSuperclassInfo>(ClassNameAndSuperclassInfo.class,
+                new ClassNameAndSuperclassInfoAnalysisEngine()).registerWith(analysisCache);
+        new KeptResultEngine<JavaClass>(JavaClass.class, new JavaClassAnalysisEngine()).registerWith(analysisCache);
+    }
+
+    /**
+     * Decide which kept results the new run may reuse. The results of a class
+     * are reused if its archive is unchanged and it is still found in that
+     * archive.
+     *
+     * @param classPath
+     *            the classpath of the new run, already built
+     * @return number of classes whose results may be reused
+     */
+    int restore(IClassPath classPath) {
+        reusableClassMap.clear();
+        reusedClassSet.clear();
+        recordedDescriptorMap.clear();
+
+        Set<String> unchangedArchiveSet = new HashSet<String>();
+        for (Map.Entry<String, ArchiveState> e : archiveMap.entrySet()) {
+            if (e.getValue().isUnchanged(new File(e.getKey()))) {
+                unchangedArchiveSet.add(e.getKey());
+            }
+        }
+        for (Map.Entry<ClassDescriptor, KeptClass> e : keptClassMap.entrySet()) {
+            KeptClass kept = e.getValue();
+            if (!unchangedArchiveSet.contains(kept.archivePath)) {
+                continue;
+            }
+            try {
+                ICodeBase codeBase = classPath.lookupResource(e.getKey().toResourceName()).getCodeBase();
+                if (!codeBase.isApplicationCodeBase() && kept.archivePath.equals(codeBase.getPathName())) {
+                    reusableClassMap.put(e.getKey(), kept);
+                }
+            } catch (ResourceNotFoundException ex) {
+                // No longer on the classpath
+            }
+        }
+        if (methodCacheEntries != null) {
+            MethodInfo.restoreCacheEntries(methodCacheEntries);
+        }
+        return reusableClassMap.size();
+    }
+
+    /**
+     * @return number of classes whose kept results the current run reused
+     */
+    int getNumReusedClasses() {
+        return reusedClassSet.size();
+    }
+
+    /**
+     * Keep the results for library classes from the analysis cache of a run,
+     * replacing those kept before. Must be called before the caches of
+     * MethodInfo are cleared.
+     *
+     * @param analysisCache
+     *            the analysis cache of the run
+     */
+    void save(AnalysisCache analysisCache) {
+        Map<ClassDescriptor, KeptClass> previousMap = new HashMap<ClassDescriptor, KeptClass>(reusableClassMap);
+        archiveMap.clear();
+        keptClassMap.clear();
+        reusableClassMap.clear();
+        methodCacheEntries = null;
+
+        Map<ClassDescriptor, Object> xclassMap = analysisCache.getClassAnalysis(XClass.class);
+        if (xclassMap == null) {
+            return;
+        }
+        List<XMethod> methodList = new ArrayList<XMethod>();
+        for (Map.Entry<ClassDescriptor, Object> e : xclassMap.entrySet()) {
+            if (!(e.getValue() instanceof ClassNameAndSuperclassInfo)) {
+                continue;
+            }
+            ICodeBaseEntry codeBaseEntry = ((ClassNameAndSuperclassInfo) e.getValue()).getCodeBaseEntry();
+            if (codeBaseEntry == null) {
+                continue;
+            }
+            ICodeBase codeBase = codeBaseEntry.getCodeBase();
+            String path = codeBase.getPathName();
+            if (codeBase.isApplicationCodeBase() || path == null) {
+                continue;
+            }
+            if (!archiveMap.containsKey(path)) {
+                File archive = new File(path);
+                if (!archive.isFile()) {
+                    // A directory's modification time doesn't tell whether
+                    // its classes changed
+                    continue;
+                }
+                archiveMap.put(path, new ArchiveState(archive));
+            }
+
+            KeptClass kept = new KeptClass(path);
+            KeptClass previous = previousMap.get(e.getKey());
+            if (previous != null) {
+                kept.classDescriptorSet.addAll(previous.classDescriptorSet);
+                kept.resultMap.putAll(previous.resultMap);
+            }
+            Set<ClassDescriptor> recorded = recordedDescriptorMap.get(e.getKey());
+            if (recorded != null) {
+                kept.classDescriptorSet.addAll(recorded);
+            }
+            keptClassMap.put(e.getKey(), kept);
+            methodList.addAll(((XClass) e.getValue()).getXMethods());
+        }
+
+        for (Class<?> analysisClass : KEPT_ANALYSES) {
+            Map<ClassDescriptor, Object> resultMap = analysisCache.getClassAnalysis(analysisClass);
+            if (resultMap == null) {
+                continue;
+            }
+            for (Map.Entry<ClassDescriptor, Object> e : resultMap.entrySet()) {
+                KeptClass kept = keptClassMap.get(e.getKey());
+                if (kept != null && analysisClass.isInstance(e.getValue())) {
+                    kept.resultMap.put(analysisClass, e.getValue());
+                }
+            }
+        }
+        methodCacheEntries = MethodInfo.saveCacheEntries(methodList);
+        reusedClassSet.clear();
+        recordedDescriptorMap.clear();
+    }
+}
@@ -23,6 +23,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableSet;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -87,6 +88,8 @@ public class SAXBugCollectionHandler extends DefaultHandler {
 
     private final BugCollection bugCollection;
 
+    private final @CheckForNull BugInstanceSink bugInstanceSink;
+
     private final Project project;
 
     private final Stack<CompoundMatcher> matcherStack = new Stack<CompoundMatcher>();
@@ -119,9 +122,10 @@ public class SAXBugCollectionHandler extends DefaultHandler {
     private String cloudPropertyKey;
 
     private SAXBugCollectionHandler(String topLevelName, BugCollection bugCollection, Project project,
-            @CheckForNull File base) {
+            @CheckForNull File base, @CheckForNull BugInstanceSink bugInstanceSink) {
         this.topLevelName = topLevelName;
         this.bugCollection = bugCollection;
+        this.bugInstanceSink = bugInstanceSink;
         this.project = project;
 
         this.elementStack = new ArrayList<String>();
@@ -132,19 +136,29 @@ public class SAXBugCollectionHandler extends DefaultHandler {
     }
 
     public SAXBugCollectionHandler(BugCollection bugCollection, @CheckForNull File base) {
-        this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), base);
+        this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), base, null);
+    }
+
+    /**
+     * Create a handler which passes the BugInstances to the given sink
+     * instead of adding them to the BugCollection. The BugCollection gets
+     * everything else, and its statistics count the BugInstances as if they
+     * had been added.
+     */
+    public SAXBugCollectionHandler(BugCollection bugCollection, @CheckForNull File base, BugInstanceSink bugInstanceSink) {
+        this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), base, bugInstanceSink);
     }
 
     public SAXBugCollectionHandler(BugCollection bugCollection) {
-        this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), null);
+        this(BUG_COLLECTION, bugCollection, bugCollection.getProject(), null, null);
     }
 
     public SAXBugCollectionHandler(Project project, File base) {
-        this(PROJECT, null, project, base);
+        this(PROJECT, null, project, base, null);
     }
 
     public SAXBugCollectionHandler(Filter filter, File base) {
-        this(FIND_BUGS_FILTER, null, null, base);
+        this(FIND_BUGS_FILTER, null, null, base, null);
         this.filter = filter;
         pushCompoundMatcher(filter);
     }
@@ -696,7 +710,10 @@ public class SAXBugCollectionHandler extends DefaultHandler {
                 matcherStack.pop();
             } else if (outerElement.equals(BUG_COLLECTION)) {
                 if (qName.equals("BugInstance")) {
-                    bugCollection.add(bugInstance, false);
+                    if (bugInstanceSink == null)
+                        bugCollection.add(bugInstance, false);
+                    else
+                        passToSink(bugInstance);
                 }
             } else if (outerElement.equals(PROJECT)) {
                 if (qName.equals("Jar"))
@@ -748,6 +765,16 @@ public class SAXBugCollectionHandler extends DefaultHandler {
         elementStack.remove(elementStack.size() - 1);
     }
 
+    private void passToSink(BugInstance bugInstance) throws SAXException {
+        if (!bugInstance.isDead())
+            bugCollection.getProjectStats().addBug(bugInstance);
+        try {
+            bugInstanceSink.handleBugInstance(bugInstance);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
     private String makeAbsolute(String possiblyRelativePath) {
         if (possiblyRelativePath.contains("://") || possiblyRelativePath.startsWith("http:")
                 || possiblyRelativePath.startsWith("https:") || possiblyRelativePath.startsWith("file:"))
@@ -271,11 +271,27 @@ public class SortedBugCollection implements BugCollection {
      *            the file
      */
     public void readXML(File file) throws IOException, DocumentException {
+        readXML(file, null);
+    }
+
+    /**
+     * Read XML data from given file, populating given Project as a side
+     * effect. If a sink is given, the BugInstances are passed to it as they
+     * are read, instead of being added to this object, so that files of any
+     * size can be processed; everything else is read into this object.
+     *
+     * @param file
+     *            the file
+     * @param sink
+     *            the sink for the BugInstances, or null to add them to this
+     *            object
+     */
+    public void readXML(File file, @CheckForNull BugInstanceSink sink) throws IOException, DocumentException {
         project.setCurrentWorkingDirectory(file.getParentFile());
         dataSource = file.getAbsolutePath();
         InputStream in = progessMonitoredInputStream(file, "Loading analysis");
         try {
-            readXML(in, file);
+            readXML(in, file, sink);
         } catch (IOException e) {
             throw newIOException(file, e);
         } catch (DocumentException e) {
@@ -315,8 +331,27 @@ public class SortedBugCollection implements BugCollection {
      *            the InputStream
      */
     public void readXML(@WillClose InputStream in, File base) throws IOException, DocumentException {
+        readXML(in, base, null);
+    }
+
+    /**
+     * Read XML data from given input stream, populating the Project as a side
+     * effect. An attempt will be made to close the input stream (even if an
+     * exception is thrown).
+     *
+     * @param in
+     *            the InputStream
+     * @param base
+     *            the file the data is read from, if any
+     * @param sink
+     *            the sink for the BugInstances, or null to add them to this
+     *            object
+     * @see #readXML(File, BugInstanceSink)
+     */
+    public void readXML(@WillClose InputStream in, @CheckForNull File base, @CheckForNull BugInstanceSink sink)
+            throws IOException, DocumentException {
         try {
-            doReadXML(in, base);
+            doReadXML(in, base, sink);
         } finally {
             in.close();
         }
@@ -325,20 +360,21 @@ public class SortedBugCollection implements BugCollection {
     public void readXML(@WillClose InputStream in) throws IOException, DocumentException {
         assert project != null;
         assert in != null;
-        doReadXML(in, null);
+        doReadXML(in, null, null);
     }
 
     public void readXML(@WillClose Reader reader) throws IOException, DocumentException {
         assert project != null;
         assert reader != null;
-        doReadXML(reader, null);
+        doReadXML(reader, null, null);
     }
 
-    private void doReadXML(@WillClose InputStream in, @CheckForNull File base) throws IOException, DocumentException {
+    private void doReadXML(@WillClose InputStream in, @CheckForNull File base, @CheckForNull BugInstanceSink sink)
+            throws IOException, DocumentException {
         try {
             checkInputStream(in);
             Reader reader = Util.getReader(in);
-            doReadXML(reader, base);
+            doReadXML(reader, base, sink);
         } catch (RuntimeException e) {
             in.close();
             throw e;
@@ -349,10 +385,12 @@ public class SortedBugCollection implements BugCollection {
 
     }
 
-    private void doReadXML(@WillClose Reader reader, @CheckForNull File base) throws IOException, DocumentException {
+    private void doReadXML(@WillClose Reader reader, @CheckForNull File base, @CheckForNull BugInstanceSink sink)
+            throws IOException, DocumentException {
         timeStartedLoading = System.currentTimeMillis();
 
-        SAXBugCollectionHandler handler = new SAXBugCollectionHandler(this, base);
+        SAXBugCollectionHandler handler = sink == null ? new SAXBugCollectionHandler(this, base)
+                : new SAXBugCollectionHandler(this, base, sink);
         Profiler profiler = getProjectStats().getProfiler();
         profiler.start(handler.getClass());
         try {
@@ -374,6 +412,9 @@ public class SortedBugCollection implements BugCollection {
                         + base, e);
             throw new DocumentException("Parse error at line " + e.getLineNumber() + " : " + e.getColumnNumber(), e);
         } catch (SAXException e) {
+            if (e.getException() instanceof IOException)
+                // Thrown by the sink
+                throw (IOException) e.getException();
             // FIXME: throw SAXException from method?
             if (base != null)
                 throw new DocumentException("Sax error while parsing " + base, e);
@@ -1005,6 +1046,23 @@ public class SortedBugCollection implements BugCollection {
     }
 
     public boolean add(BugInstance bugInstance, boolean updateActiveTime) {
+        accountFor(bugInstance, updateActiveTime);
+        return bugSet.add(bugInstance);
+    }
+
+    /**
+     * Do everything add() does except adding the BugInstance: set its first
+     * version, and count it in the project statistics. For writers which keep
+     * the BugInstances of the collection elsewhere.
+     *
+     * @param bugInstance
+     *            the BugInstance
+     */
+    public void accountFor(BugInstance bugInstance) {
+        accountFor(bugInstance, bugInstance.getFirstVersion() == 0L && bugInstance.getLastVersion() == 0L);
+    }
+
+    private void accountFor(BugInstance bugInstance, boolean updateActiveTime) {
         assert !bugsPopulated;
         if (bugsPopulated)
             AnalysisContext.logError("Bug collection marked as populated, but bugs added", new RuntimeException());
@@ -1016,7 +1074,13 @@ public class SortedBugCollection implements BugCollection {
         invalidateHashes();
         if (!bugInstance.isDead())
             projectStats.addBug(bugInstance);
-        return bugSet.add(bugInstance);
+    }
+
+    /**
+     * @return the order of the BugInstances in the collection
+     */
+    public Comparator<BugInstance> getComparator() {
+        return comparator;
     }
 
     private void invalidateHashes() {
@@ -0,0 +1,126 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.WillCloseWhenClosed;
+
+import edu.umd.cs.findbugs.xml.OutputStreamXMLOutput;
+import edu.umd.cs.findbugs.xml.XMLOutput;
+
+/**
+ * Write a bug collection XML file without keeping the BugInstances in memory.
+ * The project and the attributes of the collection are written from a
+ * SortedBugCollection when the writer is created, the BugInstances as they
+ * are passed to handleBugInstance(), and the errors, statistics and history
+ * from the SortedBugCollection when finish() is called. So the caller may
+ * still update the statistics of the collection (e.g., count the BugInstances
+ * written) until then.
+ *
+ * <p>
+ * The BugInstances are written in the order in which they are passed, not
+ * sorted. Messages can't be written, since the bug patterns to describe are
+ * computed from the BugInstances of the collection.
+ * </p>
+ */
+public class StreamingBugCollectionWriter implements BugInstanceSink {
+    private final SortedBugCollection collection;
+
+    private final XMLOutput xmlOutput;
+
+    /**
+     * Constructor.
+     *
+     * @param collection
+     *            the SortedBugCollection providing everything except the
+     *            BugInstances
+     * @param out
+     *            the OutputStream to write to; it is closed by finish()
+     */
+    public StreamingBugCollectionWriter(SortedBugCollection collection, @WillCloseWhenClosed OutputStream out)
+            throws IOException {
+        this(collection, new OutputStreamXMLOutput(out));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param collection
+     *            the SortedBugCollection providing everything except the
+     *            BugInstances
+     * @param out
+     *            the Writer to write to; it is closed by finish()
+     */
+    public StreamingBugCollectionWriter(SortedBugCollection collection, @WillCloseWhenClosed Writer out)
+            throws IOException {
+        this(collection, new OutputStreamXMLOutput(out));
+    }
+
+    private StreamingBugCollectionWriter(SortedBugCollection collection, XMLOutput xmlOutput) throws IOException {
+        if (collection.getWithMessages())
+            throw new IllegalArgumentException("Can't stream a bug collection with messages");
+        this.collection = collection;
+        // The statistics are only complete after the last BugInstance
+        collection.earlyStats = false;
+        this.xmlOutput = xmlOutput;
+        collection.writePrologue(xmlOutput);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param collection
+     *            the SortedBugCollection providing everything except the
+     *            BugInstances
+     * @param fileName
+     *            the file to write to, gzipped if its name ends in .gz
+     */
+    public StreamingBugCollectionWriter(SortedBugCollection collection, String fileName) throws IOException {
+        this(collection, openFile(fileName));
+    }
+
+    private static OutputStream openFile(String fileName) throws IOException {
+        OutputStream out = new FileOutputStream(fileName);
+        if (fileName.endsWith(".gz"))
+            out = new GZIPOutputStream(out);
+        return out;
+    }
+
+    public void handleBugInstance(BugInstance bugInstance) throws IOException {
+        if (!collection.isApplySuppressions() || !collection.getProject().getSuppressionFilter().match(bugInstance))
+            bugInstance.writeXML(xmlOutput, collection, false);
+    }
+
+    /**
+     * Write the rest of the collection, and close the output.
+     */
+    public void finish() throws IOException {
+        try {
+            collection.writeEpilogue(xmlOutput);
+        } finally {
+            xmlOutput.finish();
+        }
+    }
+}
@@ -39,7 +39,6 @@ import javax.annotation.Nonnull;
 
 import org.dom4j.DocumentException;
 
-import edu.umd.cs.findbugs.annotations.SuppressWarnings;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.config.UserPreferences;
 import edu.umd.cs.findbugs.filter.FilterException;
@@ -109,6 +108,16 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean noClassOk = false;
 
+    private int numThreads = 1;
+
+    private String incrementalCacheDir = null;
+
+    private String metricsFile = null;
+
+    private String changedClassesFile = null;
+
+    private int maxBugsInMemory = 0;
+
     private int priorityThreshold = Detector.LOW_PRIORITY;
 
     private int rankThreshold = SystemProperties.getInt("findbugs.maxRank", 20);
@@ -139,6 +148,8 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
     private boolean printVersion;
 
+    private boolean showPlugins;
+
     /**
      * Constructor.
      */
@@ -161,6 +172,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
         addOption("-maxRank", "rank", "only report issues with a bug rank at least as scary as that provided");
         addSwitch("-sortByClass", "sort warnings by class");
         addSwitchWithOptionalExtraPart("-xml", "withMessages", "XML output (optionally with messages)");
+        addOption("-maxBugsInMemory", "n", "sort XML output warnings on disk beyond n warnings (not with messages)");
         addSwitch("-xdocs", "xdoc XML output to use with Apache Maven");
         addSwitchWithOptionalExtraPart("-html", "stylesheet", "Generate HTML output (default stylesheet is default.xsl)");
         addSwitch("-emacs", "Use emacs reporting format");
@@ -199,6 +211,10 @@ public class TextUICommandLine extends FindBugsCommandLine {
         addOption("-sourcepath", "source path", "set source path for analyzed classes");
         addSwitch("-exitcode", "set exit code of process");
         addSwitch("-noClassOk", "output empty warning file if no classes are specified");
+        addOption("-threads", "n", "number of threads used to scan and analyze classes (default 1)");
+        addOption("-incrementalCache", "dir", "reuse results for unchanged classes cached in given directory");
+        addOption("-metrics", "file", "write analysis timings and cache statistics as CSV to given file");
+        addOption("-changedClasses", "file", "only analyze classes listed in given file and classes depending on them");
         addSwitch("-xargs", "get list of classfiles/jarfiles from standard input rather than command line");
         addOption("-cloud", "id", "set cloud id");
         addOption("-cloudProperty", "key=value", "set cloud property");
@@ -240,9 +256,12 @@ public class TextUICommandLine extends FindBugsCommandLine {
         return printVersion;
     }
 
+    public boolean justShowPlugins() {
+        return showPlugins;
+    }
+
     Map<String, String> parsedOptions = new LinkedHashMap<String, String>();
 
-    @SuppressWarnings("DM_EXIT")
     @Override
     protected void handleOption(String option, String optionExtraPart) {
         parsedOptions.put(option, optionExtraPart);
@@ -270,7 +289,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
             if (count == 0) {
                 System.out.println("  No plugins are available (FindBugs installed incorrectly?)");
             }
-            System.exit(0);
+            showPlugins = true;
         } else if (option.equals("-experimental"))
             priorityThreshold = Detector.EXP_PRIORITY;
         else if (option.equals("-longBugCodes"))
@@ -358,7 +377,6 @@ public class TextUICommandLine extends FindBugsCommandLine {
     }
 
     protected @CheckForNull File outputFile;
-    @SuppressWarnings("DM_EXIT")
     @Override
     protected void handleOptionWithArgument(String option, String argument) throws IOException {
         parsedOptions.put(option, argument);
@@ -382,8 +400,7 @@ public class TextUICommandLine extends FindBugsCommandLine {
                     oStream = new GZIPOutputStream(oStream);
                 outputStream = UTF8.printStream(oStream);
             } catch (IOException e) {
-                System.err.println("Couldn't open " + outputFile + " for output: " + e.toString());
-                System.exit(1);
+                throw new IllegalArgumentException("Couldn't open " + outputFile + " for output: " + e.toString());
             }
         } else if (option.equals("-cloud"))
             project.setCloudId(argument);
@@ -407,6 +424,20 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         } else if (option.equals("-maxRank")) {
             this.rankThreshold = Integer.parseInt(argument);
+        } else if (option.equals("-threads")) {
+            this.numThreads = Integer.parseInt(argument);
+            if (numThreads < 1)
+                throw new IllegalArgumentException("Number of threads must be at least 1: " + argument);
+        } else if (option.equals("-incrementalCache")) {
+            this.incrementalCacheDir = argument;
+        } else if (option.equals("-metrics")) {
+            this.metricsFile = argument;
+        } else if (option.equals("-changedClasses")) {
+            this.changedClassesFile = argument;
+        } else if (option.equals("-maxBugsInMemory")) {
+            this.maxBugsInMemory = Integer.parseInt(argument);
+            if (maxBugsInMemory < 1)
+                throw new IllegalArgumentException("Maximum number of warnings in memory must be at least 1: " + argument);
         } else if (option.equals("-projectName")) {
             this.projectName = argument;
         } else if (option.equals("-release")) {
@@ -594,6 +625,11 @@ public class TextUICommandLine extends FindBugsCommandLine {
             XMLBugReporter xmlBugReporter = new XMLBugReporter(project);
             xmlBugReporter.setAddMessages(xmlWithMessages);
             xmlBugReporter.setMinimalXML(xmlMinimal);
+            if (maxBugsInMemory > 0) {
+                if (xmlWithMessages)
+                    throw new IllegalArgumentException("-maxBugsInMemory can't be used with -xml:withMessages");
+                xmlBugReporter.setMaxBugsInMemory(maxBugsInMemory);
+            }
 
             textuiBugReporter = xmlBugReporter;
         }
@@ -659,6 +695,10 @@ public class TextUICommandLine extends FindBugsCommandLine {
 
         findBugs.setScanNestedArchives(scanNestedArchives);
         findBugs.setNoClassOk(noClassOk);
+        findBugs.setNumThreads(numThreads);
+        findBugs.setIncrementalCacheDir(incrementalCacheDir);
+        findBugs.setMetricsFile(metricsFile);
+        findBugs.setChangedClassesFile(changedClassesFile);
 
         findBugs.setBugReporterDecorators(enabledBugReporterDecorators, disabledBugReporterDecorators);
         if (applySuppression) {
@@ -28,6 +28,9 @@ import java.io.IOException;
  */
 public class XMLBugReporter extends BugCollectionBugReporter {
 
+    /** Sorts the warnings if they aren't all kept in memory; null otherwise */
+    private ExternalBugSorter externalBugSorter;
+
     public XMLBugReporter(Project project) {
         super(project);
     }
@@ -36,6 +39,34 @@ public class XMLBugReporter extends BugCollectionBugReporter {
         getBugCollection().setWithMessages(enable);
     }
 
+    /**
+     * Keep at most given number of warnings in memory. The warnings are
+     * sorted in temporary files instead of the bug collection, and merged
+     * into the XML output by finish(), which is the same except that the
+     * summary always follows the warnings. Messages can't be added to the
+     * output in this mode. Must be called before any warning is reported.
+     *
+     * @param maxBugsInMemory
+     *            maximum number of warnings kept in memory
+     */
+    public void setMaxBugsInMemory(int maxBugsInMemory) {
+        if (getBugCollection().getWithMessages())
+            throw new IllegalStateException("Can't add messages to warnings which are not kept in memory");
+        externalBugSorter = new ExternalBugSorter(getBugCollection().getComparator(), maxBugsInMemory);
+    }
+
+    @Override
+    protected boolean addBug(BugInstance bugInstance) {
+        if (externalBugSorter == null)
+            return super.addBug(bugInstance);
+        getBugCollection().accountFor(bugInstance);
+        try {
+            return externalBugSorter.add(bugInstance);
+        } catch (IOException e) {
+            throw new FatalException("Error writing warnings to temporary file: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public void finish() {
         try {
@@ -43,11 +74,20 @@ public class XMLBugReporter extends BugCollectionBugReporter {
             if (project == null)
                 throw new NullPointerException("No project");
             getBugCollection().bugsPopulated();
-            getBugCollection().writeXML(outputStream);
+            if (externalBugSorter != null) {
+                StreamingBugCollectionWriter writer = new StreamingBugCollectionWriter(getBugCollection(), outputStream);
+                externalBugSorter.writeSorted(writer);
+                writer.finish();
+            } else {
+                getBugCollection().writeXML(outputStream);
+            }
             outputStream.close();
 
         } catch (IOException e) {
             throw new FatalException("Error writing XML output: " + e.getMessage(), e);
+        } finally {
+            if (externalBugSorter != null)
+                externalBugSorter.deleteRuns();
         }
     }
 
@@ -19,6 +19,7 @@
 
 package edu.umd.cs.findbugs.ba;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
 
@@ -26,6 +27,7 @@ import javax.annotation.CheckForNull;
 
 import org.apache.bcel.generic.InstructionHandle;
 
+import edu.umd.cs.findbugs.SystemProperties;
 
 /**
  * A dataflow analysis to compute dominator relationships between basic blocks.
@@ -35,6 +37,14 @@ import org.apache.bcel.generic.InstructionHandle;
  * IDs of basic blocks.
  * <p/>
  * <p>
+ * The relationships may be computed either by running a {@link Dataflow} on
+ * the analysis, or, which is much faster on large methods, by calling
+ * {@link #computeDominatorTree()}. In the latter case the dominator sets are
+ * built from a {@link DominatorTree} when they are asked for, and
+ * {@link #getAllDominatedBy(BasicBlock)} doesn't look at them at all.
+ * </p>
+ * <p/>
+ * <p>
  * Subclasses extend this class to compute either dominators or postdominators.
  * <p/>
  * <p>
@@ -48,10 +58,18 @@ import org.apache.bcel.generic.InstructionHandle;
  * @see BasicBlock
  */
 public abstract class AbstractDominatorsAnalysis extends BasicAbstractDataflowAnalysis<BitSet> {
+    /** Check the dominator tree against the dataflow analysis */
+    private static final boolean VERIFY_DOMINATOR_TREE = SystemProperties.getBoolean("dominators.verify");
+
     private final CFG cfg;
 
     private EdgeChooser edgeChooser;
 
+    private DominatorTree dominatorTree;
+
+    /** Dominator sets built from the dominator tree, by block label */
+    private BitSet[] dominatorSets;
+
     /**
      * Constructor.
      * 
@@ -136,6 +154,93 @@ public abstract class AbstractDominatorsAnalysis extends BasicAbstractDataflowAn
             result.and(fact);
     }
 
+    /**
+     * Compute the dominator relationships with a {@link DominatorTree}, instead
+     * of running a {@link Dataflow} on this analysis.
+     *
+     * @throws DataflowAnalysisException
+     *             if the dominators.verify property is set, and the dataflow
+     *             analysis fails
+     */
+    public void computeDominatorTree() throws DataflowAnalysisException {
+        if (VERIFY_DOMINATOR_TREE) {
+            new Dataflow<BitSet, AbstractDominatorsAnalysis>(cfg, this).execute();
+        }
+        dominatorSets = new BitSet[cfg.getNumVertexLabels()];
+        dominatorTree = new DominatorTree(cfg, isForwards(), edgeChooser);
+        if (VERIFY_DOMINATOR_TREE) {
+            for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+                BasicBlock block = i.next();
+                if (!super.getResultFact(block).equals(getResultFact(block))) {
+                    throw new IllegalStateException("Dominator tree differs from dataflow for block " + block.getLabel()
+                            + " of " + cfg.getMethodName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the dominator tree computed by {@link #computeDominatorTree()}.
+     *
+     * @return the dominator tree, or null if the dominators were computed by a
+     *         Dataflow
+     */
+    public @CheckForNull
+    DominatorTree getDominatorTree() {
+        return dominatorTree;
+    }
+
+    @Override
+    public BitSet getResultFact(BasicBlock block) {
+        if (dominatorTree == null) {
+            return super.getResultFact(block);
+        }
+        BitSet result = dominatorSets[block.getLabel()];
+        if (result != null) {
+            return result;
+        }
+        if (!dominatorTree.isReachable(block)) {
+            result = createFact();
+            makeFactTop(result);
+            dominatorSets[block.getLabel()] = result;
+            return result;
+        }
+
+        // Go up the tree to the first block whose set is known, then build
+        // the sets on the way back down, each from the one of the immediate
+        // dominator
+        ArrayList<BasicBlock> path = new ArrayList<BasicBlock>();
+        BasicBlock b = block;
+        while (b != null && dominatorSets[b.getLabel()] == null) {
+            path.add(b);
+            b = dominatorTree.getImmediateDominator(b);
+        }
+        BitSet dominators = b != null ? dominatorSets[b.getLabel()] : null;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            b = path.get(i);
+            result = dominators != null ? (BitSet) dominators.clone() : createFact();
+            result.set(b.getLabel());
+            dominatorSets[b.getLabel()] = result;
+            dominators = result;
+        }
+        return result;
+    }
+
+    @Override
+    public BitSet getStartFact(BasicBlock block) {
+        if (dominatorTree == null) {
+            return super.getStartFact(block);
+        }
+        // The dominators of the logical predecessors, i.e. the strict
+        // dominators
+        BitSet start = createFact();
+        copy(getResultFact(block), start);
+        if (!isTop(start)) {
+            start.clear(block.getLabel());
+        }
+        return start;
+    }
+
     /**
      * Get a bitset containing the unique IDs of all blocks which dominate (or
      * postdominate) the given block.
@@ -159,6 +264,9 @@ public abstract class AbstractDominatorsAnalysis extends BasicAbstractDataflowAn
      * @return BitSet of the ids of all blocks dominated by the given block
      */
     public BitSet getAllDominatedBy(BasicBlock dominator) {
+        if (dominatorTree != null) {
+            return dominatorTree.getAllDominatedBy(dominator);
+        }
         BitSet allDominated = new BitSet();
         for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
             BasicBlock block = i.next();
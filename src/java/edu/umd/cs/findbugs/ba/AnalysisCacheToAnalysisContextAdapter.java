@@ -22,6 +22,7 @@ package edu.umd.cs.findbugs.ba;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -475,8 +476,10 @@ public class AnalysisCacheToAnalysisContextAdapter extends AnalysisContext {
         bridgeFrom.put(to, from);
     }
 
-    final Map<MethodInfo, MethodInfo> bridgeTo = new IdentityHashMap<MethodInfo, MethodInfo>();
+    // Synchronized, since classes may be parsed by several threads at once
 
-    final Map<MethodInfo, MethodInfo> bridgeFrom = new IdentityHashMap<MethodInfo, MethodInfo>();
+    final Map<MethodInfo, MethodInfo> bridgeTo = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, MethodInfo>());
+
+    final Map<MethodInfo, MethodInfo> bridgeFrom = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, MethodInfo>());
 
 }
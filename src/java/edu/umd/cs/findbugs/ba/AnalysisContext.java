@@ -440,11 +440,23 @@ public abstract class AnalysisContext {
         return getSubtypes2().isApplicationClass(desc);
     }
 
+    /**
+     * Get the size of a class file, in bytes.
+     *
+     * @param desc
+     *            the class
+     * @return the size of the class file
+     */
     public int getClassSize(ClassDescriptor desc) {
         IAnalysisCache analysisCache = Global.getAnalysisCache();
 
         try {
-            ClassContext classContext = analysisCache.getClassAnalysis(ClassContext.class, desc);
+            // Zip codebases know the size of their entries without reading
+            // them
+            int numBytes = analysisCache.getClassPath().lookupResource(desc.toResourceName()).getNumBytes();
+            if (numBytes >= 0) {
+                return numBytes;
+            }
             ClassData classData = analysisCache.getClassAnalysis(ClassData.class, desc);
             return classData.getData().length;
 
@@ -452,7 +464,7 @@ public abstract class AnalysisContext {
             AnalysisContext.logError("Error getting class data for " + desc, e);
             return 10000;
         } catch (CheckedAnalysisException e) {
-            AnalysisContext.logError("Could not get class context for "  + desc, e);
+            AnalysisContext.logError("Could not get class data for " + desc, e);
             return 10000;
         }
 
@@ -19,9 +19,9 @@
 
 package edu.umd.cs.findbugs.ba;
 
-import java.util.IdentityHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
 
 import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefAnalysis;
 import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
@@ -38,23 +38,32 @@ import edu.umd.cs.findbugs.ba.deref.UnconditionalValueDerefSet;
  * @author David Hovemeyer
  */
 public abstract class BasicAbstractDataflowAnalysis<Fact> implements DataflowAnalysis<Fact> {
-    private IdentityHashMap<BasicBlock, Fact> startFactMap;
+    /** Start facts, indexed by block label */
+    private Object[] startFacts;
 
-    private IdentityHashMap<BasicBlock, Fact> resultFactMap;
+    /** Result facts, indexed by block label */
+    private Object[] resultFacts;
 
     /**
      * Constructor.
      */
     public BasicAbstractDataflowAnalysis() {
-        this.startFactMap = new IdentityHashMap<BasicBlock, Fact>();
-        this.resultFactMap = new IdentityHashMap<BasicBlock, Fact>();
+        this.startFacts = new Object[16];
+        this.resultFacts = new Object[16];
     }
 
     /**
      * Get an iterator over the result facts.
      */
+    @SuppressWarnings("unchecked")
     public Iterator<Fact> resultFactIterator() {
-        return resultFactMap.values().iterator();
+        ArrayList<Fact> result = new ArrayList<Fact>();
+        for (Object fact : resultFacts) {
+            if (fact != null) {
+                result.add((Fact) fact);
+            }
+        }
+        return result.iterator();
     }
 
     /*
@@ -65,11 +74,13 @@ public abstract class BasicAbstractDataflowAnalysis<Fact> implements DataflowAna
     }
 
     public/* final */Fact getStartFact(BasicBlock block) {
-        return lookupOrCreateFact(startFactMap, block);
+        startFacts = ensureCapacity(startFacts, block);
+        return lookupOrCreateFact(startFacts, block);
     }
 
     public/* final */Fact getResultFact(BasicBlock block) {
-        return lookupOrCreateFact(resultFactMap, block);
+        resultFacts = ensureCapacity(resultFacts, block);
+        return lookupOrCreateFact(resultFacts, block);
     }
 
     /**
@@ -169,11 +180,37 @@ public abstract class BasicAbstractDataflowAnalysis<Fact> implements DataflowAna
         // Subclasses may override.
     }
 
-    private Fact lookupOrCreateFact(Map<BasicBlock, Fact> map, BasicBlock block) {
-        Fact fact = map.get(block);
+    /**
+     * Make room for the facts of the blocks of a CFG, so that the fact
+     * arrays need not grow while the analysis runs.
+     *
+     * @param numBlockLabels
+     *            the number of block labels of the CFG (see
+     *            {@link CFG#getNumVertexLabels()})
+     */
+    void presizeFacts(int numBlockLabels) {
+        if (startFacts.length < numBlockLabels) {
+            startFacts = Arrays.copyOf(startFacts, numBlockLabels);
+        }
+        if (resultFacts.length < numBlockLabels) {
+            resultFacts = Arrays.copyOf(resultFacts, numBlockLabels);
+        }
+    }
+
+    private static Object[] ensureCapacity(Object[] facts, BasicBlock block) {
+        int label = block.getLabel();
+        if (label < facts.length) {
+            return facts;
+        }
+        return Arrays.copyOf(facts, Math.max(label + 1, facts.length * 2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Fact lookupOrCreateFact(Object[] facts, BasicBlock block) {
+        Fact fact = (Fact) facts[block.getLabel()];
         if (fact == null) {
             fact = createFact();
-            map.put(block, fact);
+            facts[block.getLabel()] = fact;
         }
         return fact;
     }
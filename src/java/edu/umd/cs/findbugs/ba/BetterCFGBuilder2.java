@@ -34,6 +34,7 @@ import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ACONST_NULL;
 import org.apache.bcel.generic.ALOAD;
+import org.apache.bcel.generic.ATHROW;
 import org.apache.bcel.generic.BranchInstruction;
 import org.apache.bcel.generic.ClassGen;
 import org.apache.bcel.generic.CodeExceptionGen;
@@ -47,6 +48,7 @@ import org.apache.bcel.generic.IFNULL;
 import org.apache.bcel.generic.IF_ACMPEQ;
 import org.apache.bcel.generic.IF_ACMPNE;
 import org.apache.bcel.generic.INSTANCEOF;
+import org.apache.bcel.generic.INVOKESTATIC;
 import org.apache.bcel.generic.IfInstruction;
 import org.apache.bcel.generic.Instruction;
 import org.apache.bcel.generic.InstructionHandle;
@@ -177,7 +179,8 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
 
         private final CFG cfg;
 
-        private IdentityHashMap<InstructionHandle, BasicBlock> blockMap;
+        /** Blocks by the bytecode offset of their start instruction */
+        private final BasicBlock[] blockMap;
 
         private IdentityHashMap<BasicBlock, List<EscapeTarget>> escapeTargetListMap;
 
@@ -199,7 +202,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
             this.start = start;
             this.instructionSet = new BitSet();
             this.cfg = new CFG();
-            this.blockMap = new IdentityHashMap<InstructionHandle, BasicBlock>();
+            this.blockMap = new BasicBlock[codeLength];
             this.escapeTargetListMap = new IdentityHashMap<BasicBlock, List<EscapeTarget>>();
             this.returnBlockSet = new BitSet();
             this.exitBlockSet = new BitSet();
@@ -305,10 +308,10 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
          * @return the basic block for the instruction
          */
         public BasicBlock getBlock(InstructionHandle start) {
-            BasicBlock block = blockMap.get(start);
+            BasicBlock block = blockMap[start.getPosition()];
             if (block == null) {
                 block = allocateBasicBlock();
-                blockMap.put(start, block);
+                blockMap[start.getPosition()] = block;
 
                 // Block is an exception handler?
                 CodeExceptionGen exceptionGen = exceptionHandlerMap.getHandlerForStartInstruction(start);
@@ -569,6 +572,9 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
 
     private ExceptionHandlerMap exceptionHandlerMap;
 
+    /** One more than the offset of the last instruction */
+    private int codeLength;
+
     private BitSet usedInstructionSet;
 
     private LinkedList<Subroutine> subroutineWorkList;
@@ -595,6 +601,8 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
         this.methodGen = methodGen;
         this.cpg = methodGen.getConstantPool();
         this.exceptionHandlerMap = new ExceptionHandlerMap(methodGen);
+        InstructionHandle end = methodGen.getInstructionList().getEnd();
+        this.codeLength = end != null ? end.getPosition() + 1 : 0;
         this.usedInstructionSet = new BitSet();
         this.jsrSubroutineMap = new IdentityHashMap<InstructionHandle, Subroutine>();
         this.subroutineWorkList = new LinkedList<Subroutine>();
@@ -800,7 +808,7 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
                     // End of JSR subroutine
                     subroutine.addEdge(basicBlock, subroutine.getExit(), RET_EDGE);
                     endOfBasicBlock = true;
-                } else {
+                } else if (mayEndBasicBlock(ins)) {
                     TargetEnumeratingVisitor visitor = new TargetEnumeratingVisitor(handle, cpg);
                     if (visitor.isEndOfBasicBlock()) {
                         endOfBasicBlock = true;
@@ -913,6 +921,15 @@ public class BetterCFGBuilder2 implements CFGBuilder, EdgeTypes, Debug {
 
     }
 
+    /**
+     * Return whether or not the given instruction may end a basic block: only
+     * for these a TargetEnumeratingVisitor is needed to find out.
+     */
+    private static boolean mayEndBasicBlock(Instruction ins) {
+        return ins instanceof BranchInstruction || ins instanceof ReturnInstruction || ins instanceof ATHROW
+                || ins instanceof INVOKESTATIC;
+    }
+
     /**
      * Determine whether or not the given instruction is a control flow merge.
      * 
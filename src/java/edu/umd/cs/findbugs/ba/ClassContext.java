@@ -29,6 +29,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -70,6 +72,7 @@ import edu.umd.cs.findbugs.classfile.engine.bcel.NonExceptionPostdominatorsAnaly
 import edu.umd.cs.findbugs.classfile.engine.bcel.NonImplicitExceptionPostDominatorsAnalysis;
 import edu.umd.cs.findbugs.classfile.engine.bcel.UnpackedBytecodeCallback;
 import edu.umd.cs.findbugs.classfile.engine.bcel.UnpackedCode;
+import edu.umd.cs.findbugs.util.ConcurrentMapCache;
 import edu.umd.cs.findbugs.util.MapCache;
 
 /**
@@ -92,7 +95,7 @@ public class ClassContext {
 
     private final AnalysisContext analysisContext;
 
-    private final Map<Class<?>, Map<MethodDescriptor, Object>> methodAnalysisObjectMap;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<MethodDescriptor, Object>> methodAnalysisObjectMap;
 
     /*
      * ----------------------------------------------------------------------
@@ -114,7 +117,7 @@ public class ClassContext {
     public ClassContext(JavaClass jclass, AnalysisContext analysisContext) {
         this.jclass = jclass;
         this.analysisContext = analysisContext;
-        this.methodAnalysisObjectMap = new HashMap<Class<?>, Map<MethodDescriptor, Object>>();
+        this.methodAnalysisObjectMap = new ConcurrentHashMap<Class<?>, ConcurrentMap<MethodDescriptor, Object>>();
         try {
             classInfo = (ClassInfo) Global.getAnalysisCache().getClassAnalysis(XClass.class,
                     DescriptorFactory.createClassDescriptor(jclass));
@@ -123,16 +126,20 @@ public class ClassContext {
         }
     }
 
-    public Map<MethodDescriptor, Object> getObjectMap(Class<?> analysisClass) {
-        Map<MethodDescriptor, Object> objectMap = methodAnalysisObjectMap.get(analysisClass);
+    public ConcurrentMap<MethodDescriptor, Object> getObjectMap(Class<?> analysisClass) {
+        ConcurrentMap<MethodDescriptor, Object> objectMap = methodAnalysisObjectMap.get(analysisClass);
         if (objectMap == null) {
+            // Single shard caches, so that the least recently used analyses
+            // of the class are discarded first, as with a MapCache
             if (analysisClass == ValueNumberDataflow.class)
-                objectMap = new MapCache<MethodDescriptor, Object>(300);
+                objectMap = new ConcurrentMapCache<MethodDescriptor, Object>(300, 1);
             else if (Dataflow.class.isAssignableFrom(analysisClass))
-                objectMap = new MapCache<MethodDescriptor, Object>(500);
+                objectMap = new ConcurrentMapCache<MethodDescriptor, Object>(500, 1);
             else
-                objectMap = new HashMap<MethodDescriptor, Object>();
-            methodAnalysisObjectMap.put(analysisClass, objectMap);
+                objectMap = new ConcurrentHashMap<MethodDescriptor, Object>();
+            ConcurrentMap<MethodDescriptor, Object> existing = methodAnalysisObjectMap.putIfAbsent(analysisClass, objectMap);
+            if (existing != null)
+                objectMap = existing;
         }
         return objectMap;
     }
@@ -171,6 +178,18 @@ public class ClassContext {
         return objectMap.get(methodDescriptor);
     }
 
+    /**
+     * Get the number of method analysis results currently cached, e.g., to
+     * estimate the memory retained by the ClassContext.
+     */
+    public int getNumMethodAnalyses() {
+        int count = 0;
+        for (ConcurrentMap<MethodDescriptor, Object> objectMap : methodAnalysisObjectMap.values()) {
+            count += objectMap.size();
+        }
+        return count;
+    }
+
     public void purgeAllMethodAnalyses() {
         methodAnalysisObjectMap.clear();
     }
@@ -182,9 +201,9 @@ public class ClassContext {
      *            method descriptor identifying method to purge
      */
     public void purgeMethodAnalyses(MethodDescriptor methodDescriptor) {
-        Set<Map.Entry<Class<?>, Map<MethodDescriptor, Object>>> entrySet = methodAnalysisObjectMap.entrySet();
-        for (Iterator<Map.Entry<Class<?>, Map<MethodDescriptor, Object>>> i = entrySet.iterator(); i.hasNext();) {
-            Map.Entry<Class<?>, Map<MethodDescriptor, Object>> entry = i.next();
+        Set<Map.Entry<Class<?>, ConcurrentMap<MethodDescriptor, Object>>> entrySet = methodAnalysisObjectMap.entrySet();
+        for (Iterator<Map.Entry<Class<?>, ConcurrentMap<MethodDescriptor, Object>>> i = entrySet.iterator(); i.hasNext();) {
+            Map.Entry<Class<?>, ConcurrentMap<MethodDescriptor, Object>> entry = i.next();
 
             Class<?> cls = entry.getKey();
 
@@ -428,8 +447,11 @@ public class ClassContext {
     static public BitSet getBytecodeSet(JavaClass clazz, Method method) {
 
         XMethod xmethod = XFactory.createXMethod(clazz, method);
-        if (cachedBitsets().containsKey(xmethod)) {
-            return cachedBitsets().get(xmethod);
+        MapCache<XMethod, BitSet> cachedBitsets = cachedBitsets();
+        synchronized (cachedBitsets) {
+            if (cachedBitsets.containsKey(xmethod)) {
+                return cachedBitsets.get(xmethod);
+            }
         }
         Code code = method.getCode();
         if (code == null)
@@ -448,7 +470,9 @@ public class ClassContext {
         BitSet result = null;
         if (unpackedCode != null)
             result = unpackedCode.getBytecodeSet();
-        cachedBitsets().put(xmethod, result);
+        synchronized (cachedBitsets) {
+            cachedBitsets.put(xmethod, result);
+        }
         return result;
     }
 
@@ -463,8 +487,15 @@ public class ClassContext {
     static public Set<Integer> getLoopExitBranches(Method method, MethodGen methodGen) {
 
         XMethod xmethod = XFactory.createXMethod(methodGen);
-        if (cachedLoopExits().containsKey(xmethod)) {
-            Set<Integer> result = cachedLoopExits().get(xmethod);
+        MapCache<XMethod, Set<Integer>> cachedLoopExits = cachedLoopExits();
+        boolean isCached;
+        Set<Integer> cachedResult;
+        synchronized (cachedLoopExits) {
+            isCached = cachedLoopExits.containsKey(xmethod);
+            cachedResult = cachedLoopExits.get(xmethod);
+        }
+        if (isCached) {
+            Set<Integer> result = cachedResult;
             if (result == null) {
                 AnalysisContext.logError("Null cachedLoopExits for " + xmethod, new NullPointerException());
                 assert false;
@@ -487,7 +518,9 @@ public class ClassContext {
         if (result.size() == 0)
             result = Collections.<Integer> emptySet();
 
-        cachedLoopExits().put(xmethod, result);
+        synchronized (cachedLoopExits) {
+            cachedLoopExits.put(xmethod, result);
+        }
         return result;
     }
 
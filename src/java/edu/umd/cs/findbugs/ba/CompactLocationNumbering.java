@@ -19,19 +19,35 @@
 
 package edu.umd.cs.findbugs.ba;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
  * Compute a compact numbering of Locations in a CFG. This is useful for
  * analyses that want to use a BitSet to keep track of Locations.
+ *
+ * <p>
+ * The numbering is kept as an array of the Locations, indexed by number, and
+ * an array of numbers, indexed by instruction position. An instruction may
+ * be in several basic blocks (e.g., when a subroutine is inlined); its other
+ * Locations are found by scanning their block, whose Locations get
+ * consecutive numbers.
+ * </p>
  * 
  * @author David Hovemeyer
  */
 public class CompactLocationNumbering {
-    private HashMap<Location, Integer> locationToNumberMap;
+    private final Location[] locations;
 
-    private HashMap<Integer, Location> numberToLocationMap;
+    /** Number of the first Location of each block, by label; -1 if empty */
+    private final int[] firstNumber;
+
+    /**
+     * Number of the first Location of each instruction, by instruction
+     * position; -1 if none
+     */
+    private final int[] numberByPosition;
 
     /**
      * Constructor.
@@ -40,9 +56,31 @@ public class CompactLocationNumbering {
      *            the CFG containing the Locations to number
      */
     public CompactLocationNumbering(CFG cfg) {
-        this.locationToNumberMap = new HashMap<Location, Integer>();
-        this.numberToLocationMap = new HashMap<Integer, Location>();
-        build(cfg);
+        ArrayList<Location> locationList = new ArrayList<Location>();
+        this.firstNumber = new int[cfg.getNumVertexLabels()];
+        Arrays.fill(firstNumber, -1);
+        for (Iterator<Location> i = cfg.locationIterator(); i.hasNext();) {
+            Location location = i.next();
+            int label = location.getBasicBlock().getLabel();
+            if (firstNumber[label] < 0) {
+                firstNumber[label] = locationList.size();
+            }
+            locationList.add(location);
+        }
+        this.locations = locationList.toArray(new Location[locationList.size()]);
+
+        int maxPosition = -1;
+        for (Location location : locations) {
+            maxPosition = Math.max(maxPosition, location.getHandle().getPosition());
+        }
+        this.numberByPosition = new int[maxPosition + 1];
+        Arrays.fill(numberByPosition, -1);
+        for (int n = 0; n < locations.length; n++) {
+            int position = locations[n].getHandle().getPosition();
+            if (position >= 0 && numberByPosition[position] < 0) {
+                numberByPosition[position] = n;
+            }
+        }
     }
 
     /**
@@ -52,7 +90,7 @@ public class CompactLocationNumbering {
      * @return the maximum number assigned plus one
      */
     public int getSize() {
-        return locationToNumberMap.size();
+        return locations.length;
     }
 
     /**
@@ -63,7 +101,23 @@ public class CompactLocationNumbering {
      * @return the number of the location
      */
     public int getNumber(Location location) {
-        return locationToNumberMap.get(location).intValue();
+        BasicBlock block = location.getBasicBlock();
+        int position = location.getHandle().getPosition();
+        if (position >= 0 && position < numberByPosition.length) {
+            int n = numberByPosition[position];
+            if (n >= 0 && locations[n].getBasicBlock() == block && locations[n].getHandle() == location.getHandle()) {
+                return n;
+            }
+        }
+        int label = block.getLabel();
+        if (label < firstNumber.length && firstNumber[label] >= 0) {
+            for (int n = firstNumber[label]; n < locations.length && locations[n].getBasicBlock() == block; n++) {
+                if (locations[n].getHandle() == location.getHandle()) {
+                    return n;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No number for location " + location);
     }
 
     /**
@@ -74,16 +128,6 @@ public class CompactLocationNumbering {
      * @return Location corresponding to that number
      */
     public Location getLocation(int number) {
-        return numberToLocationMap.get(number);
-    }
-
-    private void build(CFG cfg) {
-        int count = 0;
-        for (Iterator<Location> i = cfg.locationIterator(); i.hasNext();) {
-            Integer number = count++;
-            Location location = i.next();
-            locationToNumberMap.put(location, number);
-            numberToLocationMap.put(number, location);
-        }
+        return number >= 0 && number < locations.length ? locations[number] : null;
     }
 }
@@ -20,8 +20,14 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.bcel.generic.InstructionHandle;
@@ -48,6 +54,20 @@ import edu.umd.cs.findbugs.classfile.Global;
  * results of the block's logical predecessors (the block's start facts) into
  * the block's result facts.
  *
+ * <p>
+ * By default, the blocks are visited in passes over the whole CFG, in the
+ * order given by the analysis, until a pass changes no fact. Analyses named
+ * in the dataflow.worklist property (a comma-separated list of analysis class
+ * names without package, or "true" for all analyses) use a worklist solver
+ * instead, which only revisits the logical successors of blocks whose result
+ * changed, taking the pending block that comes first in the analysis's block
+ * order. Setting dataflow.worklist.verify checks the worklist solution
+ * against the iterative one, and reports methods where they differ. Note that
+ * analyses which create values at merge points, like value numbering, may
+ * reach an equivalent solution with different values when blocks are visited
+ * in a different order.
+ * </p>
+ *
  * @author David Hovemeyer
  * @see CFG
  * @see DataflowAnalysis
@@ -63,8 +83,15 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
 
     private int numIterations;
 
+    private final boolean useWorklist;
+
     public static boolean DEBUG = SystemProperties.getBoolean("dataflow.debug");
 
+    private static final Set<String> WORKLIST_ANALYSES = parseAnalysisList(SystemProperties.getProperty("dataflow.worklist",
+            ""));
+
+    private static final boolean VERIFY_WORKLIST = SystemProperties.getBoolean("dataflow.worklist.verify");
+
     /**
      * Constructor.
      *
@@ -76,11 +103,32 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
     public Dataflow(CFG cfg, AnalysisType analysis) {
         this.cfg = cfg;
         this.analysis = analysis;
+        if (analysis instanceof BasicAbstractDataflowAnalysis) {
+            ((BasicAbstractDataflowAnalysis<?>) analysis).presizeFacts(cfg.getNumVertexLabels());
+        }
         blockOrder = analysis.getBlockOrder(cfg);
         isForwards = analysis.isForwards();
         numIterations = 0;
+        useWorklist = WORKLIST_ANALYSES.contains("true")
+                || WORKLIST_ANALYSES.contains(analysis.getClass().getSimpleName());
+        initializeFacts();
+    }
+
+    private static Set<String> parseAnalysisList(String list) {
+        Set<String> result = new HashSet<String>();
+        for (String name : list.split(",")) {
+            name = name.trim();
+            if (name.length() > 0)
+                result.add(name);
+        }
+        return Collections.unmodifiableSet(result);
+    }
 
-        // Initialize result facts
+    /**
+     * Set the result fact of the logical entry block to the entry fact, and
+     * all the other result facts to TOP.
+     */
+    private void initializeFacts() {
         Iterator<BasicBlock> i = cfg.blockIterator();
         while (i.hasNext()) {
             BasicBlock block = i.next();
@@ -138,6 +186,20 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
      * points of each block.
      */
     public void execute() throws DataflowAnalysisException {
+        if (!useWorklist) {
+            iterate();
+            return;
+        }
+        solveWithWorklist();
+        if (VERIFY_WORKLIST)
+            verifyWorklistSolution();
+    }
+
+    /**
+     * Visit all the blocks, in passes over the CFG, until a pass changes no
+     * fact.
+     */
+    private void iterate() throws DataflowAnalysisException {
         boolean change;
         boolean debugWas = DEBUG;
         if (DEBUG) {
@@ -421,6 +483,174 @@ public class Dataflow<Fact, AnalysisType extends DataflowAnalysis<Fact>> {
         DEBUG = debugWas;
     }
 
+    /**
+     * Visit blocks from a worklist, initially holding all the blocks, until it
+     * is empty. When the result fact of a block changes, its logical
+     * successors are added to the worklist. The block taken from the worklist
+     * is always the one which comes first in the block order, so that the
+     * logical predecessors of a block are usually done before it.
+     */
+    private void solveWithWorklist() throws DataflowAnalysisException {
+        if (DEBUG) {
+            reportAnalysis("Executing with worklist");
+        }
+
+        int numBlocks = cfg.getNumBasicBlocks();
+        BasicBlock[] blocks = new BasicBlock[numBlocks];
+        int[] positionOfLabel = new int[cfg.getNumVertexLabels()];
+        int count = 0;
+        for (Iterator<BasicBlock> i = blockOrder.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            positionOfLabel[block.getLabel()] = count;
+            blocks[count++] = block;
+        }
+        assert count == numBlocks;
+
+        BitSet worklist = new BitSet(numBlocks);
+        worklist.set(0, numBlocks);
+
+        // Give up after as much work as the iterative algorithm would do
+        // in MAX_ITERS passes
+        long maxVisits = (long) (MAX_ITERS + 9) * numBlocks;
+        long numVisits = 0;
+        int timestamp = 0;
+        int lastPosition = numBlocks;
+
+        analysis.startIteration();
+        for (int pos = worklist.nextSetBit(0); pos >= 0; pos = worklist.nextSetBit(0)) {
+            worklist.clear(pos);
+            if (pos <= lastPosition) {
+                // Starting over from the beginning of the block order:
+                // count as an iteration
+                ++numIterations;
+            }
+            lastPosition = pos;
+            if (++numVisits > maxVisits) {
+                throw new AssertionError("Too many iterations (" + numIterations + ") in dataflow when analyzing "
+                        + getFullyQualifiedMethodName());
+            }
+
+            BasicBlock block = blocks[pos];
+            Fact start = analysis.getStartFact(block);
+            Fact result = analysis.getResultFact(block);
+            int originalResultTimestamp = analysis.getLastUpdateTimestamp(result);
+
+            if (block == logicalEntryBlock()) {
+                analysis.makeFactTop(start);
+                analysis.initEntryFact(start);
+            } else {
+                meetPredecessors(block, start, timestamp);
+            }
+
+            boolean resultWasTop = analysis.isTop(result);
+            Fact origResult = null;
+            if (!resultWasTop) {
+                origResult = analysis.createFact();
+                analysis.copy(result, origResult);
+            }
+
+            analysis.transfer(block, null, start, result);
+
+            boolean thisResultChanged;
+            if (resultWasTop)
+                thisResultChanged = !analysis.isTop(result);
+            else
+                thisResultChanged = !analysis.same(result, origResult);
+            if (DEBUG)
+                debug(block, "start " + analysis.factToString(start) + ", result " + analysis.factToString(result)
+                        + (thisResultChanged ? " (changed)\n" : "\n"));
+
+            if (thisResultChanged) {
+                timestamp++;
+                analysis.setLastUpdateTimestamp(result, timestamp);
+                Iterator<Edge> succEdgeIter = isForwards ? cfg.outgoingEdgeIterator(block) : cfg.incomingEdgeIterator(block);
+                while (succEdgeIter.hasNext()) {
+                    Edge edge = succEdgeIter.next();
+                    BasicBlock logicalSucc = isForwards ? edge.getTarget() : edge.getSource();
+                    worklist.set(positionOfLabel[logicalSucc.getLabel()]);
+                }
+            } else {
+                analysis.setLastUpdateTimestamp(result, originalResultTimestamp);
+            }
+        }
+        analysis.finishIteration();
+    }
+
+    /**
+     * Set the start fact of a block to the meet of the result facts of its
+     * logical predecessors, transformed by the edge transfer function.
+     */
+    private void meetPredecessors(BasicBlock block, Fact start, int timestamp) throws DataflowAnalysisException {
+        int rawPredCount = 0;
+        for (Iterator<Edge> i = logicalPredecessorEdgeIterator(block); i.hasNext(); i.next()) {
+            rawPredCount++;
+        }
+
+        analysis.makeFactTop(start);
+        Iterator<Edge> predEdgeIter = logicalPredecessorEdgeIterator(block);
+        while (predEdgeIter.hasNext()) {
+            Edge edge = predEdgeIter.next();
+            BasicBlock logicalPred = isForwards ? edge.getSource() : edge.getTarget();
+
+            Fact edgeFact = analysis.createFact();
+            analysis.copy(analysis.getResultFact(logicalPred), edgeFact);
+            analysis.edgeTransfer(edge, edgeFact);
+
+            if (analysis instanceof UnconditionalValueDerefAnalysis) {
+                ((UnconditionalValueDerefAnalysis) analysis).meetInto((UnconditionalValueDerefSet) edgeFact, edge,
+                        (UnconditionalValueDerefSet) start, rawPredCount == 1);
+            } else
+                analysis.meetInto(edgeFact, edge, start);
+            analysis.setLastUpdateTimestamp(start, timestamp);
+        }
+    }
+
+    /**
+     * Solve the dataflow problem again with the iterative algorithm, and
+     * report the method if any fact differs from the worklist solution. The
+     * facts of the iterative solution are kept.
+     */
+    private void verifyWorklistSolution() throws DataflowAnalysisException {
+        Map<BasicBlock, Fact> startFacts = new IdentityHashMap<BasicBlock, Fact>();
+        Map<BasicBlock, Fact> resultFacts = new IdentityHashMap<BasicBlock, Fact>();
+        for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            Fact start = analysis.createFact();
+            analysis.copy(analysis.getStartFact(block), start);
+            startFacts.put(block, start);
+            Fact result = analysis.createFact();
+            analysis.copy(analysis.getResultFact(block), result);
+            resultFacts.put(block, result);
+        }
+        int worklistIterations = numIterations;
+
+        numIterations = 0;
+        for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+            analysis.makeFactTop(analysis.getStartFact(i.next()));
+        }
+        initializeFacts();
+        iterate();
+
+        for (Iterator<BasicBlock> i = cfg.blockIterator(); i.hasNext();) {
+            BasicBlock block = i.next();
+            if (!sameFacts(startFacts.get(block), analysis.getStartFact(block))
+                    || !sameFacts(resultFacts.get(block), analysis.getResultFact(block))) {
+                reportAnalysis("Worklist solution differs at block " + blockId(block) + " for");
+                return;
+            }
+        }
+        if (DEBUG)
+            System.out.println("Worklist solution verified: " + worklistIterations + " worklist iterations, " + numIterations
+                    + " iterations");
+    }
+
+    private boolean sameFacts(Fact fact1, Fact fact2) {
+        boolean isTop = analysis.isTop(fact1);
+        if (isTop != analysis.isTop(fact2))
+            return false;
+        return isTop || analysis.same(fact1, fact2);
+    }
+
     /**
      * @param msg
      *            TODO
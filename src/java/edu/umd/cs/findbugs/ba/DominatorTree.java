@@ -0,0 +1,355 @@
+/*
+ * Bytecode Analysis Framework
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Dominator tree of a CFG, or postdominator tree if computed on the reversed
+ * CFG.
+ *
+ * <p>
+ * The immediate dominators are computed with the iterative algorithm of
+ * Cooper, Harvey and Kennedy ("A Simple, Fast Dominance Algorithm"), which
+ * walks the blocks in reverse postorder and intersects the dominator tree
+ * paths of their predecessors; it usually converges in two passes. Each block
+ * is then numbered in a preorder walk of the dominator tree, so that a block
+ * dominates another exactly when the preorder number of the other lies in the
+ * interval covered by its subtree: dominance queries take constant time, and
+ * the set of dominated blocks is a range of the preorder.
+ * </p>
+ *
+ * <p>
+ * Only the edges chosen by the EdgeChooser are considered. Blocks which can't
+ * be reached from the root (the entry block, or the exit block for
+ * postdominators) through chosen edges are not in the tree.
+ * </p>
+ *
+ * @see AbstractDominatorsAnalysis
+ */
+public class DominatorTree {
+    private final CFG cfg;
+
+    private final boolean forwards;
+
+    private final EdgeChooser edgeChooser;
+
+    /** Postorder number of each block, by label; -1 if unreachable */
+    private final int[] postorderNumber;
+
+    /** Blocks by postorder number; the root is last */
+    private final BasicBlock[] postorder;
+
+    /** Postorder number of the immediate dominator, by postorder number */
+    private final int[] idom;
+
+    /** Preorder number in the dominator tree, by postorder number */
+    private final int[] treePreorderNumber;
+
+    /** Number of blocks in the dominator subtree, by postorder number */
+    private final int[] subtreeSize;
+
+    /** Blocks by preorder number in the dominator tree */
+    private final BasicBlock[] treePreorder;
+
+    /**
+     * Constructor. Computes the dominator tree.
+     *
+     * @param cfg
+     *            the CFG
+     * @param forwards
+     *            true to compute dominators, false to compute postdominators
+     * @param edgeChooser
+     *            chooses the edges to consider
+     */
+    public DominatorTree(CFG cfg, boolean forwards, EdgeChooser edgeChooser) {
+        this.cfg = cfg;
+        this.forwards = forwards;
+        this.edgeChooser = edgeChooser;
+
+        postorderNumber = new int[cfg.getNumVertexLabels()];
+        Arrays.fill(postorderNumber, -1);
+        postorder = computePostorder(forwards ? cfg.getEntry() : cfg.getExit());
+        int numBlocks = postorder.length;
+
+        idom = new int[numBlocks];
+        computeImmediateDominators();
+
+        treePreorderNumber = new int[numBlocks];
+        subtreeSize = new int[numBlocks];
+        treePreorder = new BasicBlock[numBlocks];
+        numberDominatorTree();
+    }
+
+    private Iterator<Edge> logicalSuccessorEdgeIterator(BasicBlock block) {
+        return forwards ? cfg.outgoingEdgeIterator(block) : cfg.incomingEdgeIterator(block);
+    }
+
+    private Iterator<Edge> logicalPredecessorEdgeIterator(BasicBlock block) {
+        return forwards ? cfg.incomingEdgeIterator(block) : cfg.outgoingEdgeIterator(block);
+    }
+
+    private BasicBlock getLogicalSuccessor(Edge edge) {
+        return forwards ? edge.getTarget() : edge.getSource();
+    }
+
+    private BasicBlock getLogicalPredecessor(Edge edge) {
+        return forwards ? edge.getSource() : edge.getTarget();
+    }
+
+    /**
+     * Number the blocks reachable from the root in postorder, with an explicit
+     * stack, since CFGs may be too deep for recursion.
+     */
+    private BasicBlock[] computePostorder(BasicBlock root) {
+        ArrayList<BasicBlock> result = new ArrayList<BasicBlock>();
+        ArrayList<BasicBlock> blockStack = new ArrayList<BasicBlock>();
+        ArrayList<Iterator<Edge>> edgeStack = new ArrayList<Iterator<Edge>>();
+        BitSet visited = new BitSet();
+
+        visited.set(root.getLabel());
+        blockStack.add(root);
+        edgeStack.add(logicalSuccessorEdgeIterator(root));
+        while (!blockStack.isEmpty()) {
+            int top = blockStack.size() - 1;
+            Iterator<Edge> edges = edgeStack.get(top);
+            BasicBlock next = null;
+            while (next == null && edges.hasNext()) {
+                Edge edge = edges.next();
+                if (edgeChooser.choose(edge)) {
+                    BasicBlock successor = getLogicalSuccessor(edge);
+                    if (!visited.get(successor.getLabel())) {
+                        next = successor;
+                    }
+                }
+            }
+            if (next != null) {
+                visited.set(next.getLabel());
+                blockStack.add(next);
+                edgeStack.add(logicalSuccessorEdgeIterator(next));
+            } else {
+                BasicBlock block = blockStack.remove(top);
+                edgeStack.remove(top);
+                postorderNumber[block.getLabel()] = result.size();
+                result.add(block);
+            }
+        }
+        return result.toArray(new BasicBlock[result.size()]);
+    }
+
+    private void computeImmediateDominators() {
+        int root = postorder.length - 1;
+        Arrays.fill(idom, -1);
+        idom[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // Reverse postorder, so that all predecessors but those reached
+            // through back edges are done before a block
+            for (int b = root - 1; b >= 0; b--) {
+                int newIdom = -1;
+                for (Iterator<Edge> i = logicalPredecessorEdgeIterator(postorder[b]); i.hasNext();) {
+                    Edge edge = i.next();
+                    if (!edgeChooser.choose(edge)) {
+                        continue;
+                    }
+                    int p = postorderNumber[getLogicalPredecessor(edge).getLabel()];
+                    if (p < 0 || idom[p] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                }
+                if (idom[b] != newIdom) {
+                    idom[b] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the nearest common dominator of two blocks, given by postorder
+     * number.
+     */
+    private int intersect(int b1, int b2) {
+        while (b1 != b2) {
+            while (b1 < b2) {
+                b1 = idom[b1];
+            }
+            while (b2 < b1) {
+                b2 = idom[b2];
+            }
+        }
+        return b1;
+    }
+
+    private void numberDominatorTree() {
+        int numBlocks = postorder.length;
+
+        // Children of each block, as ranges of one array
+        int[] firstChild = new int[numBlocks + 1];
+        for (int b = 0; b < numBlocks - 1; b++) {
+            firstChild[idom[b] + 1]++;
+        }
+        for (int b = 0; b < numBlocks; b++) {
+            firstChild[b + 1] += firstChild[b];
+        }
+        int[] children = new int[Math.max(numBlocks - 1, 0)];
+        int[] fill = firstChild.clone();
+        for (int b = 0; b < numBlocks - 1; b++) {
+            children[fill[idom[b]]++] = b;
+        }
+
+        // Preorder numbers, then subtree sizes by walking the preorder
+        // backwards
+        int[] stack = new int[numBlocks];
+        int sp = 0;
+        int count = 0;
+        if (numBlocks > 0) {
+            stack[sp++] = numBlocks - 1;
+        }
+        while (sp > 0) {
+            int b = stack[--sp];
+            treePreorderNumber[b] = count;
+            treePreorder[count++] = postorder[b];
+            for (int c = firstChild[b]; c < firstChild[b + 1]; c++) {
+                stack[sp++] = children[c];
+            }
+        }
+        for (int n = numBlocks - 1; n >= 0; n--) {
+            int b = postorderNumber[treePreorder[n].getLabel()];
+            subtreeSize[b]++;
+            if (b != numBlocks - 1) {
+                subtreeSize[idom[b]] += subtreeSize[b];
+            }
+        }
+    }
+
+    private int getPostorderNumber(BasicBlock block) {
+        int label = block.getLabel();
+        return label < postorderNumber.length ? postorderNumber[label] : -1;
+    }
+
+    /**
+     * @return the root of the tree: the entry block for dominators, the exit
+     *         block for postdominators
+     */
+    public BasicBlock getRoot() {
+        return postorder[postorder.length - 1];
+    }
+
+    /**
+     * Return whether or not the block is in the tree, i.e., can be reached from
+     * the root through the chosen edges.
+     */
+    public boolean isReachable(BasicBlock block) {
+        return getPostorderNumber(block) >= 0;
+    }
+
+    /**
+     * Get the immediate dominator (or postdominator) of a block.
+     *
+     * @param block
+     *            a BasicBlock
+     * @return the immediate dominator, or null for the root and for blocks
+     *         which are not in the tree
+     */
+    public @CheckForNull
+    BasicBlock getImmediateDominator(BasicBlock block) {
+        int b = getPostorderNumber(block);
+        if (b < 0 || b == postorder.length - 1) {
+            return null;
+        }
+        return postorder[idom[b]];
+    }
+
+    /**
+     * Return whether or not a block dominates (or postdominates) another one.
+     * Every block in the tree dominates itself.
+     *
+     * @param dominator
+     *            the possible dominator
+     * @param block
+     *            the possibly dominated block
+     * @return true if dominator dominates block
+     */
+    public boolean dominates(BasicBlock dominator, BasicBlock block) {
+        int d = getPostorderNumber(dominator);
+        int b = getPostorderNumber(block);
+        if (d < 0 || b < 0) {
+            return false;
+        }
+        int start = treePreorderNumber[d];
+        int n = treePreorderNumber[b];
+        return n >= start && n < start + subtreeSize[d];
+    }
+
+    /**
+     * Get the labels of the blocks which dominate (or postdominate) a block,
+     * including the block itself.
+     *
+     * @param block
+     *            a BasicBlock in the tree
+     * @return BitSet of the labels of the dominators; empty if the block is
+     *         not in the tree
+     */
+    public BitSet getAllDominatorsOf(BasicBlock block) {
+        BitSet result = new BitSet();
+        int b = getPostorderNumber(block);
+        if (b < 0) {
+            return result;
+        }
+        int root = postorder.length - 1;
+        while (true) {
+            result.set(postorder[b].getLabel());
+            if (b == root) {
+                return result;
+            }
+            b = idom[b];
+        }
+    }
+
+    /**
+     * Get the labels of the blocks dominated (or postdominated) by a block,
+     * including the block itself.
+     *
+     * @param dominator
+     *            a BasicBlock
+     * @return BitSet of the labels of the dominated blocks; empty if the block
+     *         is not in the tree
+     */
+    public BitSet getAllDominatedBy(BasicBlock dominator) {
+        BitSet result = new BitSet();
+        int d = getPostorderNumber(dominator);
+        if (d < 0) {
+            return result;
+        }
+        int end = treePreorderNumber[d] + subtreeSize[d];
+        for (int n = treePreorderNumber[d]; n < end; n++) {
+            result.set(treePreorder[n].getLabel());
+        }
+        return result;
+    }
+}
@@ -19,9 +19,12 @@
 
 package edu.umd.cs.findbugs.ba;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.TreeSet;
 
 import org.apache.bcel.generic.CodeExceptionGen;
 import org.apache.bcel.generic.InstructionHandle;
@@ -33,11 +36,22 @@ import org.apache.bcel.generic.MethodGen;
  * to lists of CodeExceptionGen objects. This class also maps instructions which
  * are the start of exception handlers to the CodeExceptionGen object
  * representing the handler.
+ *
+ * <p>
+ * The bytecode offsets where a handler range starts or ends split the method
+ * into segments in which every instruction has the same handlers; the list of
+ * handlers is computed once per segment, and found by a binary search on the
+ * offset of the instruction.
+ * </p>
  * 
  * @author David Hovemeyer
  */
 public class ExceptionHandlerMap {
-    private IdentityHashMap<InstructionHandle, List<CodeExceptionGen>> codeToHandlerMap;
+    /** Offset of the first instruction of each segment, in ascending order */
+    private int[] segmentStart;
+
+    /** Handlers of each segment; null if there are none */
+    private List<List<CodeExceptionGen>> segmentHandlers;
 
     private IdentityHashMap<InstructionHandle, CodeExceptionGen> startInstructionToHandlerMap;
 
@@ -48,7 +62,6 @@ public class ExceptionHandlerMap {
      *            the method to build the map for
      */
     public ExceptionHandlerMap(MethodGen methodGen) {
-        codeToHandlerMap = new IdentityHashMap<InstructionHandle, List<CodeExceptionGen>>();
         startInstructionToHandlerMap = new IdentityHashMap<InstructionHandle, CodeExceptionGen>();
         build(methodGen);
     }
@@ -66,7 +79,12 @@ public class ExceptionHandlerMap {
      *         registered for the instruction
      */
     public List<CodeExceptionGen> getHandlerList(InstructionHandle handle) {
-        return codeToHandlerMap.get(handle);
+        int segment = Arrays.binarySearch(segmentStart, handle.getPosition());
+        if (segment < 0) {
+            // Insertion point, minus one
+            segment = -segment - 2;
+        }
+        return segment >= 0 ? segmentHandlers.get(segment) : null;
     }
 
     /**
@@ -90,18 +108,30 @@ public class ExceptionHandlerMap {
             startInstructionToHandlerMap.put(exceptionHandler.getHandlerPC(), exceptionHandler);
         }
 
-        // For each instruction, determine which handlers it can reach
-        InstructionHandle handle = methodGen.getInstructionList().getStart();
-        while (handle != null) {
-            int offset = handle.getPosition();
+        // Split the code into segments at the start and after the end of
+        // each handler range
+        TreeSet<Integer> boundaries = new TreeSet<Integer>();
+        for (CodeExceptionGen exceptionHandler : handlerList) {
+            boundaries.add(exceptionHandler.getStartPC().getPosition());
+            boundaries.add(exceptionHandler.getEndPC().getPosition() + 1);
+        }
+        segmentStart = new int[boundaries.size()];
+        segmentHandlers = new ArrayList<List<CodeExceptionGen>>(boundaries.size());
+        int segment = 0;
+        for (Integer boundary : boundaries) {
+            segmentStart[segment++] = boundary;
+        }
 
+        // For each segment, determine which handlers it can reach
+        for (segment = 0; segment < segmentStart.length; segment++) {
+            int offset = segmentStart[segment];
+            List<CodeExceptionGen> handlers = new ArrayList<CodeExceptionGen>();
             handlerLoop: for (CodeExceptionGen exceptionHandler : handlerList) {
                 int startOfRange = exceptionHandler.getStartPC().getPosition();
                 int endOfRange = exceptionHandler.getEndPC().getPosition();
-
                 if (offset >= startOfRange && offset <= endOfRange) {
                     // This handler is reachable from the instruction
-                    addHandler(handle, exceptionHandler);
+                    handlers.add(exceptionHandler);
 
                     // If this handler handles all exception types
                     // i.e., an ANY handler, or catch(Throwable...),
@@ -111,18 +141,8 @@ public class ExceptionHandlerMap {
                         break handlerLoop;
                 }
             }
-
-            handle = handle.getNext();
-        }
-    }
-
-    private void addHandler(InstructionHandle handle, CodeExceptionGen exceptionHandler) {
-        List<CodeExceptionGen> handlerList = codeToHandlerMap.get(handle);
-        if (handlerList == null) {
-            handlerList = new LinkedList<CodeExceptionGen>();
-            codeToHandlerMap.put(handle, handlerList);
+            segmentHandlers.add(handlers.isEmpty() ? null : Collections.unmodifiableList(handlers));
         }
-        handlerList.add(exceptionHandler);
     }
 }
 
@@ -21,10 +21,11 @@ package edu.umd.cs.findbugs.ba;
 
 import static edu.umd.cs.findbugs.ba.Debug.VERIFY_INTEGRITY;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.apache.bcel.Constants;
 import org.apache.bcel.generic.ConstantPoolGen;
@@ -76,8 +77,17 @@ public abstract class Frame<ValueType> {
 
     /**
      * Array storing the values of local variables and operand stack slots.
+     * Only the first numSlots elements are in use; the others are null. A
+     * plain array rather than an ArrayList, so that copying and comparing
+     * frames, which Dataflow.execute() does for every block and every
+     * iteration, are a System.arraycopy() and a loop over the array.
      */
-    private final ArrayList<ValueType> slotList;
+    private Object[] slots;
+
+    /**
+     * Number of slots in use (locals plus stack values).
+     */
+    private int numSlots;
 
     /**
      * Flag marking this frame as a special "TOP" value. Such Frames serve as
@@ -110,9 +120,26 @@ public abstract class Frame<ValueType> {
      */
     public Frame(int numLocals) {
         this.numLocals = numLocals;
-        this.slotList = new ArrayList<ValueType>(numLocals + DEFAULT_STACK_CAPACITY);
-        for (int i = 0; i < numLocals; ++i)
-            slotList.add(null);
+        this.slots = new Object[numLocals + DEFAULT_STACK_CAPACITY];
+        this.numSlots = numLocals;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueType slot(int n) {
+        if (n >= numSlots)
+            throw new IndexOutOfBoundsException("slot " + n + " of " + numSlots);
+        return (ValueType) slots[n];
+    }
+
+    /**
+     * Make sure the slot array can hold given number of slots.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > slots.length) {
+            Object[] newSlots = new Object[Math.max(capacity, slots.length + (slots.length >> 1) + 1)];
+            System.arraycopy(slots, 0, newSlots, 0, numSlots);
+            slots = newSlots;
+        }
     }
 
     /**
@@ -175,7 +202,8 @@ public abstract class Frame<ValueType> {
             throw new IllegalArgumentException();
         if (!isValid())
             throw new IllegalStateException("accessing top or bottom frame");
-        slotList.add(value);
+        ensureCapacity(numSlots + 1);
+        slots[numSlots++] = value;
     }
 
     /**
@@ -188,9 +216,11 @@ public abstract class Frame<ValueType> {
     public ValueType popValue() throws DataflowAnalysisException {
         if (!isValid())
             throw new DataflowAnalysisException("accessing top or bottom frame");
-        if (slotList.size() == numLocals)
+        if (numSlots == numLocals)
             throw new DataflowAnalysisException("operand stack empty");
-        return slotList.remove(slotList.size() - 1);
+        ValueType value = slot(numSlots - 1);
+        slots[--numSlots] = null;
+        return value;
     }
 
     /**
@@ -202,10 +232,10 @@ public abstract class Frame<ValueType> {
     public ValueType getTopValue() throws DataflowAnalysisException {
         if (!isValid())
             throw new DataflowAnalysisException("accessing top or bottom frame");
-        assert slotList.size() >= numLocals;
-        if (slotList.size() == numLocals)
+        assert numSlots >= numLocals;
+        if (numSlots == numLocals)
             throw new DataflowAnalysisException("operand stack is empty");
-        return slotList.get(slotList.size() - 1);
+        return slot(numSlots - 1);
     }
 
     /**
@@ -217,9 +247,8 @@ public abstract class Frame<ValueType> {
         int stackDepth = getStackDepth();
         if (valueList.length > stackDepth)
             throw new DataflowAnalysisException("not enough values on stack");
-        int numSlots = slotList.size();
         for (int i = numSlots - valueList.length, j = 0; i < numSlots; ++i, ++j) {
-            valueList[j] = slotList.get(i);
+            valueList[j] = slot(i);
         }
     }
 
@@ -236,7 +265,7 @@ public abstract class Frame<ValueType> {
         int stackDepth = getStackDepth();
         if (loc >= stackDepth)
             throw new DataflowAnalysisException("not enough values on stack: access=" + loc + ", avail=" + stackDepth);
-        return slotList.get(slotList.size() - (loc + 1));
+        return slot(numSlots - (loc + 1));
     }
 
     /**
@@ -250,7 +279,7 @@ public abstract class Frame<ValueType> {
         int stackDepth = getStackDepth();
         if (loc >= stackDepth)
             throw new DataflowAnalysisException("not enough values on stack: access=" + loc + ", avail=" + stackDepth);
-        return slotList.size() - (loc + 1);
+        return numSlots - (loc + 1);
     }
 
     /**
@@ -407,7 +436,7 @@ public abstract class Frame<ValueType> {
         if (i >= numArguments)
             throw new IllegalArgumentException();
 
-        return (slotList.size() - numArguments) + i;
+        return (numSlots - numArguments) + i;
     }
 
     /**
@@ -465,16 +494,18 @@ public abstract class Frame<ValueType> {
     public void clearStack() {
         if (!isValid())
             throw new IllegalStateException("accessing top or bottom frame");
-        assert slotList.size() >= numLocals;
-        if (slotList.size() > numLocals)
-            slotList.subList(numLocals, slotList.size()).clear();
+        assert numSlots >= numLocals;
+        if (numSlots > numLocals) {
+            Arrays.fill(slots, numLocals, numSlots, null);
+            numSlots = numLocals;
+        }
     }
 
     /**
      * Get the depth of the Java operand stack.
      */
     public int getStackDepth() {
-        return slotList.size() - numLocals;
+        return numSlots - numLocals;
     }
 
     /**
@@ -488,14 +519,14 @@ public abstract class Frame<ValueType> {
      * Get the number of slots (locals plus stack values).
      */
     public int getNumSlots() {
-        return slotList.size();
+        return numSlots;
     }
 
     public boolean contains(ValueType value) {
         if (!isValid())
             throw new IllegalStateException("accessing top or bottom frame");
-        for (ValueType v : slotList)
-            if (v.equals(value))
+        for (int i = 0; i < numSlots; ++i)
+            if (slots[i].equals(value))
                 return true;
         return false;
     }
@@ -510,7 +541,7 @@ public abstract class Frame<ValueType> {
     public ValueType getValue(int n) {
         if (!isValid())
             throw new IllegalStateException("accessing top or bottom frame");
-        return slotList.get(n);
+        return slot(n);
     }
 
     /**
@@ -526,7 +557,9 @@ public abstract class Frame<ValueType> {
             throw new IllegalArgumentException();
         if (!isValid())
             throw new IllegalStateException("accessing top or bottom frame");
-        slotList.set(n, value);
+        if (n >= numSlots)
+            throw new IndexOutOfBoundsException("slot " + n + " of " + numSlots);
+        slots[n] = value;
     }
 
     /**
@@ -550,12 +583,17 @@ public abstract class Frame<ValueType> {
         if (isBottom && other.isBottom)
             return true;
 
-        if (getNumSlots() != other.getNumSlots())
+        if (numSlots != other.numSlots)
             return false;
 
-        for (int i = 0; i < getNumSlots(); ++i)
-            if (!getValue(i).equals(other.getValue(i)))
+        // Most values are canonical (e.g., ValueNumbers and Types are
+        // interned), so check identity first
+        Object[] otherSlots = other.slots;
+        for (int i = 0; i < numSlots; ++i) {
+            Object value = slots[i];
+            if (value != otherSlots[i] && !value.equals(otherSlots[i]))
                 return false;
+        }
 
         return true;
     }
@@ -568,28 +606,12 @@ public abstract class Frame<ValueType> {
      */
     public void copyFrom(Frame<ValueType> other) {
         lastUpdateTimestamp = other.lastUpdateTimestamp;
-        if (true) {
-            int size = slotList.size();
-            if (size == other.slotList.size()) {
-                for (int i = 0; i < size; i++)
-                    slotList.set(i, other.slotList.get(i));
-            } else {
-                slotList.clear();
-                for (ValueType v : other.slotList)
-                    slotList.add(v);
-            }
-        } else {
-            slotList.clear();
-            slotList.addAll(other.slotList);
-
-        }
-        /*
-         * Andrei, 27.02.2008: "optimized" code below takes ~18% overall FB
-         * execution time, code above only 5% int size = slotList.size(); if
-         * (size == other.slotList.size()) { for (int i = 0; i < size; i++)
-         * slotList.set(i, other.slotList.get(i)); } else { slotList.clear();
-         * for (ValueType v : other.slotList) slotList.add(v); }
-         */
+        int otherNumSlots = other.numSlots;
+        ensureCapacity(otherNumSlots);
+        System.arraycopy(other.slots, 0, slots, 0, otherNumSlots);
+        if (numSlots > otherNumSlots)
+            Arrays.fill(slots, otherNumSlots, numSlots, null);
+        numSlots = otherNumSlots;
         isTop = other.isTop;
         isBottom = other.isBottom;
     }
@@ -645,9 +667,9 @@ public abstract class Frame<ValueType> {
      * @return an unmodifiable Collection of the local variable and operand
      *         stack slots
      */
+    @SuppressWarnings("unchecked")
     public Collection<ValueType> allSlots() {
-        if (slotList == null)
-            return Collections.<ValueType> emptyList();
+        List<ValueType> slotList = (List<ValueType>) Arrays.asList(slots).subList(0, numSlots);
         return Collections.<ValueType> unmodifiableCollection(slotList);
     }
 
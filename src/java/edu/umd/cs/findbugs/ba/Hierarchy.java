@@ -20,9 +20,7 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.CheckForNull;
@@ -108,25 +106,9 @@ public class Hierarchy {
      * @return true if t is a subtype of possibleSupertype, false if not
      */
     public static boolean isSubtype(ReferenceType t, ReferenceType possibleSupertype) throws ClassNotFoundException {
-        if (true) {
-            return Global.getAnalysisCache().getDatabase(Subtypes2.class).isSubtype(t, possibleSupertype);
-        } else {
-            Map<ReferenceType, Boolean> subtypes = subtypeCache.get(possibleSupertype);
-            if (subtypes == null) {
-                subtypes = new HashMap<ReferenceType, Boolean>();
-                subtypeCache.put(possibleSupertype, subtypes);
-            }
-            Boolean result = subtypes.get(t);
-            if (result == null) {
-                result = Boolean.valueOf(t.isAssignmentCompatibleWith(possibleSupertype));
-                subtypes.put(t, result);
-            }
-            return result;
-        }
+        return Global.getAnalysisCache().getDatabase(Subtypes2.class).isSubtype(t, possibleSupertype);
     }
 
-    static Map<ReferenceType, Map<ReferenceType, Boolean>> subtypeCache = new HashMap<ReferenceType, Map<ReferenceType, Boolean>>();
-
     /**
      * Determine if the given ObjectType reference represents a
      * <em>universal</em> exception handler. That is, one that will catch any
@@ -20,11 +20,10 @@
 package edu.umd.cs.findbugs.ba;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -60,30 +59,42 @@ import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
 import edu.umd.cs.findbugs.util.SplitCamelCaseIdentifier;
+import edu.umd.cs.findbugs.util.Util;
 import edu.umd.cs.findbugs.visitclass.DismantleBytecode;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Factory methods for creating XMethod objects.
+ *
+ * <p>
+ * The XFactory of an analysis is used by all of its analysis threads: the
+ * interned methods and fields are kept in concurrent maps, so that lookups
+ * don't lock, and a thread which resolves a method or field at the same time
+ * as another one gets the same object.
+ * </p>
  * 
  * @author David Hovemeyer
  */
 public class XFactory {
     public static final boolean DEBUG_UNRESOLVED = SystemProperties.getBoolean("findbugs.xfactory.debugunresolved");
 
-    private Set<ClassDescriptor> reflectiveClasses = new HashSet<ClassDescriptor>();
+    private Set<ClassDescriptor> reflectiveClasses = newConcurrentSet();
 
-    private Map<MethodDescriptor, XMethod> methods = new HashMap<MethodDescriptor, XMethod>();
+    private ConcurrentMap<MethodDescriptor, XMethod> methods = new ConcurrentHashMap<MethodDescriptor, XMethod>();
 
-    private Map<FieldDescriptor, XField> fields = new HashMap<FieldDescriptor, XField>();
+    private ConcurrentMap<FieldDescriptor, XField> fields = new ConcurrentHashMap<FieldDescriptor, XField>();
 
-    private Set<XMethod> calledMethods = new HashSet<XMethod>();
+    private Set<XMethod> calledMethods = newConcurrentSet();
 
-    private Set<XField> emptyArrays = new HashSet<XField>();
+    private Set<XField> emptyArrays = newConcurrentSet();
 
-    private Set<String> calledMethodSignatures = new HashSet<String>();
+    private Set<String> calledMethodSignatures = newConcurrentSet();
     
-    private Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = new HashSet<MethodDescriptor>();
+    private Set<MethodDescriptor> functionsThatMightBeMistakenForProcedures = newConcurrentSet();
+
+    private static <E> Set<E> newConcurrentSet() {
+        return Util.newSetFromMap(new ConcurrentHashMap<E, Boolean>());
+    }
 
     public void canonicalizeAll() {
         DescriptorFactory descriptorFactory = DescriptorFactory.instance();
@@ -122,12 +133,13 @@ public class XFactory {
         calledMethods.add(createXMethod(m));
     }
 
-    public void addEmptyArrayField(XField f) {
-        emptyArrays.add(f);
+    public void addEmptyArrayField(@CheckForNull XField f) {
+        if (f != null)
+            emptyArrays.add(f);
     }
 
     public boolean isEmptyArrayField(@CheckForNull XField f) {
-        return emptyArrays.contains(f);
+        return f != null && emptyArrays.contains(f);
     }
 
     public boolean isCalled(XMethod m) {
@@ -323,8 +335,11 @@ public class XFactory {
         if (m instanceof MethodDescriptor) {
             xFactory.methods.put((MethodDescriptor) m, m);
             DescriptorFactory.instance().canonicalize((MethodDescriptor) m);
-        } else
-            xFactory.methods.put(desc, m);
+        } else {
+            XMethod existing = xFactory.methods.putIfAbsent(desc, m);
+            if (existing != null)
+                m = existing;
+        }
         return m;
     }
 
@@ -541,7 +556,9 @@ public class XFactory {
         if (m != null)
             return m;
         m = xFactory.resolveXField(desc);
-        xFactory.fields.put(desc, m);
+        XField existing = xFactory.fields.putIfAbsent(desc, m);
+        if (existing != null)
+            m = existing;
         return m;
     }
 
@@ -48,6 +48,8 @@ class ClassVertex extends AbstractVertex<InheritanceEdge, ClassVertex> {
 
     private ClassVertex directSuperclass;
 
+    private volatile Subtypes2.SupertypeQueryResults supertypeQueryResults;
+
     @Override
     public String toString() {
         return classDescriptor.toString();
@@ -193,6 +195,19 @@ class ClassVertex extends AbstractVertex<InheritanceEdge, ClassVertex> {
         return directSuperclass;
     }
 
+    /**
+     * @return the known supertypes of the class, or null if they haven't been
+     *         computed yet
+     */
+    public @CheckForNull
+    Subtypes2.SupertypeQueryResults getSupertypeQueryResults() {
+        return supertypeQueryResults;
+    }
+
+    public void setSupertypeQueryResults(Subtypes2.SupertypeQueryResults supertypeQueryResults) {
+        this.supertypeQueryResults = supertypeQueryResults;
+    }
+
     private void setFlag(int flag, boolean enable) {
         if (enable) {
             flags |= flag;
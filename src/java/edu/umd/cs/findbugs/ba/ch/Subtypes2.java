@@ -20,14 +20,17 @@
 package edu.umd.cs.findbugs.ba.ch;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 
@@ -53,6 +56,12 @@ import edu.umd.cs.findbugs.util.MapCache;
  * Class for performing class hierarchy queries. Does <em>not</em> require
  * JavaClass objects to be in memory. Instead, uses XClass objects.
  *
+ * <p>
+ * Queries may come from several threads. Every change to the graph, and every
+ * walk over its edges, holds the lock of the Subtypes2 object; supertype
+ * query results and the vertex map may be read without it.
+ * </p>
+ *
  * @author David Hovemeyer
  */
 @javax.annotation.ParametersAreNonnullByDefault
@@ -67,7 +76,8 @@ public class Subtypes2 {
 
     private final Map<ClassDescriptor, ClassVertex> classDescriptorToVertexMap;
 
-    private final Map<ClassDescriptor, SupertypeQueryResults> supertypeSetMap;
+    /** ClassVertexes by label */
+    private final ArrayList<ClassVertex> vertexList;
 
     private final Map<ClassDescriptor, Set<ClassDescriptor>> subtypeSetMap;
 
@@ -80,23 +90,26 @@ public class Subtypes2 {
     private final ObjectType CLONEABLE;
 
     /**
-     * Object to record the results of a supertype search.
+     * Object to record the results of a supertype search: the sorted labels of
+     * the ClassVertexes of all known supertypes. It is kept in the ClassVertex
+     * of the class, and never changes, so that it can be read without locking.
      */
-    private static class SupertypeQueryResults {
-        private Set<ClassDescriptor> supertypeSet = new HashSet<ClassDescriptor>(4);
+    static class SupertypeQueryResults {
+        private final int[] supertypeLabels;
 
-        private boolean encounteredMissingClasses = false;
+        private final boolean encounteredMissingClasses;
 
-        public void addSupertype(ClassDescriptor classDescriptor) {
-            supertypeSet.add(classDescriptor);
+        SupertypeQueryResults(int[] supertypeLabels, boolean encounteredMissingClasses) {
+            this.supertypeLabels = supertypeLabels;
+            this.encounteredMissingClasses = encounteredMissingClasses;
         }
 
-        public void setEncounteredMissingClasses(boolean encounteredMissingClasses) {
-            this.encounteredMissingClasses = encounteredMissingClasses;
+        public boolean containsLabel(int label) {
+            return Arrays.binarySearch(supertypeLabels, label) >= 0;
         }
 
-        public boolean containsType(ClassDescriptor possibleSupertypeClassDescriptor) throws ClassNotFoundException {
-            if (supertypeSet.contains(possibleSupertypeClassDescriptor)) {
+        public boolean containsType(@CheckForNull ClassVertex possibleSupertypeVertex) throws ClassNotFoundException {
+            if (possibleSupertypeVertex != null && containsLabel(possibleSupertypeVertex.getLabel())) {
                 return true;
             } else if (!encounteredMissingClasses) {
                 return false;
@@ -113,8 +126,8 @@ public class Subtypes2 {
      */
     public Subtypes2() {
         this.graph = new InheritanceGraph();
-        this.classDescriptorToVertexMap = new HashMap<ClassDescriptor, ClassVertex>();
-        this.supertypeSetMap = new MapCache<ClassDescriptor, SupertypeQueryResults>(500);
+        this.classDescriptorToVertexMap = new ConcurrentHashMap<ClassDescriptor, ClassVertex>();
+        this.vertexList = new ArrayList<ClassVertex>();
         this.subtypeSetMap = new MapCache<ClassDescriptor, Set<ClassDescriptor>>(500);
         this.xclassSet = new HashSet<XClass>();
         this.SERIALIZABLE = ObjectTypeFactory.getInstance("java.io.Serializable");
@@ -195,7 +208,7 @@ public class Subtypes2 {
      * @param appXClass
      *            application XClass to add to the inheritance graph
      */
-    public void addApplicationClass(XClass appXClass) {
+    public synchronized void addApplicationClass(XClass appXClass) {
         for (XMethod m : appXClass.getXMethods()) {
             if (m.isStub())
                 return;
@@ -233,7 +246,7 @@ public class Subtypes2 {
      *            an XClass
      * @return the ClassVertex representing the class in the InheritanceGraph
      */
-    private ClassVertex addClassAndGetClassVertex(XClass xclass) {
+    private synchronized ClassVertex addClassAndGetClassVertex(XClass xclass) {
         if (xclass == null) {
             throw new IllegalStateException();
         }
@@ -262,7 +275,7 @@ public class Subtypes2 {
         return classDescriptorToVertexMap.get(xclass.getClassDescriptor());
     }
 
-    private void addVertexToGraph(ClassDescriptor classDescriptor, ClassVertex vertex) {
+    private synchronized void addVertexToGraph(ClassDescriptor classDescriptor, ClassVertex vertex) {
         assert classDescriptorToVertexMap.get(classDescriptor) == null;
 
         if (DEBUG) {
@@ -270,6 +283,8 @@ public class Subtypes2 {
         }
 
         graph.addVertex(vertex);
+        assert vertex.getLabel() == vertexList.size();
+        vertexList.add(vertex);
         classDescriptorToVertexMap.put(classDescriptor, vertex);
 
         if (vertex.isResolved()) {
@@ -369,16 +384,31 @@ public class Subtypes2 {
         // OK, we've exhausted the possibilities now
         return false;
     }
-    ClassDescriptor prevSubDesc, prevSuperDesc;
-    boolean prevResult;
-    
+    /**
+     * The last query answered by isSubtype(ClassDescriptor, ClassDescriptor).
+     * Immutable, so that threads may replace it without locking.
+     */
+    private static class SubtypeQuery {
+        final ClassDescriptor subDesc, superDesc;
+
+        final boolean result;
+
+        SubtypeQuery(ClassDescriptor subDesc, ClassDescriptor superDesc, boolean result) {
+            this.subDesc = subDesc;
+            this.superDesc = superDesc;
+            this.result = result;
+        }
+    }
+
+    private SubtypeQuery prevQuery;
+
     public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor superDesc) throws ClassNotFoundException {
-        if (subDesc == prevSubDesc && prevSuperDesc == superDesc)
-            return prevResult;
-        prevResult = isSubtype0(subDesc, superDesc);
-        prevSubDesc = subDesc;
-        prevSuperDesc = superDesc;
-        return prevResult;
+        SubtypeQuery query = prevQuery;
+        if (query != null && subDesc == query.subDesc && superDesc == query.superDesc)
+            return query.result;
+        boolean result = isSubtype0(subDesc, superDesc);
+        prevQuery = new SubtypeQuery(subDesc, superDesc, result);
+        return result;
     }
 
     public boolean isSubtype(ClassDescriptor subDesc, ClassDescriptor... superDesc) throws ClassNotFoundException {
@@ -396,7 +426,7 @@ public class Subtypes2 {
         }
         SupertypeQueryResults supertypeQueryResults = getSupertypeQueryResults(subDesc);
         for (ClassDescriptor s : superDesc)
-            if (supertypeQueryResults.containsType(s))
+            if (supertypeQueryResults.containsType(classDescriptorToVertexMap.get(s)))
                 return true;
         return false;
     }
@@ -439,7 +469,7 @@ public class Subtypes2 {
             System.out.println("CHECK: " + subDesc + " " + superDesc);
             }
         SupertypeQueryResults supertypeQueryResults = getSupertypeQueryResults(subDesc);
-        return supertypeQueryResults.containsType(superDesc);
+        return supertypeQueryResults.containsType(classDescriptorToVertexMap.get(superDesc));
     }
 
     /**
@@ -659,7 +689,7 @@ public class Subtypes2 {
         ObjectType firstCommonSupertype = (ObjectType) checkFirstCommonSuperclassQueryCache(a, b);
         if (firstCommonSupertype == null) {
             firstCommonSupertype = computeFirstCommonSuperclassOfObjectTypes(a, b);
-            firstCommonSuperclassQueryCache.put(a, b, firstCommonSupertype);
+            putFirstCommonSuperclassQueryCache(a, b, firstCommonSupertype);
         }
 
         return firstCommonSupertype;
@@ -673,11 +703,11 @@ public class Subtypes2 {
         ClassVertex aVertex = resolveClassVertex(aDesc);
         ClassVertex bVertex = resolveClassVertex(bDesc);
 
-        Set<ClassDescriptor> aSuperTypes = computeKnownSupertypes(aDesc);
-        Set<ClassDescriptor> bSuperTypes = computeKnownSupertypes(bDesc);
-        if (bSuperTypes.contains(aDesc))
+        SupertypeQueryResults aSuperTypes = getSupertypeQueryResults(aDesc);
+        SupertypeQueryResults bSuperTypes = getSupertypeQueryResults(bDesc);
+        if (bSuperTypes.containsLabel(aVertex.getLabel()))
             return a;
-        if (aSuperTypes.contains(bDesc))
+        if (aSuperTypes.containsLabel(bVertex.getLabel()))
             return b;
         ArrayList<ClassVertex> aSuperList = getAllSuperclassVertices(aVertex);
         ArrayList<ClassVertex> bSuperList = getAllSuperclassVertices(bVertex);
@@ -705,26 +735,53 @@ public class Subtypes2 {
         if (firstCommonSupertype.equals(Type.OBJECT)) {
             // see if we can't do better
             ClassDescriptor objDesc = DescriptorFactory.getClassDescriptor(Type.OBJECT);
-            aSuperTypes.retainAll(bSuperTypes);
-            aSuperTypes.remove(objDesc);
-            for (ClassDescriptor c : aSuperTypes)
+            List<ClassDescriptor> commonSupertypes = getCommonSupertypes(aSuperTypes, bSuperTypes);
+            commonSupertypes.remove(objDesc);
+            for (ClassDescriptor c : commonSupertypes)
                 if (c.getPackageName().equals(aDesc.getPackageName()) || c.getPackageName().equals(bDesc.getPackageName()))
                     return ObjectTypeFactory.getInstance(c.toDottedClassName());
 
-            for (ClassDescriptor c : aSuperTypes)
+            for (ClassDescriptor c : commonSupertypes)
                 return ObjectTypeFactory.getInstance(c.toDottedClassName());
         }
 
         return firstCommonSupertype;
     }
 
+    /**
+     * Intersect two supertype sets, by merging their sorted labels.
+     *
+     * @return the common supertypes, sorted by name so that the result doesn't
+     *         depend on the order in which classes were added to the graph
+     */
+    private synchronized List<ClassDescriptor> getCommonSupertypes(SupertypeQueryResults a, SupertypeQueryResults b) {
+        List<ClassDescriptor> result = new ArrayList<ClassDescriptor>();
+        int[] aLabels = a.supertypeLabels, bLabels = b.supertypeLabels;
+        int i = 0, j = 0;
+        while (i < aLabels.length && j < bLabels.length) {
+            if (aLabels[i] < bLabels[j]) {
+                i++;
+            } else if (aLabels[i] > bLabels[j]) {
+                j++;
+            } else {
+                result.add(vertexList.get(aLabels[i]).getClassDescriptor());
+                i++;
+                j++;
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
     private void putFirstCommonSuperclassQueryCache(ReferenceType a, ReferenceType b, ReferenceType answer) {
         if (a.getSignature().compareTo(b.getSignature()) > 0) {
             ReferenceType tmp = a;
             a = b;
             b = tmp;
         }
-        firstCommonSuperclassQueryCache.put(a, b, answer);
+        synchronized (firstCommonSuperclassQueryCache) {
+            firstCommonSuperclassQueryCache.put(a, b, answer);
+        }
     }
 
     private ReferenceType checkFirstCommonSuperclassQueryCache(ReferenceType a, ReferenceType b) {
@@ -733,7 +790,9 @@ public class Subtypes2 {
             a = b;
             b = tmp;
         }
-        return firstCommonSuperclassQueryCache.get(a, b);
+        synchronized (firstCommonSuperclassQueryCache) {
+            return firstCommonSuperclassQueryCache.get(a, b);
+        }
     }
 
     /**
@@ -745,7 +804,7 @@ public class Subtypes2 {
      *            a ClassVertex
      * @return list of all superclass vertices in order
      */
-    private ArrayList<ClassVertex> getAllSuperclassVertices(ClassVertex vertex) throws ClassNotFoundException {
+    private synchronized ArrayList<ClassVertex> getAllSuperclassVertices(ClassVertex vertex) throws ClassNotFoundException {
         ArrayList<ClassVertex> result = new ArrayList<ClassVertex>();
         ClassVertex cur = vertex;
         while (cur != null) {
@@ -767,7 +826,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         Set<ClassDescriptor> result = subtypeSetMap.get(classDescriptor);
         if (result == null) {
             result = computeKnownSubtypes(classDescriptor);
@@ -800,7 +859,7 @@ public class Subtypes2 {
      * @return Set of ClassDescriptors which are the known subtypes of the class
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+    public synchronized Set<ClassDescriptor> getDirectSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
 
@@ -824,22 +883,21 @@ public class Subtypes2 {
      * @return Set containing all common transitive subtypes of the two classes
      * @throws ClassNotFoundException
      */
-    public Set<ClassDescriptor> getTransitiveCommonSubtypes(ClassDescriptor classDescriptor1, ClassDescriptor classDescriptor2)
-            throws ClassNotFoundException {
-        Set<ClassDescriptor> subtypes1 = getSubtypes(classDescriptor1);
-        Set<ClassDescriptor> result = new HashSet<ClassDescriptor>(subtypes1);
-        Set<ClassDescriptor> subtypes2 = getSubtypes(classDescriptor2);
-        result.retainAll(subtypes2);
-        return result;
+    public synchronized Set<ClassDescriptor> getTransitiveCommonSubtypes(ClassDescriptor classDescriptor1,
+            ClassDescriptor classDescriptor2) throws ClassNotFoundException {
+        BitSet subtypes = computeKnownSubtypeLabels(classDescriptor1);
+        subtypes.and(computeKnownSubtypeLabels(classDescriptor2));
+        return getClassDescriptors(subtypes);
     }
 
     /**
      * Get Collection of all XClass objects (resolved classes) seen so far.
      *
-     * @return Collection of all XClass objects
+     * @return Collection of all XClass objects; a copy, since other threads
+     *         may add classes while it is being used
      */
-    public Collection<XClass> getXClassCollection() {
-        return Collections.<XClass> unmodifiableCollection(xclassSet);
+    public synchronized Collection<XClass> getXClassCollection() {
+        return Collections.<XClass> unmodifiableCollection(new ArrayList<XClass>(xclassSet));
     }
 
     /**
@@ -901,6 +959,9 @@ public class Subtypes2 {
      *             if the start vertex cannot be resolved
      */
     public void traverseSupertypes(ClassDescriptor start, InheritanceGraphVisitor visitor) throws ClassNotFoundException {
+        // Follows the supertypes named by the XClasses rather than the
+        // graph's edges, so the visitor is called without holding the lock;
+        // only adding vertices (in traverseEdge) needs it
         LinkedList<SupertypeTraversalPath> workList = new LinkedList<SupertypeTraversalPath>();
 
         ClassVertex startVertex = resolveClassVertex(start);
@@ -963,11 +1024,7 @@ public class Subtypes2 {
 
         ClassVertex supertypeVertex = classDescriptorToVertexMap.get(supertypeDescriptor);
         if (supertypeVertex == null) {
-            try {
-                supertypeVertex = resolveClassVertex(supertypeDescriptor);
-            } catch (ClassNotFoundException e) {
-                supertypeVertex = addClassVertexForMissingClass(supertypeDescriptor, isInterfaceEdge);
-            }
+            supertypeVertex = optionallyResolveClassVertex(supertypeDescriptor, isInterfaceEdge);
         }
         assert supertypeVertex != null;
 
@@ -983,62 +1040,44 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      */
     private Set<ClassDescriptor> computeKnownSubtypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
+        return getClassDescriptors(computeKnownSubtypeLabels(classDescriptor));
+    }
+
+    /**
+     * Get the labels of the known subtypes of a class, including the class
+     * itself.
+     */
+    private BitSet computeKnownSubtypeLabels(ClassDescriptor classDescriptor) throws ClassNotFoundException {
         LinkedList<ClassVertex> workList = new LinkedList<ClassVertex>();
 
         ClassVertex startVertex = resolveClassVertex(classDescriptor);
         workList.addLast(startVertex);
 
-        Set<ClassDescriptor> result = new HashSet<ClassDescriptor>();
+        BitSet result = new BitSet();
+        result.set(startVertex.getLabel());
 
         while (!workList.isEmpty()) {
             ClassVertex current = workList.removeFirst();
 
-            if (result.contains(current.getClassDescriptor())) {
-                // Already added this class
-                continue;
-            }
-
-            // Add class to the result
-            result.add(current.getClassDescriptor());
-
             // Add all known subtype vertices to the work list
             Iterator<InheritanceEdge> i = graph.incomingEdgeIterator(current);
             while (i.hasNext()) {
-                InheritanceEdge edge = i.next();
-                workList.addLast(edge.getSource());
+                ClassVertex source = i.next().getSource();
+                if (!result.get(source.getLabel())) {
+                    result.set(source.getLabel());
+                    workList.addLast(source);
+                }
             }
         }
 
-        return new HashSet<ClassDescriptor>(result);
+        return result;
     }
 
-    private Set<ClassDescriptor> computeKnownSupertypes(ClassDescriptor classDescriptor) throws ClassNotFoundException {
-        LinkedList<ClassVertex> workList = new LinkedList<ClassVertex>();
-
-        ClassVertex startVertex = resolveClassVertex(classDescriptor);
-        workList.addLast(startVertex);
-
+    private Set<ClassDescriptor> getClassDescriptors(BitSet labels) {
         Set<ClassDescriptor> result = new HashSet<ClassDescriptor>();
-
-        while (!workList.isEmpty()) {
-            ClassVertex current = workList.removeFirst();
-
-            if (result.contains(current.getClassDescriptor())) {
-                // Already added this class
-                continue;
-            }
-
-            // Add class to the result
-            result.add(current.getClassDescriptor());
-
-            // Add all known subtype vertices to the work list
-            Iterator<InheritanceEdge> i = graph.outgoingEdgeIterator(current);
-            while (i.hasNext()) {
-                InheritanceEdge edge = i.next();
-                workList.addLast(edge.getTarget());
-            }
+        for (int label = labels.nextSetBit(0); label >= 0; label = labels.nextSetBit(label + 1)) {
+            result.add(vertexList.get(label).getClassDescriptor());
         }
-
         return result;
     }
 
@@ -1052,10 +1091,10 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      */
     public SupertypeQueryResults getSupertypeQueryResults(ClassDescriptor classDescriptor) {
-        SupertypeQueryResults supertypeQueryResults = supertypeSetMap.get(classDescriptor);
+        ClassVertex vertex = classDescriptorToVertexMap.get(classDescriptor);
+        SupertypeQueryResults supertypeQueryResults = vertex != null ? vertex.getSupertypeQueryResults() : null;
         if (supertypeQueryResults == null) {
             supertypeQueryResults = computeSupertypes(classDescriptor);
-            supertypeSetMap.put(classDescriptor, supertypeQueryResults);
         }
         return supertypeQueryResults;
     }
@@ -1069,7 +1108,7 @@ public class Subtypes2 {
      * @throws ClassNotFoundException
      *             if the class can't be found
      */
-    private SupertypeQueryResults computeSupertypes(ClassDescriptor classDescriptor) // throws
+    private synchronized SupertypeQueryResults computeSupertypes(ClassDescriptor classDescriptor) // throws
                                                                                      // ClassNotFoundException
     {
         if (DEBUG_QUERIES) {
@@ -1079,17 +1118,22 @@ public class Subtypes2 {
         // Try to fully resolve the class and its superclasses/superinterfaces.
         ClassVertex typeVertex = optionallyResolveClassVertex(classDescriptor);
 
-        // Create new empty SupertypeQueryResults.
-        SupertypeQueryResults supertypeSet = new SupertypeQueryResults();
+        // Another thread may have computed them while we waited for the lock
+        SupertypeQueryResults supertypeSet = typeVertex.getSupertypeQueryResults();
+        if (supertypeSet != null) {
+            return supertypeSet;
+        }
 
         // Add all known superclasses/superinterfaces.
         // The ClassVertexes for all of them should be in the
         // InheritanceGraph by now.
+        BitSet supertypeLabels = new BitSet();
+        boolean encounteredMissingClasses = false;
         LinkedList<ClassVertex> workList = new LinkedList<ClassVertex>();
         workList.addLast(typeVertex);
+        supertypeLabels.set(typeVertex.getLabel());
         while (!workList.isEmpty()) {
             ClassVertex vertex = workList.removeFirst();
-            supertypeSet.addSupertype(vertex.getClassDescriptor());
             if (vertex.isResolved()) {
                 if (DEBUG_QUERIES) {
                     System.out.println("  Adding supertype " + vertex.getClassDescriptor().toDottedClassName());
@@ -1099,16 +1143,26 @@ public class Subtypes2 {
                     System.out.println("  Encountered unresolved class " + vertex.getClassDescriptor().toDottedClassName()
                             + " in supertype query");
                 }
-                supertypeSet.setEncounteredMissingClasses(true);
+                encounteredMissingClasses = true;
             }
 
             Iterator<InheritanceEdge> i = graph.outgoingEdgeIterator(vertex);
             while (i.hasNext()) {
                 InheritanceEdge edge = i.next();
-                workList.addLast(edge.getTarget());
+                ClassVertex target = edge.getTarget();
+                if (!supertypeLabels.get(target.getLabel())) {
+                    supertypeLabels.set(target.getLabel());
+                    workList.addLast(target);
+                }
             }
         }
 
+        int[] labels = new int[supertypeLabels.cardinality()];
+        for (int label = supertypeLabels.nextSetBit(0), n = 0; label >= 0; label = supertypeLabels.nextSetBit(label + 1)) {
+            labels[n++] = label;
+        }
+        supertypeSet = new SupertypeQueryResults(labels, encounteredMissingClasses);
+        typeVertex.setSupertypeQueryResults(supertypeSet);
         return supertypeSet;
     }
 
@@ -1139,6 +1193,22 @@ public class Subtypes2 {
      * @return
      */
     private ClassVertex optionallyResolveClassVertex(ClassDescriptor classDescriptor) {
+        // XXX: unfortunately, we don't know if a missing class is a
+        // class or interface
+        return optionallyResolveClassVertex(classDescriptor, false);
+    }
+
+    /**
+     * Get the ClassVertex for a class, adding it to the graph if needed.
+     *
+     * @param classDescriptor
+     *            a ClassDescriptor
+     * @param isInterface
+     *            true if the class is (as far as we know) an interface, in
+     *            case it is missing
+     * @return the ClassVertex, which is unresolved if the class is missing
+     */
+    private synchronized ClassVertex optionallyResolveClassVertex(ClassDescriptor classDescriptor, boolean isInterface) {
         ClassVertex typeVertex = classDescriptorToVertexMap.get(classDescriptor);
         if (typeVertex == null) {
             // We have never tried to resolve this ClassVertex before.
@@ -1146,9 +1216,7 @@ public class Subtypes2 {
             XClass xclass = AnalysisContext.currentXFactory().getXClass(classDescriptor);
             if (xclass == null) {
                 // Class we're trying to resolve doesn't exist.
-                // XXX: unfortunately, we don't know if the missing class is a
-                // class or interface
-                typeVertex = addClassVertexForMissingClass(classDescriptor, false);
+                typeVertex = addClassVertexForMissingClass(classDescriptor, isInterface);
             } else {
                 // Add the class and all its superclasses/superinterfaces to the
                 // inheritance graph.
@@ -1169,7 +1237,7 @@ public class Subtypes2 {
      *            work list of ClassVertexes that need to have their supertype
      *            edges added
      */
-    private void addSupertypeEdges(ClassVertex vertex, LinkedList<XClass> workList) {
+    private synchronized void addSupertypeEdges(ClassVertex vertex, LinkedList<XClass> workList) {
         XClass xclass = vertex.getXClass();
 
         // Direct superclass
@@ -1196,7 +1264,7 @@ public class Subtypes2 {
      *            work list of ClassVertexes that need to have their supertype
      *            edges added (null if no further work will be generated)
      */
-    private void addInheritanceEdge(ClassVertex vertex, ClassDescriptor superclassDescriptor, boolean isInterfaceEdge,
+    private synchronized void addInheritanceEdge(ClassVertex vertex, ClassDescriptor superclassDescriptor, boolean isInterfaceEdge,
             @CheckForNull LinkedList<XClass> workList) {
         if (superclassDescriptor == null) {
             return;
@@ -1242,7 +1310,7 @@ public class Subtypes2 {
      * @param isInterfaceEdge
      * @return the ClassVertex representing the missing class
      */
-    private ClassVertex addClassVertexForMissingClass(ClassDescriptor missingClassDescriptor, boolean isInterfaceEdge) {
+    private synchronized ClassVertex addClassVertexForMissingClass(ClassDescriptor missingClassDescriptor, boolean isInterfaceEdge) {
         ClassVertex missingClassVertex = ClassVertex.createMissingClassVertex(missingClassDescriptor, isInterfaceEdge);
         missingClassVertex.setFinished(true);
         addVertexToGraph(missingClassDescriptor, missingClassVertex);
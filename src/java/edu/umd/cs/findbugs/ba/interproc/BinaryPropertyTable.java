@@ -0,0 +1,418 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.WillClose;
+import javax.annotation.WillNotClose;
+
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.util.Util;
+
+/**
+ * Read-only table of property database entries in the binary database format.
+ * Entries are looked up in place, without decoding the rest of the table, so
+ * that loading a database only costs mapping (or reading) the file.
+ *
+ * <p>
+ * The format consists of big-endian ints:
+ * </p>
+ *
+ * <pre>
+ * magic, version
+ * number of strings, offset of each string in the string data
+ * number of entries, then for each entry, sorted by hash:
+ *     hash, class name, member name, signature, (property &lt;&lt; 4) | access flags
+ * string data: length (unsigned short) and UTF-8 bytes of each string
+ * </pre>
+ *
+ * <p>
+ * Class and member names, signatures and properties are indices in the string
+ * table; a property is stored as the string encoding of the database (see
+ * PropertyDatabase.encodeProperty()), of which there are few distinct values.
+ * The class names are slashed, and the hash only covers the class name, the
+ * member name and the signature, so that lookups need neither conversions of
+ * the key nor the access flags.
+ * </p>
+ */
+class BinaryPropertyTable {
+    static final int MAGIC = 0xFBDB0DB0;
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private static final int ENTRY_SIZE = 20;
+
+    private final ByteBuffer buffer;
+
+    private final int numStrings;
+
+    private final int numEntries;
+
+    private final int entryStart;
+
+    private final int stringDataStart;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer
+     *            buffer holding a database in the binary format, starting at
+     *            position 0
+     * @throws PropertyDatabaseFormatException
+     */
+    BinaryPropertyTable(ByteBuffer buffer) throws PropertyDatabaseFormatException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new PropertyDatabaseFormatException("Not a binary property database");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new PropertyDatabaseFormatException("Unsupported binary property database version " + buffer.getInt(4));
+        }
+        numStrings = buffer.getInt(8);
+        int numEntriesOffset = HEADER_SIZE + 4 * numStrings;
+        if (numStrings < 0 || numEntriesOffset + 4 > buffer.limit()) {
+            throw new PropertyDatabaseFormatException("Invalid binary property database: bad string count");
+        }
+        numEntries = buffer.getInt(numEntriesOffset);
+        entryStart = numEntriesOffset + 4;
+        stringDataStart = entryStart + ENTRY_SIZE * numEntries;
+        if (numEntries < 0 || stringDataStart > buffer.limit()) {
+            throw new PropertyDatabaseFormatException("Invalid binary property database: bad entry count");
+        }
+    }
+
+    /**
+     * Return whether the given bytes start a database in the binary format.
+     */
+    static boolean isBinary(byte[] b, int len) {
+        return len >= 4 && ((b[0] & 0xff) << 24 | (b[1] & 0xff) << 16 | (b[2] & 0xff) << 8 | (b[3] & 0xff)) == MAGIC;
+    }
+
+    /**
+     * Map a database file in the binary format.
+     *
+     * @param file
+     *            the file
+     * @return the table, or null if the file is not in the binary format
+     */
+    static @CheckForNull
+    BinaryPropertyTable map(File file) throws IOException, PropertyDatabaseFormatException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < 4 || raf.readInt() != MAGIC) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            return new BinaryPropertyTable(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Hash of a key, which must be the same in every JVM.
+     */
+    static int hash(String slashedClassName, String name, String signature) {
+        return (slashedClassName.hashCode() * 31 + name.hashCode()) * 31 + signature.hashCode();
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size() {
+        return numEntries;
+    }
+
+    /**
+     * Look up the encoded property of a field or method.
+     *
+     * @return the string encoding of the property, or null if the table has no
+     *         entry for the field or method
+     */
+    @CheckForNull
+    String lookup(String slashedClassName, String name, String signature, boolean isStatic) {
+        int hash = hash(slashedClassName, name, signature);
+        int low = 0, high = numEntries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getHash(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < numEntries && getHash(i) == hash; i++) {
+            if (isStatic(i) == isStatic && getSignature(i).equals(signature) && getName(i).equals(name)
+                    && getClassName(i).equals(slashedClassName)) {
+                return getProperty(i);
+            }
+        }
+        return null;
+    }
+
+    private int getInt(int entry, int field) {
+        return buffer.getInt(entryStart + entry * ENTRY_SIZE + field * 4);
+    }
+
+    private int getHash(int entry) {
+        return getInt(entry, 0);
+    }
+
+    /** @return the slashed class name of an entry */
+    String getClassName(int entry) {
+        return getString(getInt(entry, 1));
+    }
+
+    String getName(int entry) {
+        return getString(getInt(entry, 2));
+    }
+
+    String getSignature(int entry) {
+        return getString(getInt(entry, 3));
+    }
+
+    /** @return the string encoding of the property of an entry */
+    String getProperty(int entry) {
+        return getString(getInt(entry, 4) >>> 4);
+    }
+
+    int getAccessFlags(int entry) {
+        return getInt(entry, 4) & 0xf;
+    }
+
+    boolean isStatic(int entry) {
+        return (getAccessFlags(entry) & 0x8) != 0;
+    }
+
+    private String getString(int index) {
+        if (index < 0 || index >= numStrings) {
+            throw new IllegalStateException("Invalid string index " + index + " in binary property database");
+        }
+        int offset = stringDataStart + buffer.getInt(HEADER_SIZE + 4 * index);
+        int length = buffer.getShort(offset) & 0xffff;
+        byte[] bytes = new byte[length];
+        // Absolute gets, so that lookups from several threads don't interfere
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(bytes, UTF8.charset);
+    }
+
+    /**
+     * Write the entries of the table in the text format, sorted by key.
+     */
+    void writeText(@WillNotClose Writer writer) throws IOException {
+        Integer[] order = new Integer[numEntries];
+        final String[] keys = new String[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            order[i] = i;
+            keys[i] = getTextKey(i);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return keys[o1].compareTo(keys[o2]);
+            }
+        });
+        for (Integer i : order) {
+            writer.write(keys[i]);
+            writer.write("|");
+            writer.write(getProperty(i));
+            writer.write("\n");
+        }
+    }
+
+    /**
+     * @return the key of an entry in the text format
+     */
+    String getTextKey(int entry) {
+        return getClassName(entry).replace('/', '.') + "," + getName(entry) + "," + getSignature(entry) + ","
+                + getAccessFlags(entry);
+    }
+
+    /**
+     * Collects entries, and writes them in the binary format.
+     */
+    static class Builder {
+        private final Map<String, Integer> stringIndexMap = new HashMap<String, Integer>();
+
+        private final List<String> stringList = new ArrayList<String>();
+
+        private final List<int[]> entryList = new ArrayList<int[]>();
+
+        /**
+         * Add an entry.
+         *
+         * @param slashedClassName
+         *            the slashed class name
+         * @param name
+         *            the field or method name
+         * @param signature
+         *            the field or method signature
+         * @param accessFlags
+         *            the access flags; only the low four bits are kept
+         * @param encodedProperty
+         *            the string encoding of the property
+         */
+        void add(String slashedClassName, String name, String signature, int accessFlags, String encodedProperty) {
+            entryList.add(new int[] { hash(slashedClassName, name, signature), getStringIndex(slashedClassName),
+                    getStringIndex(name), getStringIndex(signature), getStringIndex(encodedProperty) << 4 | (accessFlags & 0xf) });
+        }
+
+        /**
+         * Add the entries of a database in the text format.
+         *
+         * @param in
+         *            the text, which is closed
+         */
+        void addText(@WillClose InputStream in) throws IOException, PropertyDatabaseFormatException {
+            BufferedReader reader = new BufferedReader(Util.getReader(in));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.equals("")) {
+                        continue;
+                    }
+                    int bar = line.indexOf('|');
+                    String[] tuple = bar < 0 ? null : line.substring(0, bar).split(",");
+                    if (tuple == null || tuple.length != 4) {
+                        throw new PropertyDatabaseFormatException("Invalid property database entry: " + line);
+                    }
+                    int accessFlags;
+                    try {
+                        accessFlags = Integer.parseInt(tuple[3]);
+                    } catch (NumberFormatException e) {
+                        throw new PropertyDatabaseFormatException("Invalid access flags: " + line);
+                    }
+                    add(tuple[0].replace('.', '/'), tuple[1], tuple[2], accessFlags, line.substring(bar + 1));
+                }
+            } finally {
+                Util.closeSilently(reader);
+            }
+        }
+
+        /**
+         * Add the entries of a table.
+         */
+        void addTable(BinaryPropertyTable table) {
+            for (int i = 0; i < table.size(); i++) {
+                add(table.getClassName(i), table.getName(i), table.getSignature(i), table.getAccessFlags(i),
+                        table.getProperty(i));
+            }
+        }
+
+        private int getStringIndex(String s) {
+            Integer index = stringIndexMap.get(s);
+            if (index == null) {
+                index = stringList.size();
+                stringIndexMap.put(s, index);
+                stringList.add(s);
+            }
+            return index;
+        }
+
+        /**
+         * Write the entries in the binary format.
+         *
+         * @param out
+         *            the OutputStream, which is closed
+         */
+        void write(@WillClose OutputStream out) throws IOException {
+            try {
+                ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+                DataOutputStream stringData = new DataOutputStream(stringBytes);
+                int[] stringOffsets = new int[stringList.size()];
+                for (int i = 0; i < stringOffsets.length; i++) {
+                    stringOffsets[i] = stringData.size();
+                    byte[] bytes = stringList.get(i).getBytes(UTF8.charset);
+                    if (bytes.length > 0xffff) {
+                        throw new IOException("String too long for binary property database");
+                    }
+                    stringData.writeShort(bytes.length);
+                    stringData.write(bytes);
+                }
+
+                List<int[]> sortedEntryList = new ArrayList<int[]>(entryList);
+                Collections.sort(sortedEntryList, new Comparator<int[]>() {
+                    public int compare(int[] o1, int[] o2) {
+                        return o1[0] < o2[0] ? -1 : (o1[0] > o2[0] ? 1 : 0);
+                    }
+                });
+
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeInt(stringOffsets.length);
+                for (int offset : stringOffsets) {
+                    data.writeInt(offset);
+                }
+                data.writeInt(sortedEntryList.size());
+                for (int[] entry : sortedEntryList) {
+                    for (int value : entry) {
+                        data.writeInt(value);
+                    }
+                }
+                stringBytes.writeTo(data);
+                data.flush();
+            } finally {
+                Util.closeSilently(out);
+            }
+        }
+    }
+
+    /**
+     * Write a table in the text format.
+     *
+     * @param out
+     *            the OutputStream, which is closed
+     */
+    void writeText(@WillClose OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8.charset));
+        try {
+            writeText(writer);
+        } finally {
+            Util.closeSilently(writer);
+        }
+    }
+}
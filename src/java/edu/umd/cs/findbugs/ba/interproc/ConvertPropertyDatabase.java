@@ -0,0 +1,91 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Convert a property database file between the text and the binary format.
+ * The format of the input is detected, and the output may be the input file.
+ * The build converts the built-in databases to the binary format; the text
+ * format is easier to read and to compare.
+ *
+ * <p>
+ * Usage: ConvertPropertyDatabase [-text] &lt;input&gt; &lt;output&gt;
+ * </p>
+ */
+public class ConvertPropertyDatabase {
+    public static void main(String[] args) throws IOException, PropertyDatabaseFormatException {
+        boolean text = args.length == 3 && args[0].equals("-text");
+        if (args.length != (text ? 3 : 2)) {
+            System.err.println("Usage: " + ConvertPropertyDatabase.class.getName() + " [-text] <input> <output>");
+            System.exit(1);
+        }
+        File input = new File(args[args.length - 2]);
+        File output = new File(args[args.length - 1]);
+
+        // Read all of the input first, since it may be overwritten
+        ByteArrayOutputStream inputBytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(input);
+        try {
+            IO.copy(in, inputBytes);
+        } finally {
+            in.close();
+        }
+        byte[] bytes = inputBytes.toByteArray();
+        if (!text && BinaryPropertyTable.isBinary(bytes, bytes.length)) {
+            // Already converted
+            new BinaryPropertyTable(ByteBuffer.wrap(bytes));
+            if (!input.equals(output)) {
+                FileOutputStream out = new FileOutputStream(output);
+                try {
+                    out.write(bytes);
+                } finally {
+                    out.close();
+                }
+            }
+            return;
+        }
+
+        BinaryPropertyTable.Builder builder = new BinaryPropertyTable.Builder();
+        if (BinaryPropertyTable.isBinary(bytes, bytes.length)) {
+            builder.addTable(new BinaryPropertyTable(ByteBuffer.wrap(bytes)));
+        } else {
+            builder.addText(new ByteArrayInputStream(bytes));
+        }
+
+        if (text) {
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            builder.write(binary);
+            new BinaryPropertyTable(ByteBuffer.wrap(binary.toByteArray())).writeText(new FileOutputStream(output));
+        } else {
+            builder.write(new FileOutputStream(output));
+        }
+    }
+}
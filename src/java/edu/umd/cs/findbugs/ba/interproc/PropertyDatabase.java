@@ -19,8 +19,11 @@
 
 package edu.umd.cs.findbugs.ba.interproc;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,11 +31,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.WillClose;
@@ -40,11 +48,21 @@ import javax.annotation.WillClose;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.classfile.FieldOrMethodDescriptor;
+import edu.umd.cs.findbugs.io.IO;
 import edu.umd.cs.findbugs.util.Util;
 
 /**
  * Property database for interprocedural analysis.
  *
+ * <p>
+ * Databases are read from either the text format, in which each line holds an
+ * encoded key and property, or the binary format of BinaryPropertyTable. The
+ * entries of a binary database are not decoded when it is read, but looked up
+ * when getProperty() does not find a key among the properties set or read from
+ * text; operations which need all entries (getKeys(), entrySet(),
+ * removeProperty() and writing) decode them first.
+ * </p>
+ *
  * @param <KeyType>
  *            key type: either MethodDescriptor or FieldDescriptor
  * @param <ValueType>
@@ -55,11 +73,25 @@ import edu.umd.cs.findbugs.util.Util;
 public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor, ValueType> {
     private Map<KeyType, ValueType> propertyMap;
 
+    /**
+     * Binary tables read, most recently read first.
+     */
+    private final List<BinaryPropertyTable> binaryTableList;
+
+    /**
+     * Properties of binary table entries decoded by getProperty(). Lookups may
+     * come from several analysis threads, and must return the same property
+     * object each time.
+     */
+    private final ConcurrentHashMap<KeyType, ValueType> decodedPropertyMap;
+
     /**
      * Constructor. Creates an empty property database.
      */
     protected PropertyDatabase() {
         this.propertyMap = new HashMap<KeyType, ValueType>();
+        this.binaryTableList = new ArrayList<BinaryPropertyTable>();
+        this.decodedPropertyMap = new ConcurrentHashMap<KeyType, ValueType>();
     }
 
     /**
@@ -83,14 +115,37 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      */
     public @CheckForNull
     ValueType getProperty(KeyType key) {
-        return propertyMap.get(key);
+        ValueType property = propertyMap.get(key);
+        if (property != null || binaryTableList.isEmpty()) {
+            return property;
+        }
+        property = decodedPropertyMap.get(key);
+        if (property != null) {
+            return property;
+        }
+        for (BinaryPropertyTable table : binaryTableList) {
+            String encodedProperty = table.lookup(key.getSlashedClassName(), key.getName(), key.getSignature(),
+                    key.isStatic());
+            if (encodedProperty != null) {
+                try {
+                    property = decodeProperty(encodedProperty);
+                } catch (PropertyDatabaseFormatException e) {
+                    return null;
+                }
+                ValueType existing = decodedPropertyMap.putIfAbsent(key, property);
+                return existing != null ? existing : property;
+            }
+        }
+        return null;
     }
 
     public Set<KeyType> getKeys() {
+        decodeBinaryTables();
         return propertyMap.keySet();
     }
 
     public Collection<Map.Entry<KeyType, ValueType>> entrySet() {
+        decodeBinaryTables();
         return propertyMap.entrySet();
     }
 
@@ -100,7 +155,15 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      * @return true if the database is empty, false it it has at least one entry
      */
     public boolean isEmpty() {
-        return propertyMap.isEmpty();
+        if (!propertyMap.isEmpty()) {
+            return false;
+        }
+        for (BinaryPropertyTable table : binaryTableList) {
+            if (table.size() > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -112,11 +175,59 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      *         this key
      */
     public ValueType removeProperty(KeyType key) {
+        decodeBinaryTables();
         return propertyMap.remove(key);
     }
 
     /**
-     * Read property database from given file.
+     * Move all entries of the binary tables into the property map, keeping the
+     * properties which were set after the tables were read.
+     */
+    private void decodeBinaryTables() {
+        if (binaryTableList.isEmpty()) {
+            return;
+        }
+        Map<KeyType, ValueType> decodedMap = new HashMap<KeyType, ValueType>();
+        // Oldest table first, so that more recent tables take precedence
+        for (int t = binaryTableList.size() - 1; t >= 0; t--) {
+            BinaryPropertyTable table = binaryTableList.get(t);
+            for (int i = 0; i < table.size(); i++) {
+                try {
+                    KeyType key = parseKey(table.getTextKey(i));
+                    if (key == null) {
+                        continue;
+                    }
+                    ValueType property = decodedPropertyMap.get(key);
+                    decodedMap.put(key, property != null ? property : decodeProperty(table.getProperty(i)));
+                } catch (PropertyDatabaseFormatException e) {
+                    // Skip the entry, as lookups do
+                }
+            }
+        }
+        decodedMap.putAll(propertyMap);
+        propertyMap = decodedMap;
+        binaryTableList.clear();
+        decodedPropertyMap.clear();
+    }
+
+    /**
+     * Add a binary table. Its entries take precedence over the properties read
+     * or set before.
+     */
+    private void addBinaryTable(BinaryPropertyTable table) {
+        for (Iterator<KeyType> i = propertyMap.keySet().iterator(); i.hasNext();) {
+            KeyType key = i.next();
+            if (table.lookup(key.getSlashedClassName(), key.getName(), key.getSignature(), key.isStatic()) != null) {
+                i.remove();
+            }
+        }
+        binaryTableList.add(0, table);
+        decodedPropertyMap.clear();
+    }
+
+    /**
+     * Read property database from given file. A file in the binary format is
+     * memory-mapped.
      *
      * @param fileName
      *            name of the database file
@@ -124,12 +235,18 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
      * @throws MethodPropertyDatabaseFormatException
      */
     public void readFromFile(String fileName) throws IOException, PropertyDatabaseFormatException {
+        BinaryPropertyTable table = BinaryPropertyTable.map(new File(fileName));
+        if (table != null) {
+            addBinaryTable(table);
+            return;
+        }
         read(new FileInputStream(fileName));
     }
 
     /**
-     * Read property database from an input stream. The InputStream is
-     * guaranteed to be closed, even if an exception is thrown.
+     * Read property database, in the text or the binary format, from an input
+     * stream. The InputStream is guaranteed to be closed, even if an exception
+     * is thrown.
      *
      * @param in
      *            the InputStream
@@ -140,6 +257,21 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
         BufferedReader reader = null;
 
         try {
+            in = new BufferedInputStream(in);
+            byte[] magic = new byte[4];
+            in.mark(magic.length);
+            int n = 0, count;
+            while (n < magic.length && (count = in.read(magic, n, magic.length - n)) > 0) {
+                n += count;
+            }
+            in.reset();
+            if (BinaryPropertyTable.isBinary(magic, n)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                IO.copy(in, bytes);
+                addBinaryTable(new BinaryPropertyTable(ByteBuffer.wrap(bytes.toByteArray())));
+                return;
+            }
+
             reader = new BufferedReader(Util.getReader(in));
             String line;
             while ((line = reader.readLine()) != null) {
@@ -159,6 +291,8 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
             try {
                 if (reader != null)
                     reader.close();
+                else
+                    in.close();
             } catch (IOException e) {
                 // Ignore
             }
@@ -191,14 +325,15 @@ public abstract class PropertyDatabase<KeyType extends FieldOrMethodDescriptor,
     // }
 
     /**
-     * Write property database to an OutputStream. The OutputStream is
-     * guaranteed to be closed, even if an exception is thrown.
+     * Write property database, in the text format, to an OutputStream. The
+     * OutputStream is guaranteed to be closed, even if an exception is thrown.
      *
      * @param out
      *            the OutputStream
      * @throws IOException
      */
     public void write(@WillClose OutputStream out) throws IOException {
+        decodeBinaryTables();
         BufferedWriter writer = null;
         boolean missingClassWarningsSuppressed = AnalysisContext.currentAnalysisContext().setMissingClassWarningsSuppressed(true);
 
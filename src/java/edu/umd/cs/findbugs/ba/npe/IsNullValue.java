@@ -153,6 +153,8 @@ public class IsNullValue implements IsNullValueAnalysisFeatures, Debug {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o)
+            return true;
         if (o == null || this.getClass() != o.getClass())
             return false;
         IsNullValue other = (IsNullValue) o;
@@ -396,10 +398,15 @@ public class IsNullValue implements IsNullValueAnalysisFeatures, Debug {
         assert aKind >= bKind;
         int result = mergeMatrix[aKind][bKind];
 
-        IsNullValue resultValue = (result == NO_KABOOM_NN) ? noKaboomNonNullValue(a.locationOfKaBoom)
-                : instanceByFlagsList[combinedFlags >> FLAG_SHIFT][result];
-
-        return resultValue;
+        if (result == NO_KABOOM_NN) {
+            // Reuse an input value if it is the one we would create
+            if (a.kind == NO_KABOOM_NN)
+                return a;
+            if (b.kind == NO_KABOOM_NN && a.locationOfKaBoom.equals(b.locationOfKaBoom))
+                return b;
+            return noKaboomNonNullValue(a.locationOfKaBoom);
+        }
+        return instanceByFlagsList[combinedFlags >> FLAG_SHIFT][result];
     }
 
     /**
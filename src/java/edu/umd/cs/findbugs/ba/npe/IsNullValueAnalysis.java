@@ -59,6 +59,7 @@ import edu.umd.cs.findbugs.ba.vna.ValueNumber;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberFrame;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.util.Interner;
 
 /**
  * A dataflow analysis to detect potential null pointer dereferences.
@@ -102,6 +103,12 @@ public class IsNullValueAnalysis extends FrameDataflowAnalysis<IsNullValue, IsNu
     private final @CheckForNull
     PointerEqualityCheck pointerEqualityCheck;
 
+    /**
+     * Canonical no-KaBoom non-null values: the only IsNullValues which are
+     * not shared constants, since they carry a location.
+     */
+    private final Interner<IsNullValue> noKaboomValues = new Interner<IsNullValue>();
+
     public IsNullValueAnalysis(MethodDescriptor descriptor, MethodGen methodGen, CFG cfg, ValueNumberDataflow vnaDataflow,
             TypeDataflow typeDataflow, DepthFirstSearch dfs, AssertionMethods assertionMethods) {
         super(dfs);
@@ -111,7 +118,7 @@ public class IsNullValueAnalysis extends FrameDataflowAnalysis<IsNullValue, IsNu
 
         this.methodGen = methodGen;
         this.visitor = new IsNullValueFrameModelingVisitor(methodGen.getConstantPool(), assertionMethods, vnaDataflow,
-                typeDataflow, trackValueNumbers);
+                typeDataflow, trackValueNumbers, noKaboomValues);
         this.vnaDataflow = vnaDataflow;
         this.typeDataflow = typeDataflow;
         this.cfg = cfg;
@@ -525,8 +532,8 @@ public class IsNullValueAnalysis extends FrameDataflowAnalysis<IsNullValue, IsNu
                         // value.
                         InstructionHandle kaBoomLocation = targetBlock.getFirstInstruction();
                         ValueNumber replaceMe = vnaFrame.getInstance(firstInDest, methodGen.getConstantPool());
-                        IsNullValue noKaboomNonNullValue = IsNullValue.noKaboomNonNullValue(new Location(kaBoomLocation,
-                                targetBlock));
+                        IsNullValue noKaboomNonNullValue = noKaboomValues.intern(IsNullValue.noKaboomNonNullValue(new Location(
+                                kaBoomLocation, targetBlock)));
                         if (DEBUG) {
                             System.out.println("Start vna fact: " + vnaFrame);
                             System.out.println("inva fact: " + fact);
@@ -627,6 +634,8 @@ public class IsNullValueAnalysis extends FrameDataflowAnalysis<IsNullValue, IsNu
     protected void mergeValues(IsNullValueFrame otherFrame, IsNullValueFrame resultFrame, int slot)
             throws DataflowAnalysisException {
         IsNullValue value = IsNullValue.merge(resultFrame.getValue(slot), otherFrame.getValue(slot));
+        if (value.wouldHaveBeenAKaboom())
+            value = noKaboomValues.intern(value);
         resultFrame.setValue(slot, value);
     }
 
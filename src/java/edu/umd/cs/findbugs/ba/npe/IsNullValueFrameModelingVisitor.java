@@ -63,6 +63,7 @@ import edu.umd.cs.findbugs.ba.vna.ValueNumber;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberAnalysisFeatures;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberFrame;
+import edu.umd.cs.findbugs.util.Interner;
 
 public class IsNullValueFrameModelingVisitor extends AbstractFrameModelingVisitor<IsNullValue, IsNullValueFrame> {
 
@@ -78,15 +79,31 @@ public class IsNullValueFrameModelingVisitor extends AbstractFrameModelingVisito
 
     private final boolean trackValueNumbers;
 
+    private final Interner<IsNullValue> noKaboomValues;
+
     private int slotContainingNewNullValue;
 
     public IsNullValueFrameModelingVisitor(ConstantPoolGen cpg, AssertionMethods assertionMethods,
             ValueNumberDataflow vnaDataflow, TypeDataflow typeDataflow, boolean trackValueNumbers) {
+        this(cpg, assertionMethods, vnaDataflow, typeDataflow, trackValueNumbers, new Interner<IsNullValue>());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param noKaboomValues
+     *            table of canonical no-KaBoom non-null values, shared with the
+     *            analysis using this visitor
+     */
+    public IsNullValueFrameModelingVisitor(ConstantPoolGen cpg, AssertionMethods assertionMethods,
+            ValueNumberDataflow vnaDataflow, TypeDataflow typeDataflow, boolean trackValueNumbers,
+            Interner<IsNullValue> noKaboomValues) {
         super(cpg);
         this.assertionMethods = assertionMethods;
         this.vnaDataflow = vnaDataflow;
         this.trackValueNumbers = trackValueNumbers;
         this.typeDataflow = typeDataflow;
+        this.noKaboomValues = noKaboomValues;
     }
 
     /*
@@ -181,7 +198,7 @@ public class IsNullValueFrameModelingVisitor extends AbstractFrameModelingVisito
                         cpg, null, null, typeDataflow);
 
                 if (!nonnullParameters.isEmpty()) {
-                    IsNullValue kaboom = IsNullValue.noKaboomNonNullValue(location);
+                    IsNullValue kaboom = noKaboomValues.intern(IsNullValue.noKaboomNonNullValue(location));
                     IsNullValueFrame frame = getFrame();
                     for (ValueNumber vn : nonnullParameters) {
                         IsNullValue knownValue = frame.getKnownValue(vn);
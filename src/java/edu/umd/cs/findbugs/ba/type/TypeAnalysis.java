@@ -656,7 +656,12 @@ public class TypeAnalysis extends FrameDataflowAnalysis<Type, TypeFrame> impleme
 
         Type type2 = resultFrame.getValue(slot);
         Type type1 = otherFrame.getValue(slot);
-        Type value = typeMerger.mergeTypes(type2, type1);
+        if (type1 == type2) {
+            // Merging a type with itself doesn't change it
+            resultFrame.setExact(slot, resultFrame.isExact(slot) && otherFrame.isExact(slot));
+            return;
+        }
+        Type value = visitor.getCanonicalType(typeMerger.mergeTypes(type2, type1));
         resultFrame.setValue(slot, value);
 
         // Result type is exact IFF types are identical and both are exact
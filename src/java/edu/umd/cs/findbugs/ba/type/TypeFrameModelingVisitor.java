@@ -57,6 +57,7 @@ import edu.umd.cs.findbugs.ba.vna.ValueNumberFrame;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.util.Interner;
 import edu.umd.cs.findbugs.util.Util;
 
 /**
@@ -87,6 +88,11 @@ public class TypeFrameModelingVisitor extends AbstractFrameModelingVisitor<Type,
 
     private Set<ReferenceType> typesComputedFromGenerics = Util.newSetFromMap(new IdentityHashMap<ReferenceType, Boolean>());
 
+    /**
+     * Canonical instances of the object and array types in the frames.
+     */
+    private final Interner<Type> canonicalTypes = new Interner<Type>();
+
     protected final TypeMerger typeMerger;
     
     protected LocalVariableTypeTable localTypeTable;
@@ -247,7 +253,24 @@ public class TypeFrameModelingVisitor extends AbstractFrameModelingVisitor<Type,
             frame.pushValue(Type.DOUBLE);
             frame.pushValue(TypeFrame.getDoubleExtraType());
         } else
-            frame.pushValue(type);
+            frame.pushValue(getCanonicalType(type));
+    }
+
+    /**
+     * Get the canonical instance of a type, so that equal types in the frames
+     * are the same object. Exception types are not interned, since their
+     * exception sets may still change, and neither are types computed from
+     * generic types, which are tracked by identity.
+     *
+     * @param type
+     *            a type
+     * @return the canonical instance of the type
+     */
+    public Type getCanonicalType(Type type) {
+        byte typeCode = type.getType();
+        if ((typeCode != T_OBJECT && typeCode != T_ARRAY) || typesComputedFromGenerics.contains(type))
+            return type;
+        return canonicalTypes.intern(type);
     }
 
     /**
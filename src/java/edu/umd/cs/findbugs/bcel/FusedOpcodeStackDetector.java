@@ -0,0 +1,553 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.bcel;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.bcel.classfile.Code;
+import org.apache.bcel.classfile.Field;
+import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Signature;
+
+import edu.umd.cs.findbugs.BufferingBugReporter;
+import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.Detector2;
+import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.FirstPassDetector;
+import edu.umd.cs.findbugs.NonReportingDetector;
+import edu.umd.cs.findbugs.ba.ClassContext;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.log.Profiler;
+
+/**
+ * Drives several {@link FusibleDetector}s through a class in a single walk:
+ * the bytecode of each method is decoded once, and a single OpcodeStack is
+ * simulated for all of them, instead of once for each detector. Each visitor
+ * callback is forwarded to the detectors after copying the visitor state
+ * (see {@link #copyVisitState(edu.umd.cs.findbugs.visitclass.PreorderVisitor)}
+ * and {@link #copyOpcodeState(edu.umd.cs.findbugs.visitclass.DismantleBytecode)}
+ * ) into them, so that each detector sees the same sequence of callbacks and
+ * the same state as when walking the class on its own.
+ *
+ * <p>
+ * visit(Code) is forwarded as a chain: when a detector calls super.visit(Code),
+ * the next detector's visit(Code) is called, and the last one in the chain
+ * starts the actual decoding. So each detector's code before and after
+ * super.visit(Code) runs before and after the sweep, respectively.
+ * </p>
+ *
+ * <p>
+ * The detectors are presented to the analysis driver as one Detector2 per
+ * detector (see {@link #createDetector2s(List, BugReporter)}). The first of them
+ * to visit a class walks it for all detectors; the bugs reported by each
+ * detector, and the exception it threw, if any, are held back until its own
+ * Detector2 visits the class, so that bugs and errors are reported in the
+ * same order, and attributed to the same detectors, as without the shared
+ * walk.
+ * </p>
+ */
+public class FusedOpcodeStackDetector extends OpcodeStackDetector {
+
+    /**
+     * Visitor methods whose overrides are forwarded to fused detectors.
+     */
+    private static final Set<String> FORWARDED_METHODS = new HashSet<String>(Arrays.asList("visit(JavaClass)",
+            "shouldVisit(JavaClass)", "visit(Field)", "visit(Method)", "visit(Signature)", "shouldVisitCode(Code)",
+            "visit(Code)", "visitAfter(Code)", "visitAfter(JavaClass)", "beforeOpcode(int)", "sawOpcode(int)",
+            "sawBranchTo(int)", "report()"));
+
+    private static final Map<Class<?>, Boolean> fusibleMap = new HashMap<Class<?>, Boolean>();
+
+    private final OpcodeStackDetector[] members;
+
+    private final BufferingBugReporter[] memberReporters;
+
+    private final BugReporter bugReporter;
+
+    /** Class currently or last visited */
+    private ClassDescriptor currentClass;
+
+    /** Exception thrown while getting the ClassContext of currentClass */
+    private CheckedAnalysisException classFailure;
+
+    /** Bugs and errors reported for currentClass, not yet passed on */
+    private final BufferingBugReporter.ClassReports[] pendingReports;
+
+    /** Exception thrown by each detector while visiting currentClass */
+    private final RuntimeException[] failures;
+
+    /** Detectors visiting the current class */
+    private final boolean[] visitingClass;
+
+    /** Detectors visiting the current Code attribute */
+    private final boolean[] visitingCode;
+
+    /** Detectors whose visit(Code) has asked for the bytecode to be decoded */
+    private final boolean[] sweeping;
+
+    /** Detectors whose beforeOpcode() returned true for the current opcode */
+    private final boolean[] wantsOpcode;
+
+    /** Position in the visit(Code) chain */
+    private int chainPosition;
+
+    /** Set when the visit(Code) chain has decoded the bytecode */
+    private boolean chainDone;
+
+    private FusedOpcodeStackDetector(OpcodeStackDetector[] members, BufferingBugReporter[] memberReporters,
+            BugReporter bugReporter) {
+        this.members = members;
+        this.memberReporters = memberReporters;
+        this.bugReporter = bugReporter;
+        int n = members.length;
+        this.pendingReports = new BufferingBugReporter.ClassReports[n];
+        this.failures = new RuntimeException[n];
+        this.visitingClass = new boolean[n];
+        this.visitingCode = new boolean[n];
+        this.sweeping = new boolean[n];
+        this.wantsOpcode = new boolean[n];
+        for (OpcodeStackDetector member : members) {
+            member.driver = this;
+        }
+    }
+
+    /**
+     * Create the detectors of given factories so that they share a single walk
+     * over each class.
+     *
+     * @param factories
+     *            factories of detectors for which {@link #isFusible(Class)}
+     *            returns true
+     * @param bugReporter
+     *            the BugReporter the detectors report to
+     * @return a Detector2 for each of the detectors, in the order of the
+     *         factories
+     */
+    @SuppressWarnings("deprecation")
+    public static Detector2[] createDetector2s(List<DetectorFactory> factories, BugReporter bugReporter) {
+        int n = factories.size();
+        OpcodeStackDetector[] members = new OpcodeStackDetector[n];
+        BufferingBugReporter[] memberReporters = new BufferingBugReporter[n];
+        for (int i = 0; i < n; i++) {
+            memberReporters[i] = new BufferingBugReporter(bugReporter);
+            members[i] = (OpcodeStackDetector) factories.get(i).create(memberReporters[i]);
+        }
+        FusedOpcodeStackDetector driver = new FusedOpcodeStackDetector(members, memberReporters, bugReporter);
+        Detector2[] result = new Detector2[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = driver.new Member(i);
+        }
+        return result;
+    }
+
+    /**
+     * Get whether or not a detector class can share its walks over classes
+     * with other detectors: it must be a reporting OpcodeStackDetector
+     * implementing {@link FusibleDetector}, and override only the visitor
+     * methods forwarded by FusedOpcodeStackDetector.
+     *
+     * @param detectorClass
+     *            the detector class
+     */
+    public static boolean isFusible(Class<?> detectorClass) {
+        synchronized (fusibleMap) {
+            Boolean result = fusibleMap.get(detectorClass);
+            if (result == null) {
+                result = computeIsFusible(detectorClass);
+                fusibleMap.put(detectorClass, result);
+            }
+            return result;
+        }
+    }
+
+    private static boolean computeIsFusible(Class<?> detectorClass) {
+        if (!OpcodeStackDetector.class.isAssignableFrom(detectorClass)
+                || !FusibleDetector.class.isAssignableFrom(detectorClass)
+                || OpcodeStackDetector.WithCustomJumpInfo.class.isAssignableFrom(detectorClass)
+                || FirstPassDetector.class.isAssignableFrom(detectorClass)
+                || NonReportingDetector.class.isAssignableFrom(detectorClass)) {
+            return false;
+        }
+        for (Class<?> c = detectorClass; c != OpcodeStackDetector.class; c = c.getSuperclass()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if ((m.getModifiers() & (Modifier.STATIC | Modifier.PRIVATE)) != 0 || m.isSynthetic()) {
+                    continue;
+                }
+                if (overridesVisitorMethod(m) && !FORWARDED_METHODS.contains(getShortSignature(m))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean overridesVisitorMethod(Method m) {
+        String name = m.getName();
+        if (!(name.startsWith("visit") || name.startsWith("saw") || name.startsWith("shouldVisit")
+                || name.endsWith("Opcode") || name.startsWith("doVisit") || name.startsWith("setupVisitor") || name
+                .equals("report"))) {
+            return false;
+        }
+        for (Class<?> c = OpcodeStackDetector.class; c != Object.class; c = c.getSuperclass()) {
+            try {
+                Method overridden = c.getDeclaredMethod(m.getName(), m.getParameterTypes());
+                if ((overridden.getModifiers() & Modifier.PRIVATE) == 0) {
+                    return true;
+                }
+            } catch (NoSuchMethodException e) {
+                // keep looking
+            }
+        }
+        return false;
+    }
+
+    private static String getShortSignature(Method m) {
+        StringBuilder buf = new StringBuilder(m.getName()).append('(');
+        Class<?>[] parameterTypes = m.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append(parameterTypes[i].getSimpleName());
+        }
+        return buf.append(')').toString();
+    }
+
+    /**
+     * The Detector2 standing for one of the fused detectors.
+     */
+    private class Member implements Detector2 {
+        private final int index;
+
+        Member(int index) {
+            this.index = index;
+        }
+
+        public void visitClass(ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+            if (!classDescriptor.equals(currentClass)) {
+                analyzeClass(classDescriptor);
+            }
+            if (classFailure != null) {
+                throw classFailure;
+            }
+            BufferingBugReporter.ClassReports reports = pendingReports[index];
+            pendingReports[index] = null;
+            if (reports != null) {
+                BufferingBugReporter.replay(bugReporter, reports, null);
+            }
+            RuntimeException failure = failures[index];
+            failures[index] = null;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        public void finishPass() {
+            members[index].report();
+        }
+
+        public String getDetectorClassName() {
+            return members[index].getClass().getName();
+        }
+    }
+
+    /**
+     * Apply all the fused detectors to a class.
+     */
+    private void analyzeClass(ClassDescriptor classDescriptor) {
+        currentClass = classDescriptor;
+        classFailure = null;
+        Arrays.fill(pendingReports, null);
+        Arrays.fill(failures, null);
+
+        IAnalysisCache analysisCache = Global.getAnalysisCache();
+        ClassContext classContext;
+        try {
+            classContext = analysisCache.getClassAnalysis(ClassContext.class, classDescriptor);
+        } catch (CheckedAnalysisException e) {
+            classFailure = e;
+            return;
+        }
+
+        Profiler profiler = analysisCache.getProfiler();
+        profiler.start(getClass());
+        for (BufferingBugReporter memberReporter : memberReporters) {
+            memberReporter.startClass(1);
+        }
+        try {
+            visitClassContext(classContext);
+        } catch (RuntimeException e) {
+            // The detectors still walking the class would have failed in the
+            // same way on their own
+            failAll(visitingClass, e);
+        } finally {
+            for (int i = 0; i < members.length; i++) {
+                pendingReports[i] = memberReporters[i].finishClass();
+            }
+            profiler.end(getClass());
+        }
+    }
+
+    private void fail(int i, RuntimeException e) {
+        if (failures[i] == null) {
+            failures[i] = e;
+        }
+        visitingClass[i] = visitingCode[i] = sweeping[i] = wantsOpcode[i] = false;
+    }
+
+    private void failAll(boolean[] selected, RuntimeException e) {
+        for (int i = 0; i < members.length; i++) {
+            if (selected[i]) {
+                fail(i, e);
+            }
+        }
+    }
+
+    @Override
+    public void visit(JavaClass obj) {
+        for (int i = 0; i < members.length; i++) {
+            visitingClass[i] = true;
+            try {
+                members[i].copyVisitState(this);
+                members[i].visit(obj);
+            } catch (RuntimeException e) {
+                fail(i, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean shouldVisit(JavaClass obj) {
+        boolean result = false;
+        for (int i = 0; i < members.length; i++) {
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    visitingClass[i] = members[i].shouldVisit(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+                result |= visitingClass[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void visit(Field obj) {
+        for (int i = 0; i < members.length; i++) {
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visit(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visit(org.apache.bcel.classfile.Method obj) {
+        for (int i = 0; i < members.length; i++) {
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visit(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visit(Signature obj) {
+        for (int i = 0; i < members.length; i++) {
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visit(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean shouldVisitCode(Code obj) {
+        boolean result = false;
+        for (int i = 0; i < members.length; i++) {
+            visitingCode[i] = sweeping[i] = wantsOpcode[i] = false;
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    visitingCode[i] = members[i].shouldVisitCode(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+                result |= visitingCode[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void visit(Code obj) {
+        chainDone = false;
+        visitChain(obj, 0);
+    }
+
+    /**
+     * Call visit(Code) on the detectors visiting the Code attribute, starting
+     * at given position; once all of them have been called, decode the
+     * bytecode for those which asked for it.
+     */
+    private void visitChain(Code obj, int start) {
+        for (int i = start; i < members.length; i++) {
+            if (visitingCode[i]) {
+                chainPosition = i;
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visit(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+                if (chainDone) {
+                    return;
+                }
+            }
+        }
+        chainDone = true;
+        boolean anySweeping = false;
+        for (boolean b : sweeping) {
+            anySweeping |= b;
+        }
+        if (!anySweeping) {
+            return;
+        }
+        try {
+            super.visit(obj);
+        } catch (RuntimeException e) {
+            failAll(sweeping, e);
+        }
+    }
+
+    /**
+     * Called when a fused detector calls super.visit(Code).
+     */
+    void sweep(OpcodeStackDetector member, Code obj) {
+        int i = chainPosition;
+        if (chainDone || members[i] != member) {
+            throw new IllegalStateException("Fused detector " + member.getClass().getName()
+                    + " decoded bytecode out of turn");
+        }
+        sweeping[i] = true;
+        visitChain(obj, i + 1);
+        if (failures[i] != null) {
+            // Skip the rest of the detector's visit(Code) as well
+            throw failures[i];
+        }
+    }
+
+    @Override
+    public boolean beforeOpcode(int seen) {
+        super.beforeOpcode(seen);
+        boolean result = false;
+        for (int i = 0; i < members.length; i++) {
+            if (sweeping[i]) {
+                try {
+                    members[i].copyOpcodeState(this);
+                    wantsOpcode[i] = members[i].beforeOpcode(seen);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+                result |= wantsOpcode[i];
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void sawOpcode(int seen) {
+        for (int i = 0; i < members.length; i++) {
+            if (wantsOpcode[i]) {
+                try {
+                    members[i].sawOpcode(seen);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void sawBranchTo(int target) {
+        for (int i = 0; i < members.length; i++) {
+            if (sweeping[i]) {
+                try {
+                    members[i].sawBranchTo(target);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visitAfter(Code obj) {
+        for (int i = 0; i < members.length; i++) {
+            if (visitingCode[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visitAfter(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void visitAfter(JavaClass obj) {
+        for (int i = 0; i < members.length; i++) {
+            if (visitingClass[i]) {
+                try {
+                    members[i].copyVisitState(this);
+                    members[i].visitAfter(obj);
+                } catch (RuntimeException e) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+}
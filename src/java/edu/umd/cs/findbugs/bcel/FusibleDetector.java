@@ -0,0 +1,45 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package edu.umd.cs.findbugs.bcel;
+
+/**
+ * Marker interface for {@link OpcodeStackDetector}s which can share a single
+ * walk over the bytecode and a single {@link edu.umd.cs.findbugs.OpcodeStack}
+ * with other detectors, see {@link FusedOpcodeStackDetector}.
+ *
+ * <p>
+ * A fusible detector must
+ * <ul>
+ * <li>only override the following visitor methods: visit(JavaClass),
+ * shouldVisit(JavaClass), visit(Field), visit(Method), visit(Signature),
+ * shouldVisitCode(Code), visit(Code), visitAfter(Code), visitAfter(JavaClass),
+ * beforeOpcode(int), sawOpcode(int) and sawBranchTo(int);</li>
+ * <li>call super.visit(Code) from visit(Code) to have the bytecode decoded, and
+ * super.beforeOpcode(int) from beforeOpcode(int);</li>
+ * <li>not modify the OpcodeStack or its items;</li>
+ * <li>not visit methods in call order.</li>
+ * </ul>
+ * Detectors overriding other visitor methods are run on their own even if
+ * they implement this interface.
+ * </p>
+ */
+public interface FusibleDetector {
+}
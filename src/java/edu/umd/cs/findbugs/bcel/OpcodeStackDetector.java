@@ -24,6 +24,7 @@ import org.apache.bcel.classfile.Code;
 import edu.umd.cs.findbugs.BytecodeScanningDetector;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.JumpInfo;
+import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
 /**
  * Base class for Detectors that want to scan the bytecode of a method and use
@@ -42,6 +43,12 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
 
     protected OpcodeStack stack;
 
+    /**
+     * If not null, the detector decoding the bytecode and simulating the
+     * stack on behalf of this one.
+     */
+    FusedOpcodeStackDetector driver;
+
     public OpcodeStack getStack() {
         return stack;
     }
@@ -56,10 +63,20 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
         stack = null;
     }
 
+    @Override
+    public void visit(Code obj) {
+        if (driver != null)
+            driver.sweep(this, obj);
+        else
+            super.visit(obj);
+    }
+
     @Override
     public boolean beforeOpcode(int seen) {
-        stack.precomputation(this);
-        stack.mergeJumps(this);
+        if (driver == null) {
+            stack.precomputation(this);
+            stack.mergeJumps(this);
+        }
         return !stack.isTop();
     }
 
@@ -68,6 +85,14 @@ abstract public class OpcodeStackDetector extends BytecodeScanningDetector {
         stack.sawOpcode(this, seen);
     }
 
+    @Override
+    public void copyVisitState(PreorderVisitor other) {
+        super.copyVisitState(other);
+        if (other instanceof OpcodeStackDetector) {
+            stack = ((OpcodeStackDetector) other).stack;
+        }
+    }
+
     @Override
     abstract public void sawOpcode(int seen);
 }
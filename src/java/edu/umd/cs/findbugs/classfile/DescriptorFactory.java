@@ -20,8 +20,11 @@
 package edu.umd.cs.findbugs.classfile;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -37,12 +40,18 @@ import edu.umd.cs.findbugs.classfile.analysis.MethodInfo;
 import edu.umd.cs.findbugs.internalAnnotations.DottedClassName;
 import edu.umd.cs.findbugs.internalAnnotations.SlashedClassName;
 import edu.umd.cs.findbugs.util.ClassName;
-import edu.umd.cs.findbugs.util.MapCache;
 
 /**
  * Factory for creating ClassDescriptors, MethodDescriptors, and
  * FieldDescriptors.
  *
+ * <p>
+ * A DescriptorFactory may be shared by several threads (see
+ * {@link #setInstanceForCurrentThread(DescriptorFactory)}): descriptors are
+ * kept in concurrent maps, so that threads parsing classes at the same time
+ * get the same descriptors without waiting for each other.
+ * </p>
+ *
  * @author David Hovemeyer
  */
 public class DescriptorFactory {
@@ -53,34 +62,71 @@ public class DescriptorFactory {
         }
     };
 
-    private final Map<String, ClassDescriptor> classDescriptorMap;
+    private final ConcurrentMap<String, ClassDescriptor> classDescriptorMap;
 
-    private final Map<String, ClassDescriptor> dottedClassDescriptorMap;
+    private final ConcurrentMap<String, ClassDescriptor> dottedClassDescriptorMap;
 
-    private final Map<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
+    private final ConcurrentMap<MethodDescriptor, MethodDescriptor> methodDescriptorMap;
 
-    private final Map<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
+    private final ConcurrentMap<FieldDescriptor, FieldDescriptor> fieldDescriptorMap;
 
     private DescriptorFactory() {
-        this.classDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.dottedClassDescriptorMap = new HashMap<String, ClassDescriptor>();
-        this.methodDescriptorMap = new HashMap<MethodDescriptor, MethodDescriptor>();
-        this.fieldDescriptorMap = new HashMap<FieldDescriptor, FieldDescriptor>();
+        this.classDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.dottedClassDescriptorMap = new ConcurrentHashMap<String, ClassDescriptor>();
+        this.methodDescriptorMap = new ConcurrentHashMap<MethodDescriptor, MethodDescriptor>();
+        this.fieldDescriptorMap = new ConcurrentHashMap<FieldDescriptor, FieldDescriptor>();
     }
 
-    private static MapCache<String, String> stringCache = new MapCache<String, String>(10000);
+    /** Number of strings after which the string cache starts a new generation */
+    private static final int STRING_CACHE_GENERATION_SIZE = 10000;
+
+    /**
+     * Canonical strings, in two generations. When the current generation is
+     * full it becomes the old generation, and the strings of the old
+     * generation which are still canonicalized move to the new one; the others
+     * are dropped with the old generation. This bounds the cache like an LRU
+     * cache would, without locking lookups.
+     */
+    private static volatile ConcurrentMap<String, String> stringCache = new ConcurrentHashMap<String, String>();
+
+    private static volatile ConcurrentMap<String, String> oldStringCache = new ConcurrentHashMap<String, String>();
+
+    private static final AtomicInteger stringCacheSize = new AtomicInteger();
 
     public static String canonicalizeString(@CheckForNull String s) {
         if (s == null)
             return s;
-        String cached = stringCache.get(s);
+        ConcurrentMap<String, String> cache = stringCache;
+        String cached = cache.get(s);
+        if (cached != null)
+            return cached;
+        cached = oldStringCache.get(s);
+        if (cached != null)
+            s = cached;
+        cached = cache.putIfAbsent(s, s);
         if (cached != null)
             return cached;
-        stringCache.put(s, s);
+        if (stringCacheSize.incrementAndGet() == STRING_CACHE_GENERATION_SIZE)
+            newStringCacheGeneration(cache);
         return s;
     }
 
-    public static void clearStringCache() {
+    private static synchronized void newStringCacheGeneration(ConcurrentMap<String, String> full) {
+        if (stringCache == full) {
+            oldStringCache = full;
+            stringCache = new ConcurrentHashMap<String, String>();
+            stringCacheSize.set(0);
+        }
+    }
+
+    /**
+     * Drop all canonical strings, so that the strings of an analysis are not
+     * kept after it is done.
+     */
+    public static synchronized void clearStringCache() {
+        stringCache = new ConcurrentHashMap<String, String>();
+        oldStringCache = new ConcurrentHashMap<String, String>();
+        stringCacheSize.set(0);
     }
 
     /**
@@ -96,6 +142,52 @@ public class DescriptorFactory {
         instanceThreadLocal.remove();
     }
 
+    /**
+     * Make the given DescriptorFactory the instance used by the current
+     * thread. Analysis worker threads use this to share the descriptors of
+     * the thread driving the analysis.
+     *
+     * @param factory
+     *            the DescriptorFactory to use in the current thread
+     */
+    public static void setInstanceForCurrentThread(DescriptorFactory factory) {
+        instanceThreadLocal.set(factory);
+    }
+
+    /** Sets to which threads add the class descriptors they get */
+    private static final ThreadLocal<Set<ClassDescriptor>> recordedClassDescriptors = new ThreadLocal<Set<ClassDescriptor>>();
+
+    private static volatile boolean recordingClassDescriptors;
+
+    /**
+     * Record the class descriptors which the current thread gets from a
+     * DescriptorFactory: used to learn which descriptors parsing a class
+     * creates.
+     *
+     * @param recorded
+     *            set to add the class descriptors to, or null to stop
+     *            recording
+     * @return the set the class descriptors were added to before, or null
+     */
+    public static @CheckForNull
+    Set<ClassDescriptor> recordClassDescriptors(@CheckForNull Set<ClassDescriptor> recorded) {
+        if (recorded != null) {
+            recordingClassDescriptors = true;
+        }
+        Set<ClassDescriptor> previous = recordedClassDescriptors.get();
+        recordedClassDescriptors.set(recorded);
+        return previous;
+    }
+
+    private static void record(ClassDescriptor classDescriptor) {
+        if (recordingClassDescriptors) {
+            Set<ClassDescriptor> recorded = recordedClassDescriptors.get();
+            if (recorded != null) {
+                recorded.add(classDescriptor);
+            }
+        }
+    }
+
     public Collection<ClassDescriptor> getAllClassDescriptors() {
         return classDescriptorMap.values();
     }
@@ -122,12 +214,16 @@ public class DescriptorFactory {
     public @Nonnull
     ClassDescriptor getClassDescriptor(@SlashedClassName String className) {
         assert className.indexOf('.') == -1;
-        className = canonicalizeString(className);
         ClassDescriptor classDescriptor = classDescriptorMap.get(className);
         if (classDescriptor == null) {
+            className = canonicalizeString(className);
             classDescriptor = new ClassDescriptor(className);
-            classDescriptorMap.put(className, classDescriptor);
+            ClassDescriptor existing = classDescriptorMap.putIfAbsent(className, classDescriptor);
+            if (existing != null) {
+                classDescriptor = existing;
+            }
         }
+        record(classDescriptor);
         return classDescriptor;
     }
 
@@ -144,6 +240,8 @@ public class DescriptorFactory {
         if (classDescriptor == null) {
             classDescriptor = getClassDescriptor(dottedClassName.replace('.', '/'));
             dottedClassDescriptorMap.put(dottedClassName, classDescriptor);
+        } else {
+            record(classDescriptor);
         }
         return classDescriptor;
     }
@@ -172,9 +270,8 @@ public class DescriptorFactory {
         if (className == null)
             throw new NullPointerException("className must be nonnull");
         MethodDescriptor methodDescriptor = new MethodDescriptor(className, name, signature, isStatic);
-        MethodDescriptor existing = methodDescriptorMap.get(methodDescriptor);
+        MethodDescriptor existing = methodDescriptorMap.putIfAbsent(methodDescriptor, methodDescriptor);
         if (existing == null) {
-            methodDescriptorMap.put(methodDescriptor, methodDescriptor);
             existing = methodDescriptor;
         }
         return existing;
@@ -233,9 +330,8 @@ public class DescriptorFactory {
      */
     public FieldDescriptor getFieldDescriptor(@SlashedClassName String className, String name, String signature, boolean isStatic) {
         FieldDescriptor fieldDescriptor = new FieldDescriptor(className, name, signature, isStatic);
-        FieldDescriptor existing = fieldDescriptorMap.get(fieldDescriptor);
+        FieldDescriptor existing = fieldDescriptorMap.putIfAbsent(fieldDescriptor, fieldDescriptor);
         if (existing == null) {
-            fieldDescriptorMap.put(fieldDescriptor, fieldDescriptor);
             existing = fieldDescriptor;
         }
         return existing;
@@ -20,6 +20,7 @@
 package edu.umd.cs.findbugs.classfile.analysis;
 
 import java.lang.annotation.ElementType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -72,6 +73,9 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
 
     private final boolean hasStubs;
 
+    /** Bridge methods of the class, and the methods they bridge to */
+    private final MethodInfo[] bridgeMethods, bridgedMethods;
+
     public static class Builder extends ClassNameAndSuperclassInfo.Builder {
         private List<FieldInfo> fieldInfoList = new LinkedList<FieldInfo>();
 
@@ -96,7 +100,6 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
 
         @Override
         public ClassInfo build() {
-            AnalysisContext context = AnalysisContext.currentAnalysisContext();
             FieldInfo fields[];
             MethodInfo methods[];
             if (fieldInfoList.size() == 0)
@@ -104,13 +107,15 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
             else
                 fields = fieldInfoList.toArray(new FieldInfo[fieldInfoList.size()]);
 
+            List<MethodInfo> bridgeMethods = new ArrayList<MethodInfo>();
+            List<MethodInfo> bridgedMethods = new ArrayList<MethodInfo>();
             for (Map.Entry<MethodInfo, String> e : bridgedSignatures.entrySet()) {
                 MethodInfo method = e.getKey();
                 String signature = e.getValue();
                 for (MethodInfo m : methodInfoList)
                     if (m.getName().equals(m.getName()) && m.getSignature().equals(signature)) {
-                        context.setBridgeMethod(method, m);
-
+                        bridgeMethods.add(method);
+                        bridgedMethods.add(m);
                     }
 
             }
@@ -120,10 +125,14 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
             else
                 methods = methodInfoList.toArray(new MethodInfo[methodInfoList.size()]);
 
-            return new ClassInfo(classDescriptor, classSourceSignature, superclassDescriptor, interfaceDescriptorList,
-                    codeBaseEntry, accessFlags, source, majorVersion, minorVersion, referencedClassDescriptorList,
-                    calledClassDescriptorList, classAnnotations, fields, methods, immediateEnclosingClass, usesConcurrency,
-                    hasStubs);
+            ClassInfo classInfo = new ClassInfo(classDescriptor, classSourceSignature, superclassDescriptor,
+                    interfaceDescriptorList, codeBaseEntry, accessFlags, source, majorVersion, minorVersion,
+                    referencedClassDescriptorList, calledClassDescriptorList, fieldClassDescriptorList, classAnnotations,
+                    fields, methods, immediateEnclosingClass, usesConcurrency, hasStubs,
+                    bridgeMethods.toArray(new MethodInfo[bridgeMethods.size()]),
+                    bridgedMethods.toArray(new MethodInfo[bridgedMethods.size()]));
+            classInfo.registerBridgeMethods();
+            return classInfo;
         }
 
         public void setSource(String source) {
@@ -234,6 +243,8 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
      *            class
      * @param calledClassDescriptors
      *            TODO
+     * @param fieldClassDescriptors
+     *            ClassDescriptors of the classes whose fields the class uses
      * @param fieldDescriptorList
      *            FieldDescriptors of fields defined in the class
      * @param methodInfoList
@@ -242,15 +253,19 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
      *            TODO
      * @param hasStubs
      *            TODO
+     * @param bridgeMethods
+     *            bridge methods of the class
+     * @param bridgedMethods
+     *            methods the bridge methods bridge to, in the same order
      */
     private ClassInfo(ClassDescriptor classDescriptor, String classSourceSignature, ClassDescriptor superclassDescriptor,
             ClassDescriptor[] interfaceDescriptorList, ICodeBaseEntry codeBaseEntry, int accessFlags, String source,
             int majorVersion, int minorVersion, Collection<ClassDescriptor> referencedClassDescriptorList,
-            Collection<ClassDescriptor> calledClassDescriptors, Map<ClassDescriptor, AnnotationValue> classAnnotations,
-            FieldInfo[] fieldDescriptorList, MethodInfo[] methodInfoList, ClassDescriptor immediateEnclosingClass,
-            boolean usesConcurrency, boolean hasStubs) {
+            Collection<ClassDescriptor> calledClassDescriptors, Collection<ClassDescriptor> fieldClassDescriptors,
+            Map<ClassDescriptor, AnnotationValue> classAnnotations, FieldInfo[] fieldDescriptorList, MethodInfo[] methodInfoList, ClassDescriptor immediateEnclosingClass,
+            boolean usesConcurrency, boolean hasStubs, MethodInfo[] bridgeMethods, MethodInfo[] bridgedMethods) {
         super(classDescriptor, superclassDescriptor, interfaceDescriptorList, codeBaseEntry, accessFlags,
-                referencedClassDescriptorList, calledClassDescriptors, majorVersion, minorVersion);
+                referencedClassDescriptorList, calledClassDescriptors, fieldClassDescriptors, majorVersion, minorVersion);
         this.source = source;
         this.classSourceSignature = classSourceSignature;
         if (fieldDescriptorList.length == 0)
@@ -261,6 +276,8 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
         this.classAnnotations = Util.immutableMap(classAnnotations);
         this.usesConcurrency = usesConcurrency;
         this.hasStubs = hasStubs;
+        this.bridgeMethods = bridgeMethods;
+        this.bridgedMethods = bridgedMethods;
         this.methodsInCallOrder = computeMethodsInCallOrder();
         if (false) {
             System.out.println("Methods in call order for " + classDescriptor);
@@ -271,6 +288,19 @@ public class ClassInfo extends ClassNameAndSuperclassInfo implements XClass, Ann
         }
     }
 
+    /**
+     * Register the bridge methods of the class with the current analysis
+     * context. This is done when the class is parsed, and must be done again
+     * when the ClassInfo is reused by another analysis.
+     */
+    public void registerBridgeMethods() {
+        if (bridgeMethods.length == 0)
+            return;
+        AnalysisContext context = AnalysisContext.currentAnalysisContext();
+        for (int i = 0; i < bridgeMethods.length; i++)
+            context.setBridgeMethod(bridgeMethods[i], bridgedMethods[i]);
+    }
+
     /**
      * @return Returns the fieldDescriptorList.
      */
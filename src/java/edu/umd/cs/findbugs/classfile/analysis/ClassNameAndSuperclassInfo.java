@@ -45,8 +45,12 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
 
     private final int accessFlags;
 
+    private final Collection<ClassDescriptor> referencedClassDescriptorList;
+
     private final Collection<ClassDescriptor> calledClassDescriptorList;
 
+    private final Collection<ClassDescriptor> fieldClassDescriptorList;
+
     private final int majorVersion, minorVersion;
 
     public static class Builder {
@@ -66,9 +70,12 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
 
         Collection<ClassDescriptor> calledClassDescriptorList = Collections.<ClassDescriptor> emptyList();
 
+        Collection<ClassDescriptor> fieldClassDescriptorList = Collections.<ClassDescriptor> emptyList();
+
         public ClassNameAndSuperclassInfo build() {
             return new ClassNameAndSuperclassInfo(classDescriptor, superclassDescriptor, interfaceDescriptorList, codeBaseEntry,
-                    accessFlags, referencedClassDescriptorList, calledClassDescriptorList, majorVersion, minorVersion);
+                    accessFlags, referencedClassDescriptorList, calledClassDescriptorList, fieldClassDescriptorList,
+                    majorVersion, minorVersion);
         }
 
         /**
@@ -133,6 +140,17 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
             else
                 this.calledClassDescriptorList = new ArrayList<ClassDescriptor>(calledClassDescriptorList);
         }
+
+        /**
+         * @param fieldClassDescriptorList
+         *            The classes whose fields the class uses.
+         */
+        public void setFieldClassDescriptors(Collection<ClassDescriptor> fieldClassDescriptorList) {
+            if (fieldClassDescriptorList.size() == 0)
+                this.fieldClassDescriptorList = Collections.emptyList();
+            else
+                this.fieldClassDescriptorList = new ArrayList<ClassDescriptor>(fieldClassDescriptorList);
+        }
     }
 
     /**
@@ -153,9 +171,9 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
      */
     ClassNameAndSuperclassInfo(ClassDescriptor classDescriptor, ClassDescriptor superclassDescriptor,
             ClassDescriptor[] interfaceDescriptorList, ICodeBaseEntry codeBaseEntry, int accessFlags,
-            /* TODO: We aren't doing anything with this */
             Collection<ClassDescriptor> referencedClassDescriptorList,
-            @Nonnull Collection<ClassDescriptor> calledClassDescriptorList, int majorVersion, int minorVersion) {
+            @Nonnull Collection<ClassDescriptor> calledClassDescriptorList,
+            @Nonnull Collection<ClassDescriptor> fieldClassDescriptorList, int majorVersion, int minorVersion) {
         super(classDescriptor.getClassName());
         this.superclassDescriptor = superclassDescriptor;
         this.interfaceDescriptorList = interfaceDescriptorList;
@@ -164,6 +182,11 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
         if (calledClassDescriptorList == null)
             throw new NullPointerException("calledClassDescriptorList must not be null");
         this.calledClassDescriptorList = calledClassDescriptorList;
+        if (fieldClassDescriptorList == null)
+            throw new NullPointerException("fieldClassDescriptorList must not be null");
+        this.fieldClassDescriptorList = fieldClassDescriptorList;
+        this.referencedClassDescriptorList = referencedClassDescriptorList != null ? referencedClassDescriptorList
+                : Collections.<ClassDescriptor> emptyList();
         this.majorVersion = majorVersion;
         this.minorVersion = minorVersion;
 
@@ -211,6 +234,15 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
         return interfaceDescriptorList;
     }
 
+    /**
+     * @return Returns the referenced class descriptor list: the classes named
+     *         in the constant pool, and in the signatures of the fields and
+     *         methods the class uses.
+     */
+    public Collection<ClassDescriptor> getReferencedClassDescriptorList() {
+        return referencedClassDescriptorList;
+    }
+
     /**
      * @return Returns the called class descriptor list.
      */
@@ -218,6 +250,14 @@ public class ClassNameAndSuperclassInfo extends ClassDescriptor {
         return calledClassDescriptorList;
     }
 
+    /**
+     * @return Returns the classes whose fields the class uses, i.e., the
+     *         classes named in its field references.
+     */
+    public Collection<ClassDescriptor> getFieldClassDescriptorList() {
+        return fieldClassDescriptorList;
+    }
+
     /**
      * @return Returns the superclassDescriptor.
      */
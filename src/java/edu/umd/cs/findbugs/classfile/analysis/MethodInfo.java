@@ -197,12 +197,14 @@ public class MethodInfo extends MethodDescriptor implements XMethod {
 
     Map<Integer, Map<ClassDescriptor, AnnotationValue>> methodParameterAnnotations;
 
-    static IdentityHashMap<MethodInfo, Void> unconditionalThrowers = new IdentityHashMap<MethodInfo, Void>();
+    // Synchronized, since classes may be parsed by several threads at once
 
-    static IdentityHashMap<MethodInfo, Void> unsupportedMethods = new IdentityHashMap<MethodInfo, Void>();
+    static Map<MethodInfo, Void> unconditionalThrowers = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, Void>());
 
-    static IdentityHashMap<MethodInfo, MethodDescriptor> accessMethodFor = new IdentityHashMap<MethodInfo, MethodDescriptor>();
-    static IdentityHashMap<MethodInfo, Void> identifyMethods = new IdentityHashMap<MethodInfo, Void>();
+    static Map<MethodInfo, Void> unsupportedMethods = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, Void>());
+
+    static Map<MethodInfo, MethodDescriptor> accessMethodFor = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, MethodDescriptor>());
+    static Map<MethodInfo, Void> identifyMethods = Collections.synchronizedMap(new IdentityHashMap<MethodInfo, Void>());
 
     public static void clearCaches() {
         unsupportedMethods.clear();
@@ -211,6 +213,59 @@ public class MethodInfo extends MethodDescriptor implements XMethod {
         identifyMethods.clear();
     }
 
+    /**
+     * Entries of the caches for some methods, saved so that the methods can
+     * be used again after the caches are cleared.
+     */
+    public static class CacheEntries {
+        private final Map<MethodInfo, Void> unconditionalThrowers = new IdentityHashMap<MethodInfo, Void>();
+
+        private final Map<MethodInfo, Void> unsupportedMethods = new IdentityHashMap<MethodInfo, Void>();
+
+        private final Map<MethodInfo, MethodDescriptor> accessMethodFor = new IdentityHashMap<MethodInfo, MethodDescriptor>();
+
+        private final Map<MethodInfo, Void> identifyMethods = new IdentityHashMap<MethodInfo, Void>();
+    }
+
+    /**
+     * Save the entries of the caches for some methods.
+     *
+     * @param methods
+     *            the methods
+     * @return the entries, to be passed to restoreCacheEntries()
+     */
+    public static CacheEntries saveCacheEntries(Collection<? extends XMethod> methods) {
+        CacheEntries entries = new CacheEntries();
+        for (XMethod xmethod : methods) {
+            if (!(xmethod instanceof MethodInfo))
+                continue;
+            MethodInfo m = (MethodInfo) xmethod;
+            if (unconditionalThrowers.containsKey(m))
+                entries.unconditionalThrowers.put(m, null);
+            if (unsupportedMethods.containsKey(m))
+                entries.unsupportedMethods.put(m, null);
+            MethodDescriptor accessed = accessMethodFor.get(m);
+            if (accessed != null)
+                entries.accessMethodFor.put(m, accessed);
+            if (identifyMethods.containsKey(m))
+                entries.identifyMethods.put(m, null);
+        }
+        return entries;
+    }
+
+    /**
+     * Put saved entries back into the caches.
+     *
+     * @param entries
+     *            entries returned by saveCacheEntries()
+     */
+    public static void restoreCacheEntries(CacheEntries entries) {
+        unconditionalThrowers.putAll(entries.unconditionalThrowers);
+        unsupportedMethods.putAll(entries.unsupportedMethods);
+        accessMethodFor.putAll(entries.accessMethodFor);
+        identifyMethods.putAll(entries.identifyMethods);
+    }
+
     /**
      * @param className
      * @param methodName
@@ -31,6 +31,7 @@ import edu.umd.cs.findbugs.classfile.MissingClassException;
 import edu.umd.cs.findbugs.classfile.RecomputableClassAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.ResourceNotFoundException;
 import edu.umd.cs.findbugs.classfile.analysis.ClassData;
+import edu.umd.cs.findbugs.classfile.impl.MappedZipCodeBaseEntry;
 import edu.umd.cs.findbugs.classfile.impl.ZipInputStreamCodeBaseEntry;
 import edu.umd.cs.findbugs.io.IO;
 
@@ -64,6 +65,13 @@ public class ClassDataAnalysisEngine extends RecomputableClassAnalysisEngine<Cla
         byte[] data;
         if (codeBaseEntry instanceof ZipInputStreamCodeBaseEntry) {
             data = ((ZipInputStreamCodeBaseEntry) codeBaseEntry).getBytes();
+        } else if (codeBaseEntry instanceof MappedZipCodeBaseEntry) {
+            // Inflated straight into an array of the right size
+            try {
+                data = ((MappedZipCodeBaseEntry) codeBaseEntry).getBytes();
+            } catch (IOException e) {
+                throw new MissingClassException(descriptor, e);
+            }
         } else {
             // Create a ByteArrayOutputStream to capture the class data
             int length = codeBaseEntry.getNumBytes();
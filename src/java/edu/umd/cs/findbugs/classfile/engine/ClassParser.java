@@ -139,7 +139,8 @@ public class ClassParser implements ClassParserInterface {
             // Extract all references to other classes,
             // both CONSTANT_Class entries and also referenced method
             // signatures.
-            Collection<ClassDescriptor> referencedClassDescriptorList = extractReferencedClasses();
+            Set<ClassDescriptor> fieldClassSet = new HashSet<ClassDescriptor>();
+            Collection<ClassDescriptor> referencedClassDescriptorList = extractReferencedClasses(fieldClassSet);
 
             builder.setClassDescriptor(thisClassDescriptor);
             builder.setSuperclassDescriptor(superClassDescriptor);
@@ -147,6 +148,7 @@ public class ClassParser implements ClassParserInterface {
             builder.setCodeBaseEntry(codeBaseEntry);
             builder.setAccessFlags(access_flags);
             builder.setReferencedClassDescriptors(referencedClassDescriptorList);
+            builder.setFieldClassDescriptors(fieldClassSet);
             builder.setClassfileVersion(major_version, minor_version);
         } catch (IOException e) {
             throw new InvalidClassFileFormatException(expectedClassDescriptor, codeBaseEntry, e);
@@ -167,10 +169,13 @@ public class ClassParser implements ClassParserInterface {
     /**
      * Extract references to other classes.
      * 
+     * @param fieldClassSet
+     *            set the classes whose fields are referenced are added to
      * @return array of ClassDescriptors of referenced classes
      * @throws InvalidClassFileFormatException
      */
-    private Collection<ClassDescriptor> extractReferencedClasses() throws InvalidClassFileFormatException {
+    private Collection<ClassDescriptor> extractReferencedClasses(Set<ClassDescriptor> fieldClassSet)
+            throws InvalidClassFileFormatException {
         Set<ClassDescriptor> referencedClassSet = new HashSet<ClassDescriptor>();
         for (Constant constant : constantPool) {
             if (constant == null) {
@@ -189,6 +194,9 @@ public class ClassParser implements ClassParserInterface {
                 // Get the target class name
                 String className = getClassName((Integer) constant.data[0]);
                 extractReferencedClassesFromSignature(referencedClassSet, className);
+                if (constant.tag == IClassConstants.CONSTANT_Fieldref && ClassName.isValidClassName(className)) {
+                    fieldClassSet.add(DescriptorFactory.instance().getClassDescriptor(className));
+                }
 
                 // Parse signature to extract class names
                 String signature = getSignatureFromNameAndType((Integer) constant.data[1]);
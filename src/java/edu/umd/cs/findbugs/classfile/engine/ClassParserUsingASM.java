@@ -103,6 +103,8 @@ public class ClassParserUsingASM implements ClassParserInterface {
 
         final TreeSet<ClassDescriptor> calledClassSet = new TreeSet<ClassDescriptor>();
 
+        final HashSet<ClassDescriptor> fieldClassSet = new HashSet<ClassDescriptor>();
+
         classReader.accept(new ClassVisitor() {
 
             boolean isInnerClass = false;
@@ -283,6 +285,12 @@ public class ClassParserUsingASM implements ClassParserInterface {
                             resetState();
                         }
 
+                        @Override
+                        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+                            fieldClassSet.add(DescriptorFactory.instance().getClassDescriptor(owner));
+                            visitSomeInsn();
+                        }
+
                         @Override
                         public void visitVarInsn(int opcode, int var) {
                             
@@ -485,6 +493,7 @@ public class ClassParserUsingASM implements ClassParserInterface {
             offset += size;
         }
         cBuilder.setCalledClassDescriptors(calledClassSet);
+        cBuilder.setFieldClassDescriptors(fieldClassSet);
         cBuilder.setReferencedClassDescriptors(referencedClassSet);
     }
 
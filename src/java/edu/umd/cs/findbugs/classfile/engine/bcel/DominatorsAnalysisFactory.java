@@ -1,7 +1,6 @@
 package edu.umd.cs.findbugs.classfile.engine.bcel;
 
 import edu.umd.cs.findbugs.ba.CFG;
-import edu.umd.cs.findbugs.ba.Dataflow;
 import edu.umd.cs.findbugs.ba.DepthFirstSearch;
 import edu.umd.cs.findbugs.ba.DominatorsAnalysis;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
@@ -32,9 +31,7 @@ public class DominatorsAnalysisFactory extends AnalysisFactory<DominatorsAnalysi
         CFG cfg = getCFG(analysisCache, descriptor);
         DepthFirstSearch dfs = getDepthFirstSearch(analysisCache, descriptor);
         DominatorsAnalysis analysis = new DominatorsAnalysis(cfg, dfs, true);
-        Dataflow<java.util.BitSet, DominatorsAnalysis> dataflow = new Dataflow<java.util.BitSet, DominatorsAnalysis>(cfg,
-                analysis);
-        dataflow.execute();
+        analysis.computeDominatorTree();
         return analysis;
     }
 }
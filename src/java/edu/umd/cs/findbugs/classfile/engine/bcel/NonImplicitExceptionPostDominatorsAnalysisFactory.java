@@ -18,11 +18,7 @@
  */
 package edu.umd.cs.findbugs.classfile.engine.bcel;
 
-import java.util.BitSet;
-
 import edu.umd.cs.findbugs.ba.CFG;
-import edu.umd.cs.findbugs.ba.Dataflow;
-import edu.umd.cs.findbugs.ba.PostDominatorsAnalysis;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
 import edu.umd.cs.findbugs.classfile.IAnalysisCache;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
@@ -54,8 +50,7 @@ public class NonImplicitExceptionPostDominatorsAnalysisFactory extends
         CFG cfg = getCFG(analysisCache, descriptor);
         NonImplicitExceptionPostDominatorsAnalysis analysis = new NonImplicitExceptionPostDominatorsAnalysis(cfg,
                 getReverseDepthFirstSearch(analysisCache, descriptor), getDepthFirstSearch(analysisCache, descriptor));
-        Dataflow<BitSet, PostDominatorsAnalysis> dataflow = new Dataflow<BitSet, PostDominatorsAnalysis>(cfg, analysis);
-        dataflow.execute();
+        analysis.computeDominatorTree();
 
         return analysis;
     }
@@ -19,16 +19,21 @@
 
 package edu.umd.cs.findbugs.classfile.impl;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import org.apache.bcel.classfile.Code;
 import org.apache.bcel.classfile.JavaClass;
+import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.ConstantPoolGen;
+import org.objectweb.asm.ClassReader;
 
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.SystemProperties;
@@ -46,27 +51,53 @@ import edu.umd.cs.findbugs.classfile.IErrorLogger;
 import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
 import edu.umd.cs.findbugs.classfile.MethodDescriptor;
 import edu.umd.cs.findbugs.classfile.UncheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.analysis.ClassData;
 import edu.umd.cs.findbugs.log.Profiler;
-import edu.umd.cs.findbugs.util.MapCache;
+import edu.umd.cs.findbugs.util.WeightedCache;
 
 /**
  * Implementation of IAnalysisCache. This object is responsible for registering
  * class and method analysis engines and caching analysis results.
  *
+ * <p>
+ * The cache may be shared by several analysis threads. Each analysis result
+ * is computed at most once at a time: a thread requesting a result which
+ * another thread is computing waits for that result instead of computing it
+ * again.
+ * </p>
+ *
  * @author David Hovemeyer
  */
 public class AnalysisCache implements IAnalysisCache {
     /**
-     *
+     * Memory budget, in bytes, for the class analysis results which may be
+     * discarded and recomputed (or, for JavaClass objects, reloaded). Set with
+     * the findbugs.analysisCache.budgetMB property; by default a quarter of
+     * the maximum heap size.
+     */
+    private static final long CACHE_BUDGET = getCacheBudget();
+
+    /*
+     * Percentages of the budget given to each kind of result
      */
-    private static final int MAX_JAVACLASS_RESULTS_TO_CACHE = 5000;
+    private static final int JAVACLASS_BUDGET_PERCENT = 30;
+
+    private static final int CONSTANT_POOL_GEN_BUDGET_PERCENT = 10;
+
+    private static final int CLASS_CONTEXT_BUDGET_PERCENT = 30;
+
+    private static final int OTHER_CLASS_RESULTS_BUDGET_PERCENT = 5;
 
-    private static final int MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE = 500;
+    /**
+     * Number of results of each kind kept regardless of the budget.
+     */
+    private static final int MIN_CLASS_RESULTS_TO_CACHE = 10;
 
     /**
-     * Maximum number of class analysis results to cache.
+     * Estimated memory retained by a method analysis (CFG, dataflow, ...)
+     * cached in a ClassContext, per byte of bytecode of the method.
      */
-    private static final int MAX_CLASS_RESULTS_TO_CACHE = 5000;
+    private static final int METHOD_ANALYSIS_SIZE_FACTOR = 32;
 
     private static final boolean ASSERTIONS_ENABLED = SystemProperties.ASSERTIONS_ENABLED;
 
@@ -81,9 +112,16 @@ public class AnalysisCache implements IAnalysisCache {
 
     private final Map<Class<?>, IDatabaseFactory<?>> databaseFactoryMap;
 
-    private final Map<Class<?>, Map<ClassDescriptor, Object>> classAnalysisMap;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<ClassDescriptor, Object>> classAnalysisMap;
 
-    private final Map<Class<?>, Object> databaseMap;
+    private final ConcurrentMap<Class<?>, Object> databaseMap;
+
+    /**
+     * Map of threads waiting for a result to the result they are waiting for;
+     * used to avoid deadlocks between threads computing results which depend
+     * on each other.
+     */
+    private final ConcurrentMap<Thread, PendingAnalysisResult> waitingThreads = new ConcurrentHashMap<Thread, PendingAnalysisResult>();
 
     private final Map<?, ?> analysisLocals = Collections.synchronizedMap(new HashMap<Object, Object>());
 
@@ -133,6 +171,138 @@ public class AnalysisCache implements IAnalysisCache {
 
     static final AbnormalAnalysisResult NULL_ANALYSIS_RESULT = new AbnormalAnalysisResult();
 
+    private static long getCacheBudget() {
+        int budgetMB = SystemProperties.getInt("findbugs.analysisCache.budgetMB", 0);
+        if (budgetMB > 0) {
+            return budgetMB * 1024L * 1024L;
+        }
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        if (maxMemory == Long.MAX_VALUE) {
+            // No limit
+            return 1024L * 1024L * 1024L;
+        }
+        return maxMemory / 4;
+    }
+
+    /**
+     * Rough estimate, in bytes, of the memory retained by cached analysis
+     * results.
+     */
+    static final WeightedCache.Weigher<Object> ANALYSIS_RESULT_WEIGHER = new WeightedCache.Weigher<Object>() {
+        public int weigh(Object value) {
+            long size;
+            if (value instanceof JavaClass) {
+                size = estimateSize((JavaClass) value);
+            } else if (value instanceof ClassContext) {
+                size = estimateSize((ClassContext) value);
+            } else if (value instanceof ConstantPoolGen) {
+                size = 512 + 64L * ((ConstantPoolGen) value).getSize();
+            } else if (value instanceof ClassData) {
+                size = 128 + ((ClassData) value).getData().length;
+            } else if (value instanceof ClassReader) {
+                size = 128 + 2L * ((ClassReader) value).b.length;
+            } else if (value instanceof AbnormalAnalysisResult || value instanceof PendingAnalysisResult) {
+                size = 128;
+            } else {
+                size = 1024;
+            }
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    };
+
+    private static long estimateSize(JavaClass jclass) {
+        long size = 1024 + 48L * jclass.getConstantPool().getLength() + 64L * jclass.getFields().length;
+        for (Method method : jclass.getMethods()) {
+            size += 256;
+            Code code = method.getCode();
+            if (code != null) {
+                size += 2L * code.getLength();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the memory retained by a ClassContext, including the method
+     * analyses it has cached so far. The analyses are assumed to be of
+     * methods of average size.
+     */
+    private static long estimateSize(ClassContext classContext) {
+        JavaClass jclass = classContext.getJavaClass();
+        return estimateSize(jclass) + classContext.getNumMethodAnalyses() * estimateMethodAnalysisSize(jclass);
+    }
+
+    /**
+     * Estimate the memory retained by one method analysis of a method of
+     * average size of the given class.
+     */
+    private static long estimateMethodAnalysisSize(JavaClass jclass) {
+        int numMethods = 0;
+        long codeLength = 0;
+        for (Method method : jclass.getMethods()) {
+            Code code = method.getCode();
+            if (code != null) {
+                numMethods++;
+                codeLength += code.getLength();
+            }
+        }
+        return 256 + (numMethods > 0 ? METHOD_ANALYSIS_SIZE_FACTOR * codeLength / numMethods : 0);
+    }
+
+    /**
+     * Placeholder stored in place of an analysis result while the owning
+     * thread is computing it.
+     */
+    static class PendingAnalysisResult {
+        final Thread owner = Thread.currentThread();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile Object result;
+
+        void complete(@CheckForNull Object result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        /**
+         * Wait for the owning thread to finish computing the result.
+         *
+         * @return the result, or null if the owning thread failed to compute
+         *         one
+         */
+        @CheckForNull
+        Object await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // The owner is not interrupted by us, so it will finish
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Computation of a result to be cached by
+     * {@link AnalysisCache#computeIfAbsent(ConcurrentMap, Object, Profiler.CacheProfile, ResultComputation)}
+     * .
+     */
+    interface ResultComputation {
+        /**
+         * @return the result to cache; analysis failures are returned as
+         *         AbnormalAnalysisResult objects
+         */
+        Object compute();
+    }
+
     @SuppressWarnings("unchecked")
     static <E> E checkedCast(Class<E> analysisClass, Object o) {
         if (SystemProperties.ASSERTIONS_ENABLED)
@@ -151,11 +321,11 @@ public class AnalysisCache implements IAnalysisCache {
     AnalysisCache(IClassPath classPath, BugReporter errorLogger) {
         this.classPath = classPath;
         this.bugReporter = errorLogger;
-        this.classAnalysisEngineMap = new HashMap<Class<?>, IClassAnalysisEngine<?>>();
-        this.methodAnalysisEngineMap = new HashMap<Class<?>, IMethodAnalysisEngine<?>>();
-        this.databaseFactoryMap = new HashMap<Class<?>, IDatabaseFactory<?>>();
-        this.classAnalysisMap = new HashMap<Class<?>, Map<ClassDescriptor, Object>>();
-        this.databaseMap = new HashMap<Class<?>, Object>();
+        this.classAnalysisEngineMap = new ConcurrentHashMap<Class<?>, IClassAnalysisEngine<?>>();
+        this.methodAnalysisEngineMap = new ConcurrentHashMap<Class<?>, IMethodAnalysisEngine<?>>();
+        this.databaseFactoryMap = new ConcurrentHashMap<Class<?>, IDatabaseFactory<?>>();
+        this.classAnalysisMap = new ConcurrentHashMap<Class<?>, ConcurrentMap<ClassDescriptor, Object>>();
+        this.databaseMap = new ConcurrentHashMap<Class<?>, Object>();
     }
 
     /*
@@ -172,10 +342,11 @@ public class AnalysisCache implements IAnalysisCache {
 
         try {
             Map<ClassDescriptor, ClassContext> map = getAllClassAnalysis(ClassContext.class);
-            Collection<?> allClassContexts = map.values();
-            for (Object c : allClassContexts) {
+            for (Map.Entry<ClassDescriptor, ?> entry : map.entrySet()) {
+                Object c = entry.getValue();
                 if (c instanceof ClassContext) {
                     ((ClassContext) c).purgeAllMethodAnalyses();
+                    methodAnalysesPurged(entry.getKey(), (ClassContext) c);
                 }
             }
         } catch (ClassCastException e) {
@@ -221,14 +392,9 @@ public class AnalysisCache implements IAnalysisCache {
      * @param map non null, pre-filled map with analysis data for given type
      */
     public <E> void reuseClassAnalysis(Class<E> analysisClass, Map<ClassDescriptor, Object> map) {
-        Map<ClassDescriptor, Object> myMap = classAnalysisMap.get(analysisClass);
-        if (myMap != null) {
-            myMap.putAll(map);
-        } else {
-            myMap = createMap(classAnalysisEngineMap, analysisClass);
-            myMap.putAll(map);
-            classAnalysisMap.put(analysisClass, myMap);
-        }
+        Map<ClassDescriptor, Object> myMap = findOrCreateDescriptorMap(classAnalysisMap, classAnalysisEngineMap,
+                analysisClass);
+        myMap.putAll(map);
     }
 
     /*
@@ -239,59 +405,33 @@ public class AnalysisCache implements IAnalysisCache {
      * .Class, edu.umd.cs.findbugs.classfile.ClassDescriptor)
      */
     @SuppressWarnings("unchecked")
-    public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) throws CheckedAnalysisException {
+    public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull final ClassDescriptor classDescriptor) throws CheckedAnalysisException {
         if (classDescriptor == null) {
             throw new NullPointerException("classDescriptor is null");
         }
         // Get the descriptor->result map for this analysis class,
         // creating if necessary
-        Map<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(classAnalysisMap, 
-                classAnalysisEngineMap,
-                analysisClass);
+        ConcurrentMap<ClassDescriptor, Object> descriptorMap = findOrCreateDescriptorMap(classAnalysisMap,
+                classAnalysisEngineMap, analysisClass);
 
         // See if there is a cached result in the descriptor map
+        Profiler.CacheProfile cacheProfile = getProfiler().getCacheProfile(analysisClass);
         Object analysisResult = descriptorMap.get(classDescriptor);
-        if (analysisResult == null) {
+        if (analysisResult != null && !(analysisResult instanceof PendingAnalysisResult)) {
+            cacheProfile.hit();
+        } else {
             // No cached result - compute (or recompute)
 
-            IAnalysisEngine<ClassDescriptor, E> engine = (IAnalysisEngine<ClassDescriptor, E>) classAnalysisEngineMap
+            final IAnalysisEngine<ClassDescriptor, E> engine = (IAnalysisEngine<ClassDescriptor, E>) classAnalysisEngineMap
                     .get(analysisClass);
             if (engine == null) {
                 throw new IllegalArgumentException("No analysis engine registered to produce " + analysisClass.getName());
             }
-            Profiler profiler = getProfiler();
-            // Perform the analysis
-            try {
-                profiler.start(engine.getClass());
-                analysisResult = engine.analyze(this, classDescriptor);
-
-                // If engine returned null, we need to construct
-                // an AbnormalAnalysisResult object to record that fact.
-                // Otherwise we will try to recompute the value in
-                // the future.
-                if (analysisResult == null) {
-                    analysisResult = NULL_ANALYSIS_RESULT;
+            analysisResult = computeIfAbsent(descriptorMap, classDescriptor, cacheProfile, new ResultComputation() {
+                public Object compute() {
+                    return analyzeClass(engine, classDescriptor);
                 }
-            } catch (CheckedAnalysisException e) {
-                // Exception - make note
-                // Andrei: e.getStackTrace() cannot be null, but getter clones
-                // the stack...
-                // if (e.getStackTrace() == null)
-                // e.fillInStackTrace();
-                analysisResult = new AbnormalAnalysisResult(e);
-            } catch (RuntimeException e) {
-                // Exception - make note
-                // Andrei: e.getStackTrace() cannot be null, but getter clones
-                // the stack...
-                // if (e.getStackTrace() == null)
-                // e.fillInStackTrace();
-                analysisResult = new AbnormalAnalysisResult(e);
-            } finally {
-                profiler.end(engine.getClass());
-            }
-
-            // Save the result
-            descriptorMap.put(classDescriptor, analysisResult);
+            });
         }
 
         // Abnormal analysis result?
@@ -302,6 +442,142 @@ public class AnalysisCache implements IAnalysisCache {
         return checkedCast(analysisClass, analysisResult);
     }
 
+    /**
+     * Analyze a class.
+     *
+     * @param engine
+     *            the analysis engine
+     * @param classDescriptor
+     *            the class to analyze
+     * @return the analysis result, or an AbnormalAnalysisResult if the engine
+     *         returned null or failed
+     */
+    private <E> Object analyzeClass(IAnalysisEngine<ClassDescriptor, E> engine, ClassDescriptor classDescriptor) {
+        Object analysisResult;
+        Profiler profiler = getProfiler();
+        // Perform the analysis
+        try {
+            profiler.start(engine.getClass());
+            analysisResult = engine.analyze(this, classDescriptor);
+
+            // If engine returned null, we need to construct
+            // an AbnormalAnalysisResult object to record that fact.
+            // Otherwise we will try to recompute the value in
+            // the future.
+            if (analysisResult == null) {
+                analysisResult = NULL_ANALYSIS_RESULT;
+            }
+        } catch (CheckedAnalysisException e) {
+            // Exception - make note
+            // Andrei: e.getStackTrace() cannot be null, but getter clones
+            // the stack...
+            // if (e.getStackTrace() == null)
+            // e.fillInStackTrace();
+            analysisResult = new AbnormalAnalysisResult(e);
+        } catch (RuntimeException e) {
+            // Exception - make note
+            // Andrei: e.getStackTrace() cannot be null, but getter clones
+            // the stack...
+            // if (e.getStackTrace() == null)
+            // e.fillInStackTrace();
+            analysisResult = new AbnormalAnalysisResult(e);
+        } finally {
+            profiler.end(engine.getClass());
+        }
+        return analysisResult;
+    }
+
+    /**
+     * Get a cached result, computing and caching it if there is none. If
+     * another thread is computing the result, wait for it rather than
+     * computing it again, unless waiting could deadlock (i.e., the other
+     * thread is itself waiting, directly or indirectly, for a result the
+     * current thread is computing). In that case the result is computed again
+     * without being cached.
+     *
+     * @param map
+     *            the map caching the results
+     * @param key
+     *            the key of the result
+     * @param cacheProfile
+     *            statistics to record the cache hit or miss in, or null
+     * @param computation
+     *            computes the result if needed
+     * @return the result, never null
+     */
+    private <K> Object computeIfAbsent(ConcurrentMap<K, Object> map, K key,
+            @CheckForNull Profiler.CacheProfile cacheProfile, ResultComputation computation) {
+        while (true) {
+            Object result = map.get(key);
+            if (result == null) {
+                PendingAnalysisResult pending = new PendingAnalysisResult();
+                result = map.putIfAbsent(key, pending);
+                if (result == null) {
+                    if (cacheProfile != null) {
+                        cacheProfile.miss();
+                    }
+                    Object computed = null;
+                    try {
+                        computed = computation.compute();
+                        // The entry may have been evicted or purged meanwhile,
+                        // in which case the result is not cached
+                        map.replace(key, pending, computed);
+                    } finally {
+                        if (computed == null) {
+                            map.remove(key, pending);
+                        }
+                        pending.complete(computed);
+                    }
+                    return computed;
+                }
+            }
+            if (!(result instanceof PendingAnalysisResult)) {
+                if (cacheProfile != null) {
+                    cacheProfile.hit();
+                }
+                return result;
+            }
+
+            PendingAnalysisResult pending = (PendingAnalysisResult) result;
+            Thread currentThread = Thread.currentThread();
+            waitingThreads.put(currentThread, pending);
+            try {
+                if (wouldDeadlock(pending)) {
+                    if (cacheProfile != null) {
+                        cacheProfile.miss();
+                    }
+                    return computation.compute();
+                }
+                result = pending.await();
+            } finally {
+                waitingThreads.remove(currentThread);
+            }
+            if (result != null) {
+                if (cacheProfile != null) {
+                    cacheProfile.hit();
+                }
+                return result;
+            }
+            // The owner failed to compute the result: try again
+        }
+    }
+
+    /**
+     * Determine whether the current thread, which is registered as waiting
+     * for given pending result, would wait for itself.
+     */
+    private boolean wouldDeadlock(PendingAnalysisResult pending) {
+        Thread currentThread = Thread.currentThread();
+        int limit = waitingThreads.size();
+        for (int i = 0; pending != null && i <= limit; i++) {
+            if (pending.owner == currentThread) {
+                return true;
+            }
+            pending = waitingThreads.get(pending.owner);
+        }
+        return false;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -314,7 +590,11 @@ public class AnalysisCache implements IAnalysisCache {
         if (descriptorMap == null) {
             return null;
         }
-        return checkedCast(analysisClass, descriptorMap.get(classDescriptor));
+        Object analysisResult = descriptorMap.get(classDescriptor);
+        if (analysisResult instanceof PendingAnalysisResult) {
+            return null;
+        }
+        return checkedCast(analysisClass, analysisResult);
     }
 
     String hex(Object o) {
@@ -328,27 +608,35 @@ public class AnalysisCache implements IAnalysisCache {
      * edu.umd.cs.findbugs.classfile.IAnalysisCache#getMethodAnalysis(java.lang
      * .Class, edu.umd.cs.findbugs.classfile.MethodDescriptor)
      */
-    public <E> E getMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor) throws CheckedAnalysisException {
+    public <E> E getMethodAnalysis(final Class<E> analysisClass, @Nonnull final MethodDescriptor methodDescriptor) throws CheckedAnalysisException {
         if (methodDescriptor == null) {
             throw new NullPointerException("methodDescriptor is null");
         }
-        ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
-        Object object = classContext.getMethodAnalysis(analysisClass, methodDescriptor);
+        final ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
+        ConcurrentMap<MethodDescriptor, Object> objectMap = classContext.getObjectMap(analysisClass);
+        Profiler.CacheProfile cacheProfile = getProfiler().getCacheProfile(analysisClass);
+        Object object = objectMap.get(methodDescriptor);
 
-        if (object == null) {
-            try {
-                object = analyzeMethod(classContext, analysisClass, methodDescriptor);
-                if (object == null) {
-                    object = NULL_ANALYSIS_RESULT;
+        if (object != null && !(object instanceof PendingAnalysisResult)) {
+            cacheProfile.hit();
+        } else {
+            object = computeIfAbsent(objectMap, methodDescriptor, cacheProfile, new ResultComputation() {
+                public Object compute() {
+                    Object result;
+                    try {
+                        result = analyzeMethod(classContext, analysisClass, methodDescriptor);
+                        if (result == null) {
+                            result = NULL_ANALYSIS_RESULT;
+                        }
+                    } catch (RuntimeException e) {
+                        result = new AbnormalAnalysisResult(e);
+                    } catch (CheckedAnalysisException e) {
+                        result = new AbnormalAnalysisResult(e);
+                    }
+                    methodAnalysisStored(methodDescriptor.getClassDescriptor(), classContext);
+                    return result;
                 }
-            } catch (RuntimeException e) {
-                object = new AbnormalAnalysisResult(e);
-            } catch (CheckedAnalysisException e) {
-                object = new AbnormalAnalysisResult(e);
-            }
-
-            classContext.putMethodAnalysis(analysisClass, methodDescriptor, object);
-
+            });
         }
         if (Debug.VERIFY_INTEGRITY && object == null) {
             throw new IllegalStateException("AnalysisFactory failed to produce a result object");
@@ -403,6 +691,7 @@ public class AnalysisCache implements IAnalysisCache {
             ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
             assert analysisClass.isInstance(analysisObject);
             classContext.putMethodAnalysis(analysisClass, methodDescriptor, analysisObject);
+            methodAnalysisStored(methodDescriptor.getClassDescriptor(), classContext);
         } catch (CheckedAnalysisException e) {
             IllegalStateException ise = new IllegalStateException("Unexpected exception adding method analysis to cache");
             ise.initCause(e);
@@ -423,6 +712,7 @@ public class AnalysisCache implements IAnalysisCache {
 
             ClassContext classContext = getClassAnalysis(ClassContext.class, methodDescriptor.getClassDescriptor());
             classContext.purgeMethodAnalyses(methodDescriptor);
+            methodAnalysesPurged(methodDescriptor.getClassDescriptor(), classContext);
         } catch (CheckedAnalysisException e) {
             IllegalStateException ise = new IllegalStateException("Unexpected exception purging method analyses from cache");
             ise.initCause(e);
@@ -430,6 +720,36 @@ public class AnalysisCache implements IAnalysisCache {
         }
     }
 
+    /**
+     * Add the estimated size of a method analysis just stored in a
+     * ClassContext to the weight of the cached ClassContext. This is cheaper
+     * than weighing the ClassContext again, which counts all its method
+     * analyses. Method analyses later discarded by the (bounded) per-class
+     * caches are not subtracted, so the weight of a ClassContext whose
+     * analyses are recomputed may be overestimated, making it an earlier
+     * candidate for eviction.
+     */
+    @SuppressWarnings("unchecked")
+    private void methodAnalysisStored(ClassDescriptor classDescriptor, ClassContext classContext) {
+        ConcurrentMap<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(ClassContext.class);
+        if (descriptorMap instanceof WeightedCache) {
+            int size = (int) Math.min(estimateMethodAnalysisSize(classContext.getJavaClass()), Integer.MAX_VALUE);
+            ((WeightedCache<ClassDescriptor, Object>) descriptorMap).addWeight(classDescriptor, classContext, size);
+        }
+    }
+
+    /**
+     * Weigh a cached ClassContext again after some of its method analyses
+     * have been purged.
+     */
+    @SuppressWarnings("unchecked")
+    private void methodAnalysesPurged(ClassDescriptor classDescriptor, ClassContext classContext) {
+        ConcurrentMap<ClassDescriptor, Object> descriptorMap = classAnalysisMap.get(ClassContext.class);
+        if (descriptorMap instanceof WeightedCache) {
+            ((WeightedCache<ClassDescriptor, Object>) descriptorMap).reweigh(classDescriptor, classContext);
+        }
+    }
+
     /**
      * Find or create a descriptor to analysis object map.
      *
@@ -446,39 +766,56 @@ public class AnalysisCache implements IAnalysisCache {
      *            the analysis map
      * @return the descriptor to analysis object map
      */
-    private static <DescriptorType> Map<DescriptorType, Object> findOrCreateDescriptorMap(
-            final Map<Class<?>, Map<DescriptorType, Object>> analysisClassToDescriptorMapMap,
+    private <DescriptorType> ConcurrentMap<DescriptorType, Object> findOrCreateDescriptorMap(
+            final ConcurrentMap<Class<?>, ConcurrentMap<DescriptorType, Object>> analysisClassToDescriptorMapMap,
             final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap, 
                     final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap = analysisClassToDescriptorMapMap.get(analysisClass);
+        ConcurrentMap<DescriptorType, Object> descriptorMap = analysisClassToDescriptorMapMap.get(analysisClass);
         if (descriptorMap == null) {
             descriptorMap = createMap(engineMap, analysisClass);
-            analysisClassToDescriptorMapMap.put(analysisClass, descriptorMap);
+            ConcurrentMap<DescriptorType, Object> existing = analysisClassToDescriptorMapMap.putIfAbsent(analysisClass,
+                    descriptorMap);
+            if (existing != null) {
+                descriptorMap = existing;
+            }
         }
         return descriptorMap;
     }
 
-    private static <DescriptorType> Map<DescriptorType, Object> createMap(
+    private <DescriptorType> ConcurrentMap<DescriptorType, Object> createMap(
             final Map<Class<?>, ? extends IAnalysisEngine<DescriptorType, ?>> engineMap,
                     final Class<?> analysisClass) {
-        Map<DescriptorType, Object> descriptorMap;
-        // Create a MapCache that allows the analysis engine to
+        ConcurrentMap<DescriptorType, Object> descriptorMap;
+        // Create a cache that allows the analysis engine to
         // decide that analysis results should be retained indefinitely.
         IAnalysisEngine<DescriptorType, ?> engine = engineMap.get(analysisClass);
         if (analysisClass.equals(JavaClass.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_JAVACLASS_RESULTS_TO_CACHE);
+            descriptorMap = createWeightedCache(analysisClass, JAVACLASS_BUDGET_PERCENT, 1);
         } else if (analysisClass.equals(ConstantPoolGen.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_CONSTANT_POOL_GEN_RESULTS_TO_CACHE);
+            descriptorMap = createWeightedCache(analysisClass, CONSTANT_POOL_GEN_BUDGET_PERCENT, 1);
         } else if (analysisClass.equals(ClassContext.class)) {
-            descriptorMap = new MapCache<DescriptorType, Object>(10);
+            // All detectors visiting a class use its ClassContext in quick
+            // succession, so give recently created ones a bigger window
+            descriptorMap = createWeightedCache(analysisClass, CLASS_CONTEXT_BUDGET_PERCENT, 20);
         } else if (engine instanceof IClassAnalysisEngine && ((IClassAnalysisEngine<?>) engine).canRecompute()) {
-            descriptorMap = new MapCache<DescriptorType, Object>(MAX_CLASS_RESULTS_TO_CACHE);
+            descriptorMap = createWeightedCache(analysisClass, OTHER_CLASS_RESULTS_BUDGET_PERCENT, 1);
         } else {
-            descriptorMap = new HashMap<DescriptorType, Object>();
+            descriptorMap = new ConcurrentHashMap<DescriptorType, Object>();
         }
         return descriptorMap;
     }
 
+    private <DescriptorType> ConcurrentMap<DescriptorType, Object> createWeightedCache(final Class<?> analysisClass,
+            int budgetPercent, int windowPercent) {
+        return new WeightedCache<DescriptorType, Object>(CACHE_BUDGET / 100 * budgetPercent, MIN_CLASS_RESULTS_TO_CACHE,
+                windowPercent, ANALYSIS_RESULT_WEIGHER) {
+            @Override
+            protected void evicted(DescriptorType key, Object value) {
+                getProfiler().getCacheProfile(analysisClass).evicted();
+            }
+        };
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -527,24 +864,26 @@ public class AnalysisCache implements IAnalysisCache {
     public <E> E getDatabase(Class<E> databaseClass, boolean optional) {
         Object database = databaseMap.get(databaseClass);
 
-        if (database == null) {
-            try {
-                // Find the database factory
-                IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
-                if (databaseFactory == null) {
-                    if (optional) return null;
-                    throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
-                }
-
-                // Create the database
-                database = databaseFactory.createDatabase();
-            } catch (CheckedAnalysisException e) {
-                // Error - record the analysis error
-                database = new AbnormalAnalysisResult(e);
+        if (database == null || database instanceof PendingAnalysisResult) {
+            // Find the database factory
+            final IDatabaseFactory<?> databaseFactory = databaseFactoryMap.get(databaseClass);
+            if (databaseFactory == null) {
+                if (optional) return null;
+                throw new IllegalArgumentException("No database factory registered for " + databaseClass.getName());
             }
-            // FIXME: should catch and re-throw RuntimeExceptions?
 
-            databaseMap.put(databaseClass, database);
+            database = computeIfAbsent(databaseMap, databaseClass, null, new ResultComputation() {
+                public Object compute() {
+                    try {
+                        // Create the database
+                        return databaseFactory.createDatabase();
+                    } catch (CheckedAnalysisException e) {
+                        // Error - record the analysis error
+                        return new AbnormalAnalysisResult(e);
+                    }
+                    // FIXME: should catch and re-throw RuntimeExceptions?
+                }
+            });
         }
 
         if (database instanceof AbnormalAnalysisResult) {
@@ -36,6 +36,8 @@ import java.util.StringTokenizer;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
@@ -72,6 +74,12 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
     private static final boolean NO_PARSE_CLASS_NAMES = SystemProperties.getBoolean("findbugs2.builder.noparseclassnames");
 
+    /**
+     * File holding the index of scanned archives (see {@link ClassPathIndex}),
+     * or null to always scan archives.
+     */
+    private static final String INDEX_FILE = SystemProperties.getProperty("findbugs2.builder.index");
+
     /**
      * Worklist item. Represents one codebase to be processed during the
      * classpath construction algorithm.
@@ -167,6 +175,8 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
     private boolean scanNestedArchives;
 
+    private @CheckForNull ClassPathIndex index;
+
     /**
      * Constructor.
      * 
@@ -182,6 +192,9 @@ public class ClassPathBuilder implements IClassPathBuilder {
         this.discoveredCodeBaseList = new LinkedList<DiscoveredCodeBase>();
         this.discoveredCodeBaseMap = new HashMap<String, DiscoveredCodeBase>();
         this.appClassList = new LinkedList<ClassDescriptor>();
+        if (INDEX_FILE != null && !NO_PARSE_CLASS_NAMES) {
+            this.index = new ClassPathIndex(new File(INDEX_FILE));
+        }
     }
 
     /*
@@ -260,6 +273,14 @@ public class ClassPathBuilder implements IClassPathBuilder {
             }
         }
 
+        if (index != null) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                errorLogger.logError("Couldn't save classpath index", e);
+            }
+        }
+
         if (DEBUG) {
             System.out.println("Classpath:");
             dumpCodeBaseList(classPath.appCodeBaseIterator(), "Application codebases");
@@ -654,6 +675,24 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
         IScannableCodeBase codeBase = (IScannableCodeBase) discoveredCodeBase.getCodeBase();
 
+        // If the codebase is an archive we have scanned before, we know which
+        // class resources have the wrong name without parsing the classes
+        File archive = null;
+        Map<String, String> knownResourceNameOverrides = null;
+        Map<String, String> resourceNameOverrides = null;
+        if (index != null && codeBase.isApplicationCodeBase()) {
+            archive = getArchiveFile(codeBase);
+            if (archive != null) {
+                knownResourceNameOverrides = index.lookup(archive);
+                if (knownResourceNameOverrides == null) {
+                    resourceNameOverrides = new HashMap<String, String>();
+                }
+                if (DEBUG) {
+                    System.out.println((knownResourceNameOverrides != null ? "Found " : "Indexing ") + archive);
+                }
+            }
+        }
+
         ICodeBaseIterator i = codeBase.iterator();
         while (i.hasNext()) {
             ICodeBaseEntry entry = i.next();
@@ -663,7 +702,19 @@ public class ClassPathBuilder implements IClassPathBuilder {
 
             if (!NO_PARSE_CLASS_NAMES && codeBase.isApplicationCodeBase()
                     && DescriptorFactory.isClassResource(entry.getResourceName()) && !(entry instanceof SingleFileCodeBaseEntry)) {
-                parseClassName(entry);
+                String resourceName = entry.getResourceName();
+                if (knownResourceNameOverrides != null) {
+                    String trueResourceName = knownResourceNameOverrides.get(resourceName);
+                    if (trueResourceName != null) {
+                        entry.overrideResourceName(trueResourceName);
+                    }
+                } else if (!parseClassName(entry)) {
+                    // Don't index the archive, so the error is reported
+                    // again next time
+                    resourceNameOverrides = null;
+                } else if (resourceNameOverrides != null && !entry.getResourceName().equals(resourceName)) {
+                    resourceNameOverrides.put(resourceName, entry.getResourceName());
+                }
             }
 
             // Note the resource exists in this codebase
@@ -680,6 +731,32 @@ public class ClassPathBuilder implements IClassPathBuilder {
                         new WorkListItem(nestedArchiveLocator, codeBase.isApplicationCodeBase(), ICodeBase.NESTED));
             }
         }
+
+        if (resourceNameOverrides != null) {
+            index.put(archive, resourceNameOverrides);
+        }
+    }
+
+    /**
+     * Get the archive file a codebase reads, if it is one ClassPathIndex can
+     * keep track of.
+     *
+     * @param codeBase
+     *            a codebase
+     * @return the archive file, or null if the codebase isn't a zip or jar
+     *         file in the filesystem
+     */
+    private static @CheckForNull
+    File getArchiveFile(IScannableCodeBase codeBase) {
+        if (!(codeBase.getCodeBaseLocator() instanceof FilesystemCodeBaseLocator)) {
+            return null;
+        }
+        String pathName = ((FilesystemCodeBaseLocator) codeBase.getCodeBaseLocator()).getPathName();
+        if (!Archive.isArchiveFileName(pathName)) {
+            return null;
+        }
+        File file = new File(pathName);
+        return file.isFile() ? file : null;
     }
 
     /**
@@ -688,8 +765,9 @@ public class ClassPathBuilder implements IClassPathBuilder {
      * 
      * @param entry
      *            the resource
+     * @return true if the class could be parsed, false otherwise
      */
-    private void parseClassName(ICodeBaseEntry entry) {
+    private boolean parseClassName(ICodeBaseEntry entry) {
         DataInputStream in = null;
         try {
             InputStream resourceIn = entry.openResource();
@@ -705,6 +783,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
             if (!trueResourceName.equals(entry.getResourceName())) {
                 entry.overrideResourceName(trueResourceName);
             }
+            return true;
         } catch (IOException e) {
             errorLogger.logError("Invalid class resource " + entry.getResourceName() + " in " + entry, e);
         } catch (InvalidClassFileFormatException e) {
@@ -712,6 +791,7 @@ public class ClassPathBuilder implements IClassPathBuilder {
         } finally {
             IO.close(in);
         }
+        return false;
     }
 
     /**
@@ -25,6 +25,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.umd.cs.findbugs.classfile.IClassPath;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
@@ -47,7 +48,8 @@ public class ClassPathImpl implements IClassPath {
     public ClassPathImpl() {
         this.appCodeBaseList = new LinkedList<IScannableCodeBase>();
         this.auxCodeBaseList = new LinkedList<ICodeBase>();
-        this.codeBaseEntryMap = new HashMap<String, ICodeBaseEntry>();
+        // Resources may be looked up by several threads at once
+        this.codeBaseEntryMap = new ConcurrentHashMap<String, ICodeBaseEntry>();
     }
 
     @Override
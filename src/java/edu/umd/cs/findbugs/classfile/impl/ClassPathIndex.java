@@ -0,0 +1,243 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.annotation.CheckForNull;
+
+import edu.umd.cs.findbugs.io.IO;
+
+/**
+ * Persistent index of what ClassPathBuilder learned from scanning archives,
+ * so that unchanged archives need not be scanned again by later runs.
+ *
+ * <p>
+ * Scanning an application archive means parsing every class in it, to find
+ * the classes whose resource name doesn't match their class name. The index
+ * records, for each archive scanned, the resource names that had to be
+ * corrected and what they were corrected to. A record is only used if the
+ * archive still has the same path, size, modification time and CRC-32; if
+ * any class of an archive can't be parsed, no record is kept for it, so that
+ * the error is reported again.
+ * </p>
+ *
+ * <p>
+ * The index is a single file, read when the ClassPathBuilder is created and
+ * rewritten after the classpath is built if it changed. Several FindBugs
+ * processes may share it: the file is replaced atomically, and the last
+ * process to write it wins.
+ * </p>
+ */
+class ClassPathIndex {
+    private static final int MAGIC = 0xFB1D0001;
+
+    /**
+     * What is known about one archive.
+     */
+    private static class Record {
+        final long size;
+
+        final long lastModified;
+
+        final long checksum;
+
+        final Map<String, String> resourceNameOverrides;
+
+        Record(long size, long lastModified, long checksum, Map<String, String> resourceNameOverrides) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.resourceNameOverrides = resourceNameOverrides;
+        }
+    }
+
+    private final File file;
+
+    /** Map of canonical archive paths to records. */
+    private final Map<String, Record> recordMap = new LinkedHashMap<String, Record>();
+
+    private boolean modified;
+
+    /**
+     * Constructor. Reads the index file if there is one; an unreadable index
+     * is treated as empty.
+     *
+     * @param file
+     *            the index file
+     */
+    ClassPathIndex(File file) {
+        this.file = file;
+        if (!file.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            int numRecords = in.readInt();
+            for (int i = 0; i < numRecords; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                long checksum = in.readLong();
+                int numOverrides = in.readInt();
+                Map<String, String> overrides = new HashMap<String, String>();
+                for (int j = 0; j < numOverrides; j++) {
+                    String resourceName = in.readUTF();
+                    overrides.put(resourceName, in.readUTF());
+                }
+                recordMap.put(path, new Record(size, lastModified, checksum, overrides));
+            }
+        } catch (IOException e) {
+            // Start over
+            recordMap.clear();
+        } finally {
+            IO.close(in);
+        }
+    }
+
+    /**
+     * Look up what is known about an archive.
+     *
+     * @param archive
+     *            the archive
+     * @return map of the resource names of the archive's class resources to
+     *         their corrected names (for the classes which need it), or null
+     *         if the archive must be scanned
+     */
+    @CheckForNull
+    Map<String, String> lookup(File archive) {
+        Record record = recordMap.get(getPath(archive));
+        if (record == null || record.size != archive.length() || record.lastModified != archive.lastModified()) {
+            return null;
+        }
+        try {
+            if (record.checksum != checksum(archive)) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return record.resourceNameOverrides;
+    }
+
+    /**
+     * Record what was learned from scanning an archive.
+     *
+     * @param archive
+     *            the archive
+     * @param resourceNameOverrides
+     *            map of the resource names of the archive's class resources
+     *            to their corrected names, for the classes which need it
+     */
+    void put(File archive, Map<String, String> resourceNameOverrides) {
+        long size = archive.length();
+        long lastModified = archive.lastModified();
+        long checksum;
+        try {
+            checksum = checksum(archive);
+        } catch (IOException e) {
+            return;
+        }
+        recordMap.put(getPath(archive), new Record(size, lastModified, checksum, resourceNameOverrides));
+        modified = true;
+    }
+
+    /**
+     * Write the index file, if anything was added to the index.
+     *
+     * @throws IOException
+     */
+    void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Couldn't create directory for classpath index " + file);
+        }
+        File tempFile = File.createTempFile("classpath", ".index", parent);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(recordMap.size());
+            for (Map.Entry<String, Record> e : recordMap.entrySet()) {
+                Record record = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(record.size);
+                out.writeLong(record.lastModified);
+                out.writeLong(record.checksum);
+                out.writeInt(record.resourceNameOverrides.size());
+                for (Map.Entry<String, String> override : record.resourceNameOverrides.entrySet()) {
+                    out.writeUTF(override.getKey());
+                    out.writeUTF(override.getValue());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file)) {
+            // Windows won't rename over an existing file
+            if (!file.delete() || !tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Couldn't write classpath index " + file);
+            }
+        }
+        modified = false;
+    }
+
+    private static String getPath(File archive) {
+        try {
+            return archive.getCanonicalPath();
+        } catch (IOException e) {
+            return archive.getAbsolutePath();
+        }
+    }
+
+    private static long checksum(File archive) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(archive);
+        try {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            IO.close(in);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.IDatabaseFactory;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
+import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.log.Profiler;
+
+/**
+ * A view of an IAnalysisCache that forwards all requests to the underlying
+ * cache, but has its own error logger. An analysis thread installing such a
+ * view (see {@link edu.umd.cs.findbugs.classfile.Global}) receives the errors
+ * logged by the analyses it runs, e.g., to buffer them, while the analysis
+ * results are shared with the other threads.
+ */
+public class ErrorLoggerAnalysisCacheView implements IAnalysisCache {
+    private final IAnalysisCache delegate;
+
+    private final IErrorLogger errorLogger;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            the cache all requests are forwarded to
+     * @param errorLogger
+     *            the error logger of the view
+     */
+    public ErrorLoggerAnalysisCacheView(IAnalysisCache delegate, IErrorLogger errorLogger) {
+        this.delegate = delegate;
+        this.errorLogger = errorLogger;
+    }
+
+    /**
+     * @return the cache all requests are forwarded to
+     */
+    public IAnalysisCache getDelegate() {
+        return delegate;
+    }
+
+    public <E> void registerClassAnalysisEngine(Class<E> analysisResultType, IClassAnalysisEngine<E> classAnalysisEngine) {
+        delegate.registerClassAnalysisEngine(analysisResultType, classAnalysisEngine);
+    }
+
+    public <E> void registerMethodAnalysisEngine(Class<E> analysisResultType, IMethodAnalysisEngine<E> methodAnalysisEngine) {
+        delegate.registerMethodAnalysisEngine(analysisResultType, methodAnalysisEngine);
+    }
+
+    public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor)
+            throws CheckedAnalysisException {
+        return delegate.getClassAnalysis(analysisClass, classDescriptor);
+    }
+
+    public <E> E probeClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) {
+        return delegate.probeClassAnalysis(analysisClass, classDescriptor);
+    }
+
+    public <E> E getMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor)
+            throws CheckedAnalysisException {
+        return delegate.getMethodAnalysis(analysisClass, methodDescriptor);
+    }
+
+    public <E> void eagerlyPutMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor,
+            E analysisObject) {
+        delegate.eagerlyPutMethodAnalysis(analysisClass, methodDescriptor, analysisObject);
+    }
+
+    public void purgeMethodAnalyses(@Nonnull MethodDescriptor methodDescriptor) {
+        delegate.purgeMethodAnalyses(methodDescriptor);
+    }
+
+    public void purgeAllMethodAnalysis() {
+        delegate.purgeAllMethodAnalysis();
+    }
+
+    public void purgeClassAnalysis(Class<?> analysisClass) {
+        delegate.purgeClassAnalysis(analysisClass);
+    }
+
+    public <E> void registerDatabaseFactory(Class<E> databaseClass, IDatabaseFactory<E> databaseFactory) {
+        delegate.registerDatabaseFactory(databaseClass, databaseFactory);
+    }
+
+    public <E> E getDatabase(Class<E> databaseClass) {
+        return delegate.getDatabase(databaseClass);
+    }
+
+    public @CheckForNull
+    <E> E getOptionalDatabase(Class<E> databaseClass) {
+        return delegate.getOptionalDatabase(databaseClass);
+    }
+
+    public <E> void eagerlyPutDatabase(Class<E> databaseClass, E database) {
+        delegate.eagerlyPutDatabase(databaseClass, database);
+    }
+
+    public IClassPath getClassPath() {
+        return delegate.getClassPath();
+    }
+
+    public IErrorLogger getErrorLogger() {
+        return errorLogger;
+    }
+
+    public Map<?, ?> getAnalysisLocals() {
+        return delegate.getAnalysisLocals();
+    }
+
+    public Profiler getProfiler() {
+        return delegate.getProfiler();
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import edu.umd.cs.findbugs.classfile.ICodeBaseEntry;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
+
+/**
+ * Implementation of ICodeBase to read from a zip file or jar file held in a
+ * ByteBuffer: the file read into the heap or mapped into memory, or the
+ * contents of a zip file nested in another codebase.
+ *
+ * <p>
+ * The central directory is parsed once, when the codebase is created, into
+ * arrays indexed by entry number and an open-addressing hash table from entry
+ * names to entry numbers. Entries are read straight from the buffer and
+ * inflated into an array of exactly the entry's size, which is used as the
+ * class data (see {@link MappedZipCodeBaseEntry#getBytes()}); the Inflater and
+ * the buffer for compressed data are reused by each thread.
+ * </p>
+ *
+ * <p>
+ * Only the common subset of the zip format is supported: no zip64 archives,
+ * encryption, or compression methods other than stored and deflated. The
+ * constructors throw a ZipException for archives they can't index, so that
+ * callers can fall back to ZipFileCodeBase; entries using unsupported
+ * features fail when they are read.
+ * </p>
+ *
+ * <p>
+ * A mapped file can't be unmapped explicitly: the mapping lasts until the
+ * codebase is garbage collected, even after {@link #close()}. Meanwhile, the
+ * file stays locked on Windows, and if the file is truncated or rewritten in
+ * place (e.g., by a build while a resident analysis server still holds the
+ * codebase), reading it may crash the JVM with a SIGBUS or InternalError.
+ * Files are therefore only mapped on request (see
+ * {@link ZipCodeBaseFactory#MAP_ZIP_FILES}).
+ * </p>
+ */
+public class MappedZipCodeBase extends AbstractScannableCodeBase {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_HEADER_SIGNATURE = 0x06054b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final int CENTRAL_HEADER_SIZE = 46;
+
+    private static final int END_HEADER_SIZE = 22;
+
+    private static final int STORED = 0;
+
+    private static final int DEFLATED = 8;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Per-thread state for inflating entries.
+     */
+    private static class Inflation {
+        final Inflater inflater = new Inflater(true);
+
+        byte[] input = new byte[8192];
+    }
+
+    private static final ThreadLocal<Inflation> inflation = new ThreadLocal<Inflation>() {
+        @Override
+        protected Inflation initialValue() {
+            return new Inflation();
+        }
+    };
+
+    private final String name;
+
+    /** The whole archive, in little-endian byte order. */
+    private final ByteBuffer data;
+
+    private final String[] entryNames;
+
+    private final int[] localHeaderOffsets;
+
+    private final int[] compressedSizes;
+
+    private final int[] sizes;
+
+    private final short[] methods;
+
+    private final int[] dosTimes;
+
+    /**
+     * Open-addressing hash table of entry names: entry number + 1, or 0 for
+     * an empty slot.
+     */
+    private final int[] hashTable;
+
+    /**
+     * Constructor for a codebase reading a zip file.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param file
+     *            the File containing the zip file
+     * @param map
+     *            true to map the file into memory (see the class
+     *            documentation for the risks), false to read it into the
+     *            heap
+     * @throws ZipException
+     *             if the file is not a zip file this class can read
+     * @throws IOException
+     *             if the file can't be read or mapped
+     */
+    public MappedZipCodeBase(ICodeBaseLocator codeBaseLocator, File file, boolean map) throws IOException {
+        this(codeBaseLocator, map ? map(file) : read(file), file.getPath());
+        setLastModifiedTime(file.lastModified());
+    }
+
+    /**
+     * Constructor for a codebase reading a zip file held in memory.
+     *
+     * @param codeBaseLocator
+     *            the codebase locator for this codebase
+     * @param data
+     *            the contents of the zip file
+     * @param name
+     *            name of the zip file, used in messages
+     * @throws ZipException
+     *             if the data is not a zip file this class can read
+     */
+    public MappedZipCodeBase(ICodeBaseLocator codeBaseLocator, ByteBuffer data, String name) throws ZipException {
+        super(codeBaseLocator);
+        this.name = name;
+        this.data = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        // Find the end of central directory record, which is followed by a
+        // comment of up to 64K
+        int end = this.data.limit() - END_HEADER_SIZE;
+        int stop = Math.max(0, end - 0xffff);
+        while (end >= stop && this.data.getInt(end) != END_HEADER_SIGNATURE) {
+            end--;
+        }
+        if (end < stop) {
+            throw new ZipException("No central directory found in " + name);
+        }
+        int numEntries = u16(end + 10);
+        long centralDirectoryOffset = u32(end + 16);
+        if (numEntries == 0xffff || centralDirectoryOffset == 0xffffffffL) {
+            throw new ZipException("Zip64 archives are not supported: " + name);
+        }
+        if (centralDirectoryOffset + (long) numEntries * CENTRAL_HEADER_SIZE > end) {
+            throw new ZipException("Bad central directory offset in " + name);
+        }
+
+        entryNames = new String[numEntries];
+        localHeaderOffsets = new int[numEntries];
+        compressedSizes = new int[numEntries];
+        sizes = new int[numEntries];
+        methods = new short[numEntries];
+        dosTimes = new int[numEntries];
+        hashTable = new int[Integer.highestOneBit(Math.max(numEntries, 1)) * 4];
+
+        ByteBuffer buffer = this.data.duplicate();
+        int pos = (int) centralDirectoryOffset;
+        for (int i = 0; i < numEntries; i++) {
+            if (pos + CENTRAL_HEADER_SIZE > end || this.data.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Bad central directory entry " + i + " in " + name);
+            }
+            int nameLength = u16(pos + 28);
+            int extraLength = u16(pos + 30);
+            int commentLength = u16(pos + 32);
+            long compressedSize = u32(pos + 20);
+            long size = u32(pos + 24);
+            long localHeaderOffset = u32(pos + 42);
+            if (compressedSize == 0xffffffffL || size == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+                throw new ZipException("Zip64 archives are not supported: " + name);
+            }
+            if (size > Integer.MAX_VALUE || localHeaderOffset + LOCAL_HEADER_SIZE + compressedSize > centralDirectoryOffset) {
+                throw new ZipException("Bad central directory entry " + i + " in " + name);
+            }
+            buffer.limit(this.data.limit());
+            buffer.position(pos + CENTRAL_HEADER_SIZE);
+            buffer.limit(pos + CENTRAL_HEADER_SIZE + nameLength);
+
+            entryNames[i] = UTF8.decode(buffer).toString();
+            methods[i] = (short) u16(pos + 10);
+            dosTimes[i] = this.data.getInt(pos + 12);
+            compressedSizes[i] = (int) compressedSize;
+            sizes[i] = (int) size;
+            localHeaderOffsets[i] = (int) localHeaderOffset;
+            addToHashTable(i);
+
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new ZipException("Zip file too large to map: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() > Integer.MAX_VALUE) {
+                throw new ZipException("Zip file too large to read: " + file);
+            }
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return ByteBuffer.wrap(bytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private int u16(int pos) {
+        return data.getShort(pos) & 0xffff;
+    }
+
+    private long u32(int pos) {
+        return data.getInt(pos) & 0xffffffffL;
+    }
+
+    private void addToHashTable(int entry) {
+        int mask = hashTable.length - 1;
+        int slot = entryNames[entry].hashCode() & mask;
+        while (hashTable[slot] != 0) {
+            if (entryNames[hashTable[slot] - 1].equals(entryNames[entry])) {
+                // As ZipFile does, keep the first of several entries
+                // with the same name
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashTable[slot] = entry + 1;
+    }
+
+    private int findEntry(String entryName) {
+        int mask = hashTable.length - 1;
+        int slot = entryName.hashCode() & mask;
+        while (hashTable[slot] != 0) {
+            int entry = hashTable[slot] - 1;
+            if (entryNames[entry].equals(entryName)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    String getEntryName(int entry) {
+        return entryNames[entry];
+    }
+
+    int getEntrySize(int entry) {
+        return sizes[entry];
+    }
+
+    /**
+     * Get the modification time of an entry, as ZipEntry.getTime() computes
+     * it from the MS-DOS date and time of the entry.
+     */
+    long getEntryTime(int entry) {
+        int dosTime = dosTimes[entry];
+        Calendar calendar = new GregorianCalendar(((dosTime >> 25) & 0x7f) + 1980, ((dosTime >> 21) & 0x0f) - 1,
+                (dosTime >> 16) & 0x1f, (dosTime >> 11) & 0x1f, (dosTime >> 5) & 0x3f, (dosTime << 1) & 0x3e);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Read the uncompressed contents of an entry.
+     *
+     * @param entry
+     *            the entry number
+     * @return a new array holding the contents of the entry
+     * @throws IOException
+     *             if the entry is corrupt or uses an unsupported feature
+     */
+    byte[] getEntryBytes(int entry) throws IOException {
+        int localHeaderOffset = localHeaderOffsets[entry];
+        if (data.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Bad local header for " + entryNames[entry] + " in " + name);
+        }
+        if ((u16(localHeaderOffset + 6) & 1) != 0) {
+            throw new ZipException("Encrypted entries are not supported: " + entryNames[entry] + " in " + name);
+        }
+        // The local header's extra field need not be the same as the
+        // central directory's
+        int start = localHeaderOffset + LOCAL_HEADER_SIZE + u16(localHeaderOffset + 26) + u16(localHeaderOffset + 28);
+        int compressedSize = compressedSizes[entry];
+        if ((long) start + compressedSize > data.limit()) {
+            throw new ZipException("Truncated entry " + entryNames[entry] + " in " + name);
+        }
+
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(start);
+        byte[] result = new byte[sizes[entry]];
+        switch (methods[entry]) {
+        case STORED:
+            if (compressedSize != result.length) {
+                throw new ZipException("Bad size for stored entry " + entryNames[entry] + " in " + name);
+            }
+            buffer.get(result);
+            return result;
+        case DEFLATED:
+            Inflation state = inflation.get();
+            // One extra dummy byte is needed by an Inflater without the zlib
+            // header
+            if (state.input.length < compressedSize + 1) {
+                state.input = new byte[compressedSize + 1];
+            }
+            buffer.get(state.input, 0, compressedSize);
+            state.input[compressedSize] = 0;
+            Inflater inflater = state.inflater;
+            inflater.reset();
+            inflater.setInput(state.input, 0, compressedSize + 1);
+            try {
+                int count = 0;
+                while (count < result.length) {
+                    int n = inflater.inflate(result, count, result.length - count);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new ZipException("Truncated entry " + entryNames[entry] + " in " + name);
+                    }
+                    count += n;
+                }
+            } catch (DataFormatException e) {
+                ZipException e2 = new ZipException("Corrupt entry " + entryNames[entry] + " in " + name);
+                e2.initCause(e);
+                throw e2;
+            }
+            return result;
+        default:
+            throw new ZipException("Unsupported compression method " + methods[entry] + " for " + entryNames[entry] + " in "
+                    + name);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * edu.umd.cs.findbugs.classfile.ICodeBase#lookupResource(java.lang.String)
+     */
+    public ICodeBaseEntry lookupResource(String resourceName) {
+        // Translate resource name, in case a resource name
+        // has been overridden and the resource is being accessed
+        // using the overridden name.
+        resourceName = translateResourceName(resourceName);
+
+        int entry = findEntry(resourceName);
+        if (entry < 0) {
+            return null;
+        }
+        return new MappedZipCodeBaseEntry(this, entry);
+    }
+
+    public ICodeBaseIterator iterator() {
+        return new ICodeBaseIterator() {
+            int nextEntry = findNextEntry(0);
+
+            public boolean hasNext() {
+                return nextEntry < entryNames.length;
+            }
+
+            /*
+             * (non-Javadoc)
+             *
+             * @see edu.umd.cs.findbugs.classfile.ICodeBaseIterator#next()
+             */
+            public ICodeBaseEntry next() throws InterruptedException {
+                if (nextEntry >= entryNames.length) {
+                    throw new NoSuchElementException();
+                }
+                addLastModifiedTime(getEntryTime(nextEntry));
+                ICodeBaseEntry result = new MappedZipCodeBaseEntry(MappedZipCodeBase.this, nextEntry);
+                nextEntry = findNextEntry(nextEntry + 1);
+                return result;
+            }
+
+            private int findNextEntry(int entry) {
+                while (entry < entryNames.length && entryNames[entry].endsWith("/")) {
+                    entry++;
+                }
+                return entry;
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.ICodeBase#getPathName()
+     */
+    public String getPathName() {
+        return name;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see edu.umd.cs.findbugs.classfile.ICodeBase#close()
+     */
+    public void close() {
+        // Nothing to release: a mapping is only unmapped when it is garbage
+        // collected
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
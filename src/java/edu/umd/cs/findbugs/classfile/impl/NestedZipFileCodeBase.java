@@ -20,11 +20,16 @@
 package edu.umd.cs.findbugs.classfile.impl;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipException;
+
+import javax.annotation.CheckForNull;
 
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.classfile.ICodeBase;
@@ -35,9 +40,10 @@ import edu.umd.cs.findbugs.io.IO;
 
 /**
  * A scannable code base class for a zip (or Jar) file nested inside some other
- * codebase. These are handled by extracting the nested zip/jar file to a
- * temporary file, and delegating to an internal ZipFileCodeBase that reads from
- * the temporary file.
+ * codebase. These are handled by reading the nested zip/jar file into memory,
+ * and delegating to an internal MappedZipCodeBase that reads from memory. If
+ * the nested file can't be read that way, it is extracted to a temporary file
+ * instead, and read by an internal ZipFileCodeBase.
  * 
  * @author David Hovemeyer
  */
@@ -46,7 +52,7 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
 
     private String resourceName;
 
-    private File tempFile;
+    private @CheckForNull File tempFile;
 
     private AbstractScannableCodeBase delegateCodeBase;
 
@@ -61,6 +67,34 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
         this.parentCodeBase = codeBaseLocator.getParentCodeBase();
         this.resourceName = codeBaseLocator.getResourceName();
 
+        ICodeBaseEntry resource = parentCodeBase.lookupResource(resourceName);
+        if (resource == null) {
+            throw new ResourceNotFoundException(resourceName);
+        }
+
+        if (ZipCodeBaseFactory.MAP_ZIP_FILES) {
+            byte[] data;
+            if (resource instanceof MappedZipCodeBaseEntry) {
+                data = ((MappedZipCodeBaseEntry) resource).getBytes();
+            } else {
+                InputStream in = resource.openResource();
+                try {
+                    int length = resource.getNumBytes();
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(length >= 0 ? length : 8192);
+                    IO.copy(in, out);
+                    data = out.toByteArray();
+                } finally {
+                    IO.close(in);
+                }
+            }
+            try {
+                delegateCodeBase = new MappedZipCodeBase(codeBaseLocator, ByteBuffer.wrap(data), codeBaseLocator.toString());
+                return;
+            } catch (ZipException e) {
+                // Let java.util.zip read it from a temp file
+            }
+        }
+
         InputStream inputStream = null;
         OutputStream outputStream = null;
         try {
@@ -72,10 +106,6 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
             // Copy nested zipfile to the temporary file
             // FIXME: potentially long blocking operation - should be
             // interruptible
-            ICodeBaseEntry resource = parentCodeBase.lookupResource(resourceName);
-            if (resource == null) {
-                throw new ResourceNotFoundException(resourceName);
-            }
             inputStream = resource.openResource();
             outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
             IO.copy(inputStream, outputStream);
@@ -133,7 +163,7 @@ public class NestedZipFileCodeBase extends AbstractScannableCodeBase {
      */
     public void close() {
         delegateCodeBase.close();
-        if (!tempFile.delete()) {
+        if (tempFile != null && !tempFile.delete()) {
             AnalysisContext.logError("Could not delete " + tempFile);
         }
     }
@@ -0,0 +1,167 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2006-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.ClassDescriptor;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.classfile.IClassAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.IClassPath;
+import edu.umd.cs.findbugs.classfile.IDatabaseFactory;
+import edu.umd.cs.findbugs.classfile.IErrorLogger;
+import edu.umd.cs.findbugs.classfile.IMethodAnalysisEngine;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+import edu.umd.cs.findbugs.log.Profiler;
+
+/**
+ * A view of an IAnalysisCache that serializes all accesses to the underlying
+ * cache on a shared lock. Each analysis thread installs its own view (see
+ * {@link edu.umd.cs.findbugs.classfile.Global}), and all views of one cache
+ * share the same lock, so a cache that is not itself thread safe can be used
+ * by several analysis threads.
+ */
+public class SynchronizedAnalysisCache implements IAnalysisCache {
+    private final IAnalysisCache delegate;
+
+    private final Object lock;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate
+     *            the cache all requests are forwarded to
+     * @param lock
+     *            the lock shared by all views of the delegate
+     */
+    public SynchronizedAnalysisCache(IAnalysisCache delegate, Object lock) {
+        this.delegate = delegate;
+        this.lock = lock;
+    }
+
+    /**
+     * @return the cache all requests are forwarded to
+     */
+    public IAnalysisCache getDelegate() {
+        return delegate;
+    }
+
+    public <E> void registerClassAnalysisEngine(Class<E> analysisResultType, IClassAnalysisEngine<E> classAnalysisEngine) {
+        synchronized (lock) {
+            delegate.registerClassAnalysisEngine(analysisResultType, classAnalysisEngine);
+        }
+    }
+
+    public <E> void registerMethodAnalysisEngine(Class<E> analysisResultType, IMethodAnalysisEngine<E> methodAnalysisEngine) {
+        synchronized (lock) {
+            delegate.registerMethodAnalysisEngine(analysisResultType, methodAnalysisEngine);
+        }
+    }
+
+    public <E> E getClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor)
+            throws CheckedAnalysisException {
+        synchronized (lock) {
+            return delegate.getClassAnalysis(analysisClass, classDescriptor);
+        }
+    }
+
+    public <E> E probeClassAnalysis(Class<E> analysisClass, @Nonnull ClassDescriptor classDescriptor) {
+        synchronized (lock) {
+            return delegate.probeClassAnalysis(analysisClass, classDescriptor);
+        }
+    }
+
+    public <E> E getMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor)
+            throws CheckedAnalysisException {
+        synchronized (lock) {
+            return delegate.getMethodAnalysis(analysisClass, methodDescriptor);
+        }
+    }
+
+    public <E> void eagerlyPutMethodAnalysis(Class<E> analysisClass, @Nonnull MethodDescriptor methodDescriptor,
+            E analysisObject) {
+        synchronized (lock) {
+            delegate.eagerlyPutMethodAnalysis(analysisClass, methodDescriptor, analysisObject);
+        }
+    }
+
+    public void purgeMethodAnalyses(@Nonnull MethodDescriptor methodDescriptor) {
+        synchronized (lock) {
+            delegate.purgeMethodAnalyses(methodDescriptor);
+        }
+    }
+
+    public void purgeAllMethodAnalysis() {
+        synchronized (lock) {
+            delegate.purgeAllMethodAnalysis();
+        }
+    }
+
+    public void purgeClassAnalysis(Class<?> analysisClass) {
+        synchronized (lock) {
+            delegate.purgeClassAnalysis(analysisClass);
+        }
+    }
+
+    public <E> void registerDatabaseFactory(Class<E> databaseClass, IDatabaseFactory<E> databaseFactory) {
+        synchronized (lock) {
+            delegate.registerDatabaseFactory(databaseClass, databaseFactory);
+        }
+    }
+
+    public <E> E getDatabase(Class<E> databaseClass) {
+        synchronized (lock) {
+            return delegate.getDatabase(databaseClass);
+        }
+    }
+
+    public @CheckForNull
+    <E> E getOptionalDatabase(Class<E> databaseClass) {
+        synchronized (lock) {
+            return delegate.getOptionalDatabase(databaseClass);
+        }
+    }
+
+    public <E> void eagerlyPutDatabase(Class<E> databaseClass, E database) {
+        synchronized (lock) {
+            delegate.eagerlyPutDatabase(databaseClass, database);
+        }
+    }
+
+    public IClassPath getClassPath() {
+        return delegate.getClassPath();
+    }
+
+    public IErrorLogger getErrorLogger() {
+        return delegate.getErrorLogger();
+    }
+
+    public Map<?, ?> getAnalysisLocals() {
+        return delegate.getAnalysisLocals();
+    }
+
+    public Profiler getProfiler() {
+        return delegate.getProfiler();
+    }
+}
@@ -30,6 +30,7 @@ import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
+import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.classfile.Global;
 import edu.umd.cs.findbugs.classfile.ICodeBaseLocator;
 import edu.umd.cs.findbugs.log.Profiler;
@@ -39,10 +40,35 @@ import edu.umd.cs.findbugs.log.Profiler;
  */
 public class ZipCodeBaseFactory {
 
+    /**
+     * Whether zip files are mapped into memory and read through a
+     * {@link MappedZipCodeBase} when it can read them. Off by default: a
+     * mapped file stays locked on Windows until the codebase is garbage
+     * collected, and rewriting it meanwhile may crash the JVM, which matters
+     * most in a long-running process such as the AnalysisServer.
+     */
+    public static final boolean MAP_ZIP_FILES = SystemProperties.getBoolean("findbugs.zip.map", false);
+
+    /**
+     * Size up to which zip files which are not mapped are read into the heap
+     * and through a {@link MappedZipCodeBase}; larger ones are read through
+     * java.util.zip.
+     */
+    public static final int MAX_BUFFERED_ZIP_SIZE = SystemProperties.getInt("findbugs.zip.maxBufferedSize",
+            16 * 1024 * 1024);
+
     public static AbstractScannableCodeBase makeZipCodeBase(ICodeBaseLocator codeBaseLocator, File file) throws IOException {
         Profiler profiler = Global.getAnalysisCache().getProfiler();
         profiler.start(ZipCodeBaseFactory.class);
         try {
+            if (MAP_ZIP_FILES || file.length() <= MAX_BUFFERED_ZIP_SIZE) {
+                try {
+                    return new MappedZipCodeBase(codeBaseLocator, file, MAP_ZIP_FILES);
+                } catch (IOException e) {
+                    // Fall back to java.util.zip, which reads more kinds of
+                    // zip files, and diagnoses the ones it can't read
+                }
+            }
             return countUsingZipFile(codeBaseLocator, file);
         } finally {
             profiler.end(ZipCodeBaseFactory.class);
@@ -143,6 +143,16 @@ public abstract class CommandLine {
             maxWidth = width;
     }
 
+    /**
+     * @param option
+     *            an option, e.g., "-output"
+     * @return true if the option was added with addOption(), i.e., requires an
+     *         argument
+     */
+    public boolean requiresArgument(String option) {
+        return requiresArgumentSet.contains(option);
+    }
+
     /**
      * Don't list this option when printing Usage information
      *
@@ -25,9 +25,10 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.Priorities;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class AppendingToAnObjectOutputStream extends OpcodeStackDetector {
+public class AppendingToAnObjectOutputStream extends OpcodeStackDetector implements FusibleDetector {
 
     BugReporter bugReporter;
 
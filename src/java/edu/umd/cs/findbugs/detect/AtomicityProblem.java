@@ -26,6 +26,7 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
@@ -35,7 +36,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  * 
  * @author Michael Midgley-Biggs
  */
-public class AtomicityProblem extends OpcodeStackDetector {
+public class AtomicityProblem extends OpcodeStackDetector implements FusibleDetector {
 
     int priority = IGNORE_PRIORITY;
 
@@ -26,10 +26,11 @@ import java.util.Set;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
-public class BadResultSetAccess extends OpcodeStackDetector {
+public class BadResultSetAccess extends OpcodeStackDetector implements FusibleDetector {
 
     private static final Set<String> dbFieldTypesSet = new HashSet<String>() {
         static final long serialVersionUID = -3510636899394546735L;
@@ -27,9 +27,10 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.StringAnnotation;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class BadSyntaxForRegularExpression extends OpcodeStackDetector {
+public class BadSyntaxForRegularExpression extends OpcodeStackDetector implements FusibleDetector {
 
     BugReporter bugReporter;
 
@@ -25,12 +25,13 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ba.SignatureParser;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
  * @author alison
  */
-public class BooleanReturnNull extends OpcodeStackDetector {
+public class BooleanReturnNull extends OpcodeStackDetector implements FusibleDetector {
 
     BugAccumulator bugAccumulator;
 
@@ -7,6 +7,7 @@ import edu.umd.cs.findbugs.ba.AnnotationDatabase;
 import edu.umd.cs.findbugs.ba.AnnotationEnumeration;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
 /**
@@ -28,7 +29,7 @@ import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
  * 
  * @author Robin Fernandes
  */
-public class DefaultEncodingDetector extends OpcodeStackDetector {
+public class DefaultEncodingDetector extends OpcodeStackDetector implements FusibleDetector {
 
     private final BugReporter bugReporter;
 
@@ -23,9 +23,10 @@ import org.apache.bcel.classfile.Code;
 
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class DumbMethods extends OpcodeStackDetector {
+public class DumbMethods extends OpcodeStackDetector implements FusibleDetector {
 
 	private final BugReporter bugReporter;
 
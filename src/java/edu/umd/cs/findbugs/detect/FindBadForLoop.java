@@ -26,9 +26,10 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.StatelessDetector;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindBadForLoop extends OpcodeStackDetector implements StatelessDetector {
+public class FindBadForLoop extends OpcodeStackDetector implements StatelessDetector, FusibleDetector {
 
     BugReporter bugReporter;
 
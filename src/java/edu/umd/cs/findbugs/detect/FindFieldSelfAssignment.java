@@ -31,9 +31,10 @@ import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindFieldSelfAssignment extends OpcodeStackDetector implements StatelessDetector {
+public class FindFieldSelfAssignment extends OpcodeStackDetector implements StatelessDetector, FusibleDetector {
     private final BugReporter bugReporter;
 
     int state;
@@ -32,9 +32,10 @@ import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
 import edu.umd.cs.findbugs.StatelessDetector;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindFloatEquality extends OpcodeStackDetector implements StatelessDetector {
+public class FindFloatEquality extends OpcodeStackDetector implements StatelessDetector, FusibleDetector {
     private static final int SAW_NOTHING = 0;
 
     private static final int SAW_COMP = 1;
@@ -27,9 +27,10 @@ import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.StatelessDetector;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindNonShortCircuit extends OpcodeStackDetector implements StatelessDetector {
+public class FindNonShortCircuit extends OpcodeStackDetector implements StatelessDetector, FusibleDetector {
 
     int stage1 = 0;
 
@@ -45,9 +45,10 @@ import edu.umd.cs.findbugs.ba.vna.ValueNumber;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberDataflow;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberFrame;
 import edu.umd.cs.findbugs.ba.vna.ValueNumberSourceInfo;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindNullDerefsInvolvingNonShortCircuitEvaluation extends OpcodeStackDetector {
+public class FindNullDerefsInvolvingNonShortCircuitEvaluation extends OpcodeStackDetector implements FusibleDetector {
 
     private static boolean DEBUG = false;
 
@@ -29,9 +29,10 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class FindReturnRef extends OpcodeStackDetector {
+public class FindReturnRef extends OpcodeStackDetector implements FusibleDetector {
     boolean check = false;
 
     boolean thisOnTOS = false;
@@ -31,11 +31,12 @@ import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.ba.SignatureParser;
 import edu.umd.cs.findbugs.ba.XClass;
 import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.util.EditDistance;
 import edu.umd.cs.findbugs.util.Util;
 
-public class FindSelfComparison extends OpcodeStackDetector {
+public class FindSelfComparison extends OpcodeStackDetector implements FusibleDetector {
 
     final BugAccumulator bugAccumulator;
 
@@ -31,6 +31,7 @@ import edu.umd.cs.findbugs.TypeAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.Hierarchy;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 import edu.umd.cs.findbugs.classfile.DescriptorFactory;
@@ -40,7 +41,7 @@ import edu.umd.cs.findbugs.formatStringChecker.FormatterNumberFormatException;
 import edu.umd.cs.findbugs.formatStringChecker.IllegalFormatConversionException;
 import edu.umd.cs.findbugs.formatStringChecker.MissingFormatArgumentException;
 
-public class FormatStringChecker extends OpcodeStackDetector {
+public class FormatStringChecker extends OpcodeStackDetector implements FusibleDetector {
 
     final BugReporter bugReporter;
 
@@ -36,10 +36,11 @@ import edu.umd.cs.findbugs.LocalVariableAnnotation;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.OpcodeStack.Item;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.visitclass.Util;
 
-public class InfiniteLoop extends OpcodeStackDetector {
+public class InfiniteLoop extends OpcodeStackDetector implements FusibleDetector {
 
     private static final boolean active = true;
 
@@ -29,9 +29,10 @@ import edu.umd.cs.findbugs.StatelessDetector;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.XFactory;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class InfiniteRecursiveLoop extends OpcodeStackDetector implements StatelessDetector {
+public class InfiniteRecursiveLoop extends OpcodeStackDetector implements StatelessDetector, FusibleDetector {
 
     private BugReporter bugReporter;
 
@@ -27,6 +27,7 @@ import edu.umd.cs.findbugs.BugAccumulator;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
 
@@ -39,7 +40,7 @@ import edu.umd.cs.findbugs.visitclass.PreorderVisitor;
  * logger reference. That means that the garbage collector is free to reclaim
  * that memory, which means that the logger configuration is lost.
  */
-public class LostLoggerDueToWeakReference extends OpcodeStackDetector {
+public class LostLoggerDueToWeakReference extends OpcodeStackDetector implements FusibleDetector {
 
     final BugReporter bugReporter;
 
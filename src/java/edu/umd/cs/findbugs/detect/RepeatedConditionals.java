@@ -29,9 +29,10 @@ import org.objectweb.asm.Opcodes;
 import edu.umd.cs.findbugs.BugInstance;
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class RepeatedConditionals extends OpcodeStackDetector {
+public class RepeatedConditionals extends OpcodeStackDetector implements FusibleDetector {
 
     BugReporter bugReporter;
 
@@ -36,9 +36,10 @@ import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.FieldSummary;
 import edu.umd.cs.findbugs.ba.XField;
 import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class SynchronizationOnSharedBuiltinConstant extends OpcodeStackDetector {
+public class SynchronizationOnSharedBuiltinConstant extends OpcodeStackDetector implements FusibleDetector {
 
     final Set<String> badSignatures;
 
@@ -28,10 +28,11 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.ClassAnnotation;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
 import edu.umd.cs.findbugs.ba.ch.Subtypes2;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 import edu.umd.cs.findbugs.classfile.ClassDescriptor;
 
-public class SynchronizeOnClassLiteralNotGetClass extends OpcodeStackDetector {
+public class SynchronizeOnClassLiteralNotGetClass extends OpcodeStackDetector implements FusibleDetector {
 
     BugReporter bugReporter;
 
@@ -27,9 +27,10 @@ import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.OpcodeStack;
 import edu.umd.cs.findbugs.Priorities;
 import edu.umd.cs.findbugs.ba.XField;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 import edu.umd.cs.findbugs.bcel.OpcodeStackDetector;
 
-public class SynchronizingOnContentsOfFieldToProtectField extends OpcodeStackDetector {
+public class SynchronizingOnContentsOfFieldToProtectField extends OpcodeStackDetector implements FusibleDetector {
 
     final BugReporter bugReporter;
 
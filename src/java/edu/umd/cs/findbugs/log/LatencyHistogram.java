@@ -0,0 +1,113 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.log;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations, from which percentiles can be estimated.
+ *
+ * <p>
+ * Durations are counted in buckets of exponentially growing width: each
+ * power of two is split into eight buckets, so a percentile is overestimated
+ * by at most 12.5%. Recording is thread safe and doesn't lock.
+ * </p>
+ */
+public class LatencyHistogram {
+    /** log2 of the number of buckets per power of two */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Values below this each have their own bucket */
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private static final int NUM_BUCKETS = getBucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+    /**
+     * Record a duration.
+     *
+     * @param nanoTime
+     *            the duration, in nanoseconds
+     */
+    public void record(long nanoTime) {
+        counts.incrementAndGet(getBucket(Math.max(nanoTime, 0)));
+    }
+
+    /**
+     * @return number of durations recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Estimate a percentile of the recorded durations.
+     *
+     * @param fraction
+     *            the percentile, as a fraction between 0 and 1 (e.g., 0.99
+     *            for the 99th percentile)
+     * @return an upper bound of the percentile, in nanoseconds, or 0 if no
+     *         duration was recorded
+     */
+    public long getPercentile(double fraction) {
+        long[] snapshot = new long[NUM_BUCKETS];
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(NUM_BUCKETS - 1);
+    }
+
+    private static int getBucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long getUpperBound(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
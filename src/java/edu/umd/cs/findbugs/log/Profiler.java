@@ -21,19 +21,32 @@ package edu.umd.cs.findbugs.log;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.EmptyStackException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Stack;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import edu.umd.cs.findbugs.Detector;
+import edu.umd.cs.findbugs.Detector2;
 import edu.umd.cs.findbugs.FindBugs2;
 import edu.umd.cs.findbugs.SystemProperties;
 import edu.umd.cs.findbugs.ba.AnalysisContext;
+import edu.umd.cs.findbugs.classfile.IAnalysisEngine;
 import edu.umd.cs.findbugs.xml.XMLOutput;
 import edu.umd.cs.findbugs.xml.XMLWriteable;
 
@@ -46,8 +59,9 @@ public class Profiler implements XMLWriteable {
     final static boolean MAX_CONTEXT = SystemProperties.getBoolean("findbugs.profiler.maxcontext");
 
     public Profiler() {
-        startTimes = new Stack<Clock>();
         profile = new ConcurrentHashMap<Class<?>, Profile>();
+        cacheProfile = new ConcurrentHashMap<Class<?>, CacheProfile>();
+        contextTime = new ConcurrentHashMap<Object, AtomicLong>();
         if (REPORT)
             System.err.println("Profiling activated");
     }
@@ -116,6 +130,11 @@ public class Profiler implements XMLWriteable {
 
         final AtomicLong totalSquareMicroseconds = new AtomicLong();
 
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** bytes allocated, if allocation is tracked */
+        final AtomicLong allocatedBytes = new AtomicLong();
+
         private final String className;
 
         Object maxContext;
@@ -139,12 +158,39 @@ public class Profiler implements XMLWriteable {
             }
             long microseconds = TimeUnit.MICROSECONDS.convert(nanoTime, TimeUnit.NANOSECONDS);
             totalSquareMicroseconds.addAndGet(microseconds * microseconds);
+            histogram.record(nanoTime);
         }
 
         public long getTotalTime() {
             return totalTime.get();
         }
 
+        /**
+         * @return histogram of the time spent in each call
+         */
+        public LatencyHistogram getHistogram() {
+            return histogram;
+        }
+
+        /**
+         * Estimate a percentile of the time spent in each call.
+         *
+         * @param fraction
+         *            the percentile, as a fraction between 0 and 1
+         * @return the percentile, in nanoseconds
+         */
+        public long getPercentileTime(double fraction) {
+            return Math.min(histogram.getPercentile(fraction), maxTime.get());
+        }
+
+        /**
+         * @return bytes allocated during the calls, or 0 if allocation isn't
+         *         tracked
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes.get();
+        }
+
         /**
          * @param xmlOutput
          * @throws IOException
@@ -170,6 +216,10 @@ public class Profiler implements XMLWriteable {
                 xmlOutput.addAttribute("invocations", String.valueOf(callCount));
                 xmlOutput.addAttribute("avgMicrosecondsPerInvocation", String.valueOf(averageTimeMicros));
                 xmlOutput.addAttribute("maxMicrosecondsPerInvocation", String.valueOf(maxTimeMicros));
+                xmlOutput.addAttribute("medianMicrosecondsPerInvocation", String.valueOf(toMicros(getPercentileTime(0.5))));
+                xmlOutput.addAttribute("p99MicrosecondsPerInvocation", String.valueOf(toMicros(getPercentileTime(0.99))));
+                if (allocatedBytes.get() > 0)
+                    xmlOutput.addAttribute("allocatedBytes", String.valueOf(allocatedBytes.get()));
                 if (maxContext != null)
                   xmlOutput.addAttribute("maxContext", String.valueOf(maxContext));
                 xmlOutput.addAttribute("standardDeviationMircosecondsPerInvocation", String.valueOf(timeStandardDeviation));
@@ -178,6 +228,63 @@ public class Profiler implements XMLWriteable {
         }
     }
 
+    /**
+     * Statistics of the analysis cache for one kind of analysis result.
+     */
+    public static class CacheProfile implements XMLWriteable {
+        final AtomicLong hits = new AtomicLong();
+
+        final AtomicLong misses = new AtomicLong();
+
+        final AtomicLong evictions = new AtomicLong();
+
+        private final String className;
+
+        /**
+         * @param className
+         *            non null full qualified class name of the analysis result
+         */
+        public CacheProfile(String className) {
+            this.className = className;
+        }
+
+        /** Record a request answered from the cache */
+        public void hit() {
+            hits.incrementAndGet();
+        }
+
+        /** Record a request for which the result had to be computed */
+        public void miss() {
+            misses.incrementAndGet();
+        }
+
+        /** Record the eviction of a result to stay within the memory budget */
+        public void evicted() {
+            evictions.incrementAndGet();
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        public void writeXML(XMLOutput xmlOutput) throws IOException {
+            xmlOutput.startTag("AnalysisCacheProfile");
+            xmlOutput.addAttribute("name", className);
+            xmlOutput.addAttribute("hits", String.valueOf(hits.get()));
+            xmlOutput.addAttribute("misses", String.valueOf(misses.get()));
+            xmlOutput.addAttribute("evictions", String.valueOf(evictions.get()));
+            xmlOutput.stopTag(true);
+        }
+    }
+
     static class Clock {
         final Class<?> clazz;
 
@@ -185,37 +292,182 @@ public class Profiler implements XMLWriteable {
 
         long accumulatedTime;
 
-        Clock(Class<?> clazz, long currentNanoTime) {
+        long startAllocatedBytes;
+
+        long accumulatedAllocatedBytes;
+
+        Clock(Class<?> clazz, long currentNanoTime, long currentAllocatedBytes) {
             this.clazz = clazz;
             startTimeNanos = currentNanoTime;
+            startAllocatedBytes = currentAllocatedBytes;
         }
 
-        void accumulateTime(long currentNanoTime) {
+        void accumulateTime(long currentNanoTime, long currentAllocatedBytes) {
             accumulatedTime += currentNanoTime - startTimeNanos;
+            accumulatedAllocatedBytes += currentAllocatedBytes - startAllocatedBytes;
         }
 
-        void restartClock(long currentNanoTime) {
+        void restartClock(long currentNanoTime, long currentAllocatedBytes) {
             startTimeNanos = currentNanoTime;
+            startAllocatedBytes = currentAllocatedBytes;
+        }
+
+    }
+
+    /**
+     * Reads the number of bytes allocated by a thread, if the VM's
+     * ThreadMXBean supports it (com.sun.management.ThreadMXBean, Sun JDK 6u25
+     * and later). Accessed by reflection, so FindBugs still runs on other
+     * VMs.
+     */
+    static class AllocationCounter {
+        private final Object threadMXBean;
+
+        private final Method getThreadAllocatedBytes;
+
+        private AllocationCounter(Object threadMXBean, Method getThreadAllocatedBytes) {
+            this.threadMXBean = threadMXBean;
+            this.getThreadAllocatedBytes = getThreadAllocatedBytes;
+        }
+
+        /**
+         * @return an AllocationCounter, or null if the VM doesn't count
+         *         allocations per thread
+         */
+        static AllocationCounter create() {
+            try {
+                Object threadMXBean = ManagementFactory.getThreadMXBean();
+                Class<?> beanInterface = Class.forName("com.sun.management.ThreadMXBean");
+                if (!beanInterface.isInstance(threadMXBean)) {
+                    return null;
+                }
+                Boolean supported = (Boolean) beanInterface.getMethod("isThreadAllocatedMemorySupported").invoke(threadMXBean);
+                if (!supported.booleanValue()) {
+                    return null;
+                }
+                beanInterface.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threadMXBean, Boolean.TRUE);
+                return new AllocationCounter(threadMXBean, beanInterface.getMethod("getThreadAllocatedBytes", long.class));
+            } catch (ClassNotFoundException e) {
+                return null;
+            } catch (NoSuchMethodException e) {
+                return null;
+            } catch (IllegalAccessException e) {
+                return null;
+            } catch (InvocationTargetException e) {
+                return null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return bytes allocated so far by the current thread
+         */
+        long getAllocatedBytes() {
+            try {
+                return ((Long) getThreadAllocatedBytes.invoke(threadMXBean, Long.valueOf(Thread.currentThread().getId())))
+                        .longValue();
+            } catch (IllegalAccessException e) {
+                return 0;
+            } catch (InvocationTargetException e) {
+                return 0;
+            }
         }
+    }
 
+    /** Counts allocations, or null if allocation isn't tracked */
+    private volatile AllocationCounter allocationCounter;
+
+    /**
+     * Track the bytes allocated in each profiled class, in addition to the
+     * time spent, if the VM supports it. Allocation tracking makes profiling
+     * noticeably more expensive, so it is off by default.
+     *
+     * @return true if allocation is tracked, false if the VM doesn't support
+     *         it
+     */
+    public boolean trackAllocation() {
+        if (allocationCounter == null) {
+            allocationCounter = AllocationCounter.create();
+        }
+        return allocationCounter != null;
     }
 
-    final Stack<Clock> startTimes;
+    private long getAllocatedBytes() {
+        AllocationCounter counter = allocationCounter;
+        return counter != null ? counter.getAllocatedBytes() : 0;
+    }
+
+    /**
+     * Clock and context stacks are kept per thread, so that analysis threads
+     * running in parallel can each time their own nested calls while
+     * accumulating into the shared profile map.
+     */
+    final ThreadLocal<Stack<Clock>> startTimes = new ThreadLocal<Stack<Clock>>() {
+        @Override
+        protected Stack<Clock> initialValue() {
+            return new Stack<Clock>();
+        }
+    };
 
     final ConcurrentHashMap<Class<?>, Profile> profile;
 
-    final Stack<Object> context = new Stack<Object>();
+    final ConcurrentHashMap<Class<?>, CacheProfile> cacheProfile;
+
+    final ThreadLocal<Stack<Object>> context = new ThreadLocal<Stack<Object>>() {
+        @Override
+        protected Stack<Object> initialValue() {
+            return new Stack<Object>();
+        }
+    };
+
+    /**
+     * Total time spent in each context (e.g., the class being analyzed), in
+     * nanoseconds, summed over all threads.
+     */
+    final ConcurrentHashMap<Object, AtomicLong> contextTime;
+
+    final ThreadLocal<Stack<Long>> contextStartTimes = new ThreadLocal<Stack<Long>>() {
+        @Override
+        protected Stack<Long> initialValue() {
+            return new Stack<Long>();
+        }
+    };
 
     public void startContext(Object context) {
-        this.context.push(context);
+        this.context.get().push(context);
+        contextStartTimes.get().push(System.nanoTime());
     }
 
     public void endContext(Object context) {
-        Object o = this.context.pop();
+        Object o = this.context.get().pop();
         assert o == context;
+        long elapsed = System.nanoTime() - contextStartTimes.get().pop();
+        AtomicLong time = contextTime.get(context);
+        if (time == null) {
+            time = new AtomicLong();
+            AtomicLong time2 = contextTime.putIfAbsent(context, time);
+            if (time2 != null) {
+                time = time2;
+            }
+        }
+        time.addAndGet(elapsed);
+    }
+
+    /**
+     * Get the total time spent so far in a context, by all threads.
+     *
+     * @param context
+     *            the context, as passed to startContext()
+     * @return time in nanoseconds, or 0 if the context was never entered
+     */
+    public long getContextTime(Object context) {
+        AtomicLong time = contextTime.get(context);
+        return time != null ? time.get() : 0;
     }
 
     private Object getContext() {
+        Stack<Object> context = this.context.get();
         if (context.size() == 0)
             return "";
         try {
@@ -226,12 +478,13 @@ public class Profiler implements XMLWriteable {
     }
     public void start(Class<?> c) {
         long currentNanoTime = System.nanoTime();
+        long currentAllocatedBytes = getAllocatedBytes();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         if (!stack.isEmpty()) {
-            stack.peek().accumulateTime(currentNanoTime);
+            stack.peek().accumulateTime(currentNanoTime, currentAllocatedBytes);
         }
-        stack.push(new Clock(c, currentNanoTime));
+        stack.push(new Clock(c, currentNanoTime, currentAllocatedBytes));
         // System.err.println("push " + c.getSimpleName());
 
     }
@@ -239,17 +492,18 @@ public class Profiler implements XMLWriteable {
     public void end(Class<?> c) {
         // System.err.println("pop " + c.getSimpleName());
         long currentNanoTime = System.nanoTime();
+        long currentAllocatedBytes = getAllocatedBytes();
 
-        Stack<Clock> stack = startTimes;
+        Stack<Clock> stack = startTimes.get();
         Clock ending = stack.pop();
         if (ending.clazz != c) {
             throw new AssertionError("Asked to end timing for " + c + " but top of stack is " + ending.clazz
                     + ", remaining stack is " + stack);
         }
-        ending.accumulateTime(currentNanoTime);
+        ending.accumulateTime(currentNanoTime, currentAllocatedBytes);
         if (!stack.isEmpty()) {
             Clock restarting = stack.peek();
-            restarting.restartClock(currentNanoTime);
+            restarting.restartClock(currentNanoTime, currentAllocatedBytes);
         }
         long accumulatedTime = ending.accumulatedTime;
         if (accumulatedTime == 0) {
@@ -264,6 +518,7 @@ public class Profiler implements XMLWriteable {
             }
         }
         counter.handleCall(accumulatedTime, getContext());
+        counter.allocatedBytes.addAndGet(ending.accumulatedAllocatedBytes);
 
     }
 
@@ -408,7 +663,26 @@ public class Profiler implements XMLWriteable {
      */
     public void clear() {
         profile.clear();
-        startTimes.clear();
+        cacheProfile.clear();
+        contextTime.clear();
+        startTimes.get().clear();
+    }
+
+    /**
+     * Get the analysis cache statistics for given kind of analysis result.
+     *
+     * @param analysisClass
+     *            the class of the analysis result
+     */
+    public CacheProfile getCacheProfile(Class<?> analysisClass) {
+        CacheProfile result = cacheProfile.get(analysisClass);
+        if (result == null) {
+            result = new CacheProfile(analysisClass.getName());
+            CacheProfile tmp = cacheProfile.putIfAbsent(analysisClass, result);
+            if (tmp != null)
+                return tmp;
+        }
+        return result;
     }
 
     public Profile getProfile(Class<?> c) {
@@ -450,6 +724,111 @@ public class Profiler implements XMLWriteable {
             if (accumulatedTime > 3 * totalTime / 4)
                 break;
         }
+        List<Map.Entry<Object, AtomicLong>> contexts = getContextsByTime();
+        for (Map.Entry<Object, AtomicLong> e : contexts.subList(0, Math.min(contexts.size(), NUM_SLOWEST_CONTEXTS))) {
+            xmlOutput.startTag("AnalyzedClassProfile");
+            xmlOutput.addAttribute("name", String.valueOf(e.getKey()));
+            xmlOutput.addAttribute("totalMilliseconds", String.valueOf(TimeUnit.MILLISECONDS.convert(e.getValue().get(),
+                    TimeUnit.NANOSECONDS)));
+            xmlOutput.stopTag(true);
+        }
+        TreeMap<String, CacheProfile> cacheProfileByName = new TreeMap<String, CacheProfile>();
+        for (CacheProfile p : cacheProfile.values())
+            cacheProfileByName.put(p.className, p);
+        for (CacheProfile p : cacheProfileByName.values())
+            p.writeXML(xmlOutput);
         xmlOutput.closeTag("FindBugsProfile");
     }
+
+    /** Number of slowest contexts (i.e., analyzed classes) listed in the XML profile */
+    private static final int NUM_SLOWEST_CONTEXTS = 10;
+
+    /**
+     * @return the contexts, by decreasing time spent in them
+     */
+    private List<Map.Entry<Object, AtomicLong>> getContextsByTime() {
+        List<Map.Entry<Object, AtomicLong>> contexts = new ArrayList<Map.Entry<Object, AtomicLong>>(contextTime.entrySet());
+        Collections.sort(contexts, new Comparator<Map.Entry<Object, AtomicLong>>() {
+            public int compare(Map.Entry<Object, AtomicLong> e1, Map.Entry<Object, AtomicLong> e2) {
+                long t1 = e1.getValue().get();
+                long t2 = e2.getValue().get();
+                return t1 > t2 ? -1 : t1 < t2 ? 1 : 0;
+            }
+        });
+        return contexts;
+    }
+
+    /**
+     * Write the profile as comma-separated values, one line per profiled
+     * class, analysis cache result kind and context, so that profiles of
+     * different runs are easy to compare with other tools. The first line
+     * names the columns; the first column tells what the line describes:
+     * <ul>
+     * <li><code>detector</code>, <code>engine</code> or <code>other</code>:
+     * calls to a detector, analysis engine or other profiled class: number of
+     * calls, total, median, 99th percentile and maximum microseconds per
+     * call, and bytes allocated if allocation is tracked</li>
+     * <li><code>cache</code>: requests for a kind of analysis result: hits,
+     * misses, evictions and hit rate</li>
+     * <li><code>class</code>: time spent analyzing a class, in all passes</li>
+     * </ul>
+     * Lines are sorted by kind and name, so the same run yields the same
+     * lines in the same order.
+     *
+     * @param out
+     *            where to write the profile
+     */
+    public void writeCSV(PrintWriter out) {
+        out.println("kind,name,calls,totalMicroseconds,medianMicroseconds,p99Microseconds,maxMicroseconds,allocatedBytes,hits,misses,evictions,hitRate");
+        TreeMap<String, Class<?>> profiledByName = new TreeMap<String, Class<?>>();
+        for (Class<?> c : profile.keySet()) {
+            profiledByName.put(c.getName(), c);
+        }
+        for (Class<?> c : profiledByName.values()) {
+            Profile p = profile.get(c);
+            out.println(getKind(c) + "," + csvField(c.getName()) + "," + p.totalCalls.get() + ","
+                    + toMicros(p.totalTime.get()) + "," + toMicros(p.getPercentileTime(0.5)) + ","
+                    + toMicros(p.getPercentileTime(0.99)) + "," + toMicros(p.maxTime.get()) + ","
+                    + (allocationCounter != null ? String.valueOf(p.allocatedBytes.get()) : "") + ",,,,");
+        }
+        TreeMap<String, CacheProfile> cacheProfileByName = new TreeMap<String, CacheProfile>();
+        for (CacheProfile p : cacheProfile.values()) {
+            cacheProfileByName.put(p.className, p);
+        }
+        for (CacheProfile p : cacheProfileByName.values()) {
+            long requests = p.getHits() + p.getMisses();
+            out.println("cache," + csvField(p.className) + ",,,,,,," + p.getHits() + "," + p.getMisses() + ","
+                    + p.getEvictions() + ","
+                    + (requests > 0 ? String.format(Locale.ROOT, "%.4f", (double) p.getHits() / requests) : ""));
+        }
+        TreeMap<String, AtomicLong> contextTimeByName = new TreeMap<String, AtomicLong>();
+        for (Map.Entry<Object, AtomicLong> e : contextTime.entrySet()) {
+            contextTimeByName.put(String.valueOf(e.getKey()), e.getValue());
+        }
+        for (Map.Entry<String, AtomicLong> e : contextTimeByName.entrySet()) {
+            out.println("class," + csvField(e.getKey()) + ",," + toMicros(e.getValue().get()) + ",,,,,,,,");
+        }
+        out.flush();
+    }
+
+    private static String getKind(Class<?> c) {
+        if (Detector.class.isAssignableFrom(c) || Detector2.class.isAssignableFrom(c)) {
+            return "detector";
+        }
+        if (IAnalysisEngine.class.isAssignableFrom(c)) {
+            return "engine";
+        }
+        return "other";
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static long toMicros(long nanoTime) {
+        return TimeUnit.MICROSECONDS.convert(nanoTime, TimeUnit.NANOSECONDS);
+    }
 }
@@ -19,16 +19,24 @@
 
 package edu.umd.cs.findbugs.plan;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import edu.umd.cs.findbugs.BugReporter;
 import edu.umd.cs.findbugs.Detector;
 import edu.umd.cs.findbugs.Detector2;
 import edu.umd.cs.findbugs.DetectorFactory;
+import edu.umd.cs.findbugs.StatelessDetector;
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.bcel.FusedOpcodeStackDetector;
+import edu.umd.cs.findbugs.bcel.FusibleDetector;
 
 /**
  * An analysis pass in the overall ExecutionPlan. This is a list of Detectors to
@@ -42,6 +50,8 @@ public class AnalysisPass {
 
     private HashSet<DetectorFactory> memberSet;
 
+    private HashSet<DetectorFactory> unconstrainedSet;
+
     // private Detector2[] detectorList;
 
     /**
@@ -52,6 +62,7 @@ public class AnalysisPass {
     public AnalysisPass() {
         this.orderedFactoryList = new LinkedList<DetectorFactory>();
         this.memberSet = new HashSet<DetectorFactory>();
+        this.unconstrainedSet = new HashSet<DetectorFactory>();
     }
 
     /**
@@ -78,6 +89,31 @@ public class AnalysisPass {
         this.orderedFactoryList.addLast(factory);
     }
 
+    /**
+     * Record that given member of the pass is not subject to any ordering
+     * constraint within the pass, so that it may be applied to a class at any
+     * point of the pass.
+     * 
+     * @param factory
+     *            a DetectorFactory
+     */
+    public void setUnconstrained(DetectorFactory factory) {
+        if (!memberSet.contains(factory))
+            throw new IllegalArgumentException("Detector " + factory.getFullName() + " is not a member of the pass");
+        this.unconstrainedSet.add(factory);
+    }
+
+    /**
+     * Return whether or not given member of the pass may be applied to a class
+     * at any point of the pass.
+     * 
+     * @param factory
+     *            a DetectorFactory
+     */
+    public boolean isUnconstrained(DetectorFactory factory) {
+        return unconstrainedSet.contains(factory);
+    }
+
     /**
      * Get the members of this pass.
      * 
@@ -125,10 +161,66 @@ public class AnalysisPass {
      * @return array of Detector2s
      */
     public Detector2[] instantiateDetector2sInPass(BugReporter bugReporter) {
-        Detector2[] detectorList = new Detector2[orderedFactoryList.size()];
-        int count = 0;
-        for (Iterator<DetectorFactory> j = iterator(); j.hasNext();) {
-            detectorList[count++] = j.next().createDetector2(bugReporter);
+        return instantiateDetector2sInPass(bugReporter, null, false);
+    }
+
+    /**
+     * Instantiate some of the Detector2s in this pass and return them in a
+     * (correctly-ordered) array.
+     * 
+     * <p>
+     * Unless the findbugs.fusedSweep property is set to false, the
+     * {@link FusibleDetector}s which are not subject to ordering constraints
+     * share their walks over the classes (see {@link FusedOpcodeStackDetector}
+     * ).
+     * </p>
+     * 
+     * @param bugReporter
+     *            the BugReporter
+     * @param selected
+     *            if not null, which detectors to instantiate, indexed by
+     *            position in the pass
+     * @param separateStateless
+     *            true if the stateless detectors may be skipped for some
+     *            classes (e.g., because their bugs are cached), in which case
+     *            they are not fused with the other detectors
+     * @return array of Detector2s, with null entries for the detectors which
+     *         weren't selected
+     */
+    public Detector2[] instantiateDetector2sInPass(BugReporter bugReporter, @CheckForNull boolean[] selected,
+            boolean separateStateless) {
+        DetectorFactory[] factoryList = orderedFactoryList.toArray(new DetectorFactory[orderedFactoryList.size()]);
+        Detector2[] detectorList = new Detector2[factoryList.length];
+        boolean fuse = SystemProperties.getBoolean("findbugs.fusedSweep", true);
+        List<List<Integer>> groupList = new ArrayList<List<Integer>>();
+        groupList.add(new ArrayList<Integer>());
+        groupList.add(new ArrayList<Integer>());
+        for (int i = 0; i < factoryList.length; i++) {
+            DetectorFactory factory = factoryList[i];
+            if (selected != null && !selected[i]) {
+                continue;
+            }
+            if (fuse && unconstrainedSet.contains(factory)
+                    && FusedOpcodeStackDetector.isFusible(factory.getDetectorClass())) {
+                boolean stateless = separateStateless && factory.isDetectorClassSubtypeOf(StatelessDetector.class);
+                groupList.get(stateless ? 1 : 0).add(i);
+            } else {
+                detectorList[i] = factory.createDetector2(bugReporter);
+            }
+        }
+        for (List<Integer> group : groupList) {
+            if (group.size() == 1) {
+                detectorList[group.get(0)] = factoryList[group.get(0)].createDetector2(bugReporter);
+            } else if (group.size() > 1) {
+                List<DetectorFactory> factories = new ArrayList<DetectorFactory>();
+                for (int i : group) {
+                    factories.add(factoryList[i]);
+                }
+                Detector2[] fused = FusedOpcodeStackDetector.createDetector2s(factories, bugReporter);
+                for (int i = 0; i < fused.length; i++) {
+                    detectorList[group.get(i)] = fused[i];
+                }
+            }
         }
         return detectorList;
     }
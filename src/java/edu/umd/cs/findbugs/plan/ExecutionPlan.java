@@ -489,6 +489,7 @@ public class ExecutionPlan {
         });
         for (DetectorFactory factory : unassignedList) {
             appendToPass(factory, pass);
+            pass.setUnconstrained(factory);
         }
     }
 
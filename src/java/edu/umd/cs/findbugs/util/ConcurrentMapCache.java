@@ -0,0 +1,207 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe version of {@link MapCache}. The entries are spread over a
+ * number of independently locked shards, each of which is a MapCache holding
+ * its share of the maximum capacity, so threads working on different keys
+ * rarely contend. Entries are discarded in LRU order within each shard.
+ *
+ * <p>
+ * The views returned by entrySet(), keySet() and values() are unmodifiable
+ * snapshots.
+ * </p>
+ */
+public class ConcurrentMapCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private static final int MAX_SHARDS = 16;
+
+    /**
+     * Minimum number of entries per shard: small caches get a single shard,
+     * so that their LRU order stays close to that of a MapCache.
+     */
+    private static final int MIN_SHARD_CAPACITY = 64;
+
+    private final MapCache<K, V>[] shards;
+
+    /**
+     * Create a new ConcurrentMapCache
+     *
+     * @param maxCapacity
+     *            - maximum number of entries in the map
+     */
+    public ConcurrentMapCache(int maxCapacity) {
+        this(maxCapacity, MAX_SHARDS);
+    }
+
+    /**
+     * Create a new ConcurrentMapCache with a limited number of shards. With a
+     * single shard, entries are discarded in the same (global LRU) order as
+     * in a MapCache.
+     *
+     * @param maxCapacity
+     *            - maximum number of entries in the map
+     * @param maxShards
+     *            - maximum number of shards
+     */
+    public ConcurrentMapCache(int maxCapacity, int maxShards) {
+        int numShards = 1;
+        while (numShards < maxShards && numShards < MAX_SHARDS && maxCapacity / (2 * numShards) >= MIN_SHARD_CAPACITY) {
+            numShards *= 2;
+        }
+        shards = newShardArray(numShards);
+        int shardCapacity = (maxCapacity + numShards - 1) / numShards;
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new MapCache<K, V>(shardCapacity);
+        }
+    }
+
+    /**
+     * Arrays of a generic type cannot be created, but the array only ever
+     * holds the MapCache&lt;K, V&gt; shards created by the constructor and is
+     * never exposed, so the unchecked conversion is safe.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <K, V> MapCache<K, V>[] newShardArray(int numShards) {
+        return new MapCache[numShards];
+    }
+
+    private MapCache<K, V> shardFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (shards.length - 1)];
+    }
+
+    @Override
+    public V get(Object key) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            return shard.get(key);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            return shard.containsKey(key);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            return shard.put(key, value);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            return shard.remove(key);
+        }
+    }
+
+    public V putIfAbsent(K key, V value) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            V existing = shard.get(key);
+            if (existing == null) {
+                shard.put(key, value);
+            }
+            return existing;
+        }
+    }
+
+    public boolean remove(Object key, Object value) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            V existing = shard.get(key);
+            if (existing != null && existing.equals(value)) {
+                shard.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean replace(K key, V oldValue, V newValue) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            V existing = shard.get(key);
+            if (existing != null && existing.equals(oldValue)) {
+                shard.put(key, newValue);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public V replace(K key, V value) {
+        MapCache<K, V> shard = shardFor(key);
+        synchronized (shard) {
+            V existing = shard.get(key);
+            if (existing != null) {
+                shard.put(key, value);
+            }
+            return existing;
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (MapCache<K, V> shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (MapCache<K, V> shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Map<K, V> snapshot = new HashMap<K, V>();
+        for (MapCache<K, V> shard : shards) {
+            synchronized (shard) {
+                snapshot.putAll(shard);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+}
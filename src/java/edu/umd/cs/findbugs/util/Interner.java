@@ -0,0 +1,72 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash-consing table: maps values to a canonical instance equal to them, so
+ * that equal values are the same object and can be compared by reference.
+ *
+ * <p>
+ * A value is only replaced by an instance of exactly the same class, since
+ * some value classes (e.g., BCEL's ObjectType) have equals() methods which
+ * consider instances of their subclasses equal. Not thread safe: an Interner
+ * is meant to be owned by a single analysis, which also bounds the lifetime
+ * of the values it keeps.
+ * </p>
+ */
+public class Interner<T> {
+    private final Map<T, T> canonicalInstances = new HashMap<T, T>();
+
+    /**
+     * Get the canonical instance of a value.
+     *
+     * @param value
+     *            a value
+     * @return the canonical instance equal to the value, which is the value
+     *         itself if no equal value was interned before
+     */
+    public T intern(T value) {
+        T canonical = canonicalInstances.get(value);
+        if (canonical == null) {
+            canonicalInstances.put(value, value);
+            return value;
+        }
+        if (canonical.getClass() != value.getClass())
+            return value;
+        return canonical;
+    }
+
+    /**
+     * @return the number of canonical instances
+     */
+    public int size() {
+        return canonicalInstances.size();
+    }
+
+    /**
+     * Forget all the canonical instances.
+     */
+    public void clear() {
+        canonicalInstances.clear();
+    }
+}
@@ -0,0 +1,683 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe map whose entries are discarded when their total weight
+ * exceeds a maximum. The weight of each entry (e.g., an estimate of the
+ * memory it retains) is computed by a {@link Weigher} when the entry is
+ * stored.
+ *
+ * <p>
+ * Entries are discarded using the W-TinyLFU policy: new entries enter a small
+ * LRU "window"; entries leaving the window are admitted to the main region
+ * only if they have been used more often than the entry they would displace,
+ * according to a compact, periodically aged frequency sketch. The main region
+ * is a segmented LRU, in which entries used again after admission are
+ * protected from eviction by entries used only once. Unlike plain LRU, this
+ * keeps frequently used entries cached while a scan over many entries used
+ * only once passes through.
+ * </p>
+ *
+ * <p>
+ * As in {@link ConcurrentMapCache}, the entries are spread over independently
+ * locked shards, each of which gets its share of the maximum weight. The views
+ * returned by entrySet(), keySet() and values() are unmodifiable snapshots.
+ * </p>
+ */
+public class WeightedCache<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    /**
+     * Computes the weight of cache entries.
+     */
+    public interface Weigher<V> {
+        /**
+         * @param value
+         *            a value about to be stored in the cache
+         * @return the weight of the value, at least 1
+         */
+        public int weigh(V value);
+    }
+
+    private static final int MAX_SHARDS = 16;
+
+    /**
+     * Minimum weight per shard: small caches get fewer shards, so that their
+     * eviction order stays close to that of an unsharded cache.
+     */
+    private static final long MIN_SHARD_WEIGHT = 1024 * 1024;
+
+    private final Weigher<? super V> weigher;
+
+    private final Shard[] shards;
+
+    /**
+     * Create a new WeightedCache.
+     *
+     * @param maxWeight
+     *            maximum total weight of the entries
+     * @param minEntries
+     *            number of most recently used entries kept in the window
+     *            region even if their weight exceeds its share of the
+     *            maximum
+     * @param windowPercent
+     *            percentage of the maximum weight used for the window region,
+     *            which holds the most recently added entries
+     * @param weigher
+     *            computes the weight of the entries
+     */
+    public WeightedCache(long maxWeight, int minEntries, int windowPercent, Weigher<? super V> weigher) {
+        this.weigher = weigher;
+        int numShards = 1;
+        while (numShards < MAX_SHARDS && maxWeight / (2 * numShards) >= MIN_SHARD_WEIGHT) {
+            numShards *= 2;
+        }
+        shards = newShardArray(numShards);
+        long shardWeight = (maxWeight + numShards - 1) / numShards;
+        int shardMinEntries = (minEntries + numShards - 1) / numShards;
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new Shard(shardWeight, shardMinEntries, windowPercent);
+        }
+    }
+
+    /**
+     * Arrays of a generic type cannot be created, but the array only ever
+     * holds the shards created by the constructor and is never exposed, so
+     * the unchecked conversion is safe.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Shard[] newShardArray(int numShards) {
+        return new WeightedCache.Shard[numShards];
+    }
+
+    /**
+     * Called, with the lock of the entry's shard held, when an entry is
+     * discarded to keep the cache within its maximum weight. Subclasses may
+     * override this method to keep statistics.
+     *
+     * @param key
+     *            the key of the entry
+     * @param value
+     *            the value of the entry
+     */
+    protected void evicted(K key, V value) {
+    }
+
+    /**
+     * @return the total weight of the entries in the cache
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                weight += shard.windowWeight + shard.probationWeight + shard.protectedWeight;
+            }
+        }
+        return weight;
+    }
+
+    private Shard shardFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (shards.length - 1)];
+    }
+
+    private int weigh(V value) {
+        return Math.max(1, weigher.weigh(value));
+    }
+
+    @Override
+    public V get(Object key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            shard.sketch.increment(key);
+            if (node == null) {
+                return null;
+            }
+            shard.touch(node);
+            return node.value;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            return shard.data.containsKey(key);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int weight = weigh(value);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            return shard.put(key, value, weight);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node == null) {
+                return null;
+            }
+            shard.remove(node);
+            return node.value;
+        }
+    }
+
+    public V putIfAbsent(K key, V value) {
+        int weight = weigh(value);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node != null) {
+                shard.touch(node);
+                return node.value;
+            }
+            shard.put(key, value, weight);
+            return null;
+        }
+    }
+
+    public boolean remove(Object key, Object value) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node != null && node.value.equals(value)) {
+                shard.remove(node);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public boolean replace(K key, V oldValue, V newValue) {
+        int weight = weigh(newValue);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node != null && node.value.equals(oldValue)) {
+                shard.put(key, newValue, weight);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Weigh an entry again, e.g., because its value has grown since it was
+     * stored.
+     *
+     * @param key
+     *            the key of the entry
+     * @param value
+     *            the value of the entry; nothing is done if the entry has
+     *            been removed or now has another value
+     */
+    public void reweigh(K key, V value) {
+        int weight = weigh(value);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node != null && node.value == value && node.weight != weight) {
+                shard.setWeight(node, weight);
+                shard.evict();
+            }
+        }
+    }
+
+    /**
+     * Change the weight of an entry by a known amount, e.g., because its
+     * value has grown since it was stored and weighing it again would be
+     * costly.
+     *
+     * @param key
+     *            the key of the entry
+     * @param value
+     *            the value of the entry; nothing is done if the entry has
+     *            been removed or now has another value
+     * @param delta
+     *            the weight to add (or, if negative, remove); the weight of
+     *            the entry stays at least 1
+     */
+    public void addWeight(K key, V value, int delta) {
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            Node<K, V> node = shard.data.get(key);
+            if (node != null && node.value == value && delta != 0) {
+                long weight = Math.max(1, Math.min((long) node.weight + delta, Integer.MAX_VALUE));
+                shard.setWeight(node, (int) weight);
+                shard.evict();
+            }
+        }
+    }
+
+    public V replace(K key, V value) {
+        int weight = weigh(value);
+        Shard shard = shardFor(key);
+        synchronized (shard) {
+            if (!shard.data.containsKey(key)) {
+                return null;
+            }
+            return shard.put(key, value, weight);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.data.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Map<K, V> snapshot = new HashMap<K, V>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Node<K, V> node : shard.data.values()) {
+                    snapshot.put(node.key, node.value);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    static final int WINDOW = 0;
+
+    static final int PROBATION = 1;
+
+    static final int PROTECTED = 2;
+
+    /**
+     * Get the total weight of the entries in one region, as kept up to date
+     * by the cache. For testing.
+     */
+    long getRegionWeight(int region) {
+        long weight = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                weight += region == WINDOW ? shard.windowWeight : region == PROBATION ? shard.probationWeight
+                        : shard.protectedWeight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Add up the weights of the entries in one region. For testing.
+     */
+    long sumRegionWeight(int region) {
+        long weight = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Node<K, V> node : shard.data.values()) {
+                    if (node.region == region) {
+                        weight += node.weight;
+                    }
+                }
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * An entry, linked into the LRU list of its region.
+     */
+    private static class Node<K, V> {
+        final K key;
+
+        V value;
+
+        int weight;
+
+        int region;
+
+        Node<K, V> prev, next;
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+
+        /**
+         * Link this node before the sentinel of a list, i.e., make it the most
+         * recently used node of the list.
+         */
+        void linkBefore(Node<K, V> sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            prev.next = this;
+            sentinel.prev = this;
+        }
+    }
+
+    /**
+     * A part of the cache guarded by its own lock.
+     */
+    private class Shard {
+        final HashMap<K, Node<K, V>> data = new HashMap<K, Node<K, V>>();
+
+        final FrequencySketch sketch = new FrequencySketch();
+
+        /** LRU list sentinels; the least recently used node follows the sentinel */
+        final Node<K, V> window = newSentinel(), probation = newSentinel(), protectedList = newSentinel();
+
+        final long maxWindowWeight, maxMainWeight, maxProtectedWeight;
+
+        final int minWindowEntries;
+
+        int windowEntries;
+
+        long windowWeight, probationWeight, protectedWeight;
+
+        Shard(long maxWeight, int minEntries, int windowPercent) {
+            this.maxWindowWeight = Math.max(1, maxWeight / 100 * windowPercent);
+            this.maxMainWeight = Math.max(1, maxWeight - maxWindowWeight);
+            this.maxProtectedWeight = maxMainWeight * 8 / 10;
+            this.minWindowEntries = minEntries;
+        }
+
+        private Node<K, V> newSentinel() {
+            Node<K, V> sentinel = new Node<K, V>(null);
+            sentinel.prev = sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        V put(K key, V value, int weight) {
+            Node<K, V> node = data.get(key);
+            V oldValue = null;
+            if (node == null) {
+                sketch.increment(key);
+                node = new Node<K, V>(key);
+                node.region = WINDOW;
+                node.linkBefore(window);
+                windowEntries++;
+                data.put(key, node);
+                sketch.ensureCapacity(data.size());
+            } else {
+                oldValue = node.value;
+                // Touch first: the node may move to another region, taking
+                // its old weight along
+                touch(node);
+            }
+            node.value = value;
+            setWeight(node, weight);
+            evict();
+            return oldValue;
+        }
+
+        /**
+         * Change the weight of an entry, in the region it is in.
+         */
+        void setWeight(Node<K, V> node, int weight) {
+            addWeight(node, weight - node.weight);
+            node.weight = weight;
+        }
+
+        void addWeight(Node<K, V> node, long weight) {
+            switch (node.region) {
+            case WINDOW:
+                windowWeight += weight;
+                break;
+            case PROBATION:
+                probationWeight += weight;
+                break;
+            default:
+                protectedWeight += weight;
+                break;
+            }
+        }
+
+        /**
+         * Record a use of an entry.
+         */
+        void touch(Node<K, V> node) {
+            node.unlink();
+            switch (node.region) {
+            case WINDOW:
+                node.linkBefore(window);
+                break;
+            case PROBATION:
+                // Used again after admission: protect it
+                probationWeight -= node.weight;
+                node.region = PROTECTED;
+                protectedWeight += node.weight;
+                node.linkBefore(protectedList);
+                while (protectedWeight > maxProtectedWeight && protectedList.next != node) {
+                    Node<K, V> demoted = protectedList.next;
+                    demoted.unlink();
+                    protectedWeight -= demoted.weight;
+                    demoted.region = PROBATION;
+                    probationWeight += demoted.weight;
+                    demoted.linkBefore(probation);
+                }
+                break;
+            default:
+                node.linkBefore(protectedList);
+                break;
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.region == WINDOW) {
+                windowEntries--;
+            }
+            addWeight(node, -node.weight);
+            node.unlink();
+            data.remove(node.key);
+        }
+
+        void evictNode(Node<K, V> node) {
+            remove(node);
+            evicted(node.key, node.value);
+        }
+
+        /**
+         * Move entries from the window to the main region, discarding entries
+         * until the main region is within its maximum weight.
+         */
+        void evict() {
+            while (windowWeight > maxWindowWeight && windowEntries > minWindowEntries) {
+                Node<K, V> candidate = window.next;
+                candidate.unlink();
+                windowEntries--;
+                windowWeight -= candidate.weight;
+                candidate.region = PROBATION;
+                probationWeight += candidate.weight;
+                candidate.linkBefore(probation);
+                admit(candidate);
+            }
+            // An entry of the main region may have grown
+            while (probationWeight + protectedWeight > maxMainWeight) {
+                evictNode(probation.next != probation ? probation.next : protectedList.next);
+            }
+        }
+
+        /**
+         * Make room in the main region for an entry which has just left the
+         * window, or discard the entry itself if it is used less often than
+         * the entries it would displace.
+         */
+        void admit(Node<K, V> candidate) {
+            int candidateFrequency = sketch.frequency(candidate.key);
+            while (probationWeight + protectedWeight > maxMainWeight) {
+                Node<K, V> victim = probation.next;
+                if (victim == candidate) {
+                    victim = victim.next;
+                }
+                if (victim == probation) {
+                    victim = protectedList.next;
+                }
+                if (victim == protectedList) {
+                    evictNode(candidate);
+                    return;
+                }
+                if (candidateFrequency > sketch.frequency(victim.key)) {
+                    evictNode(victim);
+                } else {
+                    evictNode(candidate);
+                    return;
+                }
+            }
+        }
+
+        void clear() {
+            data.clear();
+            window.prev = window.next = window;
+            probation.prev = probation.next = probation;
+            protectedList.prev = protectedList.next = protectedList;
+            windowEntries = 0;
+            windowWeight = probationWeight = protectedWeight = 0;
+        }
+    }
+
+    /**
+     * A count-min sketch estimating how often keys have been used, with 4 bit
+     * counters. When the number of recorded uses reaches ten times the
+     * capacity, all counters are halved, so that the estimates favor recent
+     * use.
+     */
+    static class FrequencySketch {
+        private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L };
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private long[] table = new long[0];
+
+        private int tableMask;
+
+        private int sampleSize;
+
+        private int size;
+
+        /**
+         * Make sure the sketch is large enough to keep apart the frequencies of
+         * given number of keys; the recorded frequencies are lost when the
+         * sketch grows.
+         */
+        void ensureCapacity(int maximumSize) {
+            if (table.length >= maximumSize) {
+                return;
+            }
+            int length = 16;
+            while (length < maximumSize && length < (1 << 30)) {
+                length <<= 1;
+            }
+            table = new long[length];
+            tableMask = length - 1;
+            sampleSize = 10 * length;
+            size = 0;
+        }
+
+        int frequency(Object key) {
+            if (table.length == 0) {
+                return 0;
+            }
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            if (table.length == 0) {
+                return;
+            }
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++size >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = 0xfL << offset;
+            if ((table[i] & mask) != mask) {
+                table[i] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & tableMask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -442,6 +442,54 @@ abstract public class DismantleBytecode extends AnnotationVisitor {
         referencedXField = null;
     }
 
+    /**
+     * Make this visitor see the same instruction as another visitor decoding
+     * the same Code attribute, as if it had decoded the instruction itself.
+     * Must be called for every instruction of the Code attribute, so that
+     * getPrevOpcode() works.
+     *
+     * @param other
+     *            the visitor decoding the bytecode
+     */
+    public void copyOpcodeState(DismantleBytecode other) {
+        codeBytes = other.codeBytes;
+        lineNumberTable = other.lineNumberTable;
+        opcode = other.opcode;
+        opcodeIsWide = other.opcodeIsWide;
+        PC = other.PC;
+        nextPC = other.nextPC;
+        branchOffset = other.branchOffset;
+        branchTarget = other.branchTarget;
+        branchFallThrough = other.branchFallThrough;
+        switchOffsets = other.switchOffsets;
+        switchLabels = other.switchLabels;
+        defaultSwitchOffset = other.defaultSwitchOffset;
+        currentPosInPrevOpcodeBuffer = other.currentPosInPrevOpcodeBuffer;
+        sizePrevOpcodeBuffer = other.sizePrevOpcodeBuffer;
+        prevOpcode[currentPosInPrevOpcodeBuffer] = other.prevOpcode[currentPosInPrevOpcodeBuffer];
+        classConstantOperand = other.classConstantOperand;
+        referencedClass = other.referencedClass;
+        referencedXClass = other.referencedXClass;
+        referencedMethod = other.referencedMethod;
+        referencedXMethod = other.referencedXMethod;
+        referencedField = other.referencedField;
+        referencedXField = other.referencedXField;
+        dottedClassConstantOperand = other.dottedClassConstantOperand;
+        nameConstantOperand = other.nameConstantOperand;
+        sigConstantOperand = other.sigConstantOperand;
+        stringConstantOperand = other.stringConstantOperand;
+        refConstantOperand = other.refConstantOperand;
+        refFieldIsStatic = other.refFieldIsStatic;
+        constantRefOperand = other.constantRefOperand;
+        intConstant = other.intConstant;
+        longConstant = other.longConstant;
+        floatConstant = other.floatConstant;
+        doubleConstant = other.doubleConstant;
+        registerOperand = other.registerOperand;
+        isRegisterLoad = other.isRegisterLoad;
+        isRegisterStore = other.isRegisterStore;
+    }
+
     private static void sortByOffset(int[] switchOffsets, int[] switchLabels) {
         int npairs = switchOffsets.length;
         // Sort by offset
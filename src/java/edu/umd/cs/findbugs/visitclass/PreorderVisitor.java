@@ -396,6 +396,43 @@ public class PreorderVisitor extends BetterVisitor implements Constants2 {
         super.visitJavaClass(obj);
     }
 
+    /**
+     * Make this visitor see the same class, field, method and Code attribute
+     * as another visitor walking the same class. This allows a single visitor
+     * to walk a class on behalf of several others, calling their visit methods
+     * itself. Both visitors must visit methods in the same order.
+     *
+     * @param other
+     *            the visitor walking the class
+     */
+    public void copyVisitState(PreorderVisitor other) {
+        constantPool = other.constantPool;
+        thisClass = other.thisClass;
+        thisClassInfo = other.thisClassInfo;
+        thisMethodInfo = other.thisMethodInfo;
+        thisFieldInfo = other.thisFieldInfo;
+        className = other.className;
+        dottedClassName = other.dottedClassName;
+        packageName = other.packageName;
+        sourceFile = other.sourceFile;
+        superclassName = other.superclassName;
+        dottedSuperclassName = other.dottedSuperclassName;
+        visitingMethod = other.visitingMethod;
+        methodSig = other.methodSig;
+        dottedMethodSig = other.dottedMethodSig;
+        method = other.method;
+        methodName = other.methodName;
+        fullyQualifiedMethodName = other.fullyQualifiedMethodName;
+        field = other.field;
+        visitingField = other.visitingField;
+        fullyQualifiedFieldName = other.fullyQualifiedFieldName;
+        fieldName = other.fieldName;
+        fieldSig = other.fieldSig;
+        dottedFieldSig = other.dottedFieldSig;
+        fieldIsStatic = other.fieldIsStatic;
+        code = other.code;
+    }
+
     @Override
     public void visitLineNumberTable(LineNumberTable obj) {
         super.visitLineNumberTable(obj);
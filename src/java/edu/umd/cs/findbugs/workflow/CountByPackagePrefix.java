@@ -17,14 +17,15 @@
  */
 package edu.umd.cs.findbugs.workflow;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.dom4j.DocumentException;
 
-import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugInstanceSink;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.PackageStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
@@ -52,23 +53,27 @@ public class CountByPackagePrefix {
             return;
         }
 
-        int prefixLength = Integer.parseInt(args[0]);
-        BugCollection origCollection = new SortedBugCollection();
+        final int prefixLength = Integer.parseInt(args[0]);
+        final Map<String, Integer> map = new TreeMap<String, Integer>();
+        Map<String, Integer> ncss = new TreeMap<String, Integer>();
+
+        // Count the warnings as they are read, rather than keeping them all
+        BugInstanceSink counter = new BugInstanceSink() {
+            public void handleBugInstance(BugInstance b) {
+                String prefix = ClassName.extractPackagePrefix(b.getPrimaryClass().getPackageName(), prefixLength);
+                Integer v = map.get(prefix);
+                if (v == null)
+                    map.put(prefix, 1);
+                else
+                    map.put(prefix, v + 1);
+            }
+        };
+        SortedBugCollection origCollection = new SortedBugCollection();
         if (args.length == 1)
-            origCollection.readXML(System.in);
+            origCollection.readXML(System.in, null, counter);
         else
-            origCollection.readXML(args[1]);
-        Map<String, Integer> map = new TreeMap<String, Integer>();
-        Map<String, Integer> ncss = new TreeMap<String, Integer>();
+            origCollection.readXML(new File(args[1]), counter);
 
-        for (BugInstance b : origCollection.getCollection()) {
-            String prefix = ClassName.extractPackagePrefix(b.getPrimaryClass().getPackageName(), prefixLength);
-            Integer v = map.get(prefix);
-            if (v == null)
-                map.put(prefix, 1);
-            else
-                map.put(prefix, v + 1);
-        }
         for (PackageStats ps : origCollection.getProjectStats().getPackageStats()) {
             String prefix = ClassName.extractPackagePrefix(ps.getPackageName(), prefixLength);
 
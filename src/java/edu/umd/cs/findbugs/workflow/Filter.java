@@ -19,6 +19,7 @@
 package edu.umd.cs.findbugs.workflow;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Date;
@@ -35,12 +36,15 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.regex.Pattern;
 
+import javax.annotation.CheckForNull;
+
 import org.dom4j.DocumentException;
 
 import edu.umd.cs.findbugs.AppVersion;
 import edu.umd.cs.findbugs.BugCategory;
 import edu.umd.cs.findbugs.BugCollection;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugInstanceSink;
 import edu.umd.cs.findbugs.BugPattern;
 import edu.umd.cs.findbugs.BugRanker;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
@@ -56,6 +60,7 @@ import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SloppyBugComparator;
 import edu.umd.cs.findbugs.SortedBugCollection;
 import edu.umd.cs.findbugs.SourceLineAnnotation;
+import edu.umd.cs.findbugs.StreamingBugCollectionWriter;
 import edu.umd.cs.findbugs.charsets.UTF8;
 import edu.umd.cs.findbugs.cloud.Cloud;
 import edu.umd.cs.findbugs.config.CommandLine;
@@ -655,6 +660,16 @@ public class Filter {
 
         }
 
+        /**
+         * Can the bugs be filtered one at a time as they are read, without
+         * keeping the whole collection in memory? Not if we need to look at
+         * all the bugs first, or need the cloud, or write messages.
+         */
+        boolean canStream() {
+            return !withMessages && maybeMutatedAsString == null && !hashChangedSpecified && !maxAgeSpecified
+                    && !notAProblemSpecified && !shouldFixSpecified;
+        }
+
         /**
          * @param b
          * @return
@@ -703,9 +718,15 @@ public class Filter {
                 + " [options] [<orig results> [<new results]] ");
         SortedBugCollection origCollection = new SortedBugCollection();
 
+        // Filter a file in two passes when we can: first read everything
+        // but the bugs, then filter the bugs as they are read again
+        File inputFile = null;
         if (argCount == args.length)
             origCollection.readXML(System.in);
-        else
+        else if (commandLine.canStream()) {
+            inputFile = new File(args[argCount++]);
+            origCollection.readXML(inputFile, BugInstanceSink.DISCARD);
+        } else
             origCollection.readXML(args[argCount++]);
         boolean verbose = argCount < args.length;
         SortedBugCollection resultCollection = origCollection.createEmptyCollectionWithMetadata();
@@ -755,6 +776,12 @@ public class Filter {
 
         commandLine.getReady(origCollection);
 
+        if (inputFile != null) {
+            filterWhileReading(commandLine, origCollection, inputFile, resultCollection, trimToVersion, verbose,
+                    argCount == args.length ? null : args[argCount++]);
+            return;
+        }
+
         for (BugInstance bug : origCollection.getCollection())
             if (commandLine.accept(origCollection, bug)) {
                 if (trimToVersion >= 0) {
@@ -781,6 +808,73 @@ public class Filter {
         }
         if (verbose)
             System.out.println(passed + " warnings passed through, " + dropped + " warnings dropped");
+        updateStats(commandLine, projectStats);
+        if (argCount == args.length) {
+            assert !verbose;
+            resultCollection.writeXML(System.out);
+        } else {
+            resultCollection.writeXML(args[argCount++]);
+
+        }
+
+    }
+
+    /**
+     * Filter the bugs of a file as they are read, writing those which pass
+     * to the output as we go, so that files of any size can be filtered.
+     *
+     * @param origCollection
+     *            everything from the file but the bugs
+     * @param resultCollection
+     *            everything to write but the bugs
+     * @param outputFile
+     *            file to write to, or null to write to System.out
+     */
+    private static void filterWhileReading(final FilterCommandLine commandLine, final SortedBugCollection origCollection,
+            File inputFile, SortedBugCollection resultCollection, final long trimToVersion, boolean verbose,
+            @CheckForNull String outputFile) throws IOException, DocumentException {
+        final boolean purgeHistory = commandLine.purgeHistorySpecified && commandLine.purgeHistory;
+        if (purgeHistory)
+            resultCollection.clearAppVersions();
+        final ProjectStats projectStats = resultCollection.getProjectStats();
+        final StreamingBugCollectionWriter writer = outputFile == null ? new StreamingBugCollectionWriter(
+                resultCollection, System.out) : new StreamingBugCollectionWriter(resultCollection, outputFile);
+        final int[] passedAndDropped = new int[2];
+
+        BugInstanceSink filter = new BugInstanceSink() {
+            public void handleBugInstance(BugInstance bug) throws IOException {
+                if (!commandLine.accept(origCollection, bug)) {
+                    passedAndDropped[1]++;
+                    return;
+                }
+                if (trimToVersion >= 0) {
+                    if (bug.getFirstVersion() > trimToVersion) {
+                        passedAndDropped[1]++;
+                        return;
+                    } else if (bug.getLastVersion() >= trimToVersion) {
+                        bug.setLastVersion(-1);
+                        bug.setRemovedByChangeOfPersistingClass(false);
+                    }
+                }
+                if (!bug.isDead())
+                    projectStats.addBug(bug);
+                if (purgeHistory)
+                    bug.clearHistory();
+                writer.handleBugInstance(bug);
+                passedAndDropped[0]++;
+            }
+        };
+        // The bugs are counted in the statistics of resultCollection
+        new SortedBugCollection().readXML(inputFile, filter);
+
+        if (verbose)
+            System.out.println(passedAndDropped[0] + " warnings passed through, " + passedAndDropped[1]
+                    + " warnings dropped");
+        updateStats(commandLine, projectStats);
+        writer.finish();
+    }
+
+    private static void updateStats(FilterCommandLine commandLine, ProjectStats projectStats) {
         if (commandLine.withSourceSpecified && commandLine.withSource && !commandLine.dontUpdateStats
                 && projectStats.hasClassStats()) {
             for (PackageStats stats : projectStats.getPackageStats()) {
@@ -795,14 +889,6 @@ public class Filter {
 
         }
         projectStats.recomputeFromComponents();
-        if (argCount == args.length) {
-            assert !verbose;
-            resultCollection.writeXML(System.out);
-        } else {
-            resultCollection.writeXML(args[argCount++]);
-
-        }
-
     }
 
 }
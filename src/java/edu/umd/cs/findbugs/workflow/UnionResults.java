@@ -19,18 +19,23 @@
 
 package edu.umd.cs.findbugs.workflow;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import org.dom4j.DocumentException;
 
 import edu.umd.cs.findbugs.AnalysisError;
 import edu.umd.cs.findbugs.BugInstance;
+import edu.umd.cs.findbugs.BugInstanceSink;
 import edu.umd.cs.findbugs.DetectorFactoryCollection;
 import edu.umd.cs.findbugs.FindBugs;
 import edu.umd.cs.findbugs.Project;
 import edu.umd.cs.findbugs.ProjectStats;
 import edu.umd.cs.findbugs.SortedBugCollection;
+import edu.umd.cs.findbugs.StreamingBugCollectionWriter;
 import edu.umd.cs.findbugs.config.CommandLine;
 
 /**
@@ -118,6 +123,11 @@ public class UnionResults {
         int argCount = commandLine.parse(argv, 2, Integer.MAX_VALUE, "Usage: " + UnionResults.class.getName()
                 + " [options] [<results1> <results2> ... <resultsn>] ");
 
+        if (!commandLine.withMessages) {
+            unionWhileReading(commandLine, argv, argCount);
+            return;
+        }
+
         SortedBugCollection results = null;
         HashSet<String> hashes = new HashSet<String>();
         
@@ -153,6 +163,87 @@ public class UnionResults {
             results.writeXML(commandLine.outputFile);
     }
 
+    /**
+     * Compute the union in two passes over the files, so that the bugs never
+     * have to be all in memory: first read everything but the bugs and merge
+     * the projects, which are written before the bugs, then read the bugs
+     * again, writing those not seen before to the output as we go, and merge
+     * the rest as merge() does. Only the instance hashes of the bugs are kept.
+     */
+    private static void unionWhileReading(UnionResultsCommandLine commandLine, String[] argv, int argCount)
+            throws IOException {
+        SortedBugCollection results = null;
+        List<File> files = new ArrayList<File>();
+        List<SortedBugCollection> collections = new ArrayList<SortedBugCollection>();
+        for (int i = argCount; i < argv.length; i++) {
+            try {
+                SortedBugCollection more = new SortedBugCollection();
+
+                more.readXML(new File(argv[i]), BugInstanceSink.DISCARD);
+
+                if (results != null)
+                    results.getProject().add(more.getProject());
+                else
+                    results = more;
+                files.add(new File(argv[i]));
+                collections.add(more);
+            } catch (IOException e) {
+                System.err.println("Trouble reading/parsing " + argv[i]);
+            } catch (DocumentException e) {
+                System.err.println("Trouble reading/parsing " + argv[i]);
+            }
+        }
+
+        if (results == null) {
+            System.err.println("No files successfully read");
+            System.exit(1);
+            return;
+        }
+
+        final ProjectStats stats = results.getProjectStats();
+        final long sequence = results.getSequenceNumber();
+        final HashSet<String> hashes = new HashSet<String>();
+        final StreamingBugCollectionWriter writer = commandLine.outputFile == null ? new StreamingBugCollectionWriter(
+                results, System.out) : new StreamingBugCollectionWriter(results, commandLine.outputFile);
+
+        // The bugs of the first file were counted in its statistics
+        BugInstanceSink first = new BugInstanceSink() {
+            public void handleBugInstance(BugInstance bugInstance) throws IOException {
+                hashes.add(bugInstance.getInstanceHash());
+                writer.handleBugInstance(bugInstance);
+            }
+        };
+        BugInstanceSink rest = new BugInstanceSink() {
+            public void handleBugInstance(BugInstance bugInstance) throws IOException {
+                if (!hashes.add(bugInstance.getInstanceHash()))
+                    return;
+                // As SortedBugCollection.add(BugInstance) does
+                if (bugInstance.getFirstVersion() == 0L && bugInstance.getLastVersion() == 0L)
+                    bugInstance.setFirstVersion(sequence);
+                if (!bugInstance.isDead())
+                    stats.addBug(bugInstance);
+                writer.handleBugInstance(bugInstance);
+            }
+        };
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            try {
+                new SortedBugCollection().readXML(file, i == 0 ? first : rest);
+            } catch (DocumentException e) {
+                IOException ioe = new IOException("Trouble reading/parsing " + file);
+                ioe.initCause(e);
+                throw ioe;
+            }
+            if (i > 0) {
+                SortedBugCollection from = collections.get(i);
+                stats.addStats(from.getProjectStats());
+                for (AnalysisError error : from.getErrors())
+                    results.addError(error);
+            }
+        }
+        writer.finish();
+    }
+
 }
 
 // vim:ts=3
@@ -0,0 +1,45 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class AnalysisServerTest extends TestCase {
+
+    private static String resolved(File directory, String path) {
+        return new File(directory, path).getPath();
+    }
+
+    public void testResolvePaths() {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "client").getAbsoluteFile();
+        String absolute = new File("/lib/app.jar").getAbsolutePath();
+        String[] args = { "-low", "-threads", "4", "-output", "out.xml", "-auxclasspath",
+                "a.jar" + File.pathSeparator + absolute, "-train", "-html:no-such.xsl", "-onlyAnalyze", "org.foo.-",
+                "app.jar", absolute };
+
+        String[] expected = { "-low", "-threads", "4", "-output", resolved(directory, "out.xml"), "-auxclasspath",
+                resolved(directory, "a.jar") + File.pathSeparator + absolute, "-train:" + resolved(directory, "."),
+                "-html:no-such.xsl", "-onlyAnalyze", "org.foo.-", resolved(directory, "app.jar"), absolute };
+        assertEquals(Arrays.asList(expected), Arrays.asList(AnalysisServer.resolvePaths(args, directory)));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class ExternalBugSorterTest extends TestCase {
+
+    private static BugInstance createBug(int i) {
+        BugInstance bug = new BugInstance(i % 2 == 0 ? "NP_NULL_DEREF" : "DLS_DEAD_LOCAL_STORE",
+                Priorities.NORMAL_PRIORITY);
+        bug.addClass("pkg.Class" + (i % 7));
+        bug.addInt(i % 11);
+        return bug;
+    }
+
+    private static List<BugInstance> sort(ExternalBugSorter sorter) throws IOException {
+        final List<BugInstance> result = new ArrayList<BugInstance>();
+        sorter.writeSorted(new BugInstanceSink() {
+            public void handleBugInstance(BugInstance bugInstance) {
+                result.add(bugInstance);
+            }
+        });
+        return result;
+    }
+
+    public void testSameOrderAsTreeSet() throws IOException {
+        TreeSet<BugInstance> expected = new TreeSet<BugInstance>(SortedBugCollection.BugInstanceComparator.instance);
+        ExternalBugSorter sorter = new ExternalBugSorter(SortedBugCollection.BugInstanceComparator.instance, 10);
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            BugInstance bug = createBug(random.nextInt(100));
+            expected.add(bug);
+            sorter.add(bug);
+        }
+        assertTrue(sorter.getNumRuns() > 1);
+
+        List<BugInstance> sorted = sort(sorter);
+        assertEquals(expected.size(), sorted.size());
+        int i = 0;
+        for (BugInstance bug : expected) {
+            BugInstance other = sorted.get(i++);
+            assertEquals(0, SortedBugCollection.BugInstanceComparator.instance.compare(bug, other));
+            assertEquals(bug.getType(), other.getType());
+            assertEquals(bug.getPrimaryClass().getClassName(), other.getPrimaryClass().getClassName());
+        }
+        assertEquals(0, sorter.getNumRuns());
+    }
+
+    public void testRunsAreDeletedAfterMerging() throws IOException {
+        ExternalBugSorter sorter = new ExternalBugSorter(SortedBugCollection.BugInstanceComparator.instance, 2);
+        for (int i = 0; i < 10; i++) {
+            sorter.add(createBug(i));
+        }
+        List<File> runs = sorter.getRuns();
+        assertFalse(runs.isEmpty());
+        for (File run : runs) {
+            assertTrue(run.exists());
+        }
+
+        sort(sorter);
+        for (File run : runs) {
+            assertFalse(run.exists());
+        }
+    }
+
+    public void testFirstDuplicateIsKept() throws IOException {
+        ExternalBugSorter sorter = new ExternalBugSorter(SortedBugCollection.BugInstanceComparator.instance, 2);
+        BugInstance first = createBug(1);
+        first.setProperty("added", "first");
+        assertTrue(sorter.add(first));
+        sorter.add(createBug(2));
+        BugInstance second = createBug(1);
+        second.setProperty("added", "second");
+        sorter.add(second);
+
+        List<BugInstance> sorted = sort(sorter);
+        assertEquals(2, sorted.size());
+        for (BugInstance bug : sorted) {
+            if (bug.getType().equals(first.getType()))
+                assertEquals("first", bug.getProperty("added"));
+        }
+    }
+}
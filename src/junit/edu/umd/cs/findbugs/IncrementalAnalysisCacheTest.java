@@ -0,0 +1,129 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.bcel.Constants;
+import org.apache.bcel.generic.ClassGen;
+import org.apache.bcel.generic.FieldGen;
+import org.apache.bcel.generic.Type;
+
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * Checks which cache entries IncrementalAnalysisCache invalidates when a
+ * class changes.
+ */
+public class IncrementalAnalysisCacheTest extends TestCase {
+    private File tmpdir;
+
+    @Override
+    protected void setUp() throws Exception {
+        tmpdir = File.createTempFile("fbtest", null);
+        if (!tmpdir.delete() || !tmpdir.mkdir()) {
+            throw new IOException("Could not create temp dir");
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(tmpdir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void writeClass(File dir, String className, String superclassName, boolean withField)
+            throws IOException {
+        ClassGen cg = new ClassGen(className, superclassName, className + ".java", Constants.ACC_PUBLIC
+                | Constants.ACC_SUPER, null);
+        cg.addEmptyConstructor(Constants.ACC_PUBLIC);
+        if (withField) {
+            cg.addField(new FieldGen(Constants.ACC_PUBLIC, Type.INT, "added", cg.getConstantPool()).getField());
+        }
+        cg.getJavaClass().dump(new File(dir, className + ".class"));
+    }
+
+    private static void analyze(File classDir, File cacheDir) throws Exception {
+        Project project = new Project();
+        project.addFile(classDir.getPath());
+        FindBugs2 engine = new FindBugs2();
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        engine.setBugReporter(bugReporter);
+        engine.setUserPreferences(UserPreferences.createDefaultUserPreferences());
+        engine.setIncrementalCacheDir(cacheDir.getPath());
+        engine.execute();
+    }
+
+    /**
+     * Get the keys of the entries in the cache, i.e., the names of the entry
+     * files without the pass number.
+     */
+    private static Set<String> getKeys(File cacheDir) {
+        Set<String> keys = new HashSet<String>();
+        for (File dir : cacheDir.listFiles()) {
+            for (File entry : dir.listFiles()) {
+                String name = entry.getName();
+                keys.add(dir.getName() + name.substring(0, name.lastIndexOf('-')));
+            }
+        }
+        return keys;
+    }
+
+    public void testGrandparentChangeInvalidatesGrandchild() throws Exception {
+        File classDir = new File(tmpdir, "classes");
+        File cacheDir = new File(tmpdir, "cache");
+        classDir.mkdir();
+        writeClass(classDir, "Grandparent", "java.lang.Object", false);
+        writeClass(classDir, "Parent", "Grandparent", false);
+        writeClass(classDir, "Child", "Parent", false);
+
+        analyze(classDir, cacheDir);
+        Set<String> keys = getKeys(cacheDir);
+        assertEquals(3, keys.size());
+
+        analyze(classDir, cacheDir);
+        assertEquals(keys, getKeys(cacheDir));
+
+        // Child neither calls nor refers to Grandparent directly, but
+        // inherits from it
+        writeClass(classDir, "Grandparent", "java.lang.Object", true);
+        analyze(classDir, cacheDir);
+        Set<String> newKeys = getKeys(cacheDir);
+        newKeys.removeAll(keys);
+        assertEquals(3, newKeys.size());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * FindBugs - Find bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.ba.XClass;
+import edu.umd.cs.findbugs.ba.XMethod;
+import edu.umd.cs.findbugs.classfile.CheckedAnalysisException;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.Global;
+import edu.umd.cs.findbugs.classfile.IAnalysisCache;
+import edu.umd.cs.findbugs.config.UserPreferences;
+
+/**
+ * Checks that a run reusing the library classes kept by LibraryClassCache
+ * gives the same results as the run which parsed them.
+ */
+public class LibraryClassCacheTest extends TestCase {
+
+    /**
+     * Engine recording, before the caches are cleared, the bridge methods of
+     * java.lang.String (a library class with a bridge method,
+     * compareTo(Object)) known to the analysis context.
+     */
+    private static class RecordingEngine extends AnalysisServer.ServerEngine {
+        private final LibraryClassCache libraryClassCache;
+
+        final List<String> stringBridges = new ArrayList<String>();
+
+        int numReusedClasses;
+
+        RecordingEngine(LibraryClassCache libraryClassCache) {
+            super(libraryClassCache);
+            this.libraryClassCache = libraryClassCache;
+        }
+
+        @Override
+        protected void clearCaches() {
+            IAnalysisCache analysisCache = Global.getAnalysisCache();
+            if (analysisCache != null) {
+                numReusedClasses = libraryClassCache.getNumReusedClasses();
+                try {
+                    XClass xclass = analysisCache.getClassAnalysis(XClass.class,
+                            DescriptorFactory.createClassDescriptor(String.class));
+                    for (XMethod m : xclass.getXMethods()) {
+                        XMethod to = m.bridgeTo();
+                        if (to != null) {
+                            stringBridges.add(m.getName() + m.getSignature() + " -> " + to.getName() + to.getSignature());
+                        }
+                        XMethod from = m.bridgeFrom();
+                        if (from != null) {
+                            stringBridges.add(m.getName() + m.getSignature() + " <- " + from.getName() + from.getSignature());
+                        }
+                    }
+                } catch (CheckedAnalysisException e) {
+                    throw new IllegalStateException(e);
+                }
+                Collections.sort(stringBridges);
+            }
+            super.clearCaches();
+        }
+    }
+
+    private static List<String> run(FindBugs2 engine) throws Exception {
+        Project project = new Project();
+        project.addFile("lib/commons-lang-2.4.jar");
+        engine.setProject(project);
+        engine.setDetectorFactoryCollection(DetectorFactoryCollection.instance());
+        BugCollectionBugReporter bugReporter = new BugCollectionBugReporter(project);
+        bugReporter.setPriorityThreshold(Priorities.LOW_PRIORITY);
+        engine.setBugReporter(bugReporter);
+        engine.setUserPreferences(UserPreferences.createDefaultUserPreferences());
+
+        engine.execute();
+
+        List<String> bugs = new ArrayList<String>();
+        for (BugInstance bug : bugReporter.getBugCollection()) {
+            bugs.add(bug.getMessageWithPriorityTypeAbbreviation() + " " + bug.getPrimarySourceLineAnnotation());
+        }
+        Collections.sort(bugs);
+        return bugs;
+    }
+
+    public void testWarmRunMatchesColdRun() throws Exception {
+        LibraryClassCache libraryClassCache = new LibraryClassCache();
+        RecordingEngine cold = new RecordingEngine(libraryClassCache);
+        List<String> coldBugs = run(cold);
+        RecordingEngine warm = new RecordingEngine(libraryClassCache);
+        List<String> warmBugs = run(warm);
+
+        assertEquals(0, cold.numReusedClasses);
+        assertTrue(warm.numReusedClasses > 0);
+        assertFalse(cold.stringBridges.isEmpty());
+        assertEquals(cold.stringBridges, warm.stringBridges);
+        assertEquals(coldBugs, warmBugs);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class DominatorTreeTest extends TestCase {
+
+    /**
+     * Build a CFG with a chain of blocks from the entry to the exit, plus
+     * random forward, backward and exception edges; some blocks are only
+     * reached through exception edges, and some can't reach the exit.
+     */
+    private static CFG createRandomCFG(Random random, int numBlocks) {
+        CFG cfg = new CFG();
+        List<BasicBlock> blocks = new ArrayList<BasicBlock>();
+        blocks.add(cfg.getEntry());
+        for (int i = 0; i < numBlocks; i++) {
+            blocks.add(cfg.allocate());
+        }
+        blocks.add(cfg.getExit());
+        for (int i = 0; i + 1 < blocks.size(); i++) {
+            if (i == 0 || random.nextInt(10) > 0) {
+                cfg.createEdge(blocks.get(i), blocks.get(i + 1), EdgeTypes.FALL_THROUGH_EDGE);
+            } else {
+                // Keep every block reachable from the entry, as in the CFGs
+                // built from bytecode
+                cfg.createEdge(blocks.get(random.nextInt(i)), blocks.get(i + 1), EdgeTypes.GOTO_EDGE);
+            }
+        }
+        for (int i = 0; i < numBlocks / 2; i++) {
+            BasicBlock source = blocks.get(1 + random.nextInt(numBlocks));
+            BasicBlock target = blocks.get(1 + random.nextInt(numBlocks + 1));
+            if (source != target && cfg.lookupEdge(source, target) == null) {
+                cfg.createEdge(source, target, random.nextInt(3) == 0 ? EdgeTypes.HANDLED_EXCEPTION_EDGE : EdgeTypes.GOTO_EDGE);
+            }
+        }
+        return cfg;
+    }
+
+    private static void checkSameAsDataflow(AbstractDominatorsAnalysis dataflowAnalysis, AbstractDominatorsAnalysis treeAnalysis,
+            CFG cfg) throws DataflowAnalysisException {
+        new Dataflow<BitSet, AbstractDominatorsAnalysis>(cfg, dataflowAnalysis).execute();
+        treeAnalysis.computeDominatorTree();
+        for (BasicBlock block : cfg.blocks()) {
+            assertEquals(dataflowAnalysis.getResultFact(block), treeAnalysis.getResultFact(block));
+            assertEquals(dataflowAnalysis.getStartFact(block), treeAnalysis.getStartFact(block));
+            assertEquals(dataflowAnalysis.getAllDominatedBy(block), treeAnalysis.getAllDominatedBy(block));
+        }
+    }
+
+    public void testDominatorsSameAsDataflow() throws DataflowAnalysisException {
+        Random random = new Random(17);
+        for (int i = 0; i < 50; i++) {
+            CFG cfg = createRandomCFG(random, 5 + random.nextInt(60));
+            DepthFirstSearch dfs = new DepthFirstSearch(cfg);
+            dfs.search();
+            boolean ignoreExceptionEdges = random.nextBoolean();
+            checkSameAsDataflow(new DominatorsAnalysis(cfg, dfs, ignoreExceptionEdges), new DominatorsAnalysis(cfg, dfs,
+                    ignoreExceptionEdges), cfg);
+        }
+    }
+
+    public void testPostDominatorsSameAsDataflow() throws DataflowAnalysisException {
+        Random random = new Random(23);
+        for (int i = 0; i < 50; i++) {
+            CFG cfg = createRandomCFG(random, 5 + random.nextInt(60));
+            DepthFirstSearch dfs = new DepthFirstSearch(cfg);
+            dfs.search();
+            ReverseDepthFirstSearch rdfs = new ReverseDepthFirstSearch(cfg);
+            rdfs.search();
+            boolean ignoreExceptionEdges = random.nextBoolean();
+            checkSameAsDataflow(new PostDominatorsAnalysis(cfg, rdfs, dfs, ignoreExceptionEdges) {
+            }, new PostDominatorsAnalysis(cfg, rdfs, dfs, ignoreExceptionEdges) {
+            }, cfg);
+        }
+    }
+
+    public void testDominates() {
+        CFG cfg = new CFG();
+        BasicBlock entry = cfg.getEntry();
+        BasicBlock a = cfg.allocate();
+        BasicBlock b = cfg.allocate();
+        BasicBlock c = cfg.allocate();
+        BasicBlock unreachable = cfg.allocate();
+        BasicBlock exit = cfg.getExit();
+        // entry -> a -> (b | c) -> exit
+        cfg.createEdge(entry, a, EdgeTypes.FALL_THROUGH_EDGE);
+        cfg.createEdge(a, b, EdgeTypes.IFCMP_EDGE);
+        cfg.createEdge(a, c, EdgeTypes.FALL_THROUGH_EDGE);
+        cfg.createEdge(b, exit, EdgeTypes.RETURN_EDGE);
+        cfg.createEdge(c, exit, EdgeTypes.RETURN_EDGE);
+        cfg.createEdge(unreachable, exit, EdgeTypes.RETURN_EDGE);
+
+        DominatorTree tree = new DominatorTree(cfg, true, new EdgeChooser() {
+            public boolean choose(Edge edge) {
+                return true;
+            }
+        });
+        assertSame(entry, tree.getRoot());
+        assertSame(a, tree.getImmediateDominator(exit));
+        assertNull(tree.getImmediateDominator(entry));
+        assertTrue(tree.dominates(a, b));
+        assertTrue(tree.dominates(b, b));
+        assertFalse(tree.dominates(b, exit));
+        assertFalse(tree.isReachable(unreachable));
+        assertFalse(tree.dominates(entry, unreachable));
+        assertEquals(5, tree.getAllDominatedBy(entry).cardinality());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2005, University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba;
+
+import junit.framework.TestCase;
+
+public class FrameTest extends TestCase {
+
+    static class StringFrame extends Frame<String> {
+        StringFrame(int numLocals) {
+            super(numLocals);
+        }
+    }
+
+    StringFrame frame;
+
+    @Override
+    protected void setUp() throws Exception {
+        frame = new StringFrame(2);
+        frame.setValid();
+        frame.setValue(0, "a");
+        frame.setValue(1, "b");
+    }
+
+    public void testPushPop() throws DataflowAnalysisException {
+        for (int i = 0; i < 10; i++) {
+            frame.pushValue("s" + i);
+        }
+        assertEquals(10, frame.getStackDepth());
+        assertEquals(12, frame.getNumSlots());
+        assertEquals("s9", frame.getTopValue());
+        assertEquals("s7", frame.getStackValue(2));
+        assertEquals("s9", frame.popValue());
+        assertEquals(11, frame.getNumSlots());
+        frame.clearStack();
+        assertEquals(0, frame.getStackDepth());
+        assertEquals("b", frame.getValue(1));
+        try {
+            frame.popValue();
+            fail();
+        } catch (DataflowAnalysisException e) {
+            assert true;
+        }
+    }
+
+    public void testCopyFromAndSameAs() {
+        StringFrame other = new StringFrame(2);
+        other.setTop();
+        assertFalse(other.sameAs(frame));
+
+        frame.pushValue("x");
+        frame.pushValue("y");
+        other.copyFrom(frame);
+        assertTrue(other.sameAs(frame));
+        assertEquals(4, other.getNumSlots());
+
+        other.setValue(3, new String("y"));
+        assertTrue(other.sameAs(frame));
+        other.setValue(3, "z");
+        assertFalse(other.sameAs(frame));
+
+        frame.clearStack();
+        other.copyFrom(frame);
+        assertTrue(other.sameAs(frame));
+        assertEquals(2, other.getNumSlots());
+        assertEquals(2, other.allSlots().size());
+        assertTrue(other.allSlots().contains("a"));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.ba.interproc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.ba.npe.ReturnValueNullnessPropertyDatabase;
+import edu.umd.cs.findbugs.charsets.UTF8;
+import edu.umd.cs.findbugs.classfile.DescriptorFactory;
+import edu.umd.cs.findbugs.classfile.MethodDescriptor;
+
+public class BinaryPropertyTableTest extends TestCase {
+
+    private static final String TEXT = "java.lang.Object,toString,()Ljava/lang/String;,1|true\n"
+            + "java.lang.String,valueOf,(Ljava/lang/Object;)Ljava/lang/String;,9|true\n"
+            + "java.util.Map,get,(Ljava/lang/Object;)Ljava/lang/Object;,1|false\n";
+
+    private static byte[] toBinary(String text) throws IOException, PropertyDatabaseFormatException {
+        BinaryPropertyTable.Builder builder = new BinaryPropertyTable.Builder();
+        builder.addText(new ByteArrayInputStream(text.getBytes(UTF8.charset)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        builder.write(out);
+        return out.toByteArray();
+    }
+
+    private static MethodDescriptor method(String className, String name, String signature, boolean isStatic) {
+        return DescriptorFactory.instance().getMethodDescriptor(className, name, signature, isStatic);
+    }
+
+    public void testTextRoundTrip() throws Exception {
+        BinaryPropertyTable table = new BinaryPropertyTable(ByteBuffer.wrap(toBinary(TEXT)));
+        assertEquals(3, table.size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.writeText(out);
+        assertEquals(TEXT, new String(out.toByteArray(), UTF8.charset));
+    }
+
+    public void testLookup() throws Exception {
+        BinaryPropertyTable table = new BinaryPropertyTable(ByteBuffer.wrap(toBinary(TEXT)));
+        assertEquals("true", table.lookup("java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", true));
+        assertNull(table.lookup("java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false));
+        assertEquals("false", table.lookup("java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false));
+        assertNull(table.lookup("java/util/Map", "put", "(Ljava/lang/Object;)Ljava/lang/Object;", false));
+    }
+
+    public void testDatabaseReadsBothFormats() throws Exception {
+        ReturnValueNullnessPropertyDatabase text = new ReturnValueNullnessPropertyDatabase();
+        text.read(new ByteArrayInputStream(TEXT.getBytes(UTF8.charset)));
+        ReturnValueNullnessPropertyDatabase binary = new ReturnValueNullnessPropertyDatabase();
+        binary.read(new ByteArrayInputStream(toBinary(TEXT)));
+
+        MethodDescriptor toString = method("java/lang/Object", "toString", "()Ljava/lang/String;", false);
+        MethodDescriptor get = method("java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+        assertFalse(binary.isEmpty());
+        assertEquals(text.getProperty(toString), binary.getProperty(toString));
+        assertEquals(text.getProperty(get), binary.getProperty(get));
+        assertSame(binary.getProperty(get), binary.getProperty(get));
+        assertEquals(text.getKeys(), binary.getKeys());
+    }
+
+    public void testSetPropertyOverridesBinaryEntries() throws Exception {
+        ReturnValueNullnessPropertyDatabase database = new ReturnValueNullnessPropertyDatabase();
+        database.read(new ByteArrayInputStream(toBinary(TEXT)));
+        MethodDescriptor get = method("java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+        assertEquals(Boolean.FALSE, database.getProperty(get));
+        database.setProperty(get, Boolean.TRUE);
+        assertEquals(Boolean.TRUE, database.getProperty(get));
+        assertEquals(Boolean.TRUE, database.removeProperty(get));
+        assertNull(database.getProperty(get));
+        assertEquals(2, database.getKeys().size());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.classfile.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+import edu.umd.cs.findbugs.classfile.ICodeBaseIterator;
+
+public class MappedZipCodeBaseTest extends TestCase {
+
+    private static final byte[] DEFLATED_DATA = new byte[10000];
+
+    private static final byte[] STORED_DATA = { (byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe };
+
+    static {
+        for (int i = 0; i < DEFLATED_DATA.length; i++) {
+            DEFLATED_DATA[i] = (byte) (i * i % 251);
+        }
+    }
+
+    private MappedZipCodeBase codeBase;
+
+    @Override
+    protected void setUp() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        out.putNextEntry(new ZipEntry("a/"));
+        out.putNextEntry(new ZipEntry("a/Deflated.class"));
+        out.write(DEFLATED_DATA);
+        ZipEntry stored = new ZipEntry("a/Stored.class");
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(STORED_DATA.length);
+        CRC32 crc = new CRC32();
+        crc.update(STORED_DATA);
+        stored.setCrc(crc.getValue());
+        out.putNextEntry(stored);
+        out.write(STORED_DATA);
+        out.putNextEntry(new ZipEntry("a/Empty.txt"));
+        out.close();
+        codeBase = new MappedZipCodeBase(new FilesystemCodeBaseLocator("test.zip"), ByteBuffer.wrap(bytes.toByteArray()),
+                "test.zip");
+    }
+
+    public void testLookupResource() throws IOException {
+        MappedZipCodeBaseEntry deflated = (MappedZipCodeBaseEntry) codeBase.lookupResource("a/Deflated.class");
+        assertEquals(DEFLATED_DATA.length, deflated.getNumBytes());
+        assertTrue(Arrays.equals(DEFLATED_DATA, deflated.getBytes()));
+        MappedZipCodeBaseEntry storedEntry = (MappedZipCodeBaseEntry) codeBase.lookupResource("a/Stored.class");
+        assertTrue(Arrays.equals(STORED_DATA, storedEntry.getBytes()));
+        assertEquals(0, ((MappedZipCodeBaseEntry) codeBase.lookupResource("a/Empty.txt")).getBytes().length);
+        assertNull(codeBase.lookupResource("a/Missing.class"));
+    }
+
+    public void testIteratorSkipsDirectories() throws InterruptedException {
+        List<String> names = new ArrayList<String>();
+        for (ICodeBaseIterator i = codeBase.iterator(); i.hasNext();) {
+            names.add(i.next().getResourceName());
+        }
+        assertEquals(Arrays.asList("a/Deflated.class", "a/Stored.class", "a/Empty.txt"), names);
+    }
+
+    public void testNotAZipFile() {
+        try {
+            new MappedZipCodeBase(new FilesystemCodeBaseLocator("test.zip"), ByteBuffer.wrap(DEFLATED_DATA), "test.zip");
+            fail();
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+}
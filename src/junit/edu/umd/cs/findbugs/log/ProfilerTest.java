@@ -0,0 +1,48 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+public class ProfilerTest extends TestCase {
+
+    public void testCSVHitRateIgnoresDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            Profiler profiler = new Profiler();
+            Profiler.CacheProfile cacheProfile = profiler.getCacheProfile(String.class);
+            cacheProfile.hit();
+            cacheProfile.miss();
+            StringWriter out = new StringWriter();
+            profiler.writeCSV(new PrintWriter(out));
+            String[] lines = out.toString().split("\r?\n");
+            assertEquals(2, lines.length);
+            assertEquals("cache,java.lang.String,,,,,,,1,1,0,0.5000", lines[1]);
+            assertEquals(lines[0].split(",", -1).length, lines[1].split(",", -1).length);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
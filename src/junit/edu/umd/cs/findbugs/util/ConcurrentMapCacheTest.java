@@ -0,0 +1,72 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import junit.framework.TestCase;
+
+public class ConcurrentMapCacheTest extends TestCase {
+
+    public void testEvictsLeastRecentlyUsed() {
+        ConcurrentMapCache<Integer, String> cache = new ConcurrentMapCache<Integer, String>(3);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        assertEquals("a", cache.get(1));
+        cache.put(4, "d");
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey(2));
+        assertEquals("a", cache.get(1));
+    }
+
+    public void testBoundedWithManyShards() {
+        ConcurrentMapCache<Integer, Integer> cache = new ConcurrentMapCache<Integer, Integer>(5000);
+        for (int i = 0; i < 20000; i++) {
+            cache.put(i, i);
+        }
+        assertTrue(cache.size() <= 5000 + 16);
+        assertEquals(Integer.valueOf(19999), cache.get(19999));
+        assertEquals(cache.size(), cache.entrySet().size());
+    }
+
+    public void testSingleShardKeepsMostRecentlyUsed() {
+        ConcurrentMapCache<Integer, Integer> cache = new ConcurrentMapCache<Integer, Integer>(300, 1);
+        MapCache<Integer, Integer> expected = new MapCache<Integer, Integer>(300);
+        for (int i = 0; i < 1000; i++) {
+            // Keys all falling in the same shard of a sharded cache
+            Integer key = Integer.valueOf(i * 16);
+            cache.put(key, key);
+            expected.put(key, key);
+        }
+        assertEquals(300, cache.size());
+        assertEquals(expected.keySet(), cache.keySet());
+    }
+
+    public void testConditionalOperations() {
+        ConcurrentMapCache<String, String> cache = new ConcurrentMapCache<String, String>(10);
+        assertNull(cache.putIfAbsent("k", "v1"));
+        assertEquals("v1", cache.putIfAbsent("k", "v2"));
+        assertFalse(cache.replace("k", "v2", "v3"));
+        assertTrue(cache.replace("k", "v1", "v3"));
+        assertFalse(cache.remove("k", "v1"));
+        assertTrue(cache.remove("k", "v3"));
+        assertNull(cache.replace("k", "v4"));
+        assertTrue(cache.isEmpty());
+    }
+}
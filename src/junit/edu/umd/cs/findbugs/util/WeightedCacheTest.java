@@ -0,0 +1,181 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.util;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class WeightedCacheTest extends TestCase {
+
+    private static final WeightedCache.Weigher<String> LENGTH = new WeightedCache.Weigher<String>() {
+        public int weigh(String value) {
+            return value.length();
+        }
+    };
+
+    public void testBoundedByWeight() {
+        WeightedCache<Integer, String> cache = new WeightedCache<Integer, String>(100, 1, 10, LENGTH);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "0123456789");
+        }
+        assertTrue(cache.getWeight() <= 100);
+        assertEquals(cache.getWeight(), 10L * cache.size());
+        assertEquals("0123456789", cache.get(999));
+    }
+
+    public void testKeepsRecentEntriesHeavierThanMaximum() {
+        WeightedCache<Integer, String> cache = new WeightedCache<Integer, String>(5, 2, 10, LENGTH);
+        cache.put(1, "0123456789");
+        cache.put(2, "0123456789");
+        assertEquals("0123456789", cache.get(2));
+        assertEquals("0123456789", cache.get(1));
+        cache.put(3, "0123456789");
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsKey(1));
+        assertTrue(cache.containsKey(3));
+    }
+
+    public void testFrequentlyUsedEntriesSurvive() {
+        WeightedCache<Integer, String> cache = new WeightedCache<Integer, String>(50, 1, 10, LENGTH);
+        cache.put(-1, "hot");
+        for (int i = 0; i < 200; i++) {
+            assertEquals("hot", cache.get(-1));
+            cache.put(i, "cold");
+        }
+        assertEquals("hot", cache.get(-1));
+    }
+
+    public void testConditionalOperations() {
+        WeightedCache<String, String> cache = new WeightedCache<String, String>(1000, 1, 10, LENGTH);
+        assertNull(cache.putIfAbsent("k", "v1"));
+        assertEquals("v1", cache.putIfAbsent("k", "v2"));
+        assertFalse(cache.replace("k", "v2", "v3"));
+        assertTrue(cache.replace("k", "v1", "v3"));
+        assertEquals(2, cache.getWeight());
+        assertTrue(cache.remove("k", "v3"));
+        assertTrue(cache.isEmpty());
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testOverwriteProbationEntry() {
+        WeightedCache<Integer, String> cache = new WeightedCache<Integer, String>(100, 1, 10, LENGTH);
+        cache.put(1, "0123456789");
+        // Pushes entry 1 out of the window into probation
+        cache.put(2, "0123456789");
+        assertEquals(10, cache.getRegionWeight(WeightedCache.PROBATION));
+
+        // Overwriting entry 1 protects it, with its new weight
+        cache.put(1, "01234567890123456789");
+        assertEquals(10, cache.getRegionWeight(WeightedCache.WINDOW));
+        assertEquals(0, cache.getRegionWeight(WeightedCache.PROBATION));
+        assertEquals(20, cache.getRegionWeight(WeightedCache.PROTECTED));
+
+        cache.remove(1);
+        assertEquals(0, cache.getRegionWeight(WeightedCache.PROTECTED));
+        assertEquals(10, cache.getWeight());
+    }
+
+    public void testRegionWeightsStayConsistent() {
+        WeightedCache<Integer, String> cache = new WeightedCache<Integer, String>(200, 2, 10, LENGTH);
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            Integer key = random.nextInt(50);
+            String value = "0123456789012345678901234567890123456789".substring(random.nextInt(40));
+            switch (random.nextInt(5)) {
+            case 0:
+                cache.get(key);
+                break;
+            case 1:
+                cache.remove(key);
+                break;
+            case 2:
+                cache.replace(key, value);
+                break;
+            case 3:
+                cache.putIfAbsent(key, value);
+                break;
+            default:
+                cache.put(key, value);
+                break;
+            }
+            assertRegionWeights(cache);
+        }
+    }
+
+    public void testReweighGrownEntry() {
+        WeightedCache<Integer, StringBuilder> cache = new WeightedCache<Integer, StringBuilder>(100, 1, 10,
+                new WeightedCache.Weigher<StringBuilder>() {
+                    public int weigh(StringBuilder value) {
+                        return value.length();
+                    }
+                });
+        StringBuilder grown = new StringBuilder("0123456789");
+        cache.put(1, grown);
+        cache.put(2, new StringBuilder("0123456789"));
+        for (int i = 0; i < 5; i++) {
+            grown.append("0123456789");
+        }
+        cache.reweigh(1, grown);
+        assertEquals(70, cache.getWeight());
+
+        // Growing beyond the main region evicts it
+        for (int i = 0; i < 5; i++) {
+            grown.append("0123456789");
+        }
+        cache.reweigh(1, grown);
+        assertFalse(cache.containsKey(1));
+        assertEquals(10, cache.getWeight());
+    }
+
+    public void testAddWeight() {
+        WeightedCache<Integer, StringBuilder> cache = new WeightedCache<Integer, StringBuilder>(100, 1, 10,
+                new WeightedCache.Weigher<StringBuilder>() {
+                    public int weigh(StringBuilder value) {
+                        return value.length();
+                    }
+                });
+        StringBuilder grown = new StringBuilder("0123456789");
+        cache.put(1, grown);
+        cache.put(2, new StringBuilder("0123456789"));
+        cache.addWeight(1, grown, 50);
+        assertEquals(70, cache.getWeight());
+        assertRegionWeights(cache);
+
+        // Another value under the same key is left alone
+        cache.addWeight(1, new StringBuilder(), 10);
+        assertEquals(70, cache.getWeight());
+
+        cache.addWeight(1, grown, -100);
+        assertEquals(11, cache.getWeight());
+        assertRegionWeights(cache);
+
+        // Growing beyond the main region evicts it
+        cache.addWeight(1, grown, 100);
+        assertFalse(cache.containsKey(1));
+        assertEquals(10, cache.getWeight());
+    }
+
+    private static void assertRegionWeights(WeightedCache<?, ?> cache) {
+        for (int region = WeightedCache.WINDOW; region <= WeightedCache.PROTECTED; region++) {
+            assertEquals(cache.sumRegionWeight(region), cache.getRegionWeight(region));
+        }
+    }
+}
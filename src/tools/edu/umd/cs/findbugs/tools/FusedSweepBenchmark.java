@@ -0,0 +1,130 @@
+/*
+ * FindBugs - Find Bugs in Java programs
+ * Copyright (C) 2003-2008 University of Maryland
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+package edu.umd.cs.findbugs.tools;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.umd.cs.findbugs.FindBugs;
+import edu.umd.cs.findbugs.FindBugs2;
+import edu.umd.cs.findbugs.SystemProperties;
+import edu.umd.cs.findbugs.TextUICommandLine;
+
+/**
+ * Compare the CPU time spent per class with and without fused bytecode sweeps
+ * (see {@link edu.umd.cs.findbugs.bcel.FusedOpcodeStackDetector}).
+ *
+ * <p>
+ * Usage: FusedSweepBenchmark [-runs &lt;n&gt;] [findbugs options] &lt;jar or
+ * directory&gt;...
+ * </p>
+ *
+ * <p>
+ * The analysis is run in-process, alternating between the two modes, after
+ * one warm-up run in each mode. Only the CPU time of the thread driving the
+ * analysis is measured, so the analysis should not use worker threads.
+ * </p>
+ */
+public class FusedSweepBenchmark {
+
+    private static final String PROPERTY = "findbugs.fusedSweep";
+
+    static class Result {
+        long cpuNanos;
+
+        int numClasses;
+
+        int bugCount;
+    }
+
+    private static Result run(String[] args, boolean fused) throws Exception {
+        SystemProperties.setProperty(PROPERTY, String.valueOf(fused));
+        File output = File.createTempFile("fusedSweep", ".xml");
+        try {
+            List<String> argList = new ArrayList<String>();
+            argList.addAll(Arrays.asList("-quiet", "-xml", "-output", output.getPath()));
+            argList.addAll(Arrays.asList(args));
+
+            FindBugs2 findBugs = new FindBugs2();
+            TextUICommandLine commandLine = new TextUICommandLine();
+            FindBugs.processCommandLine(commandLine, argList.toArray(new String[argList.size()]), findBugs);
+
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            long start = threadBean.getCurrentThreadCpuTime();
+            findBugs.execute();
+            Result result = new Result();
+            result.cpuNanos = threadBean.getCurrentThreadCpuTime() - start;
+            result.numClasses = findBugs.getBugReporter().getProjectStats().getNumClasses();
+            result.bugCount = findBugs.getBugCount();
+            return result;
+        } finally {
+            output.delete();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        if (args.length >= 2 && args[0].equals("-runs")) {
+            runs = Integer.parseInt(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length == 0) {
+            System.err.println("Usage: " + FusedSweepBenchmark.class.getName()
+                    + " [-runs <n>] [findbugs options] <jar or directory>...");
+            System.exit(1);
+        }
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!threadBean.isCurrentThreadCpuTimeSupported()) {
+            System.err.println("Thread CPU time is not supported by this JVM");
+            System.exit(1);
+        }
+        threadBean.setThreadCpuTimeEnabled(true);
+
+        Result warmFused = run(args, true);
+        Result warmUnfused = run(args, false);
+        if (warmFused.bugCount != warmUnfused.bugCount)
+            System.err.println("Warning: " + warmFused.bugCount + " bugs reported with fused sweeps, "
+                    + warmUnfused.bugCount + " without");
+
+        long fusedNanos = 0, unfusedNanos = 0;
+        int numClasses = warmFused.numClasses;
+        for (int i = 0; i < runs; i++) {
+            Result fused = run(args, true);
+            Result unfused = run(args, false);
+            System.out.printf("run %d: fused %.1f ms, unfused %.1f ms%n", i + 1, fused.cpuNanos / 1e6,
+                    unfused.cpuNanos / 1e6);
+            fusedNanos += fused.cpuNanos;
+            unfusedNanos += unfused.cpuNanos;
+        }
+        SystemProperties.setProperty(PROPERTY, "true");
+
+        double fusedPerClass = fusedNanos / 1e3 / runs / Math.max(1, numClasses);
+        double unfusedPerClass = unfusedNanos / 1e3 / runs / Math.max(1, numClasses);
+        System.out.printf("%d classes, %d runs%n", numClasses, runs);
+        System.out.printf("fused:   %10.1f us/class%n", fusedPerClass);
+        System.out.printf("unfused: %10.1f us/class%n", unfusedPerClass);
+        System.out.printf("saved:   %10.1f us/class (%.1f%%)%n", unfusedPerClass - fusedPerClass,
+                100.0 * (unfusedPerClass - fusedPerClass) / unfusedPerClass);
+    }
+}